@@ -0,0 +1,93 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.benchmark;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import elki.data.DoubleVector;
+import elki.data.type.TypeUtil;
+import elki.database.Database;
+import elki.database.StaticArrayDatabase;
+import elki.database.relation.Relation;
+import elki.datasource.ArrayAdapterDatabaseConnection;
+import elki.index.IndexFactory;
+
+/**
+ * Shared data generation for the microbenchmarks.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public final class BenchmarkData {
+  /**
+   * Fake constructor: do not instantiate.
+   */
+  private BenchmarkData() {
+    // Do not instantiate
+  }
+
+  /**
+   * Generate uniform random vectors.
+   *
+   * @param size Number of vectors
+   * @param dim Dimensionality
+   * @param seed Random seed
+   * @return Data
+   */
+  public static double[][] uniform(int size, int dim, long seed) {
+    Random rnd = new Random(seed);
+    double[][] data = new double[size][dim];
+    for(double[] row : data) {
+      for(int d = 0; d < dim; d++) {
+        row[d] = rnd.nextDouble();
+      }
+    }
+    return data;
+  }
+
+  /**
+   * Wrap raw data as vectors.
+   *
+   * @param data Data
+   * @return Vectors
+   */
+  public static DoubleVector[] wrap(double[][] data) {
+    DoubleVector[] vecs = new DoubleVector[data.length];
+    for(int i = 0; i < data.length; i++) {
+      vecs[i] = DoubleVector.wrap(data[i]);
+    }
+    return vecs;
+  }
+
+  /**
+   * Load data into a static database, with optional indexes.
+   *
+   * @param data Data
+   * @param indexes Index factories
+   * @return Vector relation
+   */
+  public static Relation<DoubleVector> relation(double[][] data, IndexFactory<?>... indexes) {
+    Database db = new StaticArrayDatabase(new ArrayAdapterDatabaseConnection(data), indexes.length > 0 ? Arrays.asList(indexes) : null);
+    db.initialize();
+    return db.getRelation(TypeUtil.DOUBLE_VECTOR_FIELD);
+  }
+}
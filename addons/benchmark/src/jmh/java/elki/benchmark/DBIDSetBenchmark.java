@@ -0,0 +1,113 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import elki.database.ids.*;
+
+/**
+ * Benchmark of DBID set operations.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DBIDSetBenchmark {
+  /**
+   * Size of the sets.
+   */
+  @Param({ "1000", "100000" })
+  int size;
+
+  /**
+   * Two overlapping hash sets.
+   */
+  HashSetModifiableDBIDs hashA, hashB;
+
+  /**
+   * Two overlapping sorted arrays.
+   */
+  ArrayModifiableDBIDs arrayA, arrayB;
+
+  @Setup
+  public void setup() {
+    DBIDRange range = DBIDUtil.generateStaticDBIDRange(size << 1);
+    Random rnd = new Random(0L);
+    hashA = DBIDUtil.newHashSet(size);
+    hashB = DBIDUtil.newHashSet(size);
+    for(DBIDIter it = range.iter(); it.valid(); it.advance()) {
+      (rnd.nextBoolean() ? hashA : hashB).add(it);
+    }
+    // Overlap of about half of the smaller set
+    for(DBIDIter it = hashA.iter(); it.valid(); it.advance()) {
+      if(rnd.nextBoolean()) {
+        hashB.add(it);
+      }
+    }
+    arrayA = DBIDUtil.newArray(hashA);
+    arrayA.sort();
+    arrayB = DBIDUtil.newArray(hashB);
+    arrayB.sort();
+  }
+
+  @Benchmark
+  public int intersectionHash() {
+    return DBIDUtil.intersection(hashA, hashB).size();
+  }
+
+  @Benchmark
+  public int intersectionSize() {
+    return DBIDUtil.intersectionSize(hashA, hashB);
+  }
+
+  @Benchmark
+  public int unionHash() {
+    return DBIDUtil.union(hashA, hashB).size();
+  }
+
+  @Benchmark
+  public int differenceHash() {
+    return DBIDUtil.difference(hashA, hashB).size();
+  }
+
+  @Benchmark
+  public int intersectionArray() {
+    return DBIDUtil.intersection(arrayA, arrayB).size();
+  }
+
+  @Benchmark
+  public int containsArray() {
+    int c = 0;
+    for(DBIDIter it = arrayB.iter(); it.valid(); it.advance()) {
+      c += arrayA.binarySearch(it) >= 0 ? 1 : 0;
+    }
+    return c;
+  }
+}
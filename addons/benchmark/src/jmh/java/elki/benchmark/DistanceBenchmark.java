@@ -0,0 +1,103 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import elki.data.DoubleVector;
+import elki.distance.CosineDistance;
+import elki.distance.minkowski.SquaredEuclideanDistance;
+import elki.distance.timeseries.DTWDistance;
+
+/**
+ * Benchmark of distance kernels on dense vectors.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DistanceBenchmark {
+  /**
+   * Number of vector pairs.
+   */
+  private static final int PAIRS = 1024;
+
+  /**
+   * Dimensionality (time series length for DTW).
+   */
+  @Param({ "2", "16", "128" })
+  int dim;
+
+  /**
+   * Vectors.
+   */
+  DoubleVector[] vecs;
+
+  /**
+   * Time warping distance, with a 10% band.
+   */
+  DTWDistance dtw;
+
+  /**
+   * Current pair.
+   */
+  int pos;
+
+  @Setup
+  public void setup() {
+    vecs = BenchmarkData.wrap(BenchmarkData.uniform(PAIRS + 1, dim, 0L));
+    dtw = new DTWDistance(0.1);
+  }
+
+  /**
+   * Advance to the next pair of vectors.
+   *
+   * @return Index of the first vector
+   */
+  private int next() {
+    return pos = pos + 1 < PAIRS ? pos + 1 : 0;
+  }
+
+  @Benchmark
+  public double squaredEuclidean() {
+    final int i = next();
+    return SquaredEuclideanDistance.STATIC.distance(vecs[i], vecs[i + 1]);
+  }
+
+  @Benchmark
+  public double cosine() {
+    final int i = next();
+    return CosineDistance.STATIC.distance(vecs[i], vecs[i + 1]);
+  }
+
+  @Benchmark
+  public double dtw() {
+    final int i = next();
+    return dtw.distance(vecs[i], vecs[i + 1]);
+  }
+}
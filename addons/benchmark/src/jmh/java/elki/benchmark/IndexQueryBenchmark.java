@@ -0,0 +1,162 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import elki.data.DoubleVector;
+import elki.database.query.QueryBuilder;
+import elki.database.query.knn.KNNSearcher;
+import elki.database.query.range.RangeSearcher;
+import elki.distance.minkowski.EuclideanDistance;
+import elki.index.IndexFactory;
+import elki.index.tree.metrical.covertree.CoverTree;
+import elki.index.tree.spatial.kd.SmallMemoryKDTree;
+import elki.index.tree.spatial.rstarvariants.RTreeSettings;
+import elki.index.tree.spatial.rstarvariants.rstar.RStarTreeFactory;
+import elki.math.statistics.distribution.GammaDistribution;
+import elki.persistent.MemoryPageFileFactory;
+
+/**
+ * Benchmark of kNN and range queries on index structures.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IndexQueryBenchmark {
+  /**
+   * Number of query points.
+   */
+  private static final int QUERIES = 1000;
+
+  /**
+   * Index to use.
+   */
+  @Param({ "linear", "kdtree", "covertree", "rstartree" })
+  String index;
+
+  /**
+   * Data set size.
+   */
+  @Param({ "100000" })
+  int size;
+
+  /**
+   * Dimensionality.
+   */
+  @Param({ "2", "8" })
+  int dim;
+
+  /**
+   * Number of neighbors.
+   */
+  @Param({ "10" })
+  int k;
+
+  /**
+   * Query points.
+   */
+  DoubleVector[] queries;
+
+  /**
+   * kNN searcher.
+   */
+  KNNSearcher<DoubleVector> knnq;
+
+  /**
+   * Range searcher.
+   */
+  RangeSearcher<DoubleVector> rangeq;
+
+  /**
+   * Query radius, chosen to return about k results.
+   */
+  double radius;
+
+  /**
+   * Current query.
+   */
+  int pos;
+
+  @Setup
+  public void setup() {
+    final double[][] data = BenchmarkData.uniform(size, dim, 0L);
+    QueryBuilder<DoubleVector> qb;
+    if(index.equals("linear")) {
+      qb = new QueryBuilder<>(BenchmarkData.relation(data), EuclideanDistance.STATIC).linearOnly();
+    }
+    else {
+      // Only use the index we added, do not build other indexes automatically.
+      qb = new QueryBuilder<>(BenchmarkData.relation(data, makeIndex()), EuclideanDistance.STATIC).cheapOnly();
+    }
+    queries = BenchmarkData.wrap(BenchmarkData.uniform(QUERIES, dim, 1L));
+    knnq = qb.kNNByObject(k);
+    // Volume of the unit ball, to estimate a radius containing k points.
+    double vol = Math.pow(Math.PI, dim * .5) / Math.exp(GammaDistribution.logGamma(dim * .5 + 1));
+    radius = Math.pow(k / (size * vol), 1. / dim);
+    rangeq = qb.rangeByObject(radius);
+  }
+
+  /**
+   * Make the index factory.
+   *
+   * @return Index factory
+   */
+  private IndexFactory<?> makeIndex() {
+    switch(index){
+    case "kdtree":
+      return new SmallMemoryKDTree.Factory<>();
+    case "covertree":
+      return new CoverTree.Factory<>(EuclideanDistance.STATIC, 1.3, 10);
+    case "rstartree":
+      return new RStarTreeFactory<>(new MemoryPageFileFactory<>(4096), new RTreeSettings());
+    default:
+      throw new IllegalArgumentException("Unknown index: " + index);
+    }
+  }
+
+  /**
+   * Get the next query point.
+   *
+   * @return Query point
+   */
+  private DoubleVector next() {
+    return queries[pos = pos + 1 < QUERIES ? pos + 1 : 0];
+  }
+
+  @Benchmark
+  public double knn() {
+    return knnq.getKNN(next(), k).getKNNDistance();
+  }
+
+  @Benchmark
+  public int range() {
+    return rangeq.getRange(next(), radius).size();
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import elki.database.ids.DBIDArrayIter;
+import elki.database.ids.DBIDRange;
+import elki.database.ids.DBIDUtil;
+import elki.database.ids.KNNHeap;
+
+/**
+ * Benchmark of kNN heap insertions, as used by all kNN searches.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KNNHeapBenchmark {
+  /**
+   * Number of candidates offered to the heap.
+   */
+  private static final int SIZE = 10000;
+
+  /**
+   * Heap size.
+   */
+  @Param({ "10", "100" })
+  int k;
+
+  /**
+   * Candidate ids.
+   */
+  DBIDRange ids;
+
+  /**
+   * Candidate distances.
+   */
+  double[] dists;
+
+  @Setup
+  public void setup() {
+    ids = DBIDUtil.generateStaticDBIDRange(SIZE);
+    Random rnd = new Random(0L);
+    dists = new double[SIZE];
+    for(int i = 0; i < SIZE; i++) {
+      dists[i] = rnd.nextDouble();
+    }
+  }
+
+  @Benchmark
+  public double insert() {
+    KNNHeap heap = DBIDUtil.newHeap(k);
+    for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+      heap.insert(dists[it.getOffset()], it);
+    }
+    return heap.getKNNDistance();
+  }
+
+  @Benchmark
+  public double insertWithThreshold() {
+    KNNHeap heap = DBIDUtil.newHeap(k);
+    double threshold = Double.POSITIVE_INFINITY;
+    for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+      final double d = dists[it.getOffset()];
+      if(d <= threshold) {
+        threshold = heap.insert(d, it);
+      }
+    }
+    return threshold;
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.benchmark;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import elki.utilities.datastructures.QuickSelect;
+
+/**
+ * Benchmark of median selection with QuickSelect, compared to sorting.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QuickSelectBenchmark {
+  /**
+   * Array size.
+   */
+  @Param({ "100", "10000", "1000000" })
+  int size;
+
+  /**
+   * Source data.
+   */
+  double[] data;
+
+  /**
+   * Working copy, as selection modifies the array.
+   */
+  double[] work;
+
+  @Setup
+  public void setup() {
+    Random rnd = new Random(0L);
+    data = new double[size];
+    for(int i = 0; i < size; i++) {
+      data[i] = rnd.nextDouble();
+    }
+    work = new double[size];
+  }
+
+  @Benchmark
+  public double median() {
+    System.arraycopy(data, 0, work, 0, size);
+    return QuickSelect.quickSelect(work, size >>> 1);
+  }
+
+  @Benchmark
+  public double medianBySorting() {
+    System.arraycopy(data, 0, work, 0, size);
+    Arrays.sort(work);
+    return work[size >>> 1];
+  }
+}
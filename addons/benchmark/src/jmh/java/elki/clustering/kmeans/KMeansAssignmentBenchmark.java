@@ -0,0 +1,82 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmeans;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import elki.benchmark.BenchmarkData;
+import elki.data.DoubleVector;
+import elki.database.relation.Relation;
+import elki.distance.minkowski.SquaredEuclideanDistance;
+
+/**
+ * Benchmark of the k-means assignment step.
+ * <p>
+ * This is in the k-means package to access the assignment step of the
+ * k-means instances.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KMeansAssignmentBenchmark {
+  /**
+   * Data set size.
+   */
+  @Param({ "100000" })
+  int size;
+
+  /**
+   * Dimensionality.
+   */
+  @Param({ "2", "16" })
+  int dim;
+
+  /**
+   * Number of clusters.
+   */
+  @Param({ "10", "100" })
+  int k;
+
+  /**
+   * k-means instance.
+   */
+  LloydKMeans.Instance instance;
+
+  @Setup
+  public void setup() {
+    Relation<DoubleVector> relation = BenchmarkData.relation(BenchmarkData.uniform(size, dim, 0L));
+    double[][] means = BenchmarkData.uniform(k, dim, 1L);
+    instance = new LloydKMeans.Instance(relation, SquaredEuclideanDistance.STATIC, means);
+  }
+
+  @Benchmark
+  public int assignToNearestCluster() {
+    return instance.assignToNearestCluster();
+  }
+}
@@ -20,18 +20,30 @@
  */
 package elki.clustering.dbscan.predicates;
 
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
+
 import elki.Algorithm;
 import elki.clustering.dbscan.DBSCAN;
 import elki.data.type.SimpleTypeInformation;
 import elki.data.type.TypeInformation;
 import elki.data.type.TypeUtil;
 import elki.database.Database;
+import elki.database.datastore.DataStoreFactory;
+import elki.database.datastore.DataStoreUtil;
+import elki.database.datastore.WritableDataStore;
+import elki.database.datastore.WritableIntegerDataStore;
 import elki.database.ids.*;
 import elki.database.query.QueryBuilder;
 import elki.database.query.range.RangeSearcher;
 import elki.database.relation.Relation;
 import elki.distance.Distance;
 import elki.distance.minkowski.EuclideanDistance;
+import elki.parallel.ParallelExecutor;
+import elki.parallel.processor.RangeProcessor;
+import elki.parallel.processor.WriteDataStoreProcessor;
+import elki.parallel.variables.SharedObject;
+import elki.utilities.datastructures.BitsUtil;
 import elki.utilities.documentation.Reference;
 import elki.utilities.optionhandling.Parameterizer;
 import elki.utilities.optionhandling.constraints.CommonConstraints;
@@ -89,7 +101,8 @@ public class EpsilonNeighborPredicate<O> implements NeighborPredicate<DoubleDBID
   public Instance instantiate(Database database) {
     Relation<O> relation = database.getRelation(distance.getInputTypeRestriction());
     RangeSearcher<DBIDRef> rq = new QueryBuilder<>(relation, distance).rangeByDBID(epsilon);
-    return new Instance(epsilon, rq, relation.getDBIDs());
+    return new Instance(epsilon, rq, relation.getDBIDs(), //
+        () -> new QueryBuilder<>(relation, distance).rangeByDBID(epsilon));
   }
 
   @Override
@@ -108,6 +121,11 @@ public class EpsilonNeighborPredicate<O> implements NeighborPredicate<DoubleDBID
    * @author Erich Schubert
    */
   public static class Instance implements NeighborPredicate.Instance<DoubleDBIDList> {
+    /**
+     * Number of neighborhoods to compute concurrently.
+     */
+    private static final int BLOCKSIZE = 1024;
+
     /**
      * Range to query with
      */
@@ -123,6 +141,31 @@ public class EpsilonNeighborPredicate<O> implements NeighborPredicate<DoubleDBID
      */
     protected DBIDs ids;
 
+    /**
+     * Range queries for worker threads, may be {@code null}.
+     */
+    private ThreadLocal<RangeSearcher<DBIDRef>> workerqs;
+
+    /**
+     * Ids in processing order, for block computation.
+     */
+    private ArrayDBIDs order;
+
+    /**
+     * Offsets of the ids in the processing order.
+     */
+    private WritableIntegerDataStore offsets;
+
+    /**
+     * Bitmask of the neighborhoods already computed.
+     */
+    private long[] computed;
+
+    /**
+     * Neighborhoods computed, but not yet retrieved.
+     */
+    private WritableDataStore<DoubleDBIDList> cache;
+
     /**
      * Constructor.
      *
@@ -131,10 +174,27 @@ public class EpsilonNeighborPredicate<O> implements NeighborPredicate<DoubleDBID
      * @param ids DBIDs to process
      */
     public Instance(double epsilon, RangeSearcher<DBIDRef> rq, DBIDs ids) {
+      this(epsilon, rq, ids, null);
+    }
+
+    /**
+     * Constructor.
+     * <p>
+     * If a supplier for range queries is given, neighborhoods will be
+     * computed concurrently in blocks of consecutive ids.
+     *
+     * @param epsilon Epsilon
+     * @param rq Range query to use
+     * @param ids DBIDs to process
+     * @param workerqs Supplier for range queries of worker threads, may be
+     *        {@code null}
+     */
+    public Instance(double epsilon, RangeSearcher<DBIDRef> rq, DBIDs ids, Supplier<RangeSearcher<DBIDRef>> workerqs) {
       super();
       this.epsilon = epsilon;
       this.rq = rq;
       this.ids = ids;
+      this.workerqs = workerqs != null ? ThreadLocal.withInitial(workerqs) : null;
     }
 
     @Override
@@ -144,9 +204,64 @@ public class EpsilonNeighborPredicate<O> implements NeighborPredicate<DoubleDBID
 
     @Override
     public DoubleDBIDList getNeighbors(DBIDRef reference) {
+      // Do not nest parallelism, e.g., in parallel GDBSCAN:
+      if(workerqs != null && ids.size() > 1 && !ForkJoinTask.inForkJoinPool()) {
+        if(cache == null) {
+          initializeBlocks();
+        }
+        DoubleDBIDList neighbors = cache.get(reference);
+        if(neighbors == null) {
+          final int off = offsets.intValue(reference);
+          if(off >= 0 && !BitsUtil.get(computed, off)) {
+            computeBlock(off);
+            neighbors = cache.get(reference);
+          }
+        }
+        if(neighbors != null) {
+          cache.delete(reference); // Usually only needed once.
+          return neighbors;
+        }
+      }
       return rq.getRange(reference, epsilon, DBIDUtil.newDistanceDBIDList());
     }
 
+    /**
+     * Initialize the data structures for block computation.
+     */
+    private void initializeBlocks() {
+      order = DBIDUtil.ensureArray(ids);
+      offsets = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, -1);
+      for(DBIDArrayIter it = order.iter(); it.valid(); it.advance()) {
+        offsets.putInt(it, it.getOffset());
+      }
+      computed = BitsUtil.zero(order.size());
+      cache = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, DoubleDBIDList.class);
+    }
+
+    /**
+     * Compute the neighborhoods of the next block of objects, beginning at
+     * the given offset, in parallel.
+     *
+     * @param start Starting offset
+     */
+    private void computeBlock(int start) {
+      ArrayModifiableDBIDs block = DBIDUtil.newArray(BLOCKSIZE);
+      // Limit the scan, as most objects may have been computed already:
+      final int end = (int) Math.min(order.size(), start + (long) (BLOCKSIZE << 4));
+      for(DBIDArrayIter it = order.iter().seek(start); it.getOffset() < end && block.size() < BLOCKSIZE; it.advance()) {
+        if(!BitsUtil.get(computed, it.getOffset())) {
+          BitsUtil.setI(computed, it.getOffset());
+          block.add(it);
+        }
+      }
+      RangeProcessor rangep = new RangeProcessor(epsilon, workerqs::get);
+      WriteDataStoreProcessor<DoubleDBIDList> storep = new WriteDataStoreProcessor<>(cache);
+      SharedObject<DoubleDBIDList> var = new SharedObject<>();
+      rangep.connectRangeOutput(var);
+      storep.connectInput(var);
+      ParallelExecutor.run(block, rangep, storep);
+    }
+
     @Override
     public DBIDIter iterDBIDs(DoubleDBIDList neighbors) {
       return neighbors.iter();
@@ -109,6 +109,17 @@ public class DiagonalGaussianModel implements EMClusterModel<NumberVector, EMMod
     this.wsum = 0.;
   }
 
+  /**
+   * Constructor for partial models, c.f. {@link #partialE()}.
+   *
+   * @param dim Dimensionality
+   */
+  private DiagonalGaussianModel(int dim) {
+    this.mean = new double[dim];
+    this.nmea = new double[dim];
+    this.variances = new double[dim];
+  }
+
   @Override
   public void beginEStep() {
     wsum = 0.;
@@ -142,6 +153,28 @@ public class DiagonalGaussianModel implements EMClusterModel<NumberVector, EMMod
     System.arraycopy(nmea, 0, mean, 0, nmea.length);
   }
 
+  @Override
+  public DiagonalGaussianModel partialE() {
+    return new DiagonalGaussianModel(mean.length);
+  }
+
+  @Override
+  public void mergeE(EMClusterModel<NumberVector, EMModel> partial) {
+    final DiagonalGaussianModel other = (DiagonalGaussianModel) partial;
+    if(other.wsum < Double.MIN_NORMAL) {
+      return;
+    }
+    final double nwsum = wsum + other.wsum;
+    final double f = other.wsum / nwsum, g = wsum * f;
+    // Combine the aggregates, c.f. Chan et al.'s pairwise update:
+    for(int i = 0; i < mean.length; i++) {
+      final double delta = other.mean[i] - mean[i];
+      variances[i] += other.variances[i] + delta * delta * g;
+      mean[i] += delta * f;
+    }
+    wsum = nwsum;
+  }
+
   @Override
   public void finalizeEStep(double weight, double prior) {
     final int dim = variances.length;
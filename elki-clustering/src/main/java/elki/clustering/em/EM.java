@@ -237,7 +237,7 @@ public class EM<O, M extends MeanModel> implements ClusteringAlgorithm<Clusterin
     // initial models
     List<? extends EMClusterModel<O, M>> models = mfactory.buildInitialModels(relation, k);
     WritableDataStore<double[]> probClusterIGivenX = DataStoreUtil.makeStorage(relation.getDBIDs(), DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_SORTED, double[].class);
-    double loglikelihood = assignProbabilitiesToInstances(relation, models, probClusterIGivenX);
+    double loglikelihood = assignProbabilities(relation, models, probClusterIGivenX);
     DoubleStatistic likestat = new DoubleStatistic(this.getClass().getName() + ".loglikelihood");
     LOG.statistics(likestat.setDouble(loglikelihood));
 
@@ -246,9 +246,9 @@ public class EM<O, M extends MeanModel> implements ClusteringAlgorithm<Clusterin
     double bestloglikelihood = loglikelihood; // For detecting instabilities.
     for(++it; it < maxiter || maxiter < 0; it++) {
       final double oldloglikelihood = loglikelihood;
-      recomputeCovarianceMatrices(relation, probClusterIGivenX, models, prior);
+      recomputeModels(relation, probClusterIGivenX, models, prior);
       // reassign probabilities
-      loglikelihood = assignProbabilitiesToInstances(relation, models, probClusterIGivenX);
+      loglikelihood = assignProbabilities(relation, models, probClusterIGivenX);
 
       LOG.statistics(likestat.setDouble(loglikelihood));
       if(loglikelihood - bestloglikelihood > delta) {
@@ -286,6 +286,30 @@ public class EM<O, M extends MeanModel> implements ClusteringAlgorithm<Clusterin
     return result;
   }
 
+  /**
+   * Recompute the cluster models from the current probabilities.
+   *
+   * @param relation Vector data
+   * @param probClusterIGivenX Object probabilities
+   * @param models Cluster models to update
+   * @param prior MAP prior (use 0 for MLE)
+   */
+  protected void recomputeModels(Relation<O> relation, WritableDataStore<double[]> probClusterIGivenX, List<? extends EMClusterModel<O, M>> models, double prior) {
+    recomputeCovarianceMatrices(relation, probClusterIGivenX, models, prior);
+  }
+
+  /**
+   * Assign the cluster probabilities to the instances.
+   *
+   * @param relation Vector data
+   * @param models Cluster models
+   * @param probClusterIGivenX Output storage for cluster probabilities
+   * @return the expectation value of the current mixture of distributions
+   */
+  protected double assignProbabilities(Relation<O> relation, List<? extends EMClusterModel<O, M>> models, WritableDataStore<double[]> probClusterIGivenX) {
+    return assignProbabilitiesToInstances(relation, models, probClusterIGivenX);
+  }
+
   /**
    * Recompute the covariance matrixes.
    * 
@@ -355,22 +379,35 @@ public class EM<O, M extends MeanModel> implements ClusteringAlgorithm<Clusterin
     double emSum = 0.;
 
     for(DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
-      O vec = relation.get(iditer);
       double[] probs = new double[k];
-      for(int i = 0; i < k; i++) {
-        double v = models.get(i).estimateLogDensity(vec);
-        probs[i] = v > MIN_LOGLIKELIHOOD ? v : MIN_LOGLIKELIHOOD;
-      }
-      final double logP = logSumExp(probs);
-      for(int i = 0; i < k; i++) {
-        probs[i] = FastMath.exp(probs[i] - logP);
-      }
+      emSum += computeProbabilities(relation.get(iditer), models, probs);
       probClusterIGivenX.put(iditer, probs);
-      emSum += logP;
     }
     return emSum / relation.size();
   }
 
+  /**
+   * Compute the cluster probabilities of a single object.
+   *
+   * @param vec Object
+   * @param models Cluster models
+   * @param probs Output array for the cluster probabilities
+   * @param <O> Object type
+   * @return log likelihood of the object
+   */
+  protected static <O> double computeProbabilities(O vec, List<? extends EMClusterModel<O, ?>> models, double[] probs) {
+    final int k = probs.length;
+    for(int i = 0; i < k; i++) {
+      double v = models.get(i).estimateLogDensity(vec);
+      probs[i] = v > MIN_LOGLIKELIHOOD ? v : MIN_LOGLIKELIHOOD;
+    }
+    final double logP = logSumExp(probs);
+    for(int i = 0; i < k; i++) {
+      probs[i] = FastMath.exp(probs[i] - logP);
+    }
+    return logP;
+  }
+
   /**
    * Compute log(sum(exp(x_i)), with attention to numerical issues.
    * 
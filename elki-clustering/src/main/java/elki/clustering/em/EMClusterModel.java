@@ -75,6 +75,36 @@ public interface EMClusterModel<O, M extends Model> {
    */
   void updateE(O vec, double weight);
 
+  /**
+   * Create an empty partial model, to aggregate the E step on a subset of the
+   * data (e.g., in a separate thread). Partial models are merged using
+   * {@link #mergeFirstPassE} and {@link #mergeE}.
+   * <p>
+   * Must be called after {@link #beginEStep()}, and for the second pass of
+   * two-pass models after {@link #finalizeFirstPassE()}.
+   *
+   * @return Partial model
+   */
+  EMClusterModel<O, M> partialE();
+
+  /**
+   * Merge the first pass of a partial model into this model.
+   * <p>
+   * By default, this is not used (c.f. {@link #needsTwoPass()}.
+   *
+   * @param partial Partial model, from {@link #partialE()}
+   */
+  default void mergeFirstPassE(EMClusterModel<O, M> partial) {
+    // empty.
+  }
+
+  /**
+   * Merge the E step aggregates of a partial model into this model.
+   *
+   * @param partial Partial model, from {@link #partialE()}
+   */
+  void mergeE(EMClusterModel<O, M> partial);
+
   /**
    * Finalize the E step.
    * 
@@ -111,6 +111,17 @@ public class MultivariateGaussianModel implements EMClusterModel<NumberVector, E
     this.logNormDet = FastMath.log(weight) - .5 * logNorm - getHalfLogDeterminant(this.chol);
   }
 
+  /**
+   * Constructor for partial models, c.f. {@link #partialE()}.
+   *
+   * @param dim Dimensionality
+   */
+  private MultivariateGaussianModel(int dim) {
+    this.mean = new double[dim];
+    this.nmea = new double[dim];
+    this.covariance = new double[dim][dim];
+  }
+
   @Override
   public void beginEStep() {
     wsum = 0.;
@@ -151,6 +162,38 @@ public class MultivariateGaussianModel implements EMClusterModel<NumberVector, E
     System.arraycopy(nmea, 0, mean, 0, nmea.length);
   }
 
+  @Override
+  public MultivariateGaussianModel partialE() {
+    return new MultivariateGaussianModel(mean.length);
+  }
+
+  @Override
+  public void mergeE(EMClusterModel<NumberVector, EMModel> partial) {
+    final MultivariateGaussianModel other = (MultivariateGaussianModel) partial;
+    if(other.wsum < Double.MIN_NORMAL) {
+      return;
+    }
+    final int dim = mean.length;
+    final double nwsum = wsum + other.wsum;
+    final double f = other.wsum / nwsum, g = wsum * f;
+    // Combine the aggregates, c.f. Chan et al.'s pairwise update:
+    for(int i = 0; i < dim; i++) {
+      nmea[i] = other.mean[i] - mean[i];
+    }
+    for(int i = 0; i < dim; i++) {
+      final double[] cov_i = covariance[i], ocov_i = other.covariance[i];
+      final double di = nmea[i] * g;
+      for(int j = 0; j <= i; j++) {
+        cov_i[j] += ocov_i[j] + di * nmea[j];
+      }
+      // Other half is NOT updated here, but in finalizeEStep!
+    }
+    for(int i = 0; i < dim; i++) {
+      mean[i] += nmea[i] * f;
+    }
+    wsum = nwsum;
+  }
+
   @Override
   public void finalizeEStep(double weight, double prior) {
     final int dim = covariance.length;
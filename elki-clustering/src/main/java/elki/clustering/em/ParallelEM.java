@@ -0,0 +1,302 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.em;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import elki.data.model.MeanModel;
+import elki.database.datastore.WritableDataStore;
+import elki.database.ids.DBIDIter;
+import elki.database.ids.DBIDRef;
+import elki.database.relation.Relation;
+import elki.parallel.Executor;
+import elki.parallel.ParallelExecutor;
+import elki.parallel.processor.Processor;
+
+/**
+ * Parallel variant of clustering by expectation maximization (EM).
+ * <p>
+ * The computation of the cluster probabilities and the aggregation of the new
+ * cluster models are partitioned over the available threads. Each thread
+ * aggregates into its own partial models (c.f.
+ * {@link EMClusterModel#partialE()}), which are merged before the models are
+ * finalized. Because the partial results are merged in no particular order,
+ * results may differ from the sequential version in the last digits.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @param <O> object type to analyze
+ * @param <M> model type to produce
+ */
+public class ParallelEM<O, M extends MeanModel> extends EM<O, M> {
+  /**
+   * Constructor.
+   *
+   * @param k k parameter
+   * @param delta delta parameter
+   * @param mfactory EM cluster model factory
+   * @param miniter Minimum number of iterations
+   * @param maxiter Maximum number of iterations
+   * @param prior MAP prior
+   * @param soft Include soft assignments
+   */
+  public ParallelEM(int k, double delta, EMClusterModelFactory<O, M> mfactory, int miniter, int maxiter, double prior, boolean soft) {
+    super(k, delta, mfactory, miniter, maxiter, prior, soft);
+  }
+
+  @Override
+  protected void recomputeModels(Relation<O> relation, WritableDataStore<double[]> probClusterIGivenX, List<? extends EMClusterModel<O, M>> models, double prior) {
+    final int k = models.size();
+    boolean needsTwoPass = false;
+    for(EMClusterModel<?, ?> m : models) {
+      m.beginEStep();
+      needsTwoPass |= m.needsTwoPass();
+    }
+    // First pass, only for two-pass models.
+    if(needsTwoPass) {
+      ParallelExecutor.run(relation.getDBIDs(), new ModelProcessor(relation, probClusterIGivenX, models, true));
+      for(EMClusterModel<?, ?> m : models) {
+        m.finalizeFirstPassE();
+      }
+    }
+    ModelProcessor proc = new ModelProcessor(relation, probClusterIGivenX, models, false);
+    ParallelExecutor.run(relation.getDBIDs(), proc);
+    for(int i = 0; i < k; i++) {
+      // MLE / MAP
+      final double weight = prior <= 0. ? proc.wsum[i] / relation.size() : (proc.wsum[i] + prior - 1) / (relation.size() + prior * k - k);
+      models.get(i).finalizeEStep(weight, prior);
+    }
+  }
+
+  @Override
+  protected double assignProbabilities(Relation<O> relation, List<? extends EMClusterModel<O, M>> models, WritableDataStore<double[]> probClusterIGivenX) {
+    // Allocate sequentially, so the parallel workers only modify the arrays:
+    final int k = models.size();
+    for(DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
+      if(probClusterIGivenX.get(iditer) == null) {
+        probClusterIGivenX.put(iditer, new double[k]);
+      }
+    }
+    AssignProcessor proc = new AssignProcessor(relation, models, probClusterIGivenX);
+    ParallelExecutor.run(relation.getDBIDs(), proc);
+    return proc.emSum / relation.size();
+  }
+
+  /**
+   * Processor to compute the cluster probabilities.
+   *
+   * @author Erich Schubert
+   */
+  private class AssignProcessor implements Processor {
+    /**
+     * Data relation.
+     */
+    private Relation<O> relation;
+
+    /**
+     * Cluster models.
+     */
+    private List<? extends EMClusterModel<O, M>> models;
+
+    /**
+     * Output storage for cluster probabilities.
+     */
+    private WritableDataStore<double[]> probClusterIGivenX;
+
+    /**
+     * Sum of log likelihoods.
+     */
+    double emSum;
+
+    /**
+     * Constructor.
+     *
+     * @param relation Data relation
+     * @param models Cluster models
+     * @param probClusterIGivenX Output storage for cluster probabilities
+     */
+    AssignProcessor(Relation<O> relation, List<? extends EMClusterModel<O, M>> models, WritableDataStore<double[]> probClusterIGivenX) {
+      this.relation = relation;
+      this.models = models;
+      this.probClusterIGivenX = probClusterIGivenX;
+    }
+
+    @Override
+    public Assigner instantiate(Executor executor) {
+      return new Assigner();
+    }
+
+    @Override
+    public synchronized void cleanup(Processor.Instance inst) {
+      @SuppressWarnings("unchecked")
+      final Assigner assigner = (Assigner) inst;
+      emSum += assigner.emSum;
+    }
+
+    /**
+     * Per-thread instance.
+     *
+     * @author Erich Schubert
+     */
+    private class Assigner implements Processor.Instance {
+      /**
+       * Partial sum of log likelihoods.
+       */
+      double emSum;
+
+      @Override
+      public void map(DBIDRef id) {
+        emSum += computeProbabilities(relation.get(id), models, probClusterIGivenX.get(id));
+      }
+    }
+  }
+
+  /**
+   * Processor to aggregate the new cluster models.
+   *
+   * @author Erich Schubert
+   */
+  private class ModelProcessor implements Processor {
+    /**
+     * Data relation.
+     */
+    private Relation<O> relation;
+
+    /**
+     * Object probabilities.
+     */
+    private WritableDataStore<double[]> probClusterIGivenX;
+
+    /**
+     * Cluster models to update.
+     */
+    private List<? extends EMClusterModel<O, M>> models;
+
+    /**
+     * Flag for the first pass of two-pass models.
+     */
+    private boolean firstPass;
+
+    /**
+     * Cluster weight sums.
+     */
+    double[] wsum;
+
+    /**
+     * Constructor.
+     *
+     * @param relation Data relation
+     * @param probClusterIGivenX Object probabilities
+     * @param models Cluster models to update
+     * @param firstPass Flag for the first pass of two-pass models
+     */
+    ModelProcessor(Relation<O> relation, WritableDataStore<double[]> probClusterIGivenX, List<? extends EMClusterModel<O, M>> models, boolean firstPass) {
+      this.relation = relation;
+      this.probClusterIGivenX = probClusterIGivenX;
+      this.models = models;
+      this.firstPass = firstPass;
+      this.wsum = new double[models.size()];
+    }
+
+    @Override
+    public Aggregator instantiate(Executor executor) {
+      List<EMClusterModel<O, M>> partials = new ArrayList<>(models.size());
+      for(EMClusterModel<O, M> m : models) {
+        partials.add(m.partialE());
+      }
+      return new Aggregator(partials);
+    }
+
+    @Override
+    public synchronized void cleanup(Processor.Instance inst) {
+      @SuppressWarnings("unchecked")
+      final Aggregator agg = (Aggregator) inst;
+      for(int i = 0; i < wsum.length; i++) {
+        if(firstPass) {
+          models.get(i).mergeFirstPassE(agg.partials.get(i));
+        }
+        else {
+          models.get(i).mergeE(agg.partials.get(i));
+        }
+        wsum[i] += agg.wsum[i];
+      }
+    }
+
+    /**
+     * Per-thread instance.
+     *
+     * @author Erich Schubert
+     */
+    private class Aggregator implements Processor.Instance {
+      /**
+       * Partial models.
+       */
+      List<EMClusterModel<O, M>> partials;
+
+      /**
+       * Partial cluster weight sums.
+       */
+      double[] wsum;
+
+      /**
+       * Constructor.
+       *
+       * @param partials Partial models
+       */
+      Aggregator(List<EMClusterModel<O, M>> partials) {
+        this.partials = partials;
+        this.wsum = new double[partials.size()];
+      }
+
+      @Override
+      public void map(DBIDRef id) {
+        final double[] clusterProbabilities = probClusterIGivenX.get(id);
+        final O instance = relation.get(id);
+        for(int i = 0; i < clusterProbabilities.length; i++) {
+          final double prob = clusterProbabilities[i];
+          if(prob > 1e-10) {
+            if(firstPass) {
+              partials.get(i).firstPassE(instance, prob);
+            }
+            else {
+              partials.get(i).updateE(instance, prob);
+            }
+          }
+          wsum[i] += prob;
+        }
+      }
+    }
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   */
+  public static class Par<O, M extends MeanModel> extends EM.Par<O, M> {
+    @Override
+    public ParallelEM<O, M> make() {
+      return new ParallelEM<>(k, delta, initializer, miniter, maxiter, prior, false);
+    }
+  }
+}
@@ -99,6 +99,16 @@ public class SphericalGaussianModel implements EMClusterModel<NumberVector, EMMo
     this.wsum = 0.;
   }
 
+  /**
+   * Constructor for partial models, c.f. {@link #partialE()}.
+   *
+   * @param dim Dimensionality
+   */
+  private SphericalGaussianModel(int dim) {
+    this.mean = new double[dim];
+    this.nmea = new double[dim];
+  }
+
   @Override
   public void beginEStep() {
     wsum = 0.;
@@ -131,6 +141,29 @@ public class SphericalGaussianModel implements EMClusterModel<NumberVector, EMMo
     System.arraycopy(nmea, 0, mean, 0, nmea.length);
   }
 
+  @Override
+  public SphericalGaussianModel partialE() {
+    return new SphericalGaussianModel(mean.length);
+  }
+
+  @Override
+  public void mergeE(EMClusterModel<NumberVector, EMModel> partial) {
+    final SphericalGaussianModel other = (SphericalGaussianModel) partial;
+    if(other.wsum < Double.MIN_NORMAL) {
+      return;
+    }
+    final double nwsum = wsum + other.wsum;
+    final double f = other.wsum / nwsum, g = wsum * f;
+    // Combine the aggregates, c.f. Chan et al.'s pairwise update:
+    variance += other.variance;
+    for(int i = 0; i < mean.length; i++) {
+      final double delta = other.mean[i] - mean[i];
+      variance += delta * delta * g;
+      mean[i] += delta * f;
+    }
+    wsum = nwsum;
+  }
+
   @Override
   public void finalizeEStep(double weight, double prior) {
     final int dim = mean.length;
@@ -107,6 +107,17 @@ public class TextbookMultivariateGaussianModel implements EMClusterModel<NumberV
     this.logNormDet = FastMath.log(weight) - .5 * logNorm - MultivariateGaussianModel.getHalfLogDeterminant(this.chol);
   }
 
+  /**
+   * Constructor for partial models, c.f. {@link #partialE()}.
+   *
+   * @param dim Dimensionality
+   */
+  private TextbookMultivariateGaussianModel(int dim) {
+    this.mean = new double[dim];
+    this.tmp = new double[dim];
+    this.covariance = new double[dim][dim];
+  }
+
   @Override
   public void beginEStep() {
     wsum = 0.;
@@ -137,6 +148,26 @@ public class TextbookMultivariateGaussianModel implements EMClusterModel<NumberV
     wsum += wei;
   }
 
+  @Override
+  public TextbookMultivariateGaussianModel partialE() {
+    return new TextbookMultivariateGaussianModel(mean.length);
+  }
+
+  @Override
+  public void mergeE(EMClusterModel<NumberVector, EMModel> partial) {
+    final TextbookMultivariateGaussianModel other = (TextbookMultivariateGaussianModel) partial;
+    final int dim = mean.length;
+    // Naive aggregates are simply added:
+    for(int i = 0; i < dim; i++) {
+      mean[i] += other.mean[i];
+      final double[] cov_i = covariance[i], ocov_i = other.covariance[i];
+      for(int j = 0; j <= i; j++) {
+        cov_i[j] += ocov_i[j];
+      }
+    }
+    wsum += other.wsum;
+  }
+
   @Override
   public void finalizeEStep(double weight, double prior) {
     final int dim = covariance.length;
@@ -104,6 +104,17 @@ public class TwoPassMultivariateGaussianModel implements EMClusterModel<NumberVe
     this.logNormDet = FastMath.log(weight) - .5 * logNorm - MultivariateGaussianModel.getHalfLogDeterminant(this.chol);
   }
 
+  /**
+   * Constructor for partial models, c.f. {@link #partialE()}.
+   *
+   * @param dim Dimensionality
+   */
+  private TwoPassMultivariateGaussianModel(int dim) {
+    this.mean = new double[dim];
+    this.tmp = new double[dim];
+    this.covariance = new double[dim][dim];
+  }
+
   @Override
   public void beginEStep() {
     wsum = 0.;
@@ -144,6 +155,18 @@ public class TwoPassMultivariateGaussianModel implements EMClusterModel<NumberVe
     }
   }
 
+  /**
+   * Merge the partial means of the first pass.
+   */
+  @Override
+  public void mergeFirstPassE(EMClusterModel<NumberVector, EMModel> partial) {
+    final TwoPassMultivariateGaussianModel other = (TwoPassMultivariateGaussianModel) partial;
+    for(int i = 0; i < mean.length; i++) {
+      mean[i] += other.mean[i];
+    }
+    wsum += other.wsum;
+  }
+
   /**
    * Second pass: compute the covariance matrix.
    */
@@ -169,6 +192,25 @@ public class TwoPassMultivariateGaussianModel implements EMClusterModel<NumberVe
     }
   }
 
+  @Override
+  public TwoPassMultivariateGaussianModel partialE() {
+    TwoPassMultivariateGaussianModel partial = new TwoPassMultivariateGaussianModel(mean.length);
+    // Second pass: use the mean of the first pass.
+    System.arraycopy(mean, 0, partial.mean, 0, mean.length);
+    return partial;
+  }
+
+  @Override
+  public void mergeE(EMClusterModel<NumberVector, EMModel> partial) {
+    final TwoPassMultivariateGaussianModel other = (TwoPassMultivariateGaussianModel) partial;
+    for(int i = 0; i < covariance.length; i++) {
+      final double[] cov_i = covariance[i], ocov_i = other.covariance[i];
+      for(int j = 0; j <= i; j++) {
+        cov_i[j] += ocov_i[j];
+      }
+    }
+  }
+
   @Override
   public void finalizeEStep(double weight, double prior) {
     final int dim = covariance.length;
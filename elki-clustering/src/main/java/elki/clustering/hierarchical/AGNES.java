@@ -43,6 +43,7 @@ import elki.utilities.documentation.Reference;
 import elki.utilities.optionhandling.OptionID;
 import elki.utilities.optionhandling.Parameterizer;
 import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.Flag;
 import elki.utilities.optionhandling.parameters.ObjectParameter;
 
 /**
@@ -123,6 +124,11 @@ public class AGNES<O> implements HierarchicalClusteringAlgorithm {
    */
   protected Linkage linkage = WardLinkage.STATIC;
 
+  /**
+   * Store the distance matrix with single precision.
+   */
+  protected boolean singlePrecision = false;
+
   /**
    * Constructor.
    *
@@ -130,9 +136,21 @@ public class AGNES<O> implements HierarchicalClusteringAlgorithm {
    * @param linkage Linkage method
    */
   public AGNES(Distance<? super O> distance, Linkage linkage) {
+    this(distance, linkage, false);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param distance Distance function to use
+   * @param linkage Linkage method
+   * @param singlePrecision Store the distance matrix with single precision
+   */
+  public AGNES(Distance<? super O> distance, Linkage linkage, boolean singlePrecision) {
     super();
     this.distance = distance;
     this.linkage = linkage;
+    this.singlePrecision = singlePrecision;
   }
 
   /**
@@ -150,7 +168,7 @@ public class AGNES<O> implements HierarchicalClusteringAlgorithm {
     DistanceQuery<O> dq = new QueryBuilder<>(relation, distance).distanceQuery();
 
     // Compute the initial (lower triangular) distance matrix.
-    MatrixParadigm mat = new MatrixParadigm(ids);
+    MatrixParadigm mat = new MatrixParadigm(ids, singlePrecision);
     initializeDistanceMatrix(mat, dq, linkage);
 
     // Initialize space for result:
@@ -198,23 +216,14 @@ public class AGNES<O> implements HierarchicalClusteringAlgorithm {
    */
   protected static void initializeDistanceMatrix(MatrixParadigm mat, DistanceQuery<?> dq, Linkage linkage) {
     final DBIDArrayIter ix = mat.ix, iy = mat.iy;
-    final double[] matrix = mat.matrix;
     final boolean issquare = dq.getDistance().isSquared();
-    FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Distance matrix computation", matrix.length, LOG) : null;
-    int pos = 0;
+    FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Distance matrix computation", mat.size, LOG) : null;
     for(ix.seek(0); ix.valid(); ix.advance()) {
       final int x = ix.getOffset();
-      assert (pos == MatrixParadigm.triangleSize(x));
       for(iy.seek(0); iy.getOffset() < x; iy.advance()) {
-        matrix[pos++] = linkage.initial(dq.distance(ix, iy), issquare);
+        mat.set(x, iy.getOffset(), linkage.initial(dq.distance(ix, iy), issquare));
       }
-      if(prog != null) {
-        prog.setProcessed(pos, LOG);
-      }
-    }
-    // Avoid logging errors in case scratch space was too large:
-    if(prog != null) {
-      prog.setProcessed(matrix.length, LOG);
+      LOG.incrementProcessed(prog);
     }
     LOG.ensureCompleted(prog);
   }
@@ -230,26 +239,42 @@ public class AGNES<O> implements HierarchicalClusteringAlgorithm {
   protected int findMerge(int end, MatrixParadigm mat, PointerHierarchyRepresentationBuilder builder) {
     assert (end > 0);
     final DBIDArrayIter ix = mat.ix, iy = mat.iy;
-    final double[] matrix = mat.matrix;
     double mindist = Double.POSITIVE_INFINITY;
     int x = -1, y = -1;
     // Find minimum:
-    for(int ox = 0, xbase = 0; ox < end; xbase += ox++) {
+    for(int ox = 0; ox < end; ox++) {
       // Skip if object has already joined a cluster:
       if(builder.isLinked(ix.seek(ox))) {
         continue;
       }
-      assert (xbase == MatrixParadigm.triangleSize(ox));
-      for(int oy = 0; oy < ox; oy++) {
-        // Skip if object has already joined a cluster:
-        if(builder.isLinked(iy.seek(oy))) {
-          continue;
+      if(mat.isSinglePrecision()) {
+        final float[] row = mat.getFloatRow(ox);
+        for(int oy = 0; oy < ox; oy++) {
+          // Skip if object has already joined a cluster:
+          if(builder.isLinked(iy.seek(oy))) {
+            continue;
+          }
+          final double dist = row[oy];
+          if(dist <= mindist) { // Prefer later on ==, to truncate more often.
+            mindist = dist;
+            x = ox;
+            y = oy;
+          }
         }
-        final double dist = matrix[xbase + oy];
-        if(dist <= mindist) { // Prefer later on ==, to truncate more often.
-          mindist = dist;
-          x = ox;
-          y = oy;
+      }
+      else {
+        final double[] row = mat.getRow(ox);
+        for(int oy = 0; oy < ox; oy++) {
+          // Skip if object has already joined a cluster:
+          if(builder.isLinked(iy.seek(oy))) {
+            continue;
+          }
+          final double dist = row[oy];
+          if(dist <= mindist) { // Prefer later on ==, to truncate more often.
+            mindist = dist;
+            x = ox;
+            y = oy;
+          }
         }
       }
     }
@@ -299,9 +324,6 @@ public class AGNES<O> implements HierarchicalClusteringAlgorithm {
    */
   protected void updateMatrix(int end, MatrixParadigm mat, PointerHierarchyRepresentationBuilder builder, double mindist, int x, int y, final int sizex, final int sizey) {
     // Update distance matrix. Note: y < x
-    final int xbase = MatrixParadigm.triangleSize(x);
-    final int ybase = MatrixParadigm.triangleSize(y);
-    double[] scratch = mat.matrix;
     DBIDArrayIter ij = mat.ix;
 
     // Write to (y, j), with j < y
@@ -310,28 +332,23 @@ public class AGNES<O> implements HierarchicalClusteringAlgorithm {
       if(builder.isLinked(ij.seek(j))) {
         continue;
       }
-      assert (j < y); // Otherwise, ybase + j is the wrong position!
-      final int yb = ybase + j;
-      scratch[yb] = linkage.combine(sizex, scratch[xbase + j], sizey, scratch[yb], builder.getSize(ij), mindist);
+      mat.set(y, j, linkage.combine(sizex, mat.get(x, j), sizey, mat.get(y, j), builder.getSize(ij), mindist));
     }
     j++; // Skip y
     // Write to (j, y), with y < j < x
-    int jbase = MatrixParadigm.triangleSize(j);
-    for(; j < x; jbase += j++) {
+    for(; j < x; j++) {
       if(builder.isLinked(ij.seek(j))) {
         continue;
       }
-      final int jb = jbase + y;
-      scratch[jb] = linkage.combine(sizex, scratch[xbase + j], sizey, scratch[jb], builder.getSize(ij), mindist);
+      mat.set(j, y, linkage.combine(sizex, mat.get(x, j), sizey, mat.get(j, y), builder.getSize(ij), mindist));
     }
-    jbase += j++; // Skip x
+    j++; // Skip x
     // Write to (j, y), with y < x < j
-    for(; j < end; jbase += j++) {
+    for(; j < end; j++) {
       if(builder.isLinked(ij.seek(j))) {
         continue;
       }
-      final int jb = jbase + y;
-      scratch[jb] = linkage.combine(sizex, scratch[jbase + x], sizey, scratch[jb], builder.getSize(ij), mindist);
+      mat.set(j, y, linkage.combine(sizex, mat.get(j, x), sizey, mat.get(j, y), builder.getSize(ij), mindist));
     }
   }
 
@@ -355,6 +372,11 @@ public class AGNES<O> implements HierarchicalClusteringAlgorithm {
      */
     public static final OptionID LINKAGE_ID = new OptionID("hierarchical.linkage", "Linkage method to use (e.g. Ward, Single-Link)");
 
+    /**
+     * Option ID for single precision storage of the distance matrix.
+     */
+    public static final OptionID SINGLE_PRECISION_ID = new OptionID("hierarchical.float", "Store the distance matrix with single (float) precision, which needs only half the memory.");
+
     /**
      * Current linkage in use.
      */
@@ -365,6 +387,11 @@ public class AGNES<O> implements HierarchicalClusteringAlgorithm {
      */
     protected Distance<? super O> distance;
 
+    /**
+     * Store the distance matrix with single precision.
+     */
+    protected boolean singlePrecision = false;
+
     @Override
     public void configure(Parameterization config) {
       new ObjectParameter<Linkage>(LINKAGE_ID, Linkage.class) //
@@ -374,11 +401,12 @@ public class AGNES<O> implements HierarchicalClusteringAlgorithm {
           ? SquaredEuclideanDistance.class : EuclideanDistance.class;
       new ObjectParameter<Distance<? super O>>(Algorithm.Utils.DISTANCE_FUNCTION_ID, Distance.class, defaultD) //
           .grab(config, x -> distance = x);
+      new Flag(SINGLE_PRECISION_ID).grab(config, x -> singlePrecision = x);
     }
 
     @Override
     public AGNES<O> make() {
-      return new AGNES<>(distance, linkage);
+      return new AGNES<>(distance, linkage, singlePrecision);
     }
   }
 }
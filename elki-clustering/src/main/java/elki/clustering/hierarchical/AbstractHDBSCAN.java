@@ -20,23 +20,26 @@
  */
 package elki.clustering.hierarchical;
 
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
 import elki.Algorithm;
 import elki.data.type.TypeInformation;
 import elki.data.type.TypeUtil;
 import elki.database.datastore.DataStoreFactory;
 import elki.database.datastore.DataStoreUtil;
-import elki.database.datastore.DoubleDataStore;
 import elki.database.datastore.WritableDBIDDataStore;
+import elki.database.datastore.WritableDataStore;
 import elki.database.datastore.WritableDoubleDataStore;
 import elki.database.ids.*;
-import elki.database.query.distance.DistanceQuery;
 import elki.database.query.knn.KNNSearcher;
 import elki.distance.Distance;
 import elki.distance.minkowski.EuclideanDistance;
 import elki.logging.Logging;
 import elki.logging.progress.FiniteProgress;
-import elki.math.MathUtil;
 import elki.math.geometry.PrimsMinimumSpanningTree;
+import elki.parallel.ParallelCore;
 import elki.utilities.datastructures.heap.DoubleLongHeap;
 import elki.utilities.documentation.Reference;
 import elki.utilities.optionhandling.OptionID;
@@ -58,7 +61,6 @@ import elki.utilities.optionhandling.parameters.ObjectParameter;
  * @author Erich Schubert
  * @since 0.7.0
  *
- * @composed - - - HDBSCANAdapter
  * @composed - - - HeapMSTCollector
  *
  * @param <O> Input object type
@@ -69,6 +71,11 @@ import elki.utilities.optionhandling.parameters.ObjectParameter;
     url = "https://doi.org/10.1007/978-3-642-37456-2_14", //
     bibkey = "DBLP:conf/pakdd/CampelloMS13")
 public abstract class AbstractHDBSCAN<O> implements Algorithm {
+  /**
+   * Number of objects per batch of kNN queries.
+   */
+  private static final int CORE_BLOCKSIZE = 256;
+
   /**
    * MinPts parameter.
    */
@@ -93,78 +100,122 @@ public abstract class AbstractHDBSCAN<O> implements Algorithm {
 
   /**
    * Compute the core distances for all objects.
+   * <p>
+   * The objects are processed in parallel, in blocks of batched kNN queries.
+   * Because searchers may keep state, each thread uses its own searcher.
    *
    * @param ids Objects
-   * @param knnQ kNN query
+   * @param knnQ Supplier of kNN searchers
    * @param minPts Minimum neighborhood size
    * @return Data store with core distances
    */
-  protected WritableDoubleDataStore computeCoreDists(DBIDs ids, KNNSearcher<DBIDRef> knnQ, int minPts) {
+  protected WritableDoubleDataStore computeCoreDists(DBIDs ids, Supplier<KNNSearcher<DBIDRef>> knnQ, int minPts) {
     final Logging LOG = getLogger();
-    final WritableDoubleDataStore coredists = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_DB);
-    FiniteProgress cprog = LOG.isVerbose() ? new FiniteProgress("Computing core sizes", ids.size(), LOG) : null;
-    for(DBIDIter iter = ids.iter(); iter.valid(); iter.advance()) {
-      coredists.put(iter, knnQ.getKNN(iter, minPts).getKNNDistance());
-      LOG.incrementProcessed(cprog);
+    final ArrayDBIDs aids = DBIDUtil.ensureArray(ids);
+    final double[] core = new double[aids.size()];
+    FiniteProgress cprog = LOG.isVerbose() ? new FiniteProgress("Computing core sizes", aids.size(), LOG) : null;
+    // Get the first searcher here, so that any index is built only once:
+    final AtomicReference<KNNSearcher<DBIDRef>> first = new AtomicReference<>(knnQ.get());
+    final ThreadLocal<KNNSearcher<DBIDRef>> knnqs = ThreadLocal.withInitial(() -> {
+      KNNSearcher<DBIDRef> knnq = first.getAndSet(null);
+      return knnq != null ? knnq : knnQ.get();
+    });
+    ParallelCore pcore = ParallelCore.getCore();
+    pcore.connect();
+    try {
+      pcore.invoke(new CoreDistTask(aids, 0, aids.size(), knnqs, minPts, core, cprog));
+    }
+    finally {
+      pcore.disconnect();
     }
     LOG.ensureCompleted(cprog);
+    final WritableDoubleDataStore coredists = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_DB);
+    for(DBIDArrayIter iter = aids.iter(); iter.valid(); iter.advance()) {
+      coredists.putDouble(iter, core[iter.getOffset()]);
+    }
     return coredists;
   }
 
   /**
-   * Class for processing the HDBSCAN G_mpts graph.
+   * Fork-join task to compute the core distances of a range of objects.
    *
    * @author Erich Schubert
    */
-  protected static class HDBSCANAdapter implements PrimsMinimumSpanningTree.Adapter<ArrayDBIDs> {
+  private class CoreDistTask extends RecursiveAction {
+    /**
+     * Serialization version.
+     */
+    private static final long serialVersionUID = 1L;
+
     /**
-     * IDs to process.
+     * Objects to process.
      */
     private ArrayDBIDs ids;
 
     /**
-     * Iterators for accessing the data objects.
+     * Range to process.
      */
-    private DBIDArrayIter q, p;
+    private int start, end;
 
     /**
-     * Core distance storage.
+     * Per-thread kNN searchers.
      */
-    private DoubleDataStore coredists;
+    private ThreadLocal<KNNSearcher<DBIDRef>> knnqs;
 
     /**
-     * Distance query for exact distances.
+     * Minimum neighborhood size.
      */
-    private DistanceQuery<?> distq;
+    private int minPts;
+
+    /**
+     * Output core distances, by offset.
+     */
+    private double[] core;
+
+    /**
+     * Progress, may be null.
+     */
+    private FiniteProgress prog;
 
     /**
      * Constructor.
      *
-     * @param ids Ids to process.
-     * @param coredists Core distances
-     * @param distq Distance query
+     * @param ids Objects to process
+     * @param start First offset
+     * @param end End offset (exclusive)
+     * @param knnqs Per-thread kNN searchers
+     * @param minPts Minimum neighborhood size
+     * @param core Output core distances
+     * @param prog Progress, may be null
      */
-    public HDBSCANAdapter(ArrayDBIDs ids, DoubleDataStore coredists, DistanceQuery<?> distq) {
+    CoreDistTask(ArrayDBIDs ids, int start, int end, ThreadLocal<KNNSearcher<DBIDRef>> knnqs, int minPts, double[] core, FiniteProgress prog) {
       this.ids = ids;
-      this.q = ids.iter();
-      this.p = ids.iter();
-      this.coredists = coredists;
-      this.distq = distq;
-    }
-
-    @Override
-    public double distance(ArrayDBIDs data, int ip, int iq) {
-      p.seek(ip);
-      q.seek(iq);
-      double coreP = coredists.doubleValue(p);
-      double coreQ = coredists.doubleValue(q);
-      return MathUtil.max(coreP, coreQ, distq.distance(p, q));
+      this.start = start;
+      this.end = end;
+      this.knnqs = knnqs;
+      this.minPts = minPts;
+      this.core = core;
+      this.prog = prog;
     }
 
     @Override
-    public int size(ArrayDBIDs data) {
-      assert (data == ids);
-      return ids.size();
+    protected void compute() {
+      if(end - start > CORE_BLOCKSIZE) {
+        final int mid = (start + end) >>> 1;
+        invokeAll(new CoreDistTask(ids, start, mid, knnqs, minPts, core, prog), //
+            new CoreDistTask(ids, mid, end, knnqs, minPts, core, prog));
+        return;
+      }
+      ArrayDBIDs block = ids.slice(start, end);
+      WritableDataStore<KNNList> knns = DataStoreUtil.makeStorage(block, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, KNNList.class);
+      knnqs.get().getKNNs(block, id -> id, minPts, knns);
+      for(DBIDArrayIter iter = block.iter(); iter.valid(); iter.advance()) {
+        core[start + iter.getOffset()] = knns.get(iter).getKNNDistance();
+      }
+      knns.destroy();
+      if(prog != null) {
+        prog.incrementProcessed(end - start, getLogger());
+      }
     }
   }
 
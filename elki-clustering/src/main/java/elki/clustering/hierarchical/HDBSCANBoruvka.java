@@ -0,0 +1,363 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.hierarchical;
+
+import java.util.Arrays;
+
+import elki.Algorithm;
+import elki.database.datastore.DataStoreFactory;
+import elki.database.datastore.DataStoreUtil;
+import elki.database.datastore.WritableDBIDDataStore;
+import elki.database.datastore.WritableDoubleDataStore;
+import elki.database.datastore.WritableIntegerDataStore;
+import elki.database.ids.ArrayDBIDs;
+import elki.database.ids.DBIDArrayIter;
+import elki.database.ids.DBIDRef;
+import elki.database.ids.DBIDUtil;
+import elki.database.query.PrioritySearcher;
+import elki.database.query.QueryBuilder;
+import elki.database.relation.Relation;
+import elki.distance.Distance;
+import elki.distance.minkowski.EuclideanDistance;
+import elki.logging.Logging;
+import elki.logging.progress.FiniteProgress;
+import elki.math.MathUtil;
+import elki.utilities.datastructures.arrays.DoubleIntegerArrayQuickSort;
+import elki.utilities.datastructures.heap.DoubleLongHeap;
+import elki.utilities.datastructures.heap.DoubleLongMinHeap;
+import elki.utilities.documentation.Description;
+import elki.utilities.documentation.Reference;
+import elki.utilities.documentation.Title;
+import elki.utilities.optionhandling.constraints.CommonConstraints;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.IntParameter;
+import elki.utilities.optionhandling.parameters.ObjectParameter;
+
+/**
+ * Index-accelerated HDBSCAN, building the minimum spanning tree of the mutual
+ * reachability graph with Borůvka's algorithm instead of Prim's.
+ * <p>
+ * In every round, each connected component searches the closest object that
+ * is not in the same component, using a distance priority search (e.g., a k-d
+ * tree or cover tree, as chosen by the query optimizer). The search is pruned
+ * with the best edge of the component found so far, the core distances, and a
+ * per-object lower bound from earlier rounds (components only grow, so the
+ * distance to the closest other component cannot decrease). The candidate
+ * edges are then added, and the number of components at least halves in every
+ * round. With a suitable index, this avoids the quadratic number of distance
+ * computations of {@link HDBSCANLinearMemory}.
+ * <p>
+ * With minPts=1, all core distances are zero, and this computes the
+ * single-linkage hierarchy, as {@link SLINK} does.
+ * <p>
+ * This implementation does <em>not</em> include the cluster extraction, which
+ * is provided in a separate step.
+ * <p>
+ * Reference:
+ * <p>
+ * W. B. March, P. Ram, A. G. Gray<br>
+ * Fast Euclidean minimum spanning tree: algorithm, analysis, and
+ * applications<br>
+ * Proc. 16th ACM SIGKDD Int. Conf. Knowledge Discovery and Data Mining
+ * <p>
+ * L. McInnes, J. Healy<br>
+ * Accelerated Hierarchical Density Based Clustering<br>
+ * IEEE Int. Conf. Data Mining Workshops (ICDMW)
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @has - - - PointerDensityHierarchyRepresentationResult
+ *
+ * @param <O> Object type
+ */
+@Title("HDBSCAN with Borůvka's minimum spanning tree")
+@Description("Density-Based Clustering Based on Hierarchical Density Estimates, accelerated with Borůvka's algorithm.")
+@Reference(authors = "W. B. March, P. Ram, A. G. Gray", //
+    title = "Fast Euclidean minimum spanning tree: algorithm, analysis, and applications", //
+    booktitle = "Proc. 16th ACM SIGKDD Int. Conf. Knowledge Discovery and Data Mining", //
+    url = "https://doi.org/10.1145/1835804.1835882", //
+    bibkey = "DBLP:conf/kdd/MarchRG10")
+@Reference(authors = "L. McInnes, J. Healy", //
+    title = "Accelerated Hierarchical Density Based Clustering", //
+    booktitle = "IEEE Int. Conf. Data Mining Workshops (ICDMW)", //
+    url = "https://doi.org/10.1109/ICDMW.2017.12", //
+    bibkey = "DBLP:conf/icdm/McInnesH17")
+public class HDBSCANBoruvka<O> extends AbstractHDBSCAN<O> implements HierarchicalClusteringAlgorithm {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(HDBSCANBoruvka.class);
+
+  /**
+   * Constructor.
+   *
+   * @param distance Distance function
+   * @param minPts Minimum number of points for density
+   */
+  public HDBSCANBoruvka(Distance<? super O> distance, int minPts) {
+    super(distance, minPts);
+  }
+
+  /**
+   * Run the algorithm
+   *
+   * @param relation Relation
+   * @return Clustering hierarchy
+   */
+  public PointerDensityHierarchyRepresentationResult run(Relation<O> relation) {
+    final QueryBuilder<O> qb = new QueryBuilder<>(relation, distance);
+    // We need array addressing later.
+    final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    final int size = ids.size();
+
+    // 1. Compute the core distances
+    final WritableDoubleDataStore coredists = minPts > 1 ? computeCoreDists(ids, () -> qb.kNNByDBID(minPts), minPts) : //
+        DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_DB, 0.);
+    // Array addressing of the core distances:
+    final WritableIntegerDataStore offset = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP);
+    final double[] core = new double[size];
+    for(DBIDArrayIter iter = ids.iter(); iter.valid(); iter.advance()) {
+      offset.putInt(iter, iter.getOffset());
+      core[iter.getOffset()] = coredists.doubleValue(iter);
+    }
+
+    // 2. Build spanning tree.
+    final int numedges = size - 1;
+    DoubleLongHeap heap = new DoubleLongMinHeap(numedges);
+    FiniteProgress mprog = LOG.isVerbose() ? new FiniteProgress("Computing minimum spanning tree (n-1 edges)", numedges, LOG) : null;
+    new Boruvka(ids, offset, core, qb.priorityByDBID()).run(new HeapMSTCollector(heap, mprog, LOG));
+    LOG.ensureCompleted(mprog);
+    offset.destroy();
+    // Storage for pointer representation:
+    WritableDBIDDataStore pi = DataStoreUtil.makeDBIDStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_STATIC);
+    WritableDoubleDataStore lambda = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_STATIC, Double.POSITIVE_INFINITY);
+    convertToPointerRepresentation(ids, heap, pi, lambda);
+
+    return new PointerDensityHierarchyRepresentationResult(ids, pi, lambda, distance.isSquared(), coredists);
+  }
+
+  /**
+   * Borůvka's algorithm on the mutual reachability graph, using a priority
+   * searcher to find the closest object of another component.
+   *
+   * @author Erich Schubert
+   */
+  private static class Boruvka {
+    /**
+     * Objects to process.
+     */
+    private final ArrayDBIDs ids;
+
+    /**
+     * Map of object to array offset.
+     */
+    private final WritableIntegerDataStore offset;
+
+    /**
+     * Core distances, by offset.
+     */
+    private final double[] core;
+
+    /**
+     * Priority searcher.
+     */
+    private final PrioritySearcher<DBIDRef> search;
+
+    /**
+     * Union-find parent array.
+     */
+    private final int[] parent;
+
+    /**
+     * Component of each object in the current round.
+     */
+    private final int[] comp;
+
+    /**
+     * Lower bound for the distance to the closest other component.
+     */
+    private final double[] lower;
+
+    /**
+     * Best edge of each component: length.
+     */
+    private final double[] bestDist;
+
+    /**
+     * Best edge of each component: endpoints.
+     */
+    private final int[] bestFrom, bestTo;
+
+    /**
+     * Constructor.
+     *
+     * @param ids Objects to process
+     * @param offset Map of object to array offset
+     * @param core Core distances, by offset
+     * @param search Priority searcher
+     */
+    Boruvka(ArrayDBIDs ids, WritableIntegerDataStore offset, double[] core, PrioritySearcher<DBIDRef> search) {
+      final int size = ids.size();
+      this.ids = ids;
+      this.offset = offset;
+      this.core = core;
+      this.search = search;
+      this.parent = new int[size];
+      this.comp = new int[size];
+      this.lower = core.clone();
+      this.bestDist = new double[size];
+      this.bestFrom = new int[size];
+      this.bestTo = new int[size];
+      for(int i = 0; i < size; i++) {
+        parent[i] = i;
+      }
+    }
+
+    /**
+     * Build the minimum spanning tree.
+     *
+     * @param collector Edge collector
+     */
+    public void run(HeapMSTCollector collector) {
+      final int size = ids.size();
+      final int[] order = new int[size], edges = new int[size];
+      final double[] keys = new double[size];
+      DBIDArrayIter iter = ids.iter();
+      int components = size;
+      while(components > 1) {
+        for(int i = 0; i < size; i++) {
+          comp[i] = find(i);
+        }
+        Arrays.fill(bestDist, Double.POSITIVE_INFINITY);
+        Arrays.fill(bestTo, -1);
+        // Process promising objects first, to prune more of the others:
+        for(int i = 0; i < size; i++) {
+          keys[i] = lower[order[i] = i];
+        }
+        DoubleIntegerArrayQuickSort.sort(keys, order, size);
+        for(int i : order) {
+          final int c = comp[i];
+          if(bestTo[c] >= 0 && lower[i] >= bestDist[c]) {
+            continue; // Cannot improve this component.
+          }
+          lower[i] = searchNearest(iter.seek(i), i, c);
+        }
+        // Collect the candidate edges, shortest first:
+        int numedges = 0;
+        for(int c = 0; c < size; c++) {
+          if(bestTo[c] >= 0) {
+            keys[numedges] = bestDist[c];
+            edges[numedges++] = c;
+          }
+        }
+        assert numedges > 0 : "No edges found, but " + components + " components.";
+        DoubleIntegerArrayQuickSort.sort(keys, edges, numedges);
+        for(int e = 0; e < numedges; e++) {
+          final int c = edges[e], i = bestFrom[c], j = bestTo[c];
+          final int ri = find(i), rj = find(j);
+          if(ri != rj) { // Two components may choose the same edge.
+            parent[ri] = rj;
+            collector.addEdge(bestDist[c], i, j);
+            --components;
+          }
+        }
+      }
+    }
+
+    /**
+     * Find the closest object in another component.
+     *
+     * @param cur Query object
+     * @param i Query offset
+     * @param c Query component
+     * @return Lower bound for the distance to the closest other component
+     */
+    private double searchNearest(DBIDRef cur, int i, int c) {
+      final double corei = core[i];
+      double threshold = bestDist[c];
+      // Note: distances may be infinite, if there are fewer than minPts points.
+      boolean found = bestTo[c] >= 0;
+      for(PrioritySearcher<DBIDRef> it = search.search(cur, threshold); it.valid(); it.advance()) {
+        if(found && it.getLowerBound() >= threshold) {
+          continue;
+        }
+        final int j = offset.intValue(it);
+        if(comp[j] == c || (found && core[j] >= threshold)) {
+          continue;
+        }
+        final double d = MathUtil.max(corei, core[j], it.computeExactDistance());
+        if(d < threshold || !found) {
+          found = true;
+          bestDist[c] = threshold = d;
+          bestFrom[c] = i;
+          bestTo[c] = j;
+          it.decreaseCutoff(threshold);
+        }
+      }
+      return threshold;
+    }
+
+    /**
+     * Union-find with path halving.
+     *
+     * @param i Object offset
+     * @return Component representative
+     */
+    private int find(int i) {
+      while(parent[i] != i) {
+        i = parent[i] = parent[parent[i]];
+      }
+      return i;
+    }
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class
+   *
+   * @author Erich Schubert
+   *
+   * @hidden
+   *
+   * @param <O> Object type
+   */
+  public static class Par<O> extends AbstractHDBSCAN.Par<O> {
+    @Override
+    public void configure(Parameterization config) {
+      new ObjectParameter<Distance<O>>(Algorithm.Utils.DISTANCE_FUNCTION_ID, Distance.class, EuclideanDistance.class) //
+          .grab(config, x -> distance = x);
+      // minPts=1 yields single linkage.
+      new IntParameter(MIN_PTS_ID) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+          .grab(config, x -> minPts = x);
+    }
+
+    @Override
+    public HDBSCANBoruvka<O> make() {
+      return new HDBSCANBoruvka<>(distance, minPts);
+    }
+  }
+}
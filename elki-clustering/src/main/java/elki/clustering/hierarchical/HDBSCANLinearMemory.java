@@ -20,23 +20,30 @@
  */
 package elki.clustering.hierarchical;
 
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+
 import elki.data.type.TypeInformation;
 import elki.data.type.TypeUtil;
 import elki.database.datastore.DataStoreFactory;
 import elki.database.datastore.DataStoreUtil;
+import elki.database.datastore.DoubleDataStore;
 import elki.database.datastore.WritableDBIDDataStore;
 import elki.database.datastore.WritableDoubleDataStore;
 import elki.database.ids.ArrayDBIDs;
+import elki.database.ids.DBIDArrayIter;
 import elki.database.ids.DBIDRef;
 import elki.database.ids.DBIDUtil;
+import elki.database.ids.DBIDVar;
 import elki.database.query.QueryBuilder;
 import elki.database.query.distance.DistanceQuery;
-import elki.database.query.knn.KNNSearcher;
 import elki.database.relation.Relation;
 import elki.distance.Distance;
 import elki.logging.Logging;
 import elki.logging.progress.FiniteProgress;
+import elki.math.MathUtil;
 import elki.math.geometry.PrimsMinimumSpanningTree;
+import elki.parallel.ParallelCore;
 import elki.utilities.datastructures.heap.DoubleLongHeap;
 import elki.utilities.datastructures.heap.DoubleLongMinHeap;
 import elki.utilities.documentation.Description;
@@ -58,6 +65,9 @@ import elki.utilities.documentation.Title;
  * clusterings (the compact pointer representation introduced in {@link SLINK})
  * we have to perform a postprocessing conversion.
  * <p>
+ * Both the core distances and the relaxation steps of Prim's algorithm are
+ * computed in parallel.
+ * <p>
  * This implementation does <em>not</em> include the cluster extraction
  * discussed as Step 4, which is provided in a separate step. For this reason,
  * we also do <em>not include self-edges</em>.
@@ -88,6 +98,11 @@ public class HDBSCANLinearMemory<O> extends AbstractHDBSCAN<O> implements Hierar
    */
   private static final Logging LOG = Logging.getLogger(HDBSCANLinearMemory.class);
 
+  /**
+   * Minimum number of vertices per parallel relaxation task.
+   */
+  private static final int RELAX_BLOCKSIZE = 256;
+
   /**
    * Constructor.
    *
@@ -111,22 +126,19 @@ public class HDBSCANLinearMemory<O> extends AbstractHDBSCAN<O> implements Hierar
    */
   public PointerDensityHierarchyRepresentationResult run(Relation<O> relation) {
     final QueryBuilder<O> qb = new QueryBuilder<>(relation, distance);
-    final KNNSearcher<DBIDRef> knnQ = qb.kNNByDBID(minPts);
     final DistanceQuery<O> distQ = qb.distanceQuery();
     // We need array addressing later.
     final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
 
     // 1. Compute the core distances
     // minPts + 1: ignore query point.
-    final WritableDoubleDataStore coredists = computeCoreDists(ids, knnQ, minPts);
+    final WritableDoubleDataStore coredists = computeCoreDists(ids, () -> qb.kNNByDBID(minPts), minPts);
 
     final int numedges = ids.size() - 1;
     DoubleLongHeap heap = new DoubleLongMinHeap(numedges);
     // 2. Build spanning tree.
     FiniteProgress mprog = LOG.isVerbose() ? new FiniteProgress("Computing minimum spanning tree (n-1 edges)", numedges, LOG) : null;
-    PrimsMinimumSpanningTree.processDense(ids, //
-        new HDBSCANAdapter(ids, coredists, distQ), //
-        new HeapMSTCollector(heap, mprog, LOG));
+    processDense(ids, coredists, distQ, new HeapMSTCollector(heap, mprog, LOG));
     LOG.ensureCompleted(mprog);
     // Storage for pointer representation:
     WritableDBIDDataStore pi = DataStoreUtil.makeDBIDStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_STATIC);
@@ -136,6 +148,180 @@ public class HDBSCANLinearMemory<O> extends AbstractHDBSCAN<O> implements Hierar
     return new PointerDensityHierarchyRepresentationResult(ids, pi, lambda, distQ.getDistance().isSquared(), coredists);
   }
 
+  /**
+   * Run Prim's algorithm on the dense mutual reachability graph.
+   * <p>
+   * Each step relaxes the remaining vertices in parallel, with each task
+   * finding its own minimum; the remaining vertices are kept compact.
+   *
+   * @param ids Objects
+   * @param coredists Core distances
+   * @param distQ Distance query
+   * @param collector Edge collector
+   */
+  protected static void processDense(ArrayDBIDs ids, DoubleDataStore coredists, DistanceQuery<?> distQ, PrimsMinimumSpanningTree.Collector collector) {
+    final int size = ids.size();
+    if(size < 2) {
+      return;
+    }
+    final double[] core = new double[size];
+    for(DBIDArrayIter iter = ids.iter(); iter.valid(); iter.advance()) {
+      core[iter.getOffset()] = coredists.doubleValue(iter);
+    }
+    final double[] best = new double[size];
+    Arrays.fill(best, Double.POSITIVE_INFINITY);
+    final int[] src = new int[size], todo = new int[size - 1];
+    for(int i = 0; i < todo.length; i++) {
+      todo[i] = i + 1;
+    }
+    ParallelCore pcore = ParallelCore.getCore();
+    pcore.connect();
+    try {
+      final int tasks = pcore.getParallelism() << 2;
+      final DBIDVar cur = DBIDUtil.newVar();
+      // We start at node 0:
+      int current = 0;
+      for(int remaining = todo.length; remaining > 0; remaining--) {
+        ids.assignVar(current, cur);
+        final int blocksize = Math.max(RELAX_BLOCKSIZE, (remaining + tasks - 1) / tasks);
+        RelaxTask task = new RelaxTask(ids, distQ, core, best, src, todo, 0, remaining, blocksize, current, cur);
+        if(remaining > blocksize) {
+          pcore.invoke(task);
+        }
+        else {
+          task.compute();
+        }
+        final int pos = task.bestpos, next = todo[pos];
+        collector.addEdge(best[next], src[next], next);
+        todo[pos] = todo[remaining - 1];
+        current = next;
+      }
+    }
+    finally {
+      pcore.disconnect();
+    }
+  }
+
+  /**
+   * Fork-join task to relax a range of the remaining vertices, and find the
+   * closest one.
+   *
+   * @author Erich Schubert
+   */
+  private static class RelaxTask extends RecursiveAction {
+    /**
+     * Serialization version.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Objects.
+     */
+    private ArrayDBIDs ids;
+
+    /**
+     * Distance query.
+     */
+    private DistanceQuery<?> distQ;
+
+    /**
+     * Core distances, best distances, by offset.
+     */
+    private double[] core, best;
+
+    /**
+     * Best source, remaining vertices.
+     */
+    private int[] src, todo;
+
+    /**
+     * Range of remaining vertices, and block size.
+     */
+    private int start, end, blocksize;
+
+    /**
+     * Current vertex.
+     */
+    private int current;
+
+    /**
+     * Current object.
+     */
+    private DBIDRef cur;
+
+    /**
+     * Position of the closest vertex in {@code todo}, output.
+     */
+    int bestpos = -1;
+
+    /**
+     * Constructor.
+     *
+     * @param ids Objects
+     * @param distQ Distance query
+     * @param core Core distances
+     * @param best Best distances
+     * @param src Best sources
+     * @param todo Remaining vertices
+     * @param start First position in todo
+     * @param end End position in todo (exclusive)
+     * @param blocksize Block size
+     * @param current Current vertex
+     * @param cur Current object
+     */
+    RelaxTask(ArrayDBIDs ids, DistanceQuery<?> distQ, double[] core, double[] best, int[] src, int[] todo, int start, int end, int blocksize, int current, DBIDRef cur) {
+      this.ids = ids;
+      this.distQ = distQ;
+      this.core = core;
+      this.best = best;
+      this.src = src;
+      this.todo = todo;
+      this.start = start;
+      this.end = end;
+      this.blocksize = blocksize;
+      this.current = current;
+      this.cur = cur;
+    }
+
+    @Override
+    protected void compute() {
+      if(end - start > blocksize) {
+        final int mid = (start + end) >>> 1;
+        RelaxTask left = new RelaxTask(ids, distQ, core, best, src, todo, start, mid, blocksize, current, cur);
+        RelaxTask right = new RelaxTask(ids, distQ, core, best, src, todo, mid, end, blocksize, current, cur);
+        invokeAll(left, right);
+        bestpos = better(right.bestpos, left.bestpos) ? right.bestpos : left.bestpos;
+        return;
+      }
+      final double corec = core[current];
+      DBIDArrayIter it = ids.iter();
+      for(int p = start; p < end; p++) {
+        final int j = todo[p];
+        final double d = MathUtil.max(corec, core[j], distQ.distance(cur, it.seek(j)));
+        if(d < best[j]) {
+          best[j] = d;
+          src[j] = current;
+        }
+        if(bestpos < 0 || better(p, bestpos)) {
+          bestpos = p;
+        }
+      }
+    }
+
+    /**
+     * Compare two candidates; ties are broken by the vertex number, to be
+     * independent of the parallelism.
+     *
+     * @param p First position
+     * @param q Second position
+     * @return {@code true} if p is better than q
+     */
+    private boolean better(int p, int q) {
+      final double bp = best[todo[p]], bq = best[todo[q]];
+      return bp < bq || (bp == bq && todo[p] < todo[q]);
+    }
+  }
+
   @Override
   protected Logging getLogger() {
     return LOG;
@@ -25,7 +25,6 @@ import elki.database.ids.DBIDArrayIter;
 import elki.database.ids.DBIDUtil;
 import elki.database.ids.DBIDs;
 import elki.database.query.distance.DistanceQuery;
-import elki.utilities.exceptions.AbortException;
 
 /**
  * Shared code for algorithms that work on a strict matrix paradigm.
@@ -37,6 +36,14 @@ import elki.utilities.exceptions.AbortException;
  * <p>
  * While this will usually store (merge-) distances when clustering, it can
  * store arbitrary doubles.
+ * <p>
+ * The lower triangle matrix is stored segmented, as one array per row, such
+ * that the size is not limited by the maximum Java array size (which used to
+ * limit this class to 65536 objects); only by the available memory.
+ * <p>
+ * Optionally, the matrix can be stored with single (float) precision, which
+ * halves the memory requirements and memory bandwidth, at the cost of
+ * rounding the stored values.
  *
  * @author Erich Schubert
  * @since 0.7.5
@@ -48,9 +55,15 @@ public class MatrixParadigm {
   public final DBIDArrayIter ix, iy;
 
   /**
-   * Distance matrix (<b>modifiable</b>).
+   * Distance matrix (<b>modifiable</b>), stored by rows: row x contains the
+   * values for columns 0...x-1.
+   */
+  private final double[][] matrix;
+
+  /**
+   * Single precision distance matrix, alternatively to {@link #matrix}.
    */
-  public final double[] matrix;
+  private final float[][] fmatrix;
 
   /**
    * Number of rows/columns.
@@ -63,16 +76,43 @@ public class MatrixParadigm {
    * @param ids Database ids.
    */
   public MatrixParadigm(DBIDs ids) {
+    this(ids, false);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param ids Database ids.
+   * @param singlePrecision Store the values with single (float) precision
+   */
+  public MatrixParadigm(DBIDs ids, boolean singlePrecision) {
     size = ids.size();
-    if(size > 0x10000) {
-      throw new AbortException("This implementation does not scale to data sets larger than " + //
-          0x10000 // = 65535
-          + " instances (~16 GB RAM), at which point the Java maximum array size is reached.");
-    }
     ArrayDBIDs aids = DBIDUtil.ensureArray(ids);
     ix = aids.iter();
     iy = aids.iter();
-    matrix = new double[triangleSize(size)];
+    if(singlePrecision) {
+      matrix = null;
+      fmatrix = new float[size][];
+      for(int x = 0; x < size; x++) {
+        fmatrix[x] = new float[x];
+      }
+    }
+    else {
+      fmatrix = null;
+      matrix = new double[size][];
+      for(int x = 0; x < size; x++) {
+        matrix[x] = new double[x];
+      }
+    }
+  }
+
+  /**
+   * Test whether the matrix is stored with single precision.
+   *
+   * @return true when using float storage
+   */
+  public boolean isSinglePrecision() {
+    return fmatrix != null;
   }
 
   /**
@@ -81,22 +121,73 @@ public class MatrixParadigm {
    * @param x Offset
    * @return Size of complete triangle
    */
-  public static int triangleSize(int x) {
-    return (x * (x - 1)) >>> 1;
+  public static long triangleSize(int x) {
+    return (((long) x) * (x - 1)) >>> 1;
   }
 
   /**
-   * Get a value from the (upper triangular) distance matrix.
-   * <p>
-   * Note: in many cases, linear iteration over the matrix will be fastet than
-   * repeated calls to this method!
+   * Get a value from the (lower triangular) distance matrix.
    *
    * @param x First object
    * @param y Second object
    * @return Distance
    */
   public double get(int x, int y) {
-    return x == y ? 0 : x < y ? matrix[triangleSize(y) + x] : matrix[triangleSize(x) + y];
+    if(x == y) {
+      return 0;
+    }
+    if(x < y) {
+      return matrix != null ? matrix[y][x] : fmatrix[y][x];
+    }
+    return matrix != null ? matrix[x][y] : fmatrix[x][y];
+  }
+
+  /**
+   * Get a row of the (lower triangular) distance matrix, i.e., the values for
+   * the columns 0...x-1, for scanning a row in inner loops. Only available
+   * with double precision, see {@link #getFloatRow} otherwise.
+   * <p>
+   * This is the internal storage, and must not be modified.
+   *
+   * @param x Row
+   * @return Row values
+   */
+  public double[] getRow(int x) {
+    assert matrix != null : "Matrix uses single precision.";
+    return matrix[x];
+  }
+
+  /**
+   * Get a row of the (lower triangular) distance matrix, i.e., the values for
+   * the columns 0...x-1, for scanning a row in inner loops. Only available
+   * with single precision, see {@link #getRow} otherwise.
+   * <p>
+   * This is the internal storage, and must not be modified.
+   *
+   * @param x Row
+   * @return Row values
+   */
+  public float[] getFloatRow(int x) {
+    assert fmatrix != null : "Matrix uses double precision.";
+    return fmatrix[x];
+  }
+
+  /**
+   * Set a value in the (lower triangular) distance matrix.
+   *
+   * @param x First object
+   * @param y Second object, must be different from x
+   * @param d New value
+   */
+  public void set(int x, int y, double d) {
+    assert x != y;
+    final int r = x < y ? y : x, c = x < y ? x : y;
+    if(matrix != null) {
+      matrix[r][c] = d;
+    }
+    else {
+      fmatrix[r][c] = (float) d;
+    }
   }
 
   /**
@@ -107,13 +198,10 @@ public class MatrixParadigm {
    */
   public MatrixParadigm initializeWithDistances(DistanceQuery<?> dq) {
     final DBIDArrayIter ix = this.ix, iy = this.iy;
-    final double[] matrix = this.matrix;
-    int pos = 0;
     for(ix.seek(0); ix.valid(); ix.advance()) {
       final int x = ix.getOffset();
-      assert (pos == triangleSize(x));
       for(iy.seek(0); iy.getOffset() < x; iy.advance()) {
-        matrix[pos++] = dq.distance(ix, iy);
+        set(x, iy.getOffset(), dq.distance(ix, iy));
       }
     }
     return this;
@@ -32,8 +32,10 @@ import elki.distance.minkowski.EuclideanDistance;
 import elki.logging.Logging;
 import elki.logging.progress.FiniteProgress;
 import elki.utilities.documentation.Reference;
+import elki.utilities.exceptions.AbortException;
 import elki.utilities.optionhandling.Parameterizer;
 import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.Flag;
 import elki.utilities.optionhandling.parameters.ObjectParameter;
 
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
@@ -80,14 +82,30 @@ public class MiniMax<O> implements HierarchicalClusteringAlgorithm {
    */
   protected Distance<? super O> distance;
 
+  /**
+   * Store the distance matrix with single precision.
+   */
+  protected boolean singlePrecision = false;
+
   /**
    * Constructor.
    *
    * @param distance Distance function to use.
    */
   public MiniMax(Distance<? super O> distance) {
+    this(distance, false);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param distance Distance function to use
+   * @param singlePrecision Store the distance matrix with single precision
+   */
+  public MiniMax(Distance<? super O> distance, boolean singlePrecision) {
     super();
     this.distance = distance;
+    this.singlePrecision = singlePrecision;
   }
 
   @Override
@@ -111,8 +129,8 @@ public class MiniMax<O> implements HierarchicalClusteringAlgorithm {
     Int2ObjectOpenHashMap<ModifiableDBIDs> clusters = new Int2ObjectOpenHashMap<>(size);
 
     // Allocate working space:
-    MatrixParadigm mat = new MatrixParadigm(ids);
-    ArrayModifiableDBIDs prots = DBIDUtil.newArray(MatrixParadigm.triangleSize(size));
+    MatrixParadigm mat = new MatrixParadigm(ids, singlePrecision);
+    ArrayModifiableDBIDs prots = allocatePrototypes(size);
     initializeMatrices(mat, prots, dq);
 
     DBIDArrayMIter protiter = prots.iter();
@@ -127,6 +145,25 @@ public class MiniMax<O> implements HierarchicalClusteringAlgorithm {
     return (PointerPrototypeHierarchyRepresentationResult) builder.complete();
   }
 
+  /**
+   * Allocate the storage for the prototypes of all pairs.
+   * <p>
+   * Unlike the distance matrix, this is a single array, and therefore limited
+   * by the maximum Java array size.
+   *
+   * @param size Number of objects
+   * @return Prototype storage
+   */
+  protected static ArrayModifiableDBIDs allocatePrototypes(int size) {
+    final long tsize = MatrixParadigm.triangleSize(size);
+    if(tsize > Integer.MAX_VALUE) {
+      throw new AbortException("MiniMax clustering does not scale to data sets larger than " + //
+          0x10000 // = 65536
+          + " instances, at which point the Java maximum array size is reached.");
+    }
+    return DBIDUtil.newArray((int) tsize);
+  }
+
   /**
    * Initializes the inter-cluster distance matrix of possible merges
    * 
@@ -135,15 +172,14 @@ public class MiniMax<O> implements HierarchicalClusteringAlgorithm {
    */
   protected static <O> void initializeMatrices(MatrixParadigm mat, ArrayModifiableDBIDs prots, DistanceQuery<O> dq) {
     final DBIDArrayIter ix = mat.ix, iy = mat.iy;
-    final double[] distances = mat.matrix;
-    int pos = 0;
     for(ix.seek(0); ix.valid(); ix.advance()) {
-      for(iy.seek(0); iy.getOffset() < ix.getOffset(); iy.advance()) {
-        distances[pos++] = dq.distance(ix, iy);
+      final int x = ix.getOffset();
+      for(iy.seek(0); iy.getOffset() < x; iy.advance()) {
+        mat.set(x, iy.getOffset(), dq.distance(ix, iy));
         prots.add(iy);
       }
     }
-    assert (prots.size() == pos);
+    assert (prots.size() == MatrixParadigm.triangleSize(mat.size));
   }
 
   /**
@@ -158,7 +194,6 @@ public class MiniMax<O> implements HierarchicalClusteringAlgorithm {
    */
   protected static int findMerge(int end, MatrixParadigm mat, DBIDArrayMIter prots, PointerHierarchyRepresentationBuilder builder, Int2ObjectOpenHashMap<ModifiableDBIDs> clusters, DistanceQuery<?> dq) {
     final DBIDArrayIter ix = mat.ix, iy = mat.iy;
-    final double[] distances = mat.matrix;
     double mindist = Double.POSITIVE_INFINITY;
     int x = -1, y = -1;
 
@@ -167,19 +202,37 @@ public class MiniMax<O> implements HierarchicalClusteringAlgorithm {
       if(builder.isLinked(ix.seek(dx))) {
         continue;
       }
-      final int xoffset = MatrixParadigm.triangleSize(dx);
 
-      for(int dy = 0; dy < dx; dy++) {
-        // Skip if object is already linked
-        if(builder.isLinked(iy.seek(dy))) {
-          continue;
+      if(mat.isSinglePrecision()) {
+        final float[] row = mat.getFloatRow(dx);
+        for(int dy = 0; dy < dx; dy++) {
+          // Skip if object is already linked
+          if(builder.isLinked(iy.seek(dy))) {
+            continue;
+          }
+
+          double dist = row[dy];
+          if(dist < mindist) {
+            mindist = dist;
+            x = dx;
+            y = dy;
+          }
         }
-
-        double dist = distances[xoffset + dy];
-        if(dist < mindist) {
-          mindist = dist;
-          x = dx;
-          y = dy;
+      }
+      else {
+        final double[] row = mat.getRow(dx);
+        for(int dy = 0; dy < dx; dy++) {
+          // Skip if object is already linked
+          if(builder.isLinked(iy.seek(dy))) {
+            continue;
+          }
+
+          double dist = row[dy];
+          if(dist < mindist) {
+            mindist = dist;
+            x = dx;
+            y = dy;
+          }
         }
       }
     }
@@ -205,11 +258,11 @@ public class MiniMax<O> implements HierarchicalClusteringAlgorithm {
   protected static void merge(int size, MatrixParadigm mat, DBIDArrayMIter prots, PointerHierarchyRepresentationBuilder builder, Int2ObjectOpenHashMap<ModifiableDBIDs> clusters, DistanceQuery<?> dq, int x, int y) {
     assert (y < x);
     final DBIDArrayIter ix = mat.ix.seek(x), iy = mat.iy.seek(y);
-    final double[] distances = mat.matrix;
-    int offset = MatrixParadigm.triangleSize(x) + y;
+    final int offset = (int) MatrixParadigm.triangleSize(x) + y;
+    final double dist = mat.get(x, y);
 
     if(LOG.isDebuggingFine()) {
-      LOG.debugFine("Merging: " + DBIDUtil.toString(ix) + " -> " + DBIDUtil.toString(iy) + " " + distances[offset]);
+      LOG.debugFine("Merging: " + DBIDUtil.toString(ix) + " -> " + DBIDUtil.toString(iy) + " " + dist);
     }
 
     ModifiableDBIDs cx = clusters.get(x), cy = clusters.get(y);
@@ -229,7 +282,7 @@ public class MiniMax<O> implements HierarchicalClusteringAlgorithm {
     clusters.put(y, cy);
 
     // parent of x is set to y
-    builder.add(ix, distances[offset], iy, prots.seek(offset));
+    builder.add(ix, dist, iy, prots.seek(offset));
 
     updateMatrices(size, mat, prots, builder, clusters, dq, y);
   }
@@ -285,7 +338,6 @@ public class MiniMax<O> implements HierarchicalClusteringAlgorithm {
   protected static void updateEntry(MatrixParadigm mat, DBIDArrayMIter prots, Int2ObjectOpenHashMap<ModifiableDBIDs> clusters, DistanceQuery<?> dq, int x, int y) {
     assert (y < x);
     final DBIDArrayIter ix = mat.ix, iy = mat.iy;
-    final double[] distances = mat.matrix;
     ModifiableDBIDs cx = clusters.get(x), cy = clusters.get(y);
 
     DBIDVar prototype = DBIDUtil.newVar(ix.seek(x)); // Default prototype
@@ -308,9 +360,8 @@ public class MiniMax<O> implements HierarchicalClusteringAlgorithm {
       prototype.set(ix);
     }
 
-    final int offset = MatrixParadigm.triangleSize(x) + y;
-    distances[offset] = minMaxDist;
-    prots.seek(offset).setDBID(prototype);
+    mat.set(x, y, minMaxDist);
+    prots.seek((int) MatrixParadigm.triangleSize(x) + y).setDBID(prototype);
   }
 
   /**
@@ -419,15 +470,21 @@ public class MiniMax<O> implements HierarchicalClusteringAlgorithm {
      */
     protected Distance<? super O> distance;
 
+    /**
+     * Store the distance matrix with single precision.
+     */
+    protected boolean singlePrecision = false;
+
     @Override
     public void configure(Parameterization config) {
       new ObjectParameter<Distance<? super O>>(Algorithm.Utils.DISTANCE_FUNCTION_ID, Distance.class, EuclideanDistance.class) //
           .grab(config, x -> distance = x);
+      new Flag(AGNES.Par.SINGLE_PRECISION_ID).grab(config, x -> singlePrecision = x);
     }
 
     @Override
     public MiniMax<O> make() {
-      return new MiniMax<>(distance);
+      return new MiniMax<>(distance, singlePrecision);
     }
   }
 }
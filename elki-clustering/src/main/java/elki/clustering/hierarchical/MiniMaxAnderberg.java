@@ -35,6 +35,7 @@ import elki.utilities.Priority;
 import elki.utilities.documentation.Reference;
 import elki.utilities.optionhandling.Parameterizer;
 import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.Flag;
 import elki.utilities.optionhandling.parameters.ObjectParameter;
 
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
@@ -76,14 +77,30 @@ public class MiniMaxAnderberg<O> implements HierarchicalClusteringAlgorithm {
    */
   protected Distance<? super O> distance;
 
+  /**
+   * Store the distance matrix with single precision.
+   */
+  protected boolean singlePrecision = false;
+
   /**
    * Constructor.
    *
    * @param distance Distance function to use
    */
   public MiniMaxAnderberg(Distance<? super O> distance) {
+    this(distance, false);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param distance Distance function to use
+   * @param singlePrecision Store the distance matrix with single precision
+   */
+  public MiniMaxAnderberg(Distance<? super O> distance, boolean singlePrecision) {
     super();
     this.distance = distance;
+    this.singlePrecision = singlePrecision;
   }
 
   /**
@@ -102,8 +119,8 @@ public class MiniMaxAnderberg<O> implements HierarchicalClusteringAlgorithm {
     Int2ObjectOpenHashMap<ModifiableDBIDs> clusters = new Int2ObjectOpenHashMap<>();
 
     // Compute the initial (lower triangular) distance matrix.
-    MatrixParadigm mat = new MatrixParadigm(ids);
-    ArrayModifiableDBIDs prots = DBIDUtil.newArray(MatrixParadigm.triangleSize(size));
+    MatrixParadigm mat = new MatrixParadigm(ids, singlePrecision);
+    ArrayModifiableDBIDs prots = MiniMax.allocatePrototypes(size);
     DBIDArrayMIter protiter = prots.iter();
 
     MiniMax.initializeMatrices(mat, prots, dq);
@@ -111,7 +128,7 @@ public class MiniMaxAnderberg<O> implements HierarchicalClusteringAlgorithm {
     // Arrays used for caching:
     double[] bestd = new double[size];
     int[] besti = new int[size];
-    Anderberg.initializeNNCache(mat.matrix, bestd, besti);
+    Anderberg.initializeNNCache(mat, bestd, besti);
 
     // Repeat until everything merged into 1 cluster
     FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Agglomerative clustering", size - 1, LOG) : null;
@@ -177,10 +194,10 @@ public class MiniMaxAnderberg<O> implements HierarchicalClusteringAlgorithm {
   protected void merge(int size, MatrixParadigm mat, DBIDArrayMIter prots, PointerHierarchyRepresentationBuilder builder, Int2ObjectOpenHashMap<ModifiableDBIDs> clusters, DistanceQuery<O> dq, double[] bestd, int[] besti, int x, int y) {
     // Avoid allocating memory, by reusing existing iterators:
     final DBIDArrayIter ix = mat.ix.seek(x), iy = mat.iy.seek(y);
-    final double[] distances = mat.matrix;
-    int offset = MatrixParadigm.triangleSize(x) + y;
+    final int offset = (int) MatrixParadigm.triangleSize(x) + y;
+    final double dist = mat.get(x, y);
     if(LOG.isDebuggingFine()) {
-      LOG.debugFine("Merging: " + DBIDUtil.toString(ix) + " -> " + DBIDUtil.toString(iy) + " " + distances[offset]);
+      LOG.debugFine("Merging: " + DBIDUtil.toString(ix) + " -> " + DBIDUtil.toString(iy) + " " + dist);
     }
     // Perform merge in data structure: x -> y
     assert y < x;
@@ -200,11 +217,11 @@ public class MiniMaxAnderberg<O> implements HierarchicalClusteringAlgorithm {
     clusters.put(y, cy);
 
     // parent of x is set to y
-    builder.add(ix, distances[offset], iy, prots.seek(offset));
+    builder.add(ix, dist, iy, prots.seek(offset));
     besti[x] = -1; // Deactivate x in cache:
     updateMatrices(size, mat, prots, builder, clusters, dq, bestd, besti, x, y);
     if(y > 0) {
-      Anderberg.findBest(distances, bestd, besti, y);
+      Anderberg.findBest(mat, bestd, besti, y);
     }
   }
 
@@ -225,21 +242,19 @@ public class MiniMaxAnderberg<O> implements HierarchicalClusteringAlgorithm {
    */
   private void updateMatrices(int size, MatrixParadigm mat, DBIDArrayMIter prots, PointerHierarchyRepresentationBuilder builder, Int2ObjectOpenHashMap<ModifiableDBIDs> clusters, DistanceQuery<O> dq, double[] bestd, int[] besti, int x, int y) {
     final DBIDArrayIter ix = mat.ix, iy = mat.iy;
-    final double[] distances = mat.matrix;
     // c is the new cluster.
     // Update entries (at (a,b) with a > b) in the matrix where a = y or b = y
 
     // Update entries at (y,b) with b < y
     int a = y, b = 0;
     ix.seek(a);
-    final int yoffset = MatrixParadigm.triangleSize(y);
     for(; b < a; b++) {
       // Skip entry if already merged
       if(builder.isLinked(iy.seek(b))) {
         continue;
       }
       MiniMax.updateEntry(mat, prots, clusters, dq, a, b);
-      Anderberg.updateCache(distances, bestd, besti, x, y, b, distances[yoffset + b]);
+      Anderberg.updateCache(mat, bestd, besti, x, y, b, mat.get(y, b));
     }
 
     // Update entries at (a,y) with a > y
@@ -252,7 +267,7 @@ public class MiniMaxAnderberg<O> implements HierarchicalClusteringAlgorithm {
         continue;
       }
       MiniMax.updateEntry(mat, prots, clusters, dq, a, b);
-      Anderberg.updateCache(distances, bestd, besti, x, y, a, distances[MatrixParadigm.triangleSize(a) + y]);
+      Anderberg.updateCache(mat, bestd, besti, x, y, a, mat.get(a, y));
     }
   }
 
@@ -276,15 +291,21 @@ public class MiniMaxAnderberg<O> implements HierarchicalClusteringAlgorithm {
      */
     protected Distance<? super O> distance;
 
+    /**
+     * Store the distance matrix with single precision.
+     */
+    protected boolean singlePrecision = false;
+
     @Override
     public void configure(Parameterization config) {
       new ObjectParameter<Distance<? super O>>(Algorithm.Utils.DISTANCE_FUNCTION_ID, Distance.class, EuclideanDistance.class) //
           .grab(config, x -> distance = x);
+      new Flag(AGNES.Par.SINGLE_PRECISION_ID).grab(config, x -> singlePrecision = x);
     }
 
     @Override
     public MiniMaxAnderberg<O> make() {
-      return new MiniMaxAnderberg<>(distance);
+      return new MiniMaxAnderberg<>(distance, singlePrecision);
     }
   }
 }
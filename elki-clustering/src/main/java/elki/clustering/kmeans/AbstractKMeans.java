@@ -306,6 +306,30 @@ public abstract class AbstractKMeans<V extends NumberVector, M extends Model> im
     VMath.plusTimesEquals(mean, VMath.minusEquals(vec.toArray(), mean), op / newsize);
   }
 
+  /**
+   * Compute the distance of a vector to a mean, with a fast path for squared
+   * Euclidean distance. This does not count the distance computation.
+   *
+   * @param df Distance function
+   * @param x Vector
+   * @param y Mean
+   * @return Distance
+   */
+  protected static double distance(NumberVectorDistance<?> df, NumberVector x, double[] y) {
+    if(df.getClass() == SquaredEuclideanDistance.class) {
+      if(y.length != x.getDimensionality()) {
+        throw new IllegalArgumentException("Objects do not have the same dimensionality.");
+      }
+      double v = 0;
+      for(int i = 0; i < y.length; i++) {
+        double d = x.doubleValue(i) - y[i];
+        v += d * d;
+      }
+      return v;
+    }
+    return df.distance(x, DoubleVector.wrap(y));
+  }
+
   @Override
   public void setK(int k) {
     this.k = k;
@@ -343,7 +367,7 @@ public abstract class AbstractKMeans<V extends NumberVector, M extends Model> im
     /**
      * Cluster means.
      */
-    double[][] means;
+    protected double[][] means;
 
     /**
      * Store the elements per cluster.
@@ -433,18 +457,7 @@ public abstract class AbstractKMeans<V extends NumberVector, M extends Model> im
      */
     protected double distance(NumberVector x, double[] y) {
       ++diststat;
-      if(df.getClass() == SquaredEuclideanDistance.class) {
-        if(y.length != x.getDimensionality()) {
-          throw new IllegalArgumentException("Objects do not have the same dimensionality.");
-        }
-        double v = 0;
-        for(int i = 0; i < y.length; i++) {
-          double d = x.doubleValue(i) - y[i];
-          v += d * d;
-        }
-        return v;
-      }
-      return df.distance(x, DoubleVector.wrap(y));
+      return AbstractKMeans.distance(df, x, y);
     }
 
     /**
@@ -514,7 +527,7 @@ public abstract class AbstractKMeans<V extends NumberVector, M extends Model> im
      *
      * @param maxiter Maximum number of iterations
      */
-    protected void run(int maxiter) {
+    public void run(int maxiter) {
       final Logging log = getLogger();
       IndefiniteProgress prog = log.isVerbose() ? new IndefiniteProgress("Iteration") : null;
       int iteration = 0;
@@ -753,7 +766,7 @@ public abstract class AbstractKMeans<V extends NumberVector, M extends Model> im
      *
      * @return Logger
      */
-    abstract Logging getLogger();
+    protected abstract Logging getLogger();
   }
 
   /**
@@ -0,0 +1,249 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmeans;
+
+import java.util.Random;
+
+import elki.clustering.kmeans.initialization.KMeansInitialization;
+import elki.data.Clustering;
+import elki.data.NumberVector;
+import elki.data.model.KMeansModel;
+import elki.database.ids.DBIDIter;
+import elki.database.ids.DBIDUtil;
+import elki.database.ids.DBIDs;
+import elki.database.relation.Relation;
+import elki.distance.NumberVectorDistance;
+import elki.logging.Logging;
+import elki.utilities.documentation.Reference;
+import elki.utilities.optionhandling.OptionID;
+import elki.utilities.optionhandling.constraints.CommonConstraints;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.IntParameter;
+import elki.utilities.optionhandling.parameters.RandomParameter;
+import elki.utilities.random.RandomFactory;
+
+/**
+ * Mini-batch k-means, which updates the means after each small random sample
+ * of the data, using a per-center learning rate. Each iteration only processes
+ * one batch, so this is much cheaper than a full Lloyd iteration on large data,
+ * at the cost of a less precise solution. A final pass assigns all objects to
+ * the nearest mean.
+ * <p>
+ * Reference:
+ * <p>
+ * D. Sculley<br>
+ * Web-scale k-means clustering<br>
+ * Proc. 19th Int. Conf. on World Wide Web (WWW 2010)
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @navassoc - - - KMeansModel
+ *
+ * @param <V> vector datatype
+ */
+@Reference(authors = "D. Sculley", //
+    title = "Web-scale k-means clustering", //
+    booktitle = "Proc. 19th Int. Conf. on World Wide Web (WWW 2010)", //
+    url = "https://doi.org/10.1145/1772690.1772862", //
+    bibkey = "DBLP:conf/www/Sculley10")
+public class MiniBatchKMeans<V extends NumberVector> extends AbstractKMeans<V, KMeansModel> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(MiniBatchKMeans.class);
+
+  /**
+   * Batch size.
+   */
+  protected int batchsize;
+
+  /**
+   * Random generator for sampling the batches.
+   */
+  protected RandomFactory random;
+
+  /**
+   * Constructor.
+   *
+   * @param distance distance function
+   * @param k k parameter
+   * @param maxiter Maximum number of batches, must be at least 1
+   * @param initializer Initialization method
+   * @param batchsize Batch size
+   * @param random Random generator for sampling
+   */
+  public MiniBatchKMeans(NumberVectorDistance<? super V> distance, int k, int maxiter, KMeansInitialization initializer, int batchsize, RandomFactory random) {
+    super(distance, k, maxiter, initializer);
+    this.batchsize = batchsize;
+    this.random = random;
+  }
+
+  @Override
+  public Clustering<KMeansModel> run(Relation<V> relation) {
+    Instance instance = new Instance(relation, distance, initialMeans(relation), batchsize, random.getSingleThreadedRandom());
+    instance.run(maxiter);
+    instance.assignToNearestCluster();
+    return instance.buildResult();
+  }
+
+  /**
+   * Move a mean towards a vector.
+   *
+   * @param mean Mean to update
+   * @param vec Object vector
+   * @param eta Learning rate
+   */
+  protected static void updateMean(double[] mean, NumberVector vec, double eta) {
+    for(int d = 0; d < mean.length; d++) {
+      mean[d] += eta * (vec.doubleValue(d) - mean[d]);
+    }
+  }
+
+  /**
+   * Inner instance, storing state for a single data set.
+   *
+   * @author Erich Schubert
+   */
+  protected static class Instance extends AbstractKMeans.Instance {
+    /**
+     * Number of objects each mean was updated with.
+     */
+    long[] counts;
+
+    /**
+     * Batch size.
+     */
+    int batchsize;
+
+    /**
+     * Random generator.
+     */
+    Random rnd;
+
+    /**
+     * Nearest mean of each batch object.
+     */
+    int[] nearest;
+
+    /**
+     * Constructor.
+     *
+     * @param relation Relation
+     * @param df Distance function
+     * @param means Initial means
+     * @param batchsize Batch size
+     * @param rnd Random generator
+     */
+    public Instance(Relation<? extends NumberVector> relation, NumberVectorDistance<?> df, double[][] means, int batchsize, Random rnd) {
+      super(relation, df, means);
+      this.counts = new long[k];
+      this.batchsize = batchsize;
+      this.rnd = rnd;
+      this.nearest = new int[Math.min(batchsize, relation.size())];
+    }
+
+    @Override
+    protected int iterate(int iteration) {
+      DBIDs batch = DBIDUtil.randomSample(relation.getDBIDs(), batchsize, rnd);
+      // Assign the entire batch first, then update the means.
+      int changed = 0, i = 0;
+      for(DBIDIter it = batch.iter(); it.valid(); it.advance(), i++) {
+        NumberVector fv = relation.get(it);
+        double mindist = distance(fv, means[0]);
+        int minIndex = 0;
+        for(int j = 1; j < k; j++) {
+          double dist = distance(fv, means[j]);
+          if(dist < mindist) {
+            minIndex = j;
+            mindist = dist;
+          }
+        }
+        nearest[i] = minIndex;
+        if(assignment.putInt(it, minIndex) != minIndex) {
+          ++changed;
+        }
+      }
+      i = 0;
+      for(DBIDIter it = batch.iter(); it.valid(); it.advance(), i++) {
+        final int c = nearest[i];
+        updateMean(means[c], relation.get(it), 1. / ++counts[c]);
+      }
+      return changed;
+    }
+
+    @Override
+    protected Logging getLogger() {
+      return LOG;
+    }
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @param <V> Vector type
+   */
+  public static class Par<V extends NumberVector> extends AbstractKMeans.Par<V> {
+    /**
+     * Parameter for the batch size.
+     */
+    public static final OptionID BATCHSIZE_ID = new OptionID("kmeans.batchsize", "Number of objects processed in each batch.");
+
+    /**
+     * Batch size.
+     */
+    protected int batchsize;
+
+    /**
+     * Random generator for sampling.
+     */
+    protected RandomFactory random;
+
+    @Override
+    public void configure(Parameterization config) {
+      super.configure(config);
+      new IntParameter(BATCHSIZE_ID, 1000) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+          .grab(config, x -> batchsize = x);
+      new RandomParameter(KMeans.SEED_ID).grab(config, x -> random = x);
+    }
+
+    @Override
+    protected void getParameterMaxIter(Parameterization config) {
+      // Limit the number of batches by default:
+      new IntParameter(MAXITER_ID, 100)//
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+          .grab(config, x -> maxiter = x);
+    }
+
+    @Override
+    public MiniBatchKMeans<V> make() {
+      return new MiniBatchKMeans<>(distance, k, maxiter, initializer, batchsize, random);
+    }
+  }
+}
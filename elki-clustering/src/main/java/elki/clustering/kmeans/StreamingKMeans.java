@@ -0,0 +1,378 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmeans;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import elki.clustering.kmeans.initialization.KMeansInitialization;
+import elki.data.Cluster;
+import elki.data.Clustering;
+import elki.data.DoubleVector;
+import elki.data.NumberVector;
+import elki.data.model.KMeansModel;
+import elki.data.type.SimpleTypeInformation;
+import elki.data.type.TypeUtil;
+import elki.database.datastore.DataStoreFactory;
+import elki.database.datastore.DataStoreUtil;
+import elki.database.datastore.WritableDataStore;
+import elki.database.ids.*;
+import elki.database.relation.MaterializedRelation;
+import elki.database.relation.Relation;
+import elki.datasource.bundle.BundleMeta;
+import elki.datasource.bundle.BundleStreamSource;
+import elki.distance.NumberVectorDistance;
+import elki.logging.Logging;
+import elki.logging.progress.IndefiniteProgress;
+import elki.logging.statistics.Duration;
+import elki.logging.statistics.LongStatistic;
+import elki.result.Metadata;
+import elki.utilities.documentation.Reference;
+import elki.utilities.exceptions.AbortException;
+import elki.utilities.optionhandling.constraints.CommonConstraints;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.IntParameter;
+
+/**
+ * Single-pass streaming k-means. The data is consumed once, in batches: each
+ * batch is assigned to the nearest means, then the means are updated with a
+ * per-center learning rate as in mini-batch k-means. Only the vectors of the
+ * current batch are kept in memory, so this can be used on a
+ * {@link BundleStreamSource} such as a streaming parser, without loading the
+ * data into a database; the means are initialized on the first batch. The
+ * object ids of all clusters are still kept to build the result, which hence
+ * needs memory linear in the number of objects.
+ * <p>
+ * Objects are assigned to the nearest mean at the time they are processed, and
+ * the variance is accumulated at that time, too.
+ * <p>
+ * Reference:
+ * <p>
+ * D. Sculley<br>
+ * Web-scale k-means clustering<br>
+ * Proc. 19th Int. Conf. on World Wide Web (WWW 2010)
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @navassoc - - - KMeansModel
+ *
+ * @param <V> vector datatype
+ */
+@Reference(authors = "D. Sculley", //
+    title = "Web-scale k-means clustering", //
+    booktitle = "Proc. 19th Int. Conf. on World Wide Web (WWW 2010)", //
+    url = "https://doi.org/10.1145/1772690.1772862", //
+    bibkey = "DBLP:conf/www/Sculley10")
+public class StreamingKMeans<V extends NumberVector> extends AbstractKMeans<V, KMeansModel> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(StreamingKMeans.class);
+
+  /**
+   * Batch size.
+   */
+  protected int batchsize;
+
+  /**
+   * Constructor.
+   *
+   * @param distance distance function
+   * @param k k parameter
+   * @param initializer Initialization method
+   * @param batchsize Batch size
+   */
+  public StreamingKMeans(NumberVectorDistance<? super V> distance, int k, KMeansInitialization initializer, int batchsize) {
+    super(distance, k, 1, initializer);
+    this.batchsize = batchsize;
+  }
+
+  @Override
+  public Clustering<KMeansModel> run(Relation<V> relation) {
+    Instance instance = new Instance(distance, initialMeans(relation));
+    List<NumberVector> batch = new ArrayList<>(batchsize);
+    ArrayModifiableDBIDs ids = DBIDUtil.newArray(batchsize);
+    for(DBIDIter it = relation.iterDBIDs(); it.valid(); it.advance()) {
+      batch.add(relation.get(it));
+      ids.add(it);
+      if(batch.size() >= batchsize) {
+        instance.process(ids, batch);
+        batch.clear();
+        ids.clear();
+      }
+    }
+    if(!batch.isEmpty()) {
+      instance.process(ids, batch);
+    }
+    return instance.buildResult();
+  }
+
+  /**
+   * Run k-means on a data stream, in a single pass.
+   * <p>
+   * The first column containing number vectors is clustered. If the stream does
+   * not provide object IDs, new IDs are allocated in stream order.
+   *
+   * @param source Data source
+   * @return Clustering result
+   */
+  public Clustering<KMeansModel> run(BundleStreamSource source) {
+    IndefiniteProgress prog = LOG.isVerbose() ? new IndefiniteProgress("Processed batches", LOG) : null;
+    List<NumberVector> batch = new ArrayList<>(batchsize);
+    ArrayModifiableDBIDs ids = DBIDUtil.newArray(batchsize);
+    DBIDVar var = DBIDUtil.newVar();
+    SimpleTypeInformation<?> type = null;
+    Instance instance = null;
+    int col = -1;
+    for(BundleStreamSource.Event ev = source.nextEvent(); ev != BundleStreamSource.Event.END_OF_STREAM; ev = source.nextEvent()) {
+      switch(ev){
+      case META_CHANGED:
+        BundleMeta meta = source.getMeta();
+        col = -1;
+        for(int i = 0; i < meta.size(); i++) {
+          if(TypeUtil.NUMBER_VECTOR_VARIABLE_LENGTH.isAssignableFromType(meta.get(i))) {
+            col = i;
+            type = meta.get(i);
+            break;
+          }
+        }
+        break;
+      case NEXT_OBJECT:
+        if(col < 0) {
+          throw new AbortException("The data stream does not contain number vectors.");
+        }
+        batch.add((NumberVector) source.data(col));
+        if(source.hasDBIDs() && source.assignDBID(var)) {
+          ids.add(var);
+        }
+        if(batch.size() >= batchsize) {
+          instance = processBatch(instance, type, ids, batch);
+          batch.clear();
+          ids.clear();
+          LOG.incrementProcessed(prog);
+        }
+        break;
+      case END_OF_STREAM:
+        break;
+      }
+    }
+    if(!batch.isEmpty()) {
+      instance = processBatch(instance, type, ids, batch);
+      LOG.incrementProcessed(prog);
+    }
+    LOG.setCompleted(prog);
+    if(instance == null) {
+      throw new AbortException("The data stream was empty.");
+    }
+    return instance.buildResult();
+  }
+
+  /**
+   * Process a batch from a data stream, initializing the means on the first.
+   *
+   * @param instance Current instance, or {@code null}
+   * @param type Vector type
+   * @param ids Object IDs provided by the stream (may be empty)
+   * @param batch Batch of vectors
+   * @return Instance
+   */
+  private Instance processBatch(Instance instance, SimpleTypeInformation<?> type, ArrayModifiableDBIDs ids, List<NumberVector> batch) {
+    DBIDs bids = ids.size() == batch.size() ? ids : DBIDUtil.generateStaticDBIDRange(batch.size());
+    if(instance == null) {
+      // Initialize the means on the first batch:
+      WritableDataStore<NumberVector> store = DataStoreUtil.makeStorage(bids, DataStoreFactory.HINT_TEMP, NumberVector.class);
+      DBIDIter it = bids.iter();
+      for(NumberVector vec : batch) {
+        store.put(it, vec);
+        it.advance();
+      }
+      @SuppressWarnings("unchecked")
+      SimpleTypeInformation<NumberVector> vtype = (SimpleTypeInformation<NumberVector>) type;
+      Duration inittime = LOG.newDuration(initializer.getClass() + ".time").begin();
+      double[][] means = initializer.chooseInitialMeans(new MaterializedRelation<>("Initial batch", vtype, bids, store), k, distance);
+      LOG.statistics(inittime.end());
+      instance = new Instance(distance, means);
+    }
+    instance.process(bids, batch);
+    return instance;
+  }
+
+  /**
+   * Inner instance, storing state for a single run.
+   *
+   * @author Erich Schubert
+   */
+  protected static class Instance {
+    /**
+     * Current means.
+     */
+    double[][] means;
+
+    /**
+     * Number of objects each mean was updated with.
+     */
+    long[] counts;
+
+    /**
+     * Sum of squared deviations, at the time of assignment.
+     */
+    double[] varsum;
+
+    /**
+     * Cluster members.
+     */
+    ArrayModifiableDBIDs[] clusters;
+
+    /**
+     * Nearest mean of each batch object.
+     */
+    int[] nearest = new int[0];
+
+    /**
+     * Distance function.
+     */
+    NumberVectorDistance<?> df;
+
+    /**
+     * Number of distance computations.
+     */
+    long diststat = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param df Distance function
+     * @param means Initial means
+     */
+    public Instance(NumberVectorDistance<?> df, double[][] means) {
+      this.df = df;
+      this.means = means;
+      final int k = means.length;
+      this.counts = new long[k];
+      this.varsum = new double[k];
+      this.clusters = new ArrayModifiableDBIDs[k];
+      for(int i = 0; i < k; i++) {
+        clusters[i] = DBIDUtil.newArray();
+      }
+    }
+
+    /**
+     * Process a single batch: assign all objects, then update the means.
+     *
+     * @param ids Object IDs
+     * @param batch Object vectors
+     */
+    protected void process(DBIDs ids, List<? extends NumberVector> batch) {
+      final int n = batch.size(), k = means.length;
+      final boolean isSquared = df.isSquared();
+      if(nearest.length < n) {
+        nearest = new int[n];
+      }
+      DBIDIter it = ids.iter();
+      for(int i = 0; i < n; i++, it.advance()) {
+        NumberVector fv = batch.get(i);
+        double mindist = distance(fv, means[0]);
+        int minIndex = 0;
+        for(int j = 1; j < k; j++) {
+          double dist = distance(fv, means[j]);
+          if(dist < mindist) {
+            minIndex = j;
+            mindist = dist;
+          }
+        }
+        nearest[i] = minIndex;
+        varsum[minIndex] += isSquared ? mindist : (mindist * mindist);
+        clusters[minIndex].add(it);
+      }
+      for(int i = 0; i < n; i++) {
+        final int c = nearest[i];
+        MiniBatchKMeans.updateMean(means[c], batch.get(i), 1. / ++counts[c]);
+      }
+    }
+
+    /**
+     * Compute a distance, and count.
+     *
+     * @param x Object vector
+     * @param y Mean
+     * @return Distance
+     */
+    private double distance(NumberVector x, double[] y) {
+      ++diststat;
+      return df.distance(x, DoubleVector.wrap(y));
+    }
+
+    /**
+     * Build the clustering result.
+     *
+     * @return Clustering
+     */
+    protected Clustering<KMeansModel> buildResult() {
+      if(LOG.isStatistics()) {
+        LOG.statistics(new LongStatistic(StreamingKMeans.class.getName() + ".distance-computations", diststat));
+      }
+      Clustering<KMeansModel> result = new Clustering<>();
+      Metadata.of(result).setLongName("k-Means Clustering");
+      for(int i = 0; i < clusters.length; i++) {
+        if(clusters[i].isEmpty()) {
+          LOG.warning("K-Means produced an empty cluster - bad initialization?");
+        }
+        result.addToplevelCluster(new Cluster<>(clusters[i], new KMeansModel(means[i], varsum[i])));
+      }
+      return result;
+    }
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @param <V> Vector type
+   */
+  public static class Par<V extends NumberVector> extends AbstractKMeans.Par<V> {
+    /**
+     * Batch size.
+     */
+    protected int batchsize;
+
+    @Override
+    public void configure(Parameterization config) {
+      getParameterK(config);
+      getParameterInitialization(config);
+      getParameterDistance(config);
+      new IntParameter(MiniBatchKMeans.Par.BATCHSIZE_ID, 1000) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+          .grab(config, x -> batchsize = x);
+    }
+
+    @Override
+    public StreamingKMeans<V> make() {
+      return new StreamingKMeans<>(distance, k, initializer, batchsize);
+    }
+  }
+}
@@ -165,7 +165,7 @@ public class YinYangKMeans<V extends NumberVector> extends AbstractKMeans<V, KMe
     }
 
     @Override
-    protected void run(int maxiter) {
+    public void run(int maxiter) {
       this.groups = groupKMeans(gdrift.length /* = t */);
       super.run(maxiter);
     }
@@ -191,6 +191,10 @@ public class YinYangKMeans<V extends NumberVector> extends AbstractKMeans<V, KMe
           break;
         }
       }
+      // The cluster sums were used as scratch space:
+      for(int i = 0; i < t; i++) {
+        Arrays.fill(sums[i], 0.);
+      }
       // Invert to static groupid -> means table
       int[][] meanGroups = new int[t][];
       for(int i = 0; i < t; i++) {
@@ -464,7 +468,7 @@ public class YinYangKMeans<V extends NumberVector> extends AbstractKMeans<V, KMe
     }
 
     @Override
-    Logging getLogger() {
+    protected Logging getLogger() {
       return LOG;
     }
   }
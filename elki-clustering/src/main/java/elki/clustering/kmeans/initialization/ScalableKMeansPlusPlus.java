@@ -0,0 +1,397 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmeans.initialization;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import elki.data.NumberVector;
+import elki.database.datastore.DataStoreFactory;
+import elki.database.datastore.DataStoreUtil;
+import elki.database.datastore.WritableDoubleDataStore;
+import elki.database.datastore.WritableIntegerDataStore;
+import elki.database.ids.DBIDIter;
+import elki.database.ids.DBIDRef;
+import elki.database.ids.DBIDUtil;
+import elki.database.ids.DBIDs;
+import elki.database.relation.Relation;
+import elki.distance.NumberVectorDistance;
+import elki.logging.Logging;
+import elki.logging.statistics.LongStatistic;
+import elki.parallel.Executor;
+import elki.parallel.ParallelExecutor;
+import elki.parallel.processor.Processor;
+import elki.utilities.documentation.Reference;
+import elki.utilities.optionhandling.OptionID;
+import elki.utilities.optionhandling.constraints.CommonConstraints;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.DoubleParameter;
+import elki.utilities.optionhandling.parameters.IntParameter;
+import elki.utilities.random.RandomFactory;
+
+/**
+ * Scalable k-means++ initialization, also known as k-means||.
+ * <p>
+ * Instead of choosing one mean per pass over the data as in
+ * {@link KMeansPlusPlus}, each round samples about {@code l} candidates
+ * independently with probability proportional to their squared distance.
+ * After a few rounds, the candidates are weighted by the number of objects
+ * closest to them, and reduced to k means with weighted k-means++. The
+ * distance updates of each round are performed in parallel, while sampling and
+ * summing the distances are cheap sequential passes in data order, so the
+ * result does not depend on the number of threads.
+ * <p>
+ * Reference:
+ * <p>
+ * B. Bahmani, B. Moseley, A. Vattani, R. Kumar, S. Vassilvitskii<br>
+ * Scalable K-Means++<br>
+ * Proc. VLDB Endowment 5(7)
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+@Reference(authors = "B. Bahmani, B. Moseley, A. Vattani, R. Kumar, S. Vassilvitskii", //
+    title = "Scalable K-Means++", //
+    booktitle = "Proc. VLDB Endowment 5(7)", //
+    url = "https://doi.org/10.14778/2180912.2180915", //
+    bibkey = "DBLP:journals/pvldb/BahmaniMVKV12")
+public class ScalableKMeansPlusPlus extends AbstractKMeansInitialization {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(ScalableKMeansPlusPlus.class);
+
+  /**
+   * Oversampling factor, relative to k.
+   */
+  protected double oversampling;
+
+  /**
+   * Number of sampling rounds.
+   */
+  protected int rounds;
+
+  /**
+   * Constructor.
+   *
+   * @param rnd Random generator.
+   * @param oversampling Oversampling factor, relative to k
+   * @param rounds Number of sampling rounds
+   */
+  public ScalableKMeansPlusPlus(RandomFactory rnd, double oversampling, int rounds) {
+    super(rnd);
+    this.oversampling = oversampling;
+    this.rounds = rounds;
+  }
+
+  @Override
+  public double[][] chooseInitialMeans(Relation<? extends NumberVector> relation, int k, NumberVectorDistance<?> distance) {
+    if(relation.size() < k) {
+      throw new IllegalArgumentException("Cannot choose k=" + k + " means from N=" + relation.size() + " < k objects.");
+    }
+    return new Instance(relation, distance, rnd).run(k, oversampling * k, rounds);
+  }
+
+  /**
+   * Instance for a single run.
+   *
+   * @author Erich Schubert
+   */
+  protected static class Instance implements Processor {
+    /**
+     * Data relation.
+     */
+    protected Relation<? extends NumberVector> relation;
+
+    /**
+     * Distance function.
+     */
+    protected NumberVectorDistance<?> distance;
+
+    /**
+     * Random generator
+     */
+    protected Random random;
+
+    /**
+     * Distance to the nearest candidate.
+     */
+    protected WritableDoubleDataStore weights;
+
+    /**
+     * Index of the nearest candidate.
+     */
+    protected WritableIntegerDataStore nearest;
+
+    /**
+     * Candidate means.
+     */
+    protected List<NumberVector> candidates = new ArrayList<>();
+
+    /**
+     * Range of candidates added in the last round.
+     */
+    private int from, to;
+
+    /**
+     * Count the number of distance computations.
+     */
+    protected long diststat;
+
+    /**
+     * Constructor.
+     *
+     * @param relation Data relation to process
+     * @param distance Distance function
+     * @param rnd Random generator
+     */
+    public Instance(Relation<? extends NumberVector> relation, NumberVectorDistance<?> distance, RandomFactory rnd) {
+      this.relation = relation;
+      this.distance = distance;
+      this.random = rnd.getSingleThreadedRandom();
+      DBIDs ids = relation.getDBIDs();
+      this.weights = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, Double.POSITIVE_INFINITY);
+      this.nearest = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, -1);
+      // Materialize all entries, so that the threads only overwrite values:
+      for(DBIDIter it = ids.iter(); it.valid(); it.advance()) {
+        weights.putDouble(it, Double.POSITIVE_INFINITY);
+        nearest.putInt(it, -1);
+      }
+    }
+
+    /**
+     * Run k-means|| initialization.
+     *
+     * @param k Number of means
+     * @param l Expected number of candidates per round
+     * @param rounds Number of rounds
+     * @return Initial means
+     */
+    public double[][] run(int k, double l, int rounds) {
+      DBIDs ids = relation.getDBIDs();
+      candidates.add(relation.get(DBIDUtil.randomSample(ids, random)));
+      double psi = update(0);
+      // Continue beyond the number of rounds, if we have too few candidates.
+      for(int r = 0; (r < rounds || candidates.size() < k) && psi > 0; r++) {
+        final int before = candidates.size();
+        final double scale = l / psi;
+        for(DBIDIter it = ids.iter(); it.valid(); it.advance()) {
+          final double w = weights.doubleValue(it);
+          if(w > 0 && random.nextDouble() < w * scale) {
+            candidates.add(relation.get(it));
+          }
+        }
+        psi = update(before);
+      }
+      // Weight candidates by the number of objects closest to them
+      double[] cweight = new double[candidates.size()];
+      for(DBIDIter it = ids.iter(); it.valid(); it.advance()) {
+        cweight[nearest.intValue(it)] += 1;
+      }
+      weights.destroy();
+      nearest.destroy();
+      double[][] means = weightedKMeansPlusPlus(k, cweight);
+      if(LOG.isStatistics()) {
+        LOG.statistics(new LongStatistic(ScalableKMeansPlusPlus.class.getName() + ".candidates", candidates.size()));
+        LOG.statistics(new LongStatistic(ScalableKMeansPlusPlus.class.getName() + ".distance-computations", diststat));
+      }
+      return means;
+    }
+
+    /**
+     * Update the distances to the nearest candidate, in parallel.
+     *
+     * @param from First new candidate
+     * @return Sum of distances
+     */
+    protected double update(int from) {
+      this.from = from;
+      this.to = candidates.size();
+      ParallelExecutor.run(relation.getDBIDs(), this);
+      // Sum sequentially, for a deterministic rounding:
+      double weightsum = 0.;
+      for(DBIDIter it = relation.iterDBIDs(); it.valid(); it.advance()) {
+        weightsum += weights.doubleValue(it);
+      }
+      return weightsum;
+    }
+
+    /**
+     * Reduce the candidates to k means with weighted k-means++.
+     *
+     * @param k Number of means
+     * @param cweight Candidate weights
+     * @return Means
+     */
+    protected double[][] weightedKMeansPlusPlus(int k, double[] cweight) {
+      final int m = candidates.size();
+      double[][] means = new double[k][];
+      double[] mindist = new double[m];
+      Arrays.fill(mindist, Double.POSITIVE_INFINITY);
+      // The first mean is chosen proportionally to the weight only:
+      NumberVector latest = candidates.get(choose(cweight, null, sum(cweight)));
+      means[0] = latest.toArray();
+      for(int i = 1; i < k; i++) {
+        double weightsum = 0.;
+        for(int j = 0; j < m; j++) {
+          if(mindist[j] > 0) {
+            final double d = distance.distance(latest, candidates.get(j));
+            mindist[j] = d < mindist[j] ? d : mindist[j];
+            ++diststat;
+          }
+          weightsum += cweight[j] * mindist[j];
+        }
+        if(weightsum < Double.MIN_NORMAL) {
+          LOG.warning("Could not choose a reasonable mean - to few unique data points?");
+        }
+        latest = candidates.get(choose(cweight, mindist, weightsum));
+        means[i] = latest.toArray();
+      }
+      return means;
+    }
+
+    /**
+     * Choose a candidate with probability proportional to its weight.
+     *
+     * @param cweight Candidate weights
+     * @param mindist Distance factors, may be {@code null}
+     * @param weightsum Sum of weights
+     * @return Candidate index
+     */
+    private int choose(double[] cweight, double[] mindist, double weightsum) {
+      double r = random.nextDouble() * weightsum;
+      for(int j = 0; j < cweight.length; j++) {
+        if((r -= cweight[j] * (mindist != null ? mindist[j] : 1.)) <= 0) {
+          return j;
+        }
+      }
+      // Rare case, due to floating point: choose the last nonzero.
+      for(int j = cweight.length - 1; j > 0; j--) {
+        if(cweight[j] * (mindist != null ? mindist[j] : 1.) > 0) {
+          return j;
+        }
+      }
+      return 0;
+    }
+
+    /**
+     * Sum of an array.
+     *
+     * @param v Array
+     * @return Sum
+     */
+    private static double sum(double[] v) {
+      double s = 0.;
+      for(double x : v) {
+        s += x;
+      }
+      return s;
+    }
+
+    @Override
+    public Worker instantiate(Executor executor) {
+      return new Worker();
+    }
+
+    @Override
+    public void cleanup(Processor.Instance inst) {
+      Worker worker = (Worker) inst;
+      synchronized(this) {
+        diststat += worker.diststat;
+      }
+    }
+
+    /**
+     * Worker to update the distances to the nearest candidate.
+     *
+     * @author Erich Schubert
+     */
+    private class Worker implements Processor.Instance {
+      /**
+       * Distance computations.
+       */
+      long diststat;
+
+      @Override
+      public void map(DBIDRef id) {
+        final NumberVector fv = relation.get(id);
+        double w = weights.doubleValue(id);
+        int nn = nearest.intValue(id);
+        for(int c = from; c < to; c++) {
+          // Distances are assumed to be squared already
+          final double d = distance.distance(fv, candidates.get(c));
+          if(d < w) {
+            w = d;
+            nn = c;
+          }
+        }
+        diststat += to - from;
+        weights.putDouble(id, w);
+        nearest.putInt(id, nn);
+      }
+    }
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   */
+  public static class Par extends AbstractKMeansInitialization.Par {
+    /**
+     * Oversampling factor.
+     */
+    public static final OptionID OVERSAMPLING_ID = new OptionID("kmeans.oversampling", "Expected number of candidates sampled per round, relative to k.");
+
+    /**
+     * Number of sampling rounds.
+     */
+    public static final OptionID ROUNDS_ID = new OptionID("kmeans.rounds", "Number of rounds of oversampling.");
+
+    /**
+     * Oversampling factor.
+     */
+    protected double oversampling;
+
+    /**
+     * Number of sampling rounds.
+     */
+    protected int rounds;
+
+    @Override
+    public void configure(Parameterization config) {
+      super.configure(config);
+      new DoubleParameter(OVERSAMPLING_ID, 2.) //
+          .addConstraint(CommonConstraints.GREATER_THAN_ZERO_DOUBLE) //
+          .grab(config, x -> oversampling = x);
+      new IntParameter(ROUNDS_ID, 5) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+          .grab(config, x -> rounds = x);
+    }
+
+    @Override
+    public ScalableKMeansPlusPlus make() {
+      return new ScalableKMeansPlusPlus(rnd, oversampling, rounds);
+    }
+  }
+}
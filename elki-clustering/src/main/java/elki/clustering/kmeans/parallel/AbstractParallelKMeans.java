@@ -0,0 +1,321 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmeans.parallel;
+
+import elki.clustering.kmeans.AbstractKMeans;
+import elki.clustering.kmeans.initialization.KMeansInitialization;
+import elki.data.Clustering;
+import elki.data.NumberVector;
+import elki.data.model.KMeansModel;
+import elki.database.datastore.DataStoreFactory;
+import elki.database.datastore.DataStoreUtil;
+import elki.database.datastore.WritableDoubleDataStore;
+import elki.database.ids.DBIDIter;
+import elki.database.ids.DBIDRef;
+import elki.database.relation.Relation;
+import elki.distance.NumberVectorDistance;
+import elki.math.linearalgebra.VMath;
+import elki.parallel.Executor;
+import elki.parallel.ParallelExecutor;
+import elki.parallel.processor.Processor;
+
+import net.jafama.FastMath;
+
+/**
+ * Abstract base class for parallel k-means variants that use bounds to avoid
+ * distance computations.
+ * <p>
+ * The assignment step is run in parallel; the per-object bounds are kept in
+ * data stores that are only written by the thread processing this object. Each
+ * thread keeps its own partial cluster sums, sizes and counters, which are
+ * merged after each iteration. The (cheap) update of the means and of the
+ * center-center distances remains sequential.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @has - - - Instance
+ *
+ * @param <V> Vector type
+ */
+public abstract class AbstractParallelKMeans<V extends NumberVector> extends AbstractKMeans<V, KMeansModel> {
+  /**
+   * Flag whether to compute the final variance statistic.
+   */
+  protected boolean varstat = false;
+
+  /**
+   * Constructor.
+   *
+   * @param distance distance function
+   * @param k k parameter
+   * @param maxiter Maxiter parameter
+   * @param initializer Initialization method
+   * @param varstat Compute the variance statistic
+   */
+  public AbstractParallelKMeans(NumberVectorDistance<? super V> distance, int k, int maxiter, KMeansInitialization initializer, boolean varstat) {
+    super(distance, k, maxiter, initializer);
+    this.varstat = varstat;
+  }
+
+  /**
+   * Inner instance, storing state for a single data set.
+   *
+   * @author Erich Schubert
+   */
+  protected abstract static class Instance extends AbstractKMeans.Instance {
+    /**
+     * Sums of clusters.
+     */
+    protected double[][] sums;
+
+    /**
+     * Cluster sizes.
+     */
+    protected int[] sizes;
+
+    /**
+     * Scratch space for new means.
+     */
+    protected double[][] newmeans;
+
+    /**
+     * Upper bounds.
+     */
+    protected WritableDoubleDataStore upper;
+
+    /**
+     * Distance function.
+     */
+    private NumberVectorDistance<?> df;
+
+    /**
+     * Processor for the assignment step.
+     */
+    private AssignmentProcessor processor = new AssignmentProcessor();
+
+    /**
+     * Perform the initial assignment.
+     */
+    private boolean initial;
+
+    /**
+     * Number of reassigned objects.
+     */
+    private int changed;
+
+    /**
+     * Constructor.
+     *
+     * @param relation Relation
+     * @param df Distance function
+     * @param means Initial means
+     */
+    public Instance(Relation<? extends NumberVector> relation, NumberVectorDistance<?> df, double[][] means) {
+      super(relation, df, means);
+      this.df = df;
+      upper = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_TEMP | DataStoreFactory.HINT_HOT, Double.POSITIVE_INFINITY);
+      // Materialize all entries, so that the threads only overwrite values:
+      for(DBIDIter it = relation.iterDBIDs(); it.valid(); it.advance()) {
+        assignment.putInt(it, -1);
+        upper.putDouble(it, Double.POSITIVE_INFINITY);
+      }
+      final int dim = means[0].length;
+      sums = new double[k][dim];
+      sizes = new int[k];
+      newmeans = new double[k][dim];
+    }
+
+    /**
+     * Run the assignment step in parallel.
+     *
+     * @param initial Initial assignment
+     * @return Number of reassigned objects
+     */
+    protected int parallelAssignment(boolean initial) {
+      this.initial = initial;
+      this.changed = 0;
+      ParallelExecutor.run(relation.getDBIDs(), processor);
+      return changed;
+    }
+
+    /**
+     * Initial assignment of a single object to the nearest cluster.
+     *
+     * @param it Object
+     * @param fv Object vector
+     * @param worker Worker thread state
+     * @return Cluster number
+     */
+    protected abstract int initialAssign(DBIDRef it, NumberVector fv, Worker worker);
+
+    /**
+     * Reassign a single object, updating its bounds.
+     *
+     * @param it Object
+     * @param cur Current cluster assignment
+     * @param worker Worker thread state
+     * @return New cluster number
+     */
+    protected abstract int reassign(DBIDRef it, int cur, Worker worker);
+
+    @Override
+    protected int assignToNearestCluster() {
+      return parallelAssignment(false);
+    }
+
+    @Override
+    protected void meansFromSums(double[][] dst, double[][] sums) {
+      for(int i = 0; i < k; i++) {
+        VMath.overwriteTimes(dst[i], sums[i], 1. / sizes[i]);
+      }
+    }
+
+    @Override
+    protected Clustering<KMeansModel> buildResult() {
+      fillClusters();
+      return super.buildResult();
+    }
+
+    @Override
+    protected Clustering<KMeansModel> buildResult(boolean varstat, Relation<? extends NumberVector> relation) {
+      fillClusters();
+      return super.buildResult(varstat, relation);
+    }
+
+    /**
+     * Build the cluster memberships from the final assignment, as they are not
+     * maintained during the iterations.
+     */
+    private void fillClusters() {
+      for(DBIDIter it = relation.iterDBIDs(); it.valid(); it.advance()) {
+        clusters.get(assignment.intValue(it)).add(it);
+      }
+    }
+
+    /**
+     * Processor for the assignment step.
+     *
+     * @author Erich Schubert
+     */
+    private class AssignmentProcessor implements Processor {
+      @Override
+      public Worker instantiate(Executor executor) {
+        return new Worker();
+      }
+
+      @Override
+      public void cleanup(Processor.Instance inst) {
+        Worker worker = (Worker) inst;
+        synchronized(this) {
+          for(int i = 0; i < k; i++) {
+            VMath.plusEquals(sums[i], worker.sums[i]);
+            sizes[i] += worker.sizes[i];
+          }
+          diststat += worker.diststat;
+          changed += worker.changed;
+        }
+      }
+    }
+
+    /**
+     * Per-thread state of the assignment step.
+     *
+     * @author Erich Schubert
+     */
+    protected class Worker implements Processor.Instance {
+      /**
+       * Partial changes to the cluster sums.
+       */
+      private double[][] sums;
+
+      /**
+       * Partial changes to the cluster sizes.
+       */
+      private int[] sizes;
+
+      /**
+       * Distance computations.
+       */
+      private long diststat;
+
+      /**
+       * Reassigned objects.
+       */
+      private int changed;
+
+      /**
+       * Constructor.
+       */
+      protected Worker() {
+        this.sums = new double[k][means[0].length];
+        this.sizes = new int[k];
+      }
+
+      @Override
+      public void map(DBIDRef it) {
+        if(initial) {
+          final NumberVector fv = relation.get(it);
+          final int c = initialAssign(it, fv, this);
+          assignment.putInt(it, c);
+          plusEquals(sums[c], fv);
+          ++sizes[c];
+          ++changed;
+          return;
+        }
+        final int cur = assignment.intValue(it);
+        final int c = reassign(it, cur, this);
+        if(c != cur) {
+          assignment.putInt(it, c);
+          plusMinusEquals(sums[c], sums[cur], relation.get(it));
+          ++sizes[c];
+          --sizes[cur];
+          ++changed;
+        }
+      }
+
+      /**
+       * Compute a distance, and count.
+       *
+       * @param x First vector
+       * @param y Second vector
+       * @return Distance
+       */
+      protected double distance(NumberVector x, double[] y) {
+        ++diststat;
+        return AbstractKMeans.distance(df, x, y);
+      }
+
+      /**
+       * Compute a distance, and count. For squared Euclidean distance, the
+       * square root is returned.
+       *
+       * @param x First vector
+       * @param y Second vector
+       * @return Unsquared distance
+       */
+      protected double sqrtdistance(NumberVector x, double[] y) {
+        final double d = distance(x, y);
+        return isSquared ? FastMath.sqrt(d) : d;
+      }
+    }
+  }
+}
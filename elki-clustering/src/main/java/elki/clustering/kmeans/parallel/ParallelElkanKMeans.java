@@ -0,0 +1,179 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmeans.parallel;
+
+import elki.clustering.kmeans.ElkanKMeans;
+import elki.clustering.kmeans.initialization.KMeansInitialization;
+import elki.data.Clustering;
+import elki.data.NumberVector;
+import elki.data.model.KMeansModel;
+import elki.database.ids.DBIDRef;
+import elki.database.relation.Relation;
+import elki.distance.NumberVectorDistance;
+import elki.logging.Logging;
+import elki.math.linearalgebra.VMath;
+import elki.utilities.documentation.Reference;
+
+/**
+ * Parallel version of Elkan's fast k-means by exploiting the triangle
+ * inequality.
+ * <p>
+ * Reference:
+ * <p>
+ * C. Elkan<br>
+ * Using the triangle inequality to accelerate k-means<br>
+ * Proc. 20th International Conference on Machine Learning, ICML 2003
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @see ElkanKMeans
+ *
+ * @param <V> vector datatype
+ */
+@Reference(authors = "C. Elkan", //
+    title = "Using the triangle inequality to accelerate k-means", //
+    booktitle = "Proc. 20th International Conference on Machine Learning, ICML 2003", //
+    url = "http://www.aaai.org/Library/ICML/2003/icml03-022.php", //
+    bibkey = "DBLP:conf/icml/Elkan03")
+public class ParallelElkanKMeans<V extends NumberVector> extends ParallelSimplifiedElkanKMeans<V> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelElkanKMeans.class);
+
+  /**
+   * Constructor.
+   *
+   * @param distance distance function
+   * @param k k parameter
+   * @param maxiter Maxiter parameter
+   * @param initializer Initialization method
+   * @param varstat Compute the variance statistic
+   */
+  public ParallelElkanKMeans(NumberVectorDistance<? super V> distance, int k, int maxiter, KMeansInitialization initializer, boolean varstat) {
+    super(distance, k, maxiter, initializer, varstat);
+  }
+
+  @Override
+  public Clustering<KMeansModel> run(Relation<V> relation) {
+    Instance instance = new Instance(relation, distance, initialMeans(relation));
+    instance.run(maxiter);
+    return instance.buildResult(varstat, relation);
+  }
+
+  /**
+   * Inner instance, storing state for a single data set.
+   *
+   * @author Erich Schubert
+   */
+  protected static class Instance extends ParallelSimplifiedElkanKMeans.Instance {
+    /**
+     * Cluster separation
+     */
+    double[] sep;
+
+    /**
+     * Constructor.
+     *
+     * @param relation Relation
+     * @param df Distance function
+     * @param means Initial means
+     */
+    public Instance(Relation<? extends NumberVector> relation, NumberVectorDistance<?> df, double[][] means) {
+      super(relation, df, means);
+      sep = new double[k];
+    }
+
+    @Override
+    protected int iterate(int iteration) {
+      if(iteration == 1) {
+        initialSeperation(cdist);
+        return parallelAssignment(true);
+      }
+      meansFromSums(newmeans, sums);
+      movedDistance(means, newmeans, move);
+      copyMeans(newmeans, means);
+      recomputeSeperation(sep, cdist); // #1
+      return parallelAssignment(false);
+    }
+
+    @Override
+    protected int reassign(DBIDRef it, int orig, Worker worker) {
+      // Update the bounds by the distance moved:
+      double u = upper.doubleValue(it) + move[orig];
+      double[] l = VMath.minusEquals(lower.get(it), move);
+      // Upper bound check (#2):
+      if(u <= sep[orig]) {
+        upper.putDouble(it, u);
+        return orig;
+      }
+      boolean recompute_u = true; // Elkan's r(x)
+      NumberVector fv = null;
+      // Check all (other) means:
+      int cur = orig;
+      for(int j = 0; j < k; j++) {
+        if(orig == j || u <= l[j] || u <= cdist[cur][j]) {
+          continue; // Condition #3 i-iii not satisfied
+        }
+        if(recompute_u) { // Need to update bound? #3a
+          fv = relation.get(it);
+          u = worker.sqrtdistance(fv, means[cur]);
+          recompute_u = false; // Once only
+          if(u <= l[j] || u <= cdist[cur][j]) { // #3b
+            continue;
+          }
+        }
+        double dist = l[j] = worker.sqrtdistance(fv, means[j]);
+        if(dist < u) {
+          cur = j;
+          u = dist;
+        }
+      }
+      upper.putDouble(it, u);
+      return cur;
+    }
+
+    @Override
+    protected Logging getLogger() {
+      return LOG;
+    }
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @param <V> Vector type
+   */
+  public static class Par<V extends NumberVector> extends ParallelSimplifiedElkanKMeans.Par<V> {
+    @Override
+    public ParallelElkanKMeans<V> make() {
+      return new ParallelElkanKMeans<>(distance, k, maxiter, initializer, varstat);
+    }
+  }
+}
@@ -0,0 +1,190 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmeans.parallel;
+
+import elki.clustering.kmeans.ExponionKMeans;
+import elki.clustering.kmeans.initialization.KMeansInitialization;
+import elki.data.Clustering;
+import elki.data.NumberVector;
+import elki.data.model.KMeansModel;
+import elki.database.ids.DBIDRef;
+import elki.database.relation.Relation;
+import elki.distance.NumberVectorDistance;
+import elki.logging.Logging;
+import elki.utilities.documentation.Reference;
+
+import net.jafama.FastMath;
+
+/**
+ * Parallel version of Newlings's exponion k-means algorithm.
+ * <p>
+ * Reference:
+ * <p>
+ * J. Newling<br>
+ * Fast k-means with accurate bounds<br>
+ * Proc. 33nd Int. Conf. on Machine Learning, ICML 2016
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @see ExponionKMeans
+ *
+ * @param <V> vector datatype
+ */
+@Reference(authors = "J. Newling", //
+    title = "Fast k-means with accurate bounds", //
+    booktitle = "Proc. 33nd Int. Conf. on Machine Learning, ICML 2016", //
+    url = "http://jmlr.org/proceedings/papers/v48/newling16.html", //
+    bibkey = "DBLP:conf/icml/NewlingF16")
+public class ParallelExponionKMeans<V extends NumberVector> extends ParallelHamerlyKMeans<V> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelExponionKMeans.class);
+
+  /**
+   * Constructor.
+   *
+   * @param distance distance function
+   * @param k k parameter
+   * @param maxiter Maxiter parameter
+   * @param initializer Initialization method
+   * @param varstat Compute the variance statistic
+   */
+  public ParallelExponionKMeans(NumberVectorDistance<? super V> distance, int k, int maxiter, KMeansInitialization initializer, boolean varstat) {
+    super(distance, k, maxiter, initializer, varstat);
+  }
+
+  @Override
+  public Clustering<KMeansModel> run(Relation<V> relation) {
+    Instance instance = new Instance(relation, distance, initialMeans(relation));
+    instance.run(maxiter);
+    return instance.buildResult(varstat, relation);
+  }
+
+  /**
+   * Inner instance, storing state for a single data set.
+   *
+   * @author Erich Schubert
+   */
+  protected static class Instance extends ParallelHamerlyKMeans.Instance {
+    /**
+     * Sorted neighbors
+     */
+    int[][] cnum;
+
+    /**
+     * Constructor.
+     *
+     * @param relation Relation
+     * @param df Distance function
+     * @param means Initial means
+     */
+    public Instance(Relation<? extends NumberVector> relation, NumberVectorDistance<?> df, double[][] means) {
+      super(relation, df, means);
+      cnum = new int[k][k - 1];
+    }
+
+    @Override
+    protected int iterate(int iteration) {
+      if(iteration == 1) {
+        computeSquaredSeparation(cdist);
+        return parallelAssignment(true);
+      }
+      meansFromSums(newmeans, sums);
+      delta = movedDistance(means, newmeans, move);
+      copyMeans(newmeans, means);
+      recomputeSeperation(sep, cdist);
+      nearestMeans(cdist, cnum);
+      return parallelAssignment(false);
+    }
+
+    @Override
+    protected int reassign(DBIDRef it, int cur, Worker worker) {
+      // Update the bounds by the distance moved:
+      final double z = lower.doubleValue(it) - delta;
+      final double sa = sep[cur];
+      double u = upper.doubleValue(it) + move[cur];
+      if(u <= z || u <= sa) {
+        upper.putDouble(it, u);
+        lower.putDouble(it, z);
+        return cur;
+      }
+      // Update the upper bound
+      NumberVector fv = relation.get(it);
+      double curd2 = worker.distance(fv, means[cur]);
+      u = isSquared ? FastMath.sqrt(curd2) : curd2;
+      upper.putDouble(it, u);
+      if(u <= z || u <= sa) {
+        lower.putDouble(it, z);
+        return cur;
+      }
+      double r = u + 0.5 * sa; // Our cdist are scaled 0.5
+      // Find closest center, and distance to two closest centers
+      double min1 = curd2, min2 = Double.POSITIVE_INFINITY;
+      int minIndex = cur;
+      for(int i = 0; i < k - 1; i++) {
+        int c = cnum[cur][i];
+        if(cdist[cur][c] > r) {
+          break;
+        }
+        double dist = worker.distance(fv, means[c]);
+        if(dist < min1) {
+          minIndex = c;
+          min2 = min1;
+          min1 = dist;
+        }
+        else if(dist < min2) {
+          min2 = dist;
+        }
+      }
+      if(minIndex != cur) {
+        upper.putDouble(it, min1 == curd2 ? u : isSquared ? FastMath.sqrt(min1) : min1);
+      }
+      lower.putDouble(it, min2 == curd2 ? u : isSquared ? FastMath.sqrt(min2) : min2);
+      return minIndex;
+    }
+
+    @Override
+    protected Logging getLogger() {
+      return LOG;
+    }
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @param <V> Vector type
+   */
+  public static class Par<V extends NumberVector> extends ParallelHamerlyKMeans.Par<V> {
+    @Override
+    public ParallelExponionKMeans<V> make() {
+      return new ParallelExponionKMeans<>(distance, k, maxiter, initializer, varstat);
+    }
+  }
+}
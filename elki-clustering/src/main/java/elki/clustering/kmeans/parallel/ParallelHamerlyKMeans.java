@@ -0,0 +1,261 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmeans.parallel;
+
+import elki.clustering.kmeans.AbstractKMeans;
+import elki.clustering.kmeans.HamerlyKMeans;
+import elki.clustering.kmeans.initialization.KMeansInitialization;
+import elki.data.Clustering;
+import elki.data.NumberVector;
+import elki.data.model.KMeansModel;
+import elki.database.datastore.DataStoreFactory;
+import elki.database.datastore.DataStoreUtil;
+import elki.database.datastore.WritableDoubleDataStore;
+import elki.database.ids.DBIDIter;
+import elki.database.ids.DBIDRef;
+import elki.database.relation.Relation;
+import elki.distance.NumberVectorDistance;
+import elki.logging.Logging;
+import elki.utilities.documentation.Reference;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+
+import net.jafama.FastMath;
+
+/**
+ * Parallel version of Hamerly's fast k-means by exploiting the triangle
+ * inequality.
+ * <p>
+ * Reference:
+ * <p>
+ * G. Hamerly<br>
+ * Making k-means even faster<br>
+ * Proc. 2010 SIAM International Conference on Data Mining
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @see HamerlyKMeans
+ *
+ * @param <V> vector datatype
+ */
+@Reference(authors = "G. Hamerly", //
+    title = "Making k-means even faster", //
+    booktitle = "Proc. 2010 SIAM International Conference on Data Mining", //
+    url = "https://doi.org/10.1137/1.9781611972801.12", //
+    bibkey = "DBLP:conf/sdm/Hamerly10")
+public class ParallelHamerlyKMeans<V extends NumberVector> extends AbstractParallelKMeans<V> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelHamerlyKMeans.class);
+
+  /**
+   * Constructor.
+   *
+   * @param distance distance function
+   * @param k k parameter
+   * @param maxiter Maxiter parameter
+   * @param initializer Initialization method
+   * @param varstat Compute the variance statistic
+   */
+  public ParallelHamerlyKMeans(NumberVectorDistance<? super V> distance, int k, int maxiter, KMeansInitialization initializer, boolean varstat) {
+    super(distance, k, maxiter, initializer, varstat);
+  }
+
+  @Override
+  public Clustering<KMeansModel> run(Relation<V> relation) {
+    Instance instance = new Instance(relation, distance, initialMeans(relation));
+    instance.run(maxiter);
+    return instance.buildResult(varstat, relation);
+  }
+
+  /**
+   * Inner instance, storing state for a single data set.
+   *
+   * @author Erich Schubert
+   */
+  protected static class Instance extends AbstractParallelKMeans.Instance {
+    /**
+     * Lower bounding distance
+     */
+    WritableDoubleDataStore lower;
+
+    /**
+     * Separation of means (half distance to the nearest other mean).
+     */
+    double[] sep;
+
+    /**
+     * Distance moved by each mean.
+     */
+    double[] move;
+
+    /**
+     * Maximum distance moved.
+     */
+    double delta;
+
+    /**
+     * Cluster center distances.
+     */
+    double[][] cdist;
+
+    /**
+     * Constructor.
+     *
+     * @param relation Relation
+     * @param df Distance function
+     * @param means Initial means
+     */
+    public Instance(Relation<? extends NumberVector> relation, NumberVectorDistance<?> df, double[][] means) {
+      super(relation, df, means);
+      lower = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_TEMP | DataStoreFactory.HINT_HOT, 0.);
+      for(DBIDIter it = relation.iterDBIDs(); it.valid(); it.advance()) {
+        lower.putDouble(it, 0.);
+      }
+      sep = new double[k];
+      move = new double[k];
+      cdist = new double[k][k];
+    }
+
+    @Override
+    protected int iterate(int iteration) {
+      if(iteration == 1) {
+        computeSquaredSeparation(cdist);
+        return parallelAssignment(true);
+      }
+      meansFromSums(newmeans, sums);
+      delta = movedDistance(means, newmeans, move);
+      copyMeans(newmeans, means);
+      recomputeSeperation(sep, cdist);
+      return parallelAssignment(false);
+    }
+
+    @Override
+    protected int initialAssign(DBIDRef it, NumberVector fv, Worker worker) {
+      // Find closest center, and distance to two closest centers
+      double min1 = worker.distance(fv, means[0]),
+          min2 = worker.distance(fv, means[1]);
+      int minIndex = 0;
+      if(min2 < min1) {
+        double tmp = min1;
+        min1 = min2;
+        min2 = tmp;
+        minIndex = 1;
+      }
+      for(int i = 2; i < k; i++) {
+        if(min2 > cdist[minIndex][i]) {
+          double dist = worker.distance(fv, means[i]);
+          if(dist < min1) {
+            minIndex = i;
+            min2 = min1;
+            min1 = dist;
+          }
+          else if(dist < min2) {
+            min2 = dist;
+          }
+        }
+      }
+      upper.putDouble(it, isSquared ? FastMath.sqrt(min1) : min1);
+      lower.putDouble(it, isSquared ? FastMath.sqrt(min2) : min2);
+      return minIndex;
+    }
+
+    @Override
+    protected int reassign(DBIDRef it, int cur, Worker worker) {
+      // Update the bounds by the distance moved:
+      final double z = lower.doubleValue(it) - delta;
+      final double sa = sep[cur];
+      double u = upper.doubleValue(it) + move[cur];
+      if(u <= z || u <= sa) {
+        upper.putDouble(it, u);
+        lower.putDouble(it, z);
+        return cur;
+      }
+      // Update the upper bound
+      NumberVector fv = relation.get(it);
+      double curd2 = worker.distance(fv, means[cur]);
+      u = isSquared ? FastMath.sqrt(curd2) : curd2;
+      upper.putDouble(it, u);
+      if(u <= z || u <= sa) {
+        lower.putDouble(it, z);
+        return cur;
+      }
+      // Find closest center, and distance to two closest centers
+      double min1 = curd2, min2 = Double.POSITIVE_INFINITY;
+      int minIndex = cur;
+      for(int i = 0; i < k; i++) {
+        if(i == cur) {
+          continue;
+        }
+        double dist = worker.distance(fv, means[i]);
+        if(dist < min1) {
+          minIndex = i;
+          min2 = min1;
+          min1 = dist;
+        }
+        else if(dist < min2) {
+          min2 = dist;
+        }
+      }
+      if(minIndex != cur) {
+        upper.putDouble(it, min1 == curd2 ? u : isSquared ? FastMath.sqrt(min1) : min1);
+      }
+      lower.putDouble(it, min2 == curd2 ? u : isSquared ? FastMath.sqrt(min2) : min2);
+      return minIndex;
+    }
+
+    @Override
+    protected Logging getLogger() {
+      return LOG;
+    }
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @param <V> Vector type
+   */
+  public static class Par<V extends NumberVector> extends AbstractKMeans.Par<V> {
+    @Override
+    protected boolean needsMetric() {
+      return true;
+    }
+
+    @Override
+    public void configure(Parameterization config) {
+      super.configure(config);
+      super.getParameterVarstat(config);
+    }
+
+    @Override
+    public ParallelHamerlyKMeans<V> make() {
+      return new ParallelHamerlyKMeans<>(distance, k, maxiter, initializer, varstat);
+    }
+  }
+}
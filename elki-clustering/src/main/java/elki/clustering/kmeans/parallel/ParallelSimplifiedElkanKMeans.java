@@ -0,0 +1,228 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmeans.parallel;
+
+import elki.clustering.kmeans.AbstractKMeans;
+import elki.clustering.kmeans.SimplifiedElkanKMeans;
+import elki.clustering.kmeans.initialization.KMeansInitialization;
+import elki.data.Clustering;
+import elki.data.NumberVector;
+import elki.data.model.KMeansModel;
+import elki.database.datastore.DataStoreFactory;
+import elki.database.datastore.DataStoreUtil;
+import elki.database.datastore.WritableDataStore;
+import elki.database.ids.DBIDIter;
+import elki.database.ids.DBIDRef;
+import elki.database.relation.Relation;
+import elki.distance.NumberVectorDistance;
+import elki.logging.Logging;
+import elki.math.linearalgebra.VMath;
+import elki.utilities.documentation.Reference;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+
+/**
+ * Parallel version of the simplified Elkan k-means.
+ * <p>
+ * Reference:
+ * <p>
+ * J. Newling<br>
+ * Fast k-means with accurate bounds<br>
+ * Proc. 33nd Int. Conf. on Machine Learning, ICML 2016
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @see SimplifiedElkanKMeans
+ *
+ * @param <V> vector datatype
+ */
+@Reference(authors = "J. Newling", //
+    title = "Fast k-means with accurate bounds", //
+    booktitle = "Proc. 33nd Int. Conf. on Machine Learning, ICML 2016", //
+    url = "http://jmlr.org/proceedings/papers/v48/newling16.html", //
+    bibkey = "DBLP:conf/icml/NewlingF16")
+public class ParallelSimplifiedElkanKMeans<V extends NumberVector> extends AbstractParallelKMeans<V> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelSimplifiedElkanKMeans.class);
+
+  /**
+   * Constructor.
+   *
+   * @param distance distance function
+   * @param k k parameter
+   * @param maxiter Maxiter parameter
+   * @param initializer Initialization method
+   * @param varstat Compute the variance statistic
+   */
+  public ParallelSimplifiedElkanKMeans(NumberVectorDistance<? super V> distance, int k, int maxiter, KMeansInitialization initializer, boolean varstat) {
+    super(distance, k, maxiter, initializer, varstat);
+  }
+
+  @Override
+  public Clustering<KMeansModel> run(Relation<V> relation) {
+    Instance instance = new Instance(relation, distance, initialMeans(relation));
+    instance.run(maxiter);
+    return instance.buildResult(varstat, relation);
+  }
+
+  /**
+   * Inner instance, storing state for a single data set.
+   *
+   * @author Erich Schubert
+   */
+  protected static class Instance extends AbstractParallelKMeans.Instance {
+    /**
+     * Lower bounds
+     */
+    WritableDataStore<double[]> lower;
+
+    /**
+     * Distance moved by each mean.
+     */
+    double[] move;
+
+    /**
+     * Cluster center distances
+     */
+    double[][] cdist;
+
+    /**
+     * Constructor.
+     *
+     * @param relation Relation
+     * @param df Distance function
+     * @param means Initial means
+     */
+    public Instance(Relation<? extends NumberVector> relation, NumberVectorDistance<?> df, double[][] means) {
+      super(relation, df, means);
+      lower = DataStoreUtil.makeStorage(relation.getDBIDs(), DataStoreFactory.HINT_TEMP | DataStoreFactory.HINT_HOT, double[].class);
+      for(DBIDIter it = relation.iterDBIDs(); it.valid(); it.advance()) {
+        lower.put(it, new double[k]); // Filled with 0.
+      }
+      move = new double[k];
+      cdist = new double[k][k];
+    }
+
+    @Override
+    protected int iterate(int iteration) {
+      if(iteration == 1) {
+        initialSeperation(cdist);
+        return parallelAssignment(true);
+      }
+      meansFromSums(newmeans, sums);
+      movedDistance(means, newmeans, move);
+      copyMeans(newmeans, means);
+      return parallelAssignment(false);
+    }
+
+    @Override
+    protected int initialAssign(DBIDRef it, NumberVector fv, Worker worker) {
+      double[] l = lower.get(it);
+      // Check all (other) means:
+      double best = l[0] = worker.sqrtdistance(fv, means[0]);
+      int minIndex = 0;
+      for(int j = 1; j < k; j++) {
+        if(best > cdist[minIndex][j]) {
+          double dist = l[j] = worker.sqrtdistance(fv, means[j]);
+          if(dist < best) {
+            minIndex = j;
+            best = dist;
+          }
+        }
+      }
+      for(int j = 1; j < k; j++) {
+        if(l[j] == 0. && j != minIndex) {
+          l[j] = 2 * cdist[minIndex][j] - best;
+        }
+      }
+      upper.putDouble(it, best);
+      return minIndex;
+    }
+
+    @Override
+    protected int reassign(DBIDRef it, int orig, Worker worker) {
+      // Update the bounds by the distance moved:
+      double u = upper.doubleValue(it) + move[orig];
+      double[] l = VMath.minusEquals(lower.get(it), move);
+      boolean recompute_u = true; // Elkan's r(x)
+      NumberVector fv = null;
+      // Check all (other) means:
+      int cur = orig;
+      for(int j = 0; j < k; j++) {
+        if(orig == j || u <= l[j]) {
+          continue; // Condition #3 i-iii not satisfied
+        }
+        if(recompute_u) { // Need to update bound? #3a
+          fv = relation.get(it);
+          u = worker.sqrtdistance(fv, means[cur]);
+          recompute_u = false; // Once only
+          if(u <= l[j]) { // #3b
+            continue;
+          }
+        }
+        double dist = l[j] = worker.sqrtdistance(fv, means[j]);
+        if(dist < u) {
+          cur = j;
+          u = dist;
+        }
+      }
+      upper.putDouble(it, u);
+      return cur;
+    }
+
+    @Override
+    protected Logging getLogger() {
+      return LOG;
+    }
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @param <V> Vector type
+   */
+  public static class Par<V extends NumberVector> extends AbstractKMeans.Par<V> {
+    @Override
+    protected boolean needsMetric() {
+      return true;
+    }
+
+    @Override
+    public void configure(Parameterization config) {
+      super.configure(config);
+      super.getParameterVarstat(config);
+    }
+
+    @Override
+    public ParallelSimplifiedElkanKMeans<V> make() {
+      return new ParallelSimplifiedElkanKMeans<>(distance, k, maxiter, initializer, varstat);
+    }
+  }
+}
@@ -95,4 +95,16 @@ public abstract class AbstractClusterAlgorithmTest extends AbstractSimpleAlgorit
       assertEquals("Cluster size does not match at position " + i + " in " + FormatUtil.format(sizes), expected[i], sizes[i]);
     }
   }
+
+  /**
+   * Validate that two clusterings partition the data identically.
+   *
+   * @param expected Expected clustering
+   * @param clustering Clustering to test
+   */
+  protected void assertSameClustering(Clustering<?> expected, Clustering<?> clustering) {
+    assertEquals("Number of clusters does not match.", expected.getAllClusters().size(), clustering.getAllClusters().size());
+    double score = new ClusterContingencyTable(true, false, clustering, expected).getPaircount().f1Measure();
+    assertEquals("Clusterings do not match.", 1., score, 0.);
+  }
 }
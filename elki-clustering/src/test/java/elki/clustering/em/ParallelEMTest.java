@@ -0,0 +1,112 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.em;
+
+import org.junit.Test;
+
+import elki.clustering.AbstractClusterAlgorithmTest;
+import elki.clustering.kmeans.KMeans;
+import elki.data.Clustering;
+import elki.data.DoubleVector;
+import elki.database.Database;
+import elki.utilities.ELKIBuilder;
+
+/**
+ * Test the parallel EM clustering, which should give the same results as the
+ * sequential version for all cluster models.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class ParallelEMTest extends AbstractClusterAlgorithmTest {
+  @Test
+  public void testMultivariate() {
+    Database db = makeSimpleDatabase(UNITTEST + "hierarchical-2d.ascii", 710);
+    Clustering<?> result = new ELKIBuilder<ParallelEM<DoubleVector, ?>>(ParallelEM.class) //
+        .with(KMeans.SEED_ID, 0) //
+        .with(EM.Par.K_ID, 6) //
+        .with(EM.Par.INIT_ID, MultivariateGaussianModelFactory.class) //
+        .build().autorun(db);
+    assertFMeasure(db, result, 0.967410486);
+    assertClusterSizes(result, new int[] { 3, 5, 91, 98, 200, 313 });
+  }
+
+  @Test
+  public void testTextbookMultivariate() {
+    Database db = makeSimpleDatabase(UNITTEST + "hierarchical-2d.ascii", 710);
+    Clustering<?> result = new ELKIBuilder<ParallelEM<DoubleVector, ?>>(ParallelEM.class) //
+        .with(KMeans.SEED_ID, 0) //
+        .with(EM.Par.K_ID, 6) //
+        .with(EM.Par.INIT_ID, TextbookMultivariateGaussianModelFactory.class) //
+        .build().autorun(db);
+    assertFMeasure(db, result, 0.967410486);
+    assertClusterSizes(result, new int[] { 3, 5, 91, 98, 200, 313 });
+  }
+
+  @Test
+  public void testTwoPassMultivariate() {
+    Database db = makeSimpleDatabase(UNITTEST + "hierarchical-2d.ascii", 710);
+    Clustering<?> result = new ELKIBuilder<ParallelEM<DoubleVector, ?>>(ParallelEM.class) //
+        .with(KMeans.SEED_ID, 0) //
+        .with(EM.Par.K_ID, 6) //
+        .with(EM.Par.INIT_ID, TwoPassMultivariateGaussianModelFactory.class) //
+        .build().autorun(db);
+    assertFMeasure(db, result, 0.967410486);
+    assertClusterSizes(result, new int[] { 3, 5, 91, 98, 200, 313 });
+  }
+
+  @Test
+  public void testDiagonal() {
+    Database db = makeSimpleDatabase(UNITTEST + "hierarchical-2d.ascii", 710);
+    Clustering<?> result = new ELKIBuilder<ParallelEM<DoubleVector, ?>>(ParallelEM.class) //
+        .with(KMeans.SEED_ID, 3) //
+        .with(EM.Par.K_ID, 5) //
+        .with(EM.Par.INIT_ID, DiagonalGaussianModelFactory.class) //
+        .build().autorun(db);
+    assertFMeasure(db, result, 0.9681384);
+    assertClusterSizes(result, new int[] { 7, 91, 99, 200, 313 });
+  }
+
+  @Test
+  public void testSpherical() {
+    Database db = makeSimpleDatabase(UNITTEST + "hierarchical-2d.ascii", 710);
+    Clustering<?> result = new ELKIBuilder<ParallelEM<DoubleVector, ?>>(ParallelEM.class) //
+        .with(KMeans.SEED_ID, 1) //
+        .with(EM.Par.K_ID, 4) //
+        .with(EM.Par.INIT_ID, SphericalGaussianModelFactory.class) //
+        .build().autorun(db);
+    assertFMeasure(db, result, 0.811247176);
+    assertClusterSizes(result, new int[] { 8, 95, 198, 409 });
+  }
+
+  @Test
+  public void testMultivariateMAP() {
+    Database db = makeSimpleDatabase(UNITTEST + "hierarchical-2d.ascii", 710);
+    Clustering<?> result = new ELKIBuilder<ParallelEM<DoubleVector, ?>>(ParallelEM.class) //
+        .with(KMeans.SEED_ID, 0) //
+        .with(EM.Par.PRIOR_ID, 10) //
+        .with(EM.Par.K_ID, 5) //
+        .with(EM.Par.INIT_ID, TwoPassMultivariateGaussianModelFactory.class) //
+        .build().autorun(db);
+    assertFMeasure(db, result, 0.958843);
+    assertClusterSizes(result, new int[] { 3, 95, 97, 202, 313 });
+  }
+}
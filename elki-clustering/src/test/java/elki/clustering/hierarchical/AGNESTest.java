@@ -71,6 +71,22 @@ public class AGNESTest extends AbstractClusterAlgorithmTest {
     assertClusterSizes(clustering, new int[] { 200, 211, 227 });
   }
 
+  /**
+   * Run agglomerative hierarchical clustering with a single precision matrix.
+   */
+  @Test
+  public void testWardFloat() {
+    Database db = makeSimpleDatabase(UNITTEST + "single-link-effect.ascii", 638);
+    Clustering<?> clustering = new ELKIBuilder<>(CutDendrogramByNumberOfClusters.class) //
+        .with(CutDendrogramByNumberOfClusters.Par.MINCLUSTERS_ID, 3) //
+        .with(Algorithm.Utils.ALGORITHM_ID, AGNES.class) //
+        .with(AGNES.Par.LINKAGE_ID, WardLinkage.class) //
+        .with(AGNES.Par.SINGLE_PRECISION_ID) //
+        .build().autorun(db);
+    assertFMeasure(db, clustering, 0.93866265);
+    assertClusterSizes(clustering, new int[] { 200, 211, 227 });
+  }
+
   /**
    * Run agglomerative hierarchical clustering with fixed parameters and compare
    * the result to a golden standard.
@@ -0,0 +1,94 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.hierarchical;
+
+import org.junit.Test;
+
+import elki.Algorithm;
+import elki.clustering.AbstractClusterAlgorithmTest;
+import elki.clustering.hierarchical.extraction.CutDendrogramByNumberOfClusters;
+import elki.data.Clustering;
+import elki.database.Database;
+import elki.database.StaticArrayDatabase;
+import elki.datasource.ArrayAdapterDatabaseConnection;
+import elki.distance.minkowski.SquaredEuclideanDistance;
+import elki.utilities.ELKIBuilder;
+
+/**
+ * Perform HDBSCAN unit test, with Borůvka's minimum spanning tree.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class HDBSCANBoruvkaTest extends AbstractClusterAlgorithmTest {
+  /**
+   * Run HDBSCAN with fixed parameters and compare the result to a golden
+   * standard (same as {@link HDBSCANLinearMemoryTest}).
+   */
+  @Test
+  public void testHDBSCAN() {
+    Database db = makeSimpleDatabase(UNITTEST + "single-link-effect.ascii", 638);
+    Clustering<?> clustering = new ELKIBuilder<>(CutDendrogramByNumberOfClusters.class) //
+        .with(CutDendrogramByNumberOfClusters.Par.MINCLUSTERS_ID, 3) //
+        .with(Algorithm.Utils.ALGORITHM_ID, HDBSCANBoruvka.class) //
+        .with(HDBSCANBoruvka.Par.MIN_PTS_ID, 20) //
+        .build().autorun(db);
+    assertFMeasure(db, clustering, 0.686953412);
+    assertClusterSizes(clustering, new int[] { 1, 200, 437 });
+  }
+
+  /**
+   * With minPts=1, this is single linkage (same as {@link SLINKTest}).
+   */
+  @Test
+  public void testSingleLink() {
+    Database db = makeSimpleDatabase(UNITTEST + "single-link-effect.ascii", 638);
+    Clustering<?> clustering = new ELKIBuilder<>(CutDendrogramByNumberOfClusters.class) //
+        .with(CutDendrogramByNumberOfClusters.Par.MINCLUSTERS_ID, 3) //
+        .with(Algorithm.Utils.ALGORITHM_ID, HDBSCANBoruvka.class) //
+        .with(HDBSCANBoruvka.Par.MIN_PTS_ID, 1) //
+        .build().autorun(db);
+    assertFMeasure(db, clustering, 0.6829722);
+    assertClusterSizes(clustering, new int[] { 9, 200, 429 });
+  }
+
+  /**
+   * Corner cases with fewer points than minPts.
+   */
+  @Test
+  public void testHDBSCANCornerCase() {
+    Database db = new StaticArrayDatabase(new ArrayAdapterDatabaseConnection(new double[][] { { 1, 0 }, { 0, 1 } }), null);
+    db.initialize();
+    new ELKIBuilder<>(CutDendrogramByNumberOfClusters.class) //
+        .with(CutDendrogramByNumberOfClusters.Par.MINCLUSTERS_ID, 3) //
+        .with(Algorithm.Utils.ALGORITHM_ID, HDBSCANBoruvka.class) //
+        .with(HDBSCANBoruvka.Par.MIN_PTS_ID, 20) //
+        .build().autorun(db);
+    db = new StaticArrayDatabase(new ArrayAdapterDatabaseConnection(new double[][] { { 0 } }), null);
+    db.initialize();
+    new ELKIBuilder<>(CutDendrogramByNumberOfClusters.class) //
+        .with(CutDendrogramByNumberOfClusters.Par.MINCLUSTERS_ID, 3) //
+        .with(Algorithm.Utils.ALGORITHM_ID, HDBSCANBoruvka.class) //
+        .with(Algorithm.Utils.DISTANCE_FUNCTION_ID, SquaredEuclideanDistance.class) //
+        .with(HDBSCANBoruvka.Par.MIN_PTS_ID, 20) //
+        .build().autorun(db);
+  }
+}
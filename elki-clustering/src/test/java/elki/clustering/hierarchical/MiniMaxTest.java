@@ -53,6 +53,21 @@ public class MiniMaxTest extends AbstractClusterAlgorithmTest {
     assertClusterSizes(clustering, new int[] { 200, 211, 227 });
   }
 
+  /**
+   * Run MiniMax clustering with a single precision matrix.
+   */
+  @Test
+  public void testMiniMaxFloat() {
+    Database db = makeSimpleDatabase(UNITTEST + "single-link-effect.ascii", 638);
+    Clustering<?> clustering = new ELKIBuilder<>(CutDendrogramByNumberOfClusters.class) //
+        .with(CutDendrogramByNumberOfClusters.Par.MINCLUSTERS_ID, 3) //
+        .with(Algorithm.Utils.ALGORITHM_ID, MiniMax.class) //
+        .with(AGNES.Par.SINGLE_PRECISION_ID) //
+        .build().autorun(db);
+    assertFMeasure(db, clustering, 0.938662648);
+    assertClusterSizes(clustering, new int[] { 200, 211, 227 });
+  }
+
   /**
    * Run agglomerative hierarchical clustering with fixed parameters and compare
    * the result to a golden standard.
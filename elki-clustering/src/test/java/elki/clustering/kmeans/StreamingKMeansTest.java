@@ -0,0 +1,81 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmeans;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import elki.clustering.AbstractClusterAlgorithmTest;
+import elki.clustering.kmeans.initialization.KMeansPlusPlus;
+import elki.data.Clustering;
+import elki.data.DoubleVector;
+import elki.data.model.KMeansModel;
+import elki.data.type.TypeUtil;
+import elki.database.Database;
+import elki.database.ids.DBIDIter;
+import elki.database.relation.Relation;
+import elki.datasource.bundle.MultipleObjectsBundle;
+import elki.utilities.ELKIBuilder;
+
+/**
+ * Regression test for single-pass streaming k-means.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class StreamingKMeansTest extends AbstractClusterAlgorithmTest {
+  @Test
+  public void testStreamingKMeans() {
+    Database db = makeSimpleDatabase(UNITTEST + "different-densities-2d-no-noise.ascii", 1000);
+    Clustering<?> result = new ELKIBuilder<StreamingKMeans<DoubleVector>>(StreamingKMeans.class) //
+        .with(KMeans.K_ID, 5) //
+        .with(KMeans.INIT_ID, KMeansPlusPlus.class) //
+        .with(MiniBatchKMeans.Par.BATCHSIZE_ID, 100) //
+        .with(KMeans.SEED_ID, 3) //
+        .build().autorun(db);
+    assertFMeasure(db, result, 0.99007);
+    assertClusterSizes(result, new int[] { 198, 199, 199, 201, 203 });
+  }
+
+  @Test
+  public void testStreamSource() {
+    Database db = makeSimpleDatabase(UNITTEST + "different-densities-2d-no-noise.ascii", 1000);
+    Relation<DoubleVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    List<DoubleVector> vecs = new ArrayList<>(rel.size());
+    for(DBIDIter it = rel.iterDBIDs(); it.valid(); it.advance()) {
+      vecs.add(rel.get(it));
+    }
+    // The data set is sorted by cluster; streams should be in random order.
+    Collections.shuffle(vecs, new Random(0L));
+    StreamingKMeans<DoubleVector> km = new ELKIBuilder<StreamingKMeans<DoubleVector>>(StreamingKMeans.class) //
+        .with(KMeans.K_ID, 5) //
+        .with(KMeans.INIT_ID, KMeansPlusPlus.class) //
+        .with(MiniBatchKMeans.Par.BATCHSIZE_ID, 100) //
+        .with(KMeans.SEED_ID, 3) //
+        .build();
+    Clustering<KMeansModel> result = km.run(MultipleObjectsBundle.makeSimple(rel.getDataTypeInformation(), vecs).asStream());
+    assertClusterSizes(result, new int[] { 199, 200, 200, 200, 201 });
+  }
+}
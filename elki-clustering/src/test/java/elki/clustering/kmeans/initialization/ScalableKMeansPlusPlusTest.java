@@ -0,0 +1,86 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmeans.initialization;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import org.junit.Test;
+
+import elki.clustering.AbstractClusterAlgorithmTest;
+import elki.clustering.kmeans.KMeans;
+import elki.clustering.kmeans.SingleAssignmentKMeans;
+import elki.data.Clustering;
+import elki.data.DoubleVector;
+import elki.data.NumberVector;
+import elki.data.type.TypeUtil;
+import elki.database.Database;
+import elki.database.relation.Relation;
+import elki.distance.minkowski.SquaredEuclideanDistance;
+import elki.parallel.ParallelCore;
+import elki.utilities.ELKIBuilder;
+import elki.utilities.random.RandomFactory;
+
+/**
+ * Performs a single assignment with the scalable k-means++ initialization.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class ScalableKMeansPlusPlusTest extends AbstractClusterAlgorithmTest {
+  /**
+   * Run KMeans with fixed parameters and compare the result to a golden
+   * standard.
+   */
+  @Test
+  public void testSingleAssignmentScalableKMeansPlusPlus() {
+    Database db = makeSimpleDatabase(UNITTEST + "different-densities-2d-no-noise.ascii", 1000);
+    Clustering<?> result = new ELKIBuilder<SingleAssignmentKMeans<DoubleVector>>(SingleAssignmentKMeans.class) //
+        .with(KMeans.K_ID, 5) //
+        .with(KMeans.SEED_ID, 3) //
+        .with(KMeans.INIT_ID, ScalableKMeansPlusPlus.class) //
+        .build().autorun(db);
+    assertFMeasure(db, result, 1.0);
+    assertClusterSizes(result, new int[] { 200, 200, 200, 200, 200 });
+  }
+
+  /**
+   * The initial means must not depend on the number of threads.
+   */
+  @Test
+  public void testParallelism() {
+    Database db = makeSimpleDatabase(UNITTEST + "different-densities-2d-no-noise.ascii", 1000);
+    Relation<NumberVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    try {
+      ParallelCore.getCore().setParallelism(1);
+      double[][] expected = new ScalableKMeansPlusPlus(new RandomFactory(3L), 2., 5) //
+          .chooseInitialMeans(rel, 5, SquaredEuclideanDistance.STATIC);
+      ParallelCore.getCore().setParallelism(4);
+      double[][] means = new ScalableKMeansPlusPlus(new RandomFactory(3L), 2., 5) //
+          .chooseInitialMeans(rel, 5, SquaredEuclideanDistance.STATIC);
+      for(int i = 0; i < expected.length; i++) {
+        assertArrayEquals("Means differ.", expected[i], means[i], 0.);
+      }
+    }
+    finally {
+      ParallelCore.getCore().setParallelism(0);
+    }
+  }
+}
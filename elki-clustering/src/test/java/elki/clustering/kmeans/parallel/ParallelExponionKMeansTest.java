@@ -0,0 +1,56 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmeans.parallel;
+
+import org.junit.Test;
+
+import elki.clustering.AbstractClusterAlgorithmTest;
+import elki.clustering.kmeans.ExponionKMeans;
+import elki.clustering.kmeans.KMeans;
+import elki.data.Clustering;
+import elki.data.DoubleVector;
+import elki.database.Database;
+import elki.utilities.ELKIBuilder;
+
+/**
+ * Regression test for parallel Exponion k-means.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class ParallelExponionKMeansTest extends AbstractClusterAlgorithmTest {
+  @Test
+  public void testParallelKMeansExponion() {
+    Database db = makeSimpleDatabase(UNITTEST + "3clusters-and-noise-2d.csv", 330);
+    Clustering<?> result = new ELKIBuilder<ParallelExponionKMeans<DoubleVector>>(ParallelExponionKMeans.class) //
+        .with(KMeans.K_ID, 12) //
+        .with(KMeans.SEED_ID, 1) //
+        .build().autorun(db);
+    assertFMeasure(db, result, 0.561178);
+    assertClusterSizes(result, new int[] { 3, 3, 4, 5, 7, 15, 42, 45, 47, 50, 54, 55 });
+    // Same result as the sequential version:
+    Clustering<?> sequential = new ELKIBuilder<ExponionKMeans<DoubleVector>>(ExponionKMeans.class) //
+        .with(KMeans.K_ID, 12) //
+        .with(KMeans.SEED_ID, 1) //
+        .build().autorun(db);
+    assertSameClustering(sequential, result);
+  }
+}
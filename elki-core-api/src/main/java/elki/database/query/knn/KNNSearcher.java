@@ -20,6 +20,12 @@
  */
 package elki.database.query.knn;
 
+import java.util.function.Function;
+
+import elki.database.datastore.WritableDataStore;
+import elki.database.ids.DBIDIter;
+import elki.database.ids.DBIDRef;
+import elki.database.ids.DBIDs;
 import elki.database.ids.KNNList;
 
 /**
@@ -42,4 +48,25 @@ public interface KNNSearcher<O> {
    * @return neighbors
    */
   KNNList getKNN(O query, int k);
+
+  /**
+   * Get the k nearest neighbors for a batch of queries.
+   * <p>
+   * The default implementation performs one query at a time; implementations
+   * may override this to share work (such as data access or tree traversal)
+   * across the queries of a batch.
+   * <p>
+   * The lookup function may be applied to a moving iterator; implementations
+   * must not retain its argument.
+   *
+   * @param queries Query ids
+   * @param lookup Function to obtain the query object for an id
+   * @param k Number of neighbors requested
+   * @param out Output storage for the neighbors of each query
+   */
+  default void getKNNs(DBIDs queries, Function<? super DBIDRef, ? extends O> lookup, int k, WritableDataStore<KNNList> out) {
+    for(DBIDIter iter = queries.iter(); iter.valid(); iter.advance()) {
+      out.put(iter, getKNN(lookup.apply(iter), k));
+    }
+  }
 }
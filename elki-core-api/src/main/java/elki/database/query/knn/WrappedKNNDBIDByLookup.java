@@ -20,7 +20,11 @@
  */
 package elki.database.query.knn;
 
+import java.util.function.Function;
+
+import elki.database.datastore.WritableDataStore;
 import elki.database.ids.DBIDRef;
+import elki.database.ids.DBIDs;
 import elki.database.ids.KNNList;
 import elki.database.query.LinearScanQuery;
 import elki.database.relation.Relation;
@@ -60,6 +64,12 @@ public class WrappedKNNDBIDByLookup<O> implements KNNSearcher<DBIDRef> {
     return inner.getKNN(relation.get(id), k);
   }
 
+  @Override
+  public void getKNNs(DBIDs queries, Function<? super DBIDRef, ? extends DBIDRef> lookup, int k, WritableDataStore<KNNList> out) {
+    final Relation<? extends O> relation = this.relation;
+    inner.getKNNs(queries, id -> relation.get(lookup.apply(id)), k, out);
+  }
+
   /**
    * Linear scan searcher.
    * 
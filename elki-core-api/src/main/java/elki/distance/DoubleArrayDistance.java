@@ -0,0 +1,45 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.distance;
+
+/**
+ * Interface for distance functions that can also be computed directly on
+ * primitive {@code double[]} arrays, such as the values of a
+ * {@link elki.data.DoubleVector}.
+ * <p>
+ * This avoids the virtual call per dimension of
+ * {@link elki.data.NumberVector#doubleValue}, and linear scans use it when the
+ * relation is backed by dense double vectors. Implementations must return the
+ * same value as {@link NumberVectorDistance#distance} on the wrapped arrays.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public interface DoubleArrayDistance {
+  /**
+   * Computes the distance between two arrays.
+   *
+   * @param v1 first array
+   * @param v2 second array
+   * @return distance
+   */
+  double distance(double[] v1, double[] v2);
+}
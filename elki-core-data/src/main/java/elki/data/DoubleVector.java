@@ -103,6 +103,17 @@ public class DoubleVector implements NumberVector {
     return values.clone();
   }
 
+  /**
+   * Get the underlying values, without copying.
+   * <p>
+   * This is the counterpart of {@link #wrap}; the array must not be modified.
+   *
+   * @return Underlying array
+   */
+  public double[] getValues() {
+    return values;
+  }
+
   @Override
   public String toString() {
     StringBuilder featureLine = new StringBuilder();
@@ -22,6 +22,7 @@ package elki.distance.minkowski;
 
 import elki.data.NumberVector;
 import elki.data.spatial.SpatialComparable;
+import elki.distance.DoubleArrayDistance;
 import elki.utilities.Alias;
 import elki.utilities.Priority;
 import elki.utilities.optionhandling.Parameterizer;
@@ -38,7 +39,7 @@ import net.jafama.FastMath;
  */
 @Priority(300) // Everybody expects Euclidean to come first.
 @Alias({ "euclidean", "euclid", "l2" })
-public class EuclideanDistance extends LPIntegerNormDistance {
+public class EuclideanDistance extends LPIntegerNormDistance implements DoubleArrayDistance {
   /**
    * Static instance. Use this!
    */
@@ -63,6 +64,31 @@ public class EuclideanDistance extends LPIntegerNormDistance {
     return agg;
   }
 
+  private double preDistance(double[] v1, double[] v2, int start, int end) {
+    double agg = 0.;
+    int d = start;
+    // Unrolled, but adding up in the same order as the plain loop.
+    for(final int end4 = end - 3; d < end4; d += 4) {
+      final double d0 = v1[d] - v2[d], d1 = v1[d + 1] - v2[d + 1];
+      final double d2 = v1[d + 2] - v2[d + 2], d3 = v1[d + 3] - v2[d + 3];
+      agg = agg + d0 * d0 + d1 * d1 + d2 * d2 + d3 * d3;
+    }
+    for(; d < end; d++) {
+      final double delta = v1[d] - v2[d];
+      agg += delta * delta;
+    }
+    return agg;
+  }
+
+  private double preNorm(double[] v, int start, int end) {
+    double agg = 0.;
+    for(int d = start; d < end; d++) {
+      final double xd = v[d];
+      agg += xd * xd;
+    }
+    return agg;
+  }
+
   private double preDistanceVM(NumberVector v, SpatialComparable mbr, int start, int end) {
     double agg = 0.;
     for(int d = start; d < end; d++) {
@@ -123,6 +149,20 @@ public class EuclideanDistance extends LPIntegerNormDistance {
     return FastMath.sqrt(agg);
   }
 
+  @Override
+  public double distance(double[] v1, double[] v2) {
+    final int dim1 = v1.length, dim2 = v2.length;
+    final int mindim = dim1 < dim2 ? dim1 : dim2;
+    double agg = preDistance(v1, v2, 0, mindim);
+    if(dim1 > mindim) {
+      agg += preNorm(v1, mindim, dim1);
+    }
+    else if(dim2 > mindim) {
+      agg += preNorm(v2, mindim, dim2);
+    }
+    return FastMath.sqrt(agg);
+  }
+
   @Override
   public double norm(NumberVector v) {
     return FastMath.sqrt(preNorm(v, 0, v.getDimensionality()));
@@ -22,6 +22,7 @@ package elki.distance.minkowski;
 
 import elki.data.NumberVector;
 import elki.data.spatial.SpatialComparable;
+import elki.distance.DoubleArrayDistance;
 import elki.utilities.Alias;
 import elki.utilities.optionhandling.Parameterizer;
 
@@ -35,7 +36,7 @@ import elki.utilities.optionhandling.Parameterizer;
  * @since 0.1
  */
 @Alias({ "taxicab", "cityblock", "l1" })
-public class ManhattanDistance extends LPIntegerNormDistance {
+public class ManhattanDistance extends LPIntegerNormDistance implements DoubleArrayDistance {
   /**
    * The static instance to use.
    */
@@ -61,6 +62,29 @@ public class ManhattanDistance extends LPIntegerNormDistance {
     return agg;
   }
 
+  private double preDistance(double[] v1, double[] v2, int start, int end) {
+    double agg = 0.;
+    int d = start;
+    // Unrolled, but adding up in the same order as the plain loop.
+    for(final int end4 = end - 3; d < end4; d += 4) {
+      final double d0 = Math.abs(v1[d] - v2[d]), d1 = Math.abs(v1[d + 1] - v2[d + 1]);
+      final double d2 = Math.abs(v1[d + 2] - v2[d + 2]), d3 = Math.abs(v1[d + 3] - v2[d + 3]);
+      agg = agg + d0 + d1 + d2 + d3;
+    }
+    for(; d < end; d++) {
+      agg += Math.abs(v1[d] - v2[d]);
+    }
+    return agg;
+  }
+
+  private double preNorm(double[] v, int start, int end) {
+    double agg = 0.;
+    for(int d = start; d < end; d++) {
+      agg += Math.abs(v[d]);
+    }
+    return agg;
+  }
+
   private double preDistanceVM(NumberVector v, SpatialComparable mbr, int start, int end) {
     double agg = 0.;
     for(int d = start; d < end; d++) {
@@ -122,6 +146,20 @@ public class ManhattanDistance extends LPIntegerNormDistance {
     return agg;
   }
 
+  @Override
+  public double distance(double[] v1, double[] v2) {
+    final int dim1 = v1.length, dim2 = v2.length;
+    final int mindim = dim1 < dim2 ? dim1 : dim2;
+    double agg = preDistance(v1, v2, 0, mindim);
+    if(dim1 > mindim) {
+      agg += preNorm(v1, mindim, dim1);
+    }
+    else if(dim2 > mindim) {
+      agg += preNorm(v2, mindim, dim2);
+    }
+    return agg;
+  }
+
   @Override
   public double norm(NumberVector v) {
     return preNorm(v, 0, v.getDimensionality());
@@ -22,6 +22,7 @@ package elki.distance.minkowski;
 
 import elki.data.NumberVector;
 import elki.data.spatial.SpatialComparable;
+import elki.distance.DoubleArrayDistance;
 import elki.utilities.Alias;
 import elki.utilities.optionhandling.Parameterizer;
 
@@ -37,7 +38,7 @@ import elki.utilities.optionhandling.Parameterizer;
  * @since 0.3
  */
 @Alias({ "maximum", "max", "chebyshev" })
-public class MaximumDistance extends LPNormDistance {
+public class MaximumDistance extends LPNormDistance implements DoubleArrayDistance {
   /**
    * Static instance.
    */
@@ -63,6 +64,26 @@ public class MaximumDistance extends LPNormDistance {
     return agg;
   }
 
+  private double preDistance(double[] v1, double[] v2, int start, int end) {
+    double agg = 0.;
+    for(int d = start; d < end; d++) {
+      final double xd = v1[d], yd = v2[d];
+      final double delta = xd >= yd ? xd - yd : yd - xd;
+      agg = delta >= agg ? delta : agg;
+    }
+    return agg;
+  }
+
+  private double preNorm(double[] v, int start, int end) {
+    double agg = 0.;
+    for(int d = start; d < end; d++) {
+      final double xd = v[d];
+      final double delta = xd >= 0. ? xd : -xd;
+      agg = delta >= agg ? delta : agg;
+    }
+    return agg;
+  }
+
   private double preDistanceVM(NumberVector v, SpatialComparable mbr, int start, int end) {
     double agg = 0.;
     for(int d = start; d < end; d++) {
@@ -120,6 +141,22 @@ public class MaximumDistance extends LPNormDistance {
     return agg;
   }
 
+  @Override
+  public double distance(double[] v1, double[] v2) {
+    final int dim1 = v1.length, dim2 = v2.length;
+    final int mindim = dim1 < dim2 ? dim1 : dim2;
+    double agg = preDistance(v1, v2, 0, mindim);
+    if(dim1 > mindim) {
+      double b = preNorm(v1, mindim, dim1);
+      agg = agg >= b ? agg : b;
+    }
+    else if(dim2 > mindim) {
+      double b = preNorm(v2, mindim, dim2);
+      agg = agg >= b ? agg : b;
+    }
+    return agg;
+  }
+
   @Override
   public double norm(NumberVector v) {
     return preNorm(v, 0, v.getDimensionality());
@@ -116,6 +116,14 @@ public abstract class AbstractDistanceTest {
     if(dist.isMetric()) {
       assertTrue("Trivial metric test failed.", dist.distance(BASIC[4], BASIC[6]) <= dist.distance(BASIC[4], BASIC[5]) + dist.distance(BASIC[5], BASIC[6]));
     }
+    if(dist instanceof DoubleArrayDistance) {
+      DoubleArrayDistance adist = (DoubleArrayDistance) dist;
+      for(DoubleVector v1 : BASIC) {
+        for(DoubleVector v2 : BASIC) {
+          assertEquals("Array distance not as expected", dist.distance(v1, v2), adist.distance(v1.getValues(), v2.getValues()), 0.);
+        }
+      }
+    }
   }
 
   /**
@@ -241,6 +249,9 @@ public abstract class AbstractDistanceTest {
         d4[d] = m + rnd.nextDouble() * 1E4;
       }
       assertMBRDistances(v1, v2, mbr, dist);
+      if(dist instanceof DoubleArrayDistance) {
+        assertEquals("Array distance not as expected", dist.distance(v1, v2), ((DoubleArrayDistance) dist).distance(d1, d2), 0.);
+      }
     }
   }
 
@@ -23,9 +23,11 @@ package elki.parallel;
 import java.util.concurrent.*;
 
 /**
- * Core for parallel processing in ELKI, based on {@link ThreadPoolExecutor}.
+ * Core for parallel processing in ELKI, based on a work-stealing
+ * {@link ForkJoinPool}.
  * <p>
- * TODO: make configurable how many threads are used.
+ * The number of threads defaults to the number of available processors, but
+ * can be configured using {@link #setParallelism(int)}.
  * 
  * @author Erich Schubert
  * @since 0.7.0
@@ -44,7 +46,7 @@ public class ParallelCore {
   /**
    * Executor service.
    */
-  private volatile ThreadPoolExecutor executor;
+  private volatile ForkJoinPool pool;
 
   /**
    * Number of connected submitters.
@@ -54,7 +56,7 @@ public class ParallelCore {
   /**
    * Maximum number of processors to use.
    */
-  private int processors;
+  private volatile int processors;
 
   /**
    * Constructor.
@@ -79,7 +81,26 @@ public class ParallelCore {
    * @return Number of threads to run in parallel
    */
   public int getParallelism() {
-    return executor != null ? executor.getMaximumPoolSize() : processors;
+    return processors;
+  }
+
+  /**
+   * Set the desired level of parallelism.
+   * <p>
+   * If the pool is currently in use, the change becomes effective once all
+   * connected submitters have disconnected.
+   *
+   * @param processors Number of threads to run in parallel, 0 for all
+   *        available processors.
+   */
+  public synchronized void setParallelism(int processors) {
+    if(processors < 0) {
+      throw new IllegalArgumentException("Parallelism must not be negative.");
+    }
+    this.processors = processors > 0 ? processors : ALL_PROCESSORS;
+    if(connected == 0) {
+      shutdownPool();
+    }
   }
 
   /**
@@ -90,30 +111,47 @@ public class ParallelCore {
    * @return Future to observe completion
    */
   public <T> Future<T> submit(Callable<T> task) {
-    return executor.submit(task);
+    return pool.submit(task);
+  }
+
+  /**
+   * Run a fork-join task on the executor core, and wait for its completion.
+   *
+   * @param task Task to run
+   * @return Task result
+   */
+  public <T> T invoke(ForkJoinTask<T> task) {
+    return pool.invoke(task);
   }
 
   /**
    * Connect to the executor.
    */
   public synchronized void connect() {
-    if(executor == null) {
-      executor = new ThreadPoolExecutor(0, processors, 10L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
-      executor.allowCoreThreadTimeOut(true);
+    if(pool != null && pool.getParallelism() != processors && connected == 0) {
+      shutdownPool();
     }
-    if(++connected == 1) {
-      executor.allowCoreThreadTimeOut(false);
-      executor.setCorePoolSize(executor.getMaximumPoolSize());
+    if(pool == null) {
+      // Idle worker threads are retired automatically by the pool.
+      pool = new ForkJoinPool(processors);
     }
+    ++connected;
   }
 
   /**
    * Disconnect to the executor.
    */
   public synchronized void disconnect() {
-    if(--connected == 0) {
-      executor.allowCoreThreadTimeOut(true);
-      executor.setCorePoolSize(0);
+    --connected;
+  }
+
+  /**
+   * Shut down the current pool, if any.
+   */
+  private void shutdownPool() {
+    if(pool != null) {
+      pool.shutdown();
+      pool = null;
     }
   }
 }
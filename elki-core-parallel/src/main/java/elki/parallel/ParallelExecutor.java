@@ -20,33 +20,51 @@
  */
 package elki.parallel;
 
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RecursiveAction;
 
 import elki.database.ids.ArrayDBIDs;
 import elki.database.ids.DBIDArrayIter;
 import elki.database.ids.DBIDUtil;
 import elki.database.ids.DBIDs;
+import elki.logging.Logging;
+import elki.logging.progress.AbstractProgress;
 import elki.parallel.processor.Processor;
 import elki.parallel.variables.SharedVariable;
 import elki.parallel.variables.SharedVariable.Instance;
 
 /**
  * Class to run processors in parallel, on all available cores.
- *
- * TODO: add progress
+ * <p>
+ * The object range is split recursively into fork-join tasks. A task splits
+ * off the upper half of its remaining range while the pool has little queued
+ * work (lazy binary splitting), and otherwise processes a small block of
+ * objects before checking again. Therefore, idle threads can steal work from
+ * expensive regions of the data, which balances skewed workloads much better
+ * than a static partitioning. Processor instances are created once per
+ * worker thread, not per block. If a processor itself runs parallel code, the
+ * thread may pick up another block while inside the processor; such blocks
+ * are processed with separate, nested, processor instances.
  *
  * @author Erich Schubert
  * @since 0.7.0
  *
  * @has - - - BlockArrayRunner
+ * @has - - - BlockTask
  * @assoc - - - ParallelCore
  */
 public final class ParallelExecutor {
+  /**
+   * Number of surplus queued tasks below which we split further.
+   */
+  private static final int SURPLUS_THRESHOLD = 2;
+
+  /**
+   * Maximum number of objects to process before checking for splitting again.
+   */
+  private static final int MAX_BLOCKSIZE = 256;
+
   /**
    * Private constructor. Static methods only.
    */
@@ -61,48 +79,53 @@ public final class ParallelExecutor {
    * @param procs Processors to run
    */
   public static void run(DBIDs ids, Processor... procs) {
+    run(ids, null, null, procs);
+  }
+
+  /**
+   * Run a task on all available CPUs, with progress reporting.
+   *
+   * @param ids IDs to process
+   * @param prog Progress to increment, may be {@code null}
+   * @param log Logger to report progress to
+   * @param procs Processors to run
+   */
+  public static void run(DBIDs ids, AbstractProgress prog, Logging log, Processor... procs) {
     ParallelCore core = ParallelCore.getCore();
     core.connect();
     try {
-      // TODO: try different strategies anyway!
       ArrayDBIDs aids = DBIDUtil.ensureArray(ids);
       final int size = aids.size();
-      int numparts = core.getParallelism();
-      // TODO: are there better heuristics for choosing this?
-      numparts = (size > numparts * numparts * 16) ? numparts * Math.max(1, numparts - 1) : numparts;
-
-      final int blocksize = (size + (numparts - 1)) / numparts;
-      List<Future<ArrayDBIDs>> parts = new ArrayList<>(numparts);
-      for(int i = 0; i < numparts; i++) {
-        final int start = i * blocksize;
-        final int end = Math.min(start + blocksize, size);
-        Callable<ArrayDBIDs> run = new BlockArrayRunner(aids, start, end, procs);
-        parts.add(core.submit(run));
+      if(size == 0) {
+        return;
       }
-
-      for(Future<ArrayDBIDs> fut : parts) {
-        fut.get();
+      // Small blocks, to allow good balancing for expensive processors:
+      final int blocksize = Math.max(1, Math.min(MAX_BLOCKSIZE, size / (core.getParallelism() << 4)));
+      ConcurrentHashMap<Thread, BlockArrayRunner> runners = new ConcurrentHashMap<>();
+      core.invoke(new BlockTask(aids, 0, size, blocksize, procs, runners, prog, log));
+      // Merge the per-thread results:
+      for(BlockArrayRunner runner : runners.values()) {
+        runner.cleanup();
       }
     }
-    catch(ExecutionException e) {
-      throw new RuntimeException("Processor execution failed.", e);
-    }
-    catch(InterruptedException e) {
-      throw new RuntimeException("Parallel execution interrupted.");
-    }
     finally {
       core.disconnect();
     }
   }
 
   /**
-   * Run for an array part, without step size.
+   * Recursive fork-join task for a range of the array.
    *
    * @author Erich Schubert
    *
-   * @assoc - - - Processor
+   * @assoc - - - BlockArrayRunner
    */
-  protected static class BlockArrayRunner implements Callable<ArrayDBIDs>, Executor {
+  protected static class BlockTask extends RecursiveAction {
+    /**
+     * Serialization version.
+     */
+    private static final long serialVersionUID = 1L;
+
     /**
      * Array IDs to process
      */
@@ -118,15 +141,35 @@ public final class ParallelExecutor {
      */
     private int end;
 
+    /**
+     * Number of objects to process before checking for splitting.
+     */
+    private int blocksize;
+
     /**
      * The processor masters that own the instances.
      */
     private Processor[] procs;
 
     /**
-     * Variables map.
+     * Per-thread runners.
      */
-    private HashMap<SharedVariable<?>, SharedVariable.Instance<?>> variables = new HashMap<>();
+    private ConcurrentHashMap<Thread, BlockArrayRunner> runners;
+
+    /**
+     * Progress, may be null.
+     */
+    private AbstractProgress prog;
+
+    /**
+     * Logger for progress reporting.
+     */
+    private Logging log;
+
+    /**
+     * Next forked task, to join.
+     */
+    private BlockTask next;
 
     /**
      * Constructor.
@@ -134,31 +177,149 @@ public final class ParallelExecutor {
      * @param ids IDs to process
      * @param start Starting position
      * @param end End position
+     * @param blocksize Number of objects to process before splitting again
      * @param procs Processors to run
+     * @param runners Per-thread runners
+     * @param prog Progress, may be null
+     * @param log Logger for progress reporting
      */
-    protected BlockArrayRunner(ArrayDBIDs ids, int start, int end, Processor[] procs) {
+    protected BlockTask(ArrayDBIDs ids, int start, int end, int blocksize, Processor[] procs, ConcurrentHashMap<Thread, BlockArrayRunner> runners, AbstractProgress prog, Logging log) {
       super();
       this.ids = ids;
       this.start = start;
       this.end = end;
+      this.blocksize = blocksize;
       this.procs = procs;
+      this.runners = runners;
+      this.prog = prog;
+      this.log = log;
     }
 
     @Override
-    public ArrayDBIDs call() {
-      Processor.Instance[] instances = new Processor.Instance[procs.length];
+    protected void compute() {
+      BlockArrayRunner runner = runners.computeIfAbsent(Thread.currentThread(), t -> new BlockArrayRunner(ids, procs));
+      BlockTask forked = null;
+      while(start < end) {
+        // Split off the upper half, while other threads may be idle:
+        while(end - start > blocksize && getSurplusQueuedTaskCount() <= SURPLUS_THRESHOLD) {
+          final int mid = (start + end) >>> 1;
+          BlockTask t = new BlockTask(ids, mid, end, blocksize, procs, runners, prog, log);
+          t.next = forked;
+          (forked = t).fork();
+          end = mid;
+        }
+        final int stop = Math.min(start + blocksize, end);
+        runner.process(start, stop);
+        if(prog != null) {
+          prog.incrementProcessed(stop - start, log);
+        }
+        start = stop;
+      }
+      // Wait for (or run) the tasks we forked:
+      for(; forked != null; forked = forked.next) {
+        forked.join();
+      }
+    }
+  }
+
+  /**
+   * Run for an array part, without step size.
+   * <p>
+   * One runner is used by each thread, and may process multiple blocks. If
+   * the runner is re-entered while processing a block, a nested runner is
+   * used instead.
+   *
+   * @author Erich Schubert
+   *
+   * @assoc - - - Processor
+   */
+  protected static class BlockArrayRunner implements Executor {
+    /**
+     * IDs to process
+     */
+    private ArrayDBIDs ids;
+
+    /**
+     * Iterator over the IDs to process
+     */
+    private DBIDArrayIter iter;
+
+    /**
+     * The processor masters that own the instances.
+     */
+    private Processor[] procs;
+
+    /**
+     * Processor instances.
+     */
+    private Processor.Instance[] instances;
+
+    /**
+     * Variables map.
+     */
+    private HashMap<SharedVariable<?>, SharedVariable.Instance<?>> variables = new HashMap<>();
+
+    /**
+     * Flag whether a block is currently being processed.
+     */
+    private boolean busy;
+
+    /**
+     * Runner for blocks picked up while busy, may be {@code null}.
+     */
+    private BlockArrayRunner nested;
+
+    /**
+     * Constructor.
+     *
+     * @param ids IDs to process
+     * @param procs Processors to run
+     */
+    protected BlockArrayRunner(ArrayDBIDs ids, Processor[] procs) {
+      super();
+      this.ids = ids;
+      this.iter = ids.iter();
+      this.procs = procs;
+      this.instances = new Processor.Instance[procs.length];
       for(int i = 0; i < procs.length; i++) {
         instances[i] = procs[i].instantiate(this);
       }
-      for(DBIDArrayIter iter = ids.iter().seek(start); iter.valid() && iter.getOffset() < end; iter.advance()) {
-        for(int i = 0; i < instances.length; i++) {
-          instances[i].map(iter);
+    }
+
+    /**
+     * Process a range of the array.
+     *
+     * @param start Starting position
+     * @param end End position
+     */
+    protected void process(int start, int end) {
+      if(busy) { // Nested parallelism, inside map() of this runner
+        (nested != null ? nested : (nested = new BlockArrayRunner(ids, procs))).process(start, end);
+        return;
+      }
+      busy = true;
+      try {
+        for(iter.seek(start); iter.valid() && iter.getOffset() < end; iter.advance()) {
+          for(int i = 0; i < instances.length; i++) {
+            instances[i].map(iter);
+          }
         }
       }
+      finally {
+        busy = false;
+      }
+    }
+
+    /**
+     * Invoke the cleanup of all processor instances.
+     */
+    protected void cleanup() {
       for(int i = 0; i < instances.length; i++) {
         procs[i].cleanup(instances[i]);
       }
-      return ids;
+      if(nested != null) {
+        nested.cleanup();
+      }
     }
 
     @Override
@@ -0,0 +1,133 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.parallel.processor;
+
+import java.util.function.Supplier;
+
+import elki.database.ids.DBIDRef;
+import elki.database.ids.DBIDUtil;
+import elki.database.ids.DoubleDBIDList;
+import elki.database.query.range.RangeSearcher;
+import elki.parallel.Executor;
+import elki.parallel.variables.SharedObject;
+
+/**
+ * Processor to compute the range query neighbors of each object.
+ * <p>
+ * Range searchers are not thread safe, so a new searcher is obtained from the
+ * supplier for every thread.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @has - - - Instance
+ * @assoc - - - RangeSearcher
+ * @assoc - - - SharedObject
+ * @has - - - DoubleDBIDList
+ */
+public class RangeProcessor implements Processor {
+  /**
+   * Query radius
+   */
+  double range;
+
+  /**
+   * Range query object
+   */
+  Supplier<RangeSearcher<DBIDRef>> rangeq;
+
+  /**
+   * Output channel to write to
+   */
+  SharedObject<DoubleDBIDList> out;
+
+  /**
+   * Constructor.
+   *
+   * @param range Query radius
+   * @param rangeq Range query to use
+   */
+  public RangeProcessor(double range, Supplier<RangeSearcher<DBIDRef>> rangeq) {
+    super();
+    this.range = range;
+    this.rangeq = rangeq;
+  }
+
+  /**
+   * Connect the output channel.
+   *
+   * @param output Output channel
+   */
+  public void connectRangeOutput(SharedObject<DoubleDBIDList> output) {
+    this.out = output;
+  }
+
+  @Override
+  public Instance instantiate(Executor executor) {
+    return new Instance(range, rangeq.get(), executor.getInstance(out));
+  }
+
+  @Override
+  public void cleanup(Processor.Instance inst) {
+    // Nothing to do.
+  }
+
+  /**
+   * Instance for computing the range query neighbors.
+   *
+   * @author Erich Schubert
+   */
+  public static class Instance implements Processor.Instance {
+    /**
+     * Query radius
+     */
+    double range;
+
+    /**
+     * Range query
+     */
+    RangeSearcher<DBIDRef> rangeq;
+
+    /**
+     * Output data store
+     */
+    SharedObject.Instance<DoubleDBIDList> out;
+
+    /**
+     * Constructor.
+     *
+     * @param range Query radius
+     * @param rangeq Range query
+     * @param out Output channel to write to
+     */
+    protected Instance(double range, RangeSearcher<DBIDRef> rangeq, SharedObject.Instance<DoubleDBIDList> out) {
+      super();
+      this.range = range;
+      this.rangeq = rangeq;
+      this.out = out;
+    }
+
+    @Override
+    public void map(DBIDRef id) {
+      out.set(rangeq.getRange(id, range, DBIDUtil.newDistanceDBIDList()));
+    }
+  }
+}
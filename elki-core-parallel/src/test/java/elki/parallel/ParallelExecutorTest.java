@@ -0,0 +1,179 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.parallel;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Consumer;
+
+import org.junit.Test;
+
+import elki.database.ids.DBIDRange;
+import elki.database.ids.DBIDRef;
+import elki.database.ids.DBIDUtil;
+import elki.parallel.processor.Processor;
+
+/**
+ * Test the parallel executor.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class ParallelExecutorTest {
+  /**
+   * Run parallel code from within a processor, which may cause a thread to
+   * pick up further blocks of the outer run while inside the processor.
+   */
+  @Test
+  public void testNested() {
+    ParallelCore.getCore().setParallelism(4);
+    final DBIDRange outer = DBIDUtil.generateStaticDBIDRange(2000);
+    final DBIDRange inner = DBIDUtil.generateStaticDBIDRange(100);
+    CountingProcessor innerp = new CountingProcessor(inner, null);
+    CountingProcessor outerp = new CountingProcessor(outer, id -> ParallelExecutor.run(inner, innerp));
+    ParallelExecutor.run(outer, outerp);
+    assertEquals("Processor re-entered.", 0, outerp.reentered);
+    assertEquals("Objects not merged.", outer.size(), outerp.total);
+    assertEquals("Objects not merged.", outer.size() * inner.size(), innerp.total);
+    for(int i = 0; i < outer.size(); i++) {
+      assertEquals("Object not processed once.", 1, outerp.counts.get(i));
+    }
+    for(int i = 0; i < inner.size(); i++) {
+      assertEquals("Object not processed for each outer object.", outer.size(), innerp.counts.get(i));
+    }
+  }
+
+  /**
+   * Process another block while inside the processor, as happens when the
+   * thread picks up work of the outer run during nested parallelism.
+   */
+  @Test
+  public void testReentry() {
+    final DBIDRange ids = DBIDUtil.generateStaticDBIDRange(100);
+    final ParallelExecutor.BlockArrayRunner[] runner = new ParallelExecutor.BlockArrayRunner[1];
+    CountingProcessor p = new CountingProcessor(ids, id -> {
+      if(ids.getOffset(id) == 0) {
+        runner[0].process(50, 100);
+      }
+    });
+    runner[0] = new ParallelExecutor.BlockArrayRunner(ids, new Processor[] { p });
+    runner[0].process(0, 50);
+    runner[0].cleanup();
+    assertEquals("Processor re-entered.", 0, p.reentered);
+    assertEquals("Objects not merged.", ids.size(), p.total);
+    for(int i = 0; i < ids.size(); i++) {
+      assertEquals("Object not processed once.", 1, p.counts.get(i));
+    }
+  }
+
+  /**
+   * Processor counting the objects, and detecting re-entry.
+   *
+   * @author Erich Schubert
+   */
+  private static class CountingProcessor implements Processor {
+    /**
+     * IDs to process.
+     */
+    DBIDRange ids;
+
+    /**
+     * Nested work to run for each object, may be {@code null}.
+     */
+    Consumer<DBIDRef> nested;
+
+    /**
+     * Number of times each object was processed.
+     */
+    AtomicIntegerArray counts;
+
+    /**
+     * Number of re-entered calls.
+     */
+    int reentered;
+
+    /**
+     * Total number of objects, merged in cleanup.
+     */
+    int total;
+
+    /**
+     * Constructor.
+     *
+     * @param ids IDs to process
+     * @param nested Nested work to run for each object, may be {@code null}
+     */
+    CountingProcessor(DBIDRange ids, Consumer<DBIDRef> nested) {
+      this.ids = ids;
+      this.nested = nested;
+      this.counts = new AtomicIntegerArray(ids.size());
+    }
+
+    @Override
+    public Instance instantiate(Executor executor) {
+      return new Instance();
+    }
+
+    @Override
+    public synchronized void cleanup(Processor.Instance inst) {
+      Instance instance = (Instance) inst;
+      reentered += instance.reentered;
+      total += instance.count;
+    }
+
+    /**
+     * Instance for a single thread.
+     *
+     * @author Erich Schubert
+     */
+    private class Instance implements Processor.Instance {
+      /**
+       * Flag to detect re-entry.
+       */
+      boolean busy;
+
+      /**
+       * Number of re-entered calls.
+       */
+      int reentered;
+
+      /**
+       * Number of objects processed.
+       */
+      int count;
+
+      @Override
+      public void map(DBIDRef id) {
+        if(busy) {
+          ++reentered;
+        }
+        busy = true;
+        counts.incrementAndGet(ids.getOffset(id));
+        if(nested != null) {
+          nested.accept(id);
+        }
+        ++count;
+        busy = false;
+      }
+    }
+  }
+}
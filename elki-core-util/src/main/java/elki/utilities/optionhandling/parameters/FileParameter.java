@@ -24,6 +24,7 @@ import java.io.File;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.function.Consumer;
@@ -46,7 +47,8 @@ import elki.utilities.optionhandling.parameterization.Parameterization;
 public class FileParameter extends AbstractParameter<FileParameter, URI> {
   /**
    * Available file types: {@link #INPUT_FILE} denotes an input file,
-   * {@link #OUTPUT_FILE} denotes an output file.
+   * {@link #OUTPUT_FILE} denotes an output file, {@link #DIRECTORY} denotes a
+   * directory.
    */
   public enum FileType {
     /**
@@ -56,7 +58,11 @@ public class FileParameter extends AbstractParameter<FileParameter, URI> {
     /**
      * Output files
      */
-    OUTPUT_FILE
+    OUTPUT_FILE,
+    /**
+     * Directories (created if necessary)
+     */
+    DIRECTORY
   }
 
   /**
@@ -138,21 +144,27 @@ public class FileParameter extends AbstractParameter<FileParameter, URI> {
         throw new WrongParameterValueException("Given file \"" + obj + "\" cannot be read, access denied!\n" + e.getMessage());
       }
     }
+    if(fileType.equals(FileType.DIRECTORY) && "file".equals(obj.getScheme())) {
+      Path path = Paths.get(obj);
+      if(Files.exists(path) && !Files.isDirectory(path)) {
+        throw new WrongParameterValueException("Given file " + obj + " for parameter \"" + getOptionID().getName() + "\" is not a directory!");
+      }
+    }
     return true;
   }
 
   /**
    * Returns a string representation of the parameter's type.
    * 
-   * @return &quot;&lt;file_&gt;&quot;
+   * @return &quot;&lt;file&gt;&quot; or &quot;&lt;dir&gt;&quot;
    */
   @Override
   public String getSyntax() {
-    return "<file>";
+    return fileType.equals(FileType.DIRECTORY) ? "<dir>" : "<file>";
   }
 
   /**
-   * Get the file type (input / output)
+   * Get the file type (input / output / directory)
    * 
    * @return file type
    */
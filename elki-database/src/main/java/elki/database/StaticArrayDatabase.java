@@ -22,15 +22,19 @@ package elki.database;
 
 import java.util.Collection;
 
+import elki.data.DoubleVector;
 import elki.data.type.SimpleTypeInformation;
+import elki.data.type.VectorFieldTypeInformation;
 import elki.database.datastore.DataStoreFactory;
 import elki.database.datastore.DataStoreUtil;
 import elki.database.datastore.WritableDataStore;
 import elki.database.ids.ArrayStaticDBIDs;
 import elki.database.ids.DBIDArrayIter;
+import elki.database.ids.DBIDRange;
 import elki.database.ids.DBIDUtil;
 import elki.database.ids.DBIDs;
 import elki.database.relation.DBIDView;
+import elki.database.relation.DenseDoubleVectorRelation;
 import elki.database.relation.MaterializedRelation;
 import elki.database.relation.Relation;
 import elki.datasource.DatabaseConnection;
@@ -42,7 +46,9 @@ import elki.logging.Logging;
 import elki.logging.statistics.Duration;
 import elki.result.Metadata;
 import elki.utilities.documentation.Description;
+import elki.utilities.optionhandling.OptionID;
 import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.Flag;
 import elki.utilities.optionhandling.parameters.ObjectListParameter;
 import elki.utilities.optionhandling.parameters.ObjectParameter;
 
@@ -50,6 +56,12 @@ import elki.utilities.optionhandling.parameters.ObjectParameter;
  * This database class uses array-based storage and thus does not allow for
  * dynamic insert, delete and update operations. However, array access is
  * expected to be faster and use less memory.
+ * <p>
+ * Optionally, columns of {@link DoubleVector}s of a single dimensionality can
+ * be stored in a {@link DenseDoubleVectorRelation}, which uses less memory and
+ * allows faster linear scans, but allocates a new vector on every access via
+ * {@link Relation#get}. All other columns are stored in a
+ * {@link MaterializedRelation}.
  *
  * @author Arthur Zimek
  * @author Erich Schubert
@@ -81,6 +93,11 @@ public class StaticArrayDatabase extends AbstractDatabase {
    */
   protected DatabaseConnection databaseConnection;
 
+  /**
+   * Store double vectors in a dense relation.
+   */
+  protected boolean dense;
+
   /**
    * Constructor.
    *
@@ -88,8 +105,20 @@ public class StaticArrayDatabase extends AbstractDatabase {
    * @param indexFactories Indexes to add
    */
   public StaticArrayDatabase(DatabaseConnection databaseConnection, Collection<? extends IndexFactory<?>> indexFactories) {
+    this(databaseConnection, indexFactories, false);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param databaseConnection Database connection to get the initial data from.
+   * @param indexFactories Indexes to add
+   * @param dense Store double vectors in a dense relation, where possible
+   */
+  public StaticArrayDatabase(DatabaseConnection databaseConnection, Collection<? extends IndexFactory<?>> indexFactories, boolean dense) {
     super();
     this.databaseConnection = databaseConnection;
+    this.dense = dense;
     this.ids = null;
     this.idrep = null;
 
@@ -150,11 +179,14 @@ public class StaticArrayDatabase extends AbstractDatabase {
       SimpleTypeInformation<?> meta = bundle.meta(i);
       @SuppressWarnings("unchecked")
       SimpleTypeInformation<Object> ometa = (SimpleTypeInformation<Object>) meta;
-      WritableDataStore<Object> store = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_DB, ometa.getRestrictionClass());
-      for(it.seek(0); it.valid(); it.advance()) {
-        store.put(it, bundle.data(it.getOffset(), i));
+      Relation<?> relation = dense ? makeDenseRelation(bundle, i) : null;
+      if(relation == null) {
+        WritableDataStore<Object> store = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_DB, ometa.getRestrictionClass());
+        for(it.seek(0); it.valid(); it.advance()) {
+          store.put(it, bundle.data(it.getOffset(), i));
+        }
+        relation = new MaterializedRelation<>(null, ometa, ids, store);
       }
-      Relation<?> relation = new MaterializedRelation<>(null, ometa, ids, store);
       relations.add(relation);
       Metadata.hierarchyOf(this).addChild(relation);
 
@@ -180,6 +212,36 @@ public class StaticArrayDatabase extends AbstractDatabase {
     eventManager.fireObjectsInserted(ids);
   }
 
+  /**
+   * Store a column of double vectors of the same dimensionality in a single
+   * array, if possible.
+   *
+   * @param bundle Bundle
+   * @param col Column
+   * @return Dense relation, or {@code null} if not applicable
+   */
+  @SuppressWarnings("unchecked")
+  private Relation<?> makeDenseRelation(MultipleObjectsBundle bundle, int col) {
+    SimpleTypeInformation<?> meta = bundle.meta(col);
+    if(!DenseDoubleVectorRelation.isSupported(meta, ids)) {
+      return null;
+    }
+    final int dim = ((VectorFieldTypeInformation<?>) meta).getDimensionality();
+    final int size = ids.size();
+    // Verify that all objects are plain double vectors first:
+    for(int j = 0; j < size; j++) {
+      Object o = bundle.data(j, col);
+      if(o == null || o.getClass() != DoubleVector.class || ((DoubleVector) o).getDimensionality() != dim) {
+        return null;
+      }
+    }
+    double[] data = new double[size * dim];
+    for(int j = 0; j < size; j++) {
+      System.arraycopy(((DoubleVector) bundle.data(j, col)).getValues(), 0, data, j * dim, dim);
+    }
+    return new DenseDoubleVectorRelation(null, (VectorFieldTypeInformation<DoubleVector>) meta, (DBIDRange) ids, data);
+  }
+
   @Override
   protected Logging getLogger() {
     return LOG;
@@ -191,6 +253,12 @@ public class StaticArrayDatabase extends AbstractDatabase {
    * @author Erich Schubert
    */
   public static class Par extends AbstractDatabase.Par {
+    /**
+     * Flag to store double vectors of a single dimensionality in one
+     * contiguous array.
+     */
+    public static final OptionID DENSE_ID = new OptionID("db.dense", "Store double vectors of a single dimensionality in one contiguous array. This saves memory and speeds up linear scans, but every access to a single vector creates a copy.");
+
     /**
      * Holds the database connection to get the initial data from.
      */
@@ -201,6 +269,11 @@ public class StaticArrayDatabase extends AbstractDatabase {
      */
     private Collection<? extends IndexFactory<?>> indexFactories;
 
+    /**
+     * Store double vectors in a dense relation.
+     */
+    private boolean dense;
+
     @Override
     public void configure(Parameterization config) {
       super.configure(config);
@@ -211,11 +284,12 @@ public class StaticArrayDatabase extends AbstractDatabase {
       new ObjectListParameter<IndexFactory<?>>(INDEX_ID, IndexFactory.class) //
           .setOptional(true) //
           .grab(config, x -> indexFactories = x);
+      new Flag(DENSE_ID).grab(config, x -> dense = x);
     }
 
     @Override
     public StaticArrayDatabase make() {
-      return new StaticArrayDatabase(databaseConnection, indexFactories);
+      return new StaticArrayDatabase(databaseConnection, indexFactories, dense);
     }
   }
 }
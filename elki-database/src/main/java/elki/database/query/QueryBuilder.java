@@ -23,7 +23,12 @@ package elki.database.query;
 import java.util.Objects;
 
 import elki.data.NumberVector;
+import elki.database.datastore.DataStoreFactory;
+import elki.database.datastore.DataStoreUtil;
+import elki.database.datastore.WritableDataStore;
 import elki.database.ids.DBIDRef;
+import elki.database.ids.DBIDs;
+import elki.database.ids.KNNList;
 import elki.database.query.distance.DistanceQuery;
 import elki.database.query.distance.LinearScanEuclideanPrioritySearcher;
 import elki.database.query.distance.LinearScanPrioritySearcher;
@@ -426,6 +431,27 @@ public class QueryBuilder<O> {
     return new LinearScanKNNByDBID<>(distanceQuery);
   }
 
+  /**
+   * Compute the k nearest neighbors for a batch of queries at once.
+   * <p>
+   * This uses the batch search of the query implementation, which can be
+   * substantially faster than issuing many independent queries.
+   *
+   * @param queries Query ids
+   * @param k Number of neighbors
+   * @return kNN lists of all queries, or {@code null} if no (optimized) query
+   *         was available
+   */
+  public WritableDataStore<KNNList> kNNByDBIDs(DBIDs queries, int k) {
+    KNNSearcher<DBIDRef> knnq = kNNByDBID(k);
+    if(knnq == null) {
+      return null;
+    }
+    WritableDataStore<KNNList> out = DataStoreUtil.makeStorage(queries, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, KNNList.class);
+    knnq.getKNNs(queries, id -> id, k, out);
+    return out;
+  }
+
   /**
    * Build a range query; if possible also give a maximum query radius.
    *
@@ -20,9 +20,14 @@
  */
 package elki.database.query.knn;
 
+import java.util.function.Function;
+
+import elki.data.DoubleVector;
 import elki.data.NumberVector;
+import elki.database.datastore.WritableDataStore;
 import elki.database.ids.*;
 import elki.database.query.distance.PrimitiveDistanceQuery;
+import elki.database.relation.DenseDoubleVectorRelation;
 import elki.database.relation.Relation;
 import elki.distance.minkowski.EuclideanDistance;
 import elki.distance.minkowski.SquaredEuclideanDistance;
@@ -45,6 +50,21 @@ import elki.distance.minkowski.SquaredEuclideanDistance;
  * @param <O> relation object type
  */
 public class LinearScanEuclideanKNNByObject<O extends NumberVector> extends LinearScanPrimitiveKNNByObject<O> {
+  /**
+   * Number of queries processed together in a batch.
+   */
+  private static final int BLOCKSIZE = 64;
+
+  /**
+   * Relation contains {@link DoubleVector}s, so we can use the array values.
+   */
+  private final boolean dense;
+
+  /**
+   * Relation stored in a single array, or {@code null}.
+   */
+  private final DenseDoubleVectorRelation denserel;
+
   /**
    * Constructor.
    *
@@ -53,6 +73,8 @@ public class LinearScanEuclideanKNNByObject<O extends NumberVector> extends Line
   public LinearScanEuclideanKNNByObject(PrimitiveDistanceQuery<O> distanceQuery) {
     super(distanceQuery);
     assert (EuclideanDistance.STATIC.equals(distanceQuery.getDistance()));
+    this.dense = DoubleVector.class.isAssignableFrom(relation.getDataTypeInformation().getRestrictionClass());
+    this.denserel = relation instanceof DenseDoubleVectorRelation ? (DenseDoubleVectorRelation) relation : null;
   }
 
   @Override
@@ -61,10 +83,77 @@ public class LinearScanEuclideanKNNByObject<O extends NumberVector> extends Line
     final Relation<? extends O> relation = this.relation;
     final KNNHeap heap = DBIDUtil.newHeap(k);
     double max = Double.POSITIVE_INFINITY;
+    if(dense) {
+      final double[] q = obj instanceof DoubleVector ? ((DoubleVector) obj).getValues() : obj.toArray();
+      final double[] buf = denserel != null ? new double[denserel.getDimensionality()] : null;
+      for(DBIDIter iter = relation.iterDBIDs(); iter.valid(); iter.advance()) {
+        final double dist = squared.distance(q, denserel != null ? denserel.getValues(iter, buf) : ((DoubleVector) relation.get(iter)).getValues());
+        max = dist <= max ? heap.insert(dist, iter) : max;
+      }
+      return heap.toKNNListSqrt();
+    }
     for(DBIDIter iter = relation.iterDBIDs(); iter.valid(); iter.advance()) {
       final double dist = squared.distance(obj, relation.get(iter));
       max = dist <= max ? heap.insert(dist, iter) : max;
     }
     return heap.toKNNListSqrt();
   }
+
+  /**
+   * Batch kNN search, blocked over query × data tiles: each data vector is
+   * loaded once per block of queries, and compared to the (dense) query
+   * vectors in a tight loop.
+   */
+  @Override
+  public void getKNNs(DBIDs queries, Function<? super DBIDRef, ? extends O> lookup, int k, WritableDataStore<KNNList> out) {
+    final SquaredEuclideanDistance squared = SquaredEuclideanDistance.STATIC;
+    final Relation<? extends O> relation = this.relation;
+    final int bsize = Math.min(BLOCKSIZE, queries.size());
+    final double[][] qv = new double[bsize][];
+    final KNNHeap[] heaps = new KNNHeap[bsize];
+    final double[] max = new double[bsize];
+    final ArrayModifiableDBIDs qids = DBIDUtil.newArray(bsize);
+    double[] buf = new double[denserel != null ? denserel.getDimensionality() : 0];
+    DBIDIter qi = queries.iter();
+    while(qi.valid()) {
+      // Collect the next block of queries:
+      qids.clear();
+      int n = 0;
+      for(; n < bsize && qi.valid(); qi.advance(), n++) {
+        final O q = lookup.apply(qi);
+        qv[n] = q instanceof DoubleVector ? ((DoubleVector) q).getValues() : q.toArray();
+        heaps[n] = DBIDUtil.newHeap(k);
+        max[n] = Double.POSITIVE_INFINITY;
+        qids.add(qi);
+      }
+      // Scan the data once for the entire block:
+      for(DBIDIter iter = relation.iterDBIDs(); iter.valid(); iter.advance()) {
+        if(denserel != null) {
+          denserel.getValues(iter, buf);
+        }
+        else if(dense) {
+          buf = ((DoubleVector) relation.get(iter)).getValues();
+        }
+        else {
+          final O vec = relation.get(iter);
+          final int dim = vec.getDimensionality();
+          if(buf.length != dim) {
+            buf = new double[dim];
+          }
+          for(int d = 0; d < dim; d++) {
+            buf[d] = vec.doubleValue(d);
+          }
+        }
+        for(int i = 0; i < n; i++) {
+          final double dist = squared.distance(qv[i], buf);
+          max[i] = dist <= max[i] ? heaps[i].insert(dist, iter) : max[i];
+        }
+      }
+      DBIDArrayIter it = qids.iter();
+      for(int i = 0; i < n; i++, it.advance()) {
+        out.put(it, heaps[i].toKNNListSqrt());
+        heaps[i] = null;
+      }
+    }
+  }
 }
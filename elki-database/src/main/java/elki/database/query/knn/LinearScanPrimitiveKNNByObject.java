@@ -20,17 +20,23 @@
  */
 package elki.database.query.knn;
 
+import elki.data.DoubleVector;
+import elki.data.NumberVector;
 import elki.database.ids.*;
 import elki.database.query.LinearScanQuery;
 import elki.database.query.distance.PrimitiveDistanceQuery;
+import elki.database.relation.DenseDoubleVectorRelation;
 import elki.database.relation.Relation;
+import elki.distance.DoubleArrayDistance;
 import elki.distance.PrimitiveDistance;
 
 /**
  * Instance of this query for a particular database.
  * <p>
  * This is a subtle optimization: for primitive queries, it is clearly faster to
- * retrieve the query object from the relation only once!
+ * retrieve the query object from the relation only once! For distances on
+ * {@link DoubleVector}s that support it, the distances are computed directly
+ * on the arrays.
  * 
  * @author Erich Schubert
  * @since 0.4.0
@@ -46,6 +52,17 @@ public class LinearScanPrimitiveKNNByObject<O> implements KNNSearcher<O>, Linear
    */
   private PrimitiveDistance<? super O> rawdist;
 
+  /**
+   * Array distance, if the relation contains {@link DoubleVector}s and the
+   * distance supports arrays; {@code null} otherwise.
+   */
+  private DoubleArrayDistance arraydist;
+
+  /**
+   * Relation stored in a single array, or {@code null}.
+   */
+  private final DenseDoubleVectorRelation denserel;
+
   /**
    * Relation to query.
    */
@@ -60,6 +77,10 @@ public class LinearScanPrimitiveKNNByObject<O> implements KNNSearcher<O>, Linear
     super();
     rawdist = distanceQuery.getDistance();
     relation = distanceQuery.getRelation();
+    arraydist = rawdist instanceof DoubleArrayDistance && //
+        DoubleVector.class.isAssignableFrom(relation.getDataTypeInformation().getRestrictionClass()) ? //
+            (DoubleArrayDistance) rawdist : null;
+    denserel = relation instanceof DenseDoubleVectorRelation ? (DenseDoubleVectorRelation) relation : null;
   }
 
   @Override
@@ -68,6 +89,16 @@ public class LinearScanPrimitiveKNNByObject<O> implements KNNSearcher<O>, Linear
     final Relation<? extends O> relation = this.relation;
     KNNHeap heap = DBIDUtil.newHeap(k);
     double max = Double.POSITIVE_INFINITY;
+    if(arraydist != null && obj instanceof NumberVector) {
+      final DoubleArrayDistance arraydist = this.arraydist;
+      final double[] q = obj instanceof DoubleVector ? ((DoubleVector) obj).getValues() : ((NumberVector) obj).toArray();
+      final double[] buf = denserel != null ? new double[denserel.getDimensionality()] : null;
+      for(DBIDIter iter = relation.iterDBIDs(); iter.valid(); iter.advance()) {
+        final double dist = arraydist.distance(q, denserel != null ? denserel.getValues(iter, buf) : ((DoubleVector) relation.get(iter)).getValues());
+        max = dist <= max ? heap.insert(dist, iter) : max;
+      }
+      return heap.toKNNList();
+    }
     for(DBIDIter iter = relation.iterDBIDs(); iter.valid(); iter.advance()) {
       final double dist = rawdist.distance(obj, relation.get(iter));
       max = dist <= max ? heap.insert(dist, iter) : max;
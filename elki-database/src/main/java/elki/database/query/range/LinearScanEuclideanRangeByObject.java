@@ -20,11 +20,13 @@
  */
 package elki.database.query.range;
 
+import elki.data.DoubleVector;
 import elki.data.NumberVector;
 import elki.database.ids.DBIDIter;
 import elki.database.ids.ModifiableDoubleDBIDList;
 import elki.database.query.LinearScanQuery;
 import elki.database.query.distance.DistanceQuery;
+import elki.database.relation.DenseDoubleVectorRelation;
 import elki.database.relation.Relation;
 import elki.distance.minkowski.SquaredEuclideanDistance;
 
@@ -46,6 +48,16 @@ public class LinearScanEuclideanRangeByObject<O extends NumberVector> implements
    */
   private Relation<? extends O> relation;
 
+  /**
+   * Relation contains {@link DoubleVector}s, so we can use the array values.
+   */
+  private final boolean dense;
+
+  /**
+   * Relation stored in a single array, or {@code null}.
+   */
+  private final DenseDoubleVectorRelation denserel;
+
   /**
    * Constructor.
    * 
@@ -54,6 +66,8 @@ public class LinearScanEuclideanRangeByObject<O extends NumberVector> implements
   public LinearScanEuclideanRangeByObject(DistanceQuery<O> distanceQuery) {
     super();
     this.relation = distanceQuery.getRelation();
+    this.dense = DoubleVector.class.isAssignableFrom(relation.getDataTypeInformation().getRestrictionClass());
+    this.denserel = relation instanceof DenseDoubleVectorRelation ? (DenseDoubleVectorRelation) relation : null;
   }
 
   @Override
@@ -62,6 +76,17 @@ public class LinearScanEuclideanRangeByObject<O extends NumberVector> implements
     final SquaredEuclideanDistance squared = SquaredEuclideanDistance.STATIC;
     float frange = Math.nextUp((float) range);
     final double sqrange = frange * frange;
+    if(dense) {
+      final double[] q = obj instanceof DoubleVector ? ((DoubleVector) obj).getValues() : obj.toArray();
+      final double[] buf = denserel != null ? new double[denserel.getDimensionality()] : null;
+      for(DBIDIter iter = relation.iterDBIDs(); iter.valid(); iter.advance()) {
+        final double sqdistance = squared.distance(q, denserel != null ? denserel.getValues(iter, buf) : ((DoubleVector) relation.get(iter)).getValues());
+        if(sqdistance <= sqrange) {
+          result.add(FastMath.sqrt(sqdistance), iter);
+        }
+      }
+      return result;
+    }
     for(DBIDIter iter = relation.iterDBIDs(); iter.valid(); iter.advance()) {
       final double sqdistance = squared.distance(obj, relation.get(iter));
       if(sqdistance <= sqrange) {
@@ -20,17 +20,22 @@
  */
 package elki.database.query.range;
 
+import elki.data.DoubleVector;
+import elki.data.NumberVector;
 import elki.database.ids.*;
 import elki.database.query.LinearScanQuery;
 import elki.database.query.distance.PrimitiveDistanceQuery;
+import elki.database.relation.DenseDoubleVectorRelation;
 import elki.database.relation.Relation;
+import elki.distance.DoubleArrayDistance;
 import elki.distance.PrimitiveDistance;
 
 /**
  * Default linear scan range query class.
  * <p>
  * Subtle optimization: for primitive distances, retrieve the query object only
- * once from the relation.
+ * once from the relation, and compute distances on {@link DoubleVector} arrays
+ * directly if the distance supports this.
  * 
  * @author Erich Schubert
  * @since 0.4.0
@@ -45,6 +50,17 @@ public class LinearScanPrimitiveDistanceRangeByObject<O> implements RangeSearche
    */
   private PrimitiveDistanceQuery<O> distance;
 
+  /**
+   * Array distance, if the relation contains {@link DoubleVector}s and the
+   * distance supports arrays; {@code null} otherwise.
+   */
+  private DoubleArrayDistance arraydist;
+
+  /**
+   * Relation stored in a single array, or {@code null}.
+   */
+  private final DenseDoubleVectorRelation denserel;
+
   /**
    * Constructor.
    * 
@@ -53,12 +69,29 @@ public class LinearScanPrimitiveDistanceRangeByObject<O> implements RangeSearche
   public LinearScanPrimitiveDistanceRangeByObject(PrimitiveDistanceQuery<O> distanceQuery) {
     super();
     this.distance = distanceQuery;
+    final PrimitiveDistance<? super O> rawdist = distanceQuery.getDistance();
+    this.arraydist = rawdist instanceof DoubleArrayDistance && //
+        DoubleVector.class.isAssignableFrom(distanceQuery.getRelation().getDataTypeInformation().getRestrictionClass()) ? //
+            (DoubleArrayDistance) rawdist : null;
+    this.denserel = distanceQuery.getRelation() instanceof DenseDoubleVectorRelation ? (DenseDoubleVectorRelation) distanceQuery.getRelation() : null;
   }
 
   @Override
   public ModifiableDoubleDBIDList getRange(O obj, double range, ModifiableDoubleDBIDList result) {
     final PrimitiveDistance<? super O> rawdist = this.distance.getDistance();
     final Relation<? extends O> relation = this.distance.getRelation();
+    if(arraydist != null && obj instanceof NumberVector) {
+      final DoubleArrayDistance arraydist = this.arraydist;
+      final double[] q = obj instanceof DoubleVector ? ((DoubleVector) obj).getValues() : ((NumberVector) obj).toArray();
+      final double[] buf = denserel != null ? new double[denserel.getDimensionality()] : null;
+      for(DBIDIter iter = relation.iterDBIDs(); iter.valid(); iter.advance()) {
+        final double distance = arraydist.distance(q, denserel != null ? denserel.getValues(iter, buf) : ((DoubleVector) relation.get(iter)).getValues());
+        if(distance <= range) {
+          result.add(distance, iter);
+        }
+      }
+      return result;
+    }
     for(DBIDIter iter = relation.iterDBIDs(); iter.valid(); iter.advance()) {
       final double distance = rawdist.distance(obj, relation.get(iter));
       if(distance <= range) {
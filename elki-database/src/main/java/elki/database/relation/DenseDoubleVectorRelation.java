@@ -0,0 +1,176 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.database.relation;
+
+import java.util.Arrays;
+
+import elki.data.DoubleVector;
+import elki.data.type.SimpleTypeInformation;
+import elki.data.type.VectorFieldTypeInformation;
+import elki.database.ids.DBIDIter;
+import elki.database.ids.DBIDRange;
+import elki.database.ids.DBIDRef;
+import elki.database.ids.DBIDs;
+
+/**
+ * Relation of dense double vectors of the same dimensionality, stored row-wise
+ * in a single {@code double[]} block indexed by the DBID offset.
+ * <p>
+ * This avoids an object and an array header per vector, and keeps the data
+ * contiguous in memory. {@link #get} returns a new {@link DoubleVector} with a
+ * copy of the row; code that scans the data should rather use
+ * {@link #getValues(DBIDRef, double[])} to read rows into a reused buffer.
+ * <p>
+ * The relation is static; it requires a {@link DBIDRange} and at most
+ * {@link #MAX_SIZE} values in total.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class DenseDoubleVectorRelation implements Relation<DoubleVector> {
+  /**
+   * Maximum number of values in the data block.
+   */
+  public static final int MAX_SIZE = Integer.MAX_VALUE - 8;
+
+  /**
+   * Type information.
+   */
+  private final VectorFieldTypeInformation<DoubleVector> type;
+
+  /**
+   * The DBIDs this is defined for.
+   */
+  private final DBIDRange ids;
+
+  /**
+   * Dimensionality.
+   */
+  private final int dim;
+
+  /**
+   * Data block, row-major.
+   */
+  private final double[] data;
+
+  /**
+   * The relation name.
+   */
+  private String name;
+
+  /**
+   * Constructor.
+   *
+   * @param name Name
+   * @param type Type information, with a fixed dimensionality
+   * @param ids IDs
+   * @param data Data block, row-major, of size ids.size() * dim
+   */
+  public DenseDoubleVectorRelation(String name, VectorFieldTypeInformation<DoubleVector> type, DBIDRange ids, double[] data) {
+    super();
+    this.type = type;
+    this.ids = ids;
+    this.name = name;
+    this.dim = type.getDimensionality();
+    this.data = data;
+    assert data.length == ids.size() * dim;
+  }
+
+  /**
+   * Test whether the given data can be stored in a dense relation.
+   *
+   * @param type Type information
+   * @param ids IDs
+   * @return {@code true} if supported
+   */
+  public static boolean isSupported(SimpleTypeInformation<?> type, DBIDs ids) {
+    if(!(ids instanceof DBIDRange) || !(type instanceof VectorFieldTypeInformation) //
+        || type.getRestrictionClass() != DoubleVector.class) {
+      return false;
+    }
+    VectorFieldTypeInformation<?> vtype = (VectorFieldTypeInformation<?>) type;
+    return vtype.mindim() == vtype.maxdim() && vtype.mindim() > 0 //
+        && ids.size() * (long) vtype.mindim() <= MAX_SIZE;
+  }
+
+  @Override
+  public DoubleVector get(DBIDRef id) {
+    final int start = ids.getOffset(id) * dim;
+    return DoubleVector.wrap(Arrays.copyOfRange(data, start, start + dim));
+  }
+
+  /**
+   * Read the values of a vector into a buffer.
+   *
+   * @param id Object ID
+   * @param buf Buffer, of at least the dimensionality
+   * @return Buffer
+   */
+  public double[] getValues(DBIDRef id, double[] buf) {
+    System.arraycopy(data, ids.getOffset(id) * dim, buf, 0, dim);
+    return buf;
+  }
+
+  /**
+   * Get a single value.
+   *
+   * @param id Object ID
+   * @param d Dimension
+   * @return Value
+   */
+  public double doubleValue(DBIDRef id, int d) {
+    return data[ids.getOffset(id) * dim + d];
+  }
+
+  /**
+   * Get the dimensionality of the vectors.
+   *
+   * @return Dimensionality
+   */
+  public int getDimensionality() {
+    return dim;
+  }
+
+  @Override
+  public VectorFieldTypeInformation<DoubleVector> getDataTypeInformation() {
+    return type;
+  }
+
+  @Override
+  public DBIDRange getDBIDs() {
+    return ids;
+  }
+
+  @Override
+  public DBIDIter iterDBIDs() {
+    return ids.iter();
+  }
+
+  @Override
+  public int size() {
+    return ids.size();
+  }
+
+  @Override
+  public String getLongName() {
+    return name != null ? name : type.toString();
+  }
+}
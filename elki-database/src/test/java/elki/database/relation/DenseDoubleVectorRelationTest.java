@@ -0,0 +1,100 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.database.relation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import elki.data.DoubleVector;
+import elki.data.NumberVector;
+import elki.data.type.TypeUtil;
+import elki.database.Database;
+import elki.database.StaticArrayDatabase;
+import elki.database.ids.DBIDIter;
+import elki.database.ids.DoubleDBIDListIter;
+import elki.database.ids.KNNList;
+import elki.database.query.QueryBuilder;
+import elki.database.query.knn.KNNSearcher;
+import elki.datasource.ArrayAdapterDatabaseConnection;
+import elki.distance.minkowski.EuclideanDistance;
+
+/**
+ * Test the dense relation of {@link StaticArrayDatabase}.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class DenseDoubleVectorRelationTest {
+  @Test
+  public void testDense() {
+    Random rnd = new Random(0L);
+    double[][] data = new double[500][];
+    for(int i = 0; i < data.length; i++) {
+      data[i] = new double[] { rnd.nextDouble(), rnd.nextDouble(), rnd.nextInt(10) };
+    }
+    Database db = new StaticArrayDatabase(new ArrayAdapterDatabaseConnection(data), null, true);
+    db.initialize();
+    Relation<DoubleVector> rel = db.getRelation(TypeUtil.DOUBLE_VECTOR_FIELD);
+    assertTrue("Dense relation not used.", rel instanceof DenseDoubleVectorRelation);
+    DenseDoubleVectorRelation dense = (DenseDoubleVectorRelation) rel;
+    assertEquals(3, dense.getDimensionality());
+
+    double[] buf = new double[3];
+    int i = 0;
+    for(DBIDIter it = rel.iterDBIDs(); it.valid(); it.advance(), i++) {
+      assertArrayEquals(data[i], rel.get(it).toArray(), 0.);
+      assertArrayEquals(data[i], dense.getValues(it, buf), 0.);
+      assertEquals(data[i][2], dense.doubleValue(it, 2), 0.);
+    }
+
+    // Linear scan on the data block:
+    KNNSearcher<DoubleVector> knnq = new QueryBuilder<>(rel, EuclideanDistance.STATIC).linearOnly().kNNByObject(10);
+    DoubleVector q = DoubleVector.wrap(new double[] { .5, .5, 5 });
+    KNNList knn = knnq.getKNN(q, 10);
+    assertEquals(10, knn.size());
+    for(DoubleDBIDListIter it = knn.iter(); it.valid(); it.advance()) {
+      assertEquals(EuclideanDistance.STATIC.distance(q, rel.get(it)), it.doubleValue(), 0.);
+    }
+  }
+
+  @Test
+  public void testVariableDimensionality() {
+    double[][] data = { { 1, 2 }, { 1, 2, 3 }, { 4, 5 } };
+    Database db = new StaticArrayDatabase(new ArrayAdapterDatabaseConnection(data), null, true);
+    db.initialize();
+    Relation<NumberVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_VARIABLE_LENGTH);
+    assertTrue("Dense relation used for variable dimensionality.", rel instanceof MaterializedRelation);
+  }
+
+  @Test
+  public void testNotDefault() {
+    double[][] data = { { 1, 2 }, { 3, 4 }, { 5, 6 } };
+    Database db = new StaticArrayDatabase(new ArrayAdapterDatabaseConnection(data));
+    db.initialize();
+    Relation<DoubleVector> rel = db.getRelation(TypeUtil.DOUBLE_VECTOR_FIELD);
+    assertTrue("Dense relation used by default.", rel instanceof MaterializedRelation);
+  }
+}
@@ -23,6 +23,9 @@ package elki.index.lsh;
 import java.util.ArrayList;
 
 import elki.data.type.TypeInformation;
+import elki.database.datastore.DataStoreFactory;
+import elki.database.datastore.DataStoreUtil;
+import elki.database.datastore.WritableDataStore;
 import elki.database.ids.*;
 import elki.database.query.QueryBuilder;
 import elki.database.query.distance.DistanceQuery;
@@ -38,6 +41,10 @@ import elki.index.lsh.hashfunctions.LocalitySensitiveHashFunction;
 import elki.logging.Logging;
 import elki.logging.progress.FiniteProgress;
 import elki.logging.statistics.LongStatistic;
+import elki.parallel.Executor;
+import elki.parallel.ParallelExecutor;
+import elki.parallel.processor.Processor;
+import elki.utilities.documentation.Reference;
 import elki.utilities.optionhandling.OptionID;
 import elki.utilities.optionhandling.Parameterizer;
 import elki.utilities.optionhandling.constraints.CommonConstraints;
@@ -45,10 +52,22 @@ import elki.utilities.optionhandling.parameterization.Parameterization;
 import elki.utilities.optionhandling.parameters.IntParameter;
 import elki.utilities.optionhandling.parameters.ObjectParameter;
 
-import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
-
 /**
  * Locality Sensitive Hashing.
+ * <p>
+ * Each hash table is stored in a compressed (CSR) layout: an array of bucket
+ * offsets, and an array of object positions ordered by bucket. The hash
+ * values are computed in parallel when building the index.
+ * <p>
+ * With more than one probe, neighboring buckets are also searched (multi-probe
+ * LSH), which allows using fewer hash tables for the same recall.
+ * <p>
+ * Reference:
+ * <p>
+ * Q. Lv, W. Josephson, Z. Wang, M. Charikar, K. Li<br>
+ * Multi-Probe LSH: Efficient Indexing for High-Dimensional Similarity
+ * Search<br>
+ * Proc. 33rd Int. Conf. on Very Large Data Bases (VLDB 2007)
  *
  * @author Erich Schubert
  * @since 0.6.0
@@ -58,6 +77,11 @@ import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
  *
  * @param <V> Object type to index
  */
+@Reference(authors = "Q. Lv, W. Josephson, Z. Wang, M. Charikar, K. Li", //
+    title = "Multi-Probe LSH: Efficient Indexing for High-Dimensional Similarity Search", //
+    booktitle = "Proc. 33rd Int. Conf. on Very Large Data Bases (VLDB 2007)", //
+    url = "http://www.vldb.org/conf/2007/papers/research/p950-lv.pdf", //
+    bibkey = "DBLP:conf/vldb/LvJWCL07")
 public class InMemoryLSHIndex<V> implements IndexFactory<V> {
   /**
    * Class logger
@@ -79,6 +103,11 @@ public class InMemoryLSHIndex<V> implements IndexFactory<V> {
    */
   int numberOfBuckets;
 
+  /**
+   * Number of buckets to probe in each table.
+   */
+  int probes;
+
   /**
    * Constructor.
    *
@@ -87,15 +116,28 @@ public class InMemoryLSHIndex<V> implements IndexFactory<V> {
    * @param numberOfBuckets Number of buckets to use.
    */
   public InMemoryLSHIndex(LocalitySensitiveHashFunctionFamily<? super V> family, int l, int numberOfBuckets) {
+    this(family, l, numberOfBuckets, 1);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param family Projection family
+   * @param l Number of hash tables to use
+   * @param numberOfBuckets Number of buckets to use.
+   * @param probes Number of buckets to probe in each table.
+   */
+  public InMemoryLSHIndex(LocalitySensitiveHashFunctionFamily<? super V> family, int l, int numberOfBuckets, int probes) {
     super();
     this.family = family;
     this.l = l;
     this.numberOfBuckets = numberOfBuckets;
+    this.probes = probes;
   }
 
   @Override
   public Instance instantiate(Relation<V> relation) {
-    return new Instance(relation, family.generateHashFunctions(relation, l), numberOfBuckets);
+    return new Instance(relation, family.generateHashFunctions(relation, l), numberOfBuckets, probes);
   }
 
   @Override
@@ -117,81 +159,108 @@ public class InMemoryLSHIndex<V> implements IndexFactory<V> {
     ArrayList<? extends LocalitySensitiveHashFunction<? super V>> hashfunctions;
 
     /**
-     * The actual table
+     * Indexed objects; the hash tables store positions in this array.
+     */
+    ArrayDBIDs ids;
+
+    /**
+     * Bucket offsets of each hash table, of length {@code numberOfBuckets+1}.
      */
-    ArrayList<Int2ObjectOpenHashMap<DBIDs>> hashtables;
+    int[][] offsets;
+
+    /**
+     * Object positions of each hash table, ordered by bucket.
+     */
+    int[][] contents;
 
     /**
      * Number of buckets to use.
      */
     private int numberOfBuckets;
 
+    /**
+     * Number of buckets to probe in each table.
+     */
+    private int probes;
+
     /**
      * Constructor.
      *
      * @param relation Relation to index.
      * @param hashfunctions Hash functions.
+     * @param numberOfBuckets Number of buckets to use.
+     * @param probes Number of buckets to probe in each table.
      */
-    public Instance(Relation<V> relation, ArrayList<? extends LocalitySensitiveHashFunction<? super V>> hashfunctions, int numberOfBuckets) {
+    public Instance(Relation<V> relation, ArrayList<? extends LocalitySensitiveHashFunction<? super V>> hashfunctions, int numberOfBuckets, int probes) {
       super(relation);
       this.hashfunctions = hashfunctions;
       this.numberOfBuckets = numberOfBuckets;
+      this.probes = probes;
     }
 
     @Override
     public void initialize() {
       final int numhash = hashfunctions.size();
-      hashtables = new ArrayList<>(numhash);
-      for(int i = 0; i < numhash; i++) {
-        hashtables.add(new Int2ObjectOpenHashMap<DBIDs>(numberOfBuckets));
+      ids = DBIDUtil.ensureArray(relation.getDBIDs());
+      // Allocate sequentially, so the parallel workers only modify the arrays:
+      WritableDataStore<int[]> buckets = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_TEMP | DataStoreFactory.HINT_HOT, int[].class);
+      for(DBIDIter iter = ids.iter(); iter.valid(); iter.advance()) {
+        buckets.put(iter, new int[numhash]);
       }
+      FiniteProgress progress = LOG.isVerbose() ? new FiniteProgress("Building LSH index", ids.size(), LOG) : null;
+      ParallelExecutor.run(ids, progress, LOG, new HashProcessor(buckets));
+      LOG.ensureCompleted(progress);
 
-      // TODO: We assume all hash functions have the same dimensionality.
-      double[] buf = new double[hashfunctions.get(0).getNumberOfProjections()];
-      FiniteProgress progress = LOG.isVerbose() ? new FiniteProgress("Building LSH index", relation.size(), LOG) : null;
-      int expect = Math.max(2, (int) Math.ceil(relation.size() / (double) numberOfBuckets));
-      for(DBIDIter iter = relation.getDBIDs().iter(); iter.valid(); iter.advance()) {
-        V obj = relation.get(iter);
+      // Counting sort into the compressed table layout:
+      offsets = new int[numhash][numberOfBuckets + 1];
+      contents = new int[numhash][ids.size()];
+      for(DBIDIter iter = ids.iter(); iter.valid(); iter.advance()) {
+        final int[] b = buckets.get(iter);
         for(int i = 0; i < numhash; i++) {
-          final Int2ObjectOpenHashMap<DBIDs> table = hashtables.get(i);
-          final LocalitySensitiveHashFunction<? super V> hashfunc = hashfunctions.get(i);
-          // Get the initial (unbounded) hash code:
-          int hash = hashfunc.hashObject(obj, buf);
-          // Reduce to hash table size
-          int bucket = hash % numberOfBuckets;
-          DBIDs cur = table.get(bucket);
-          if(cur == null) {
-            table.put(bucket, DBIDUtil.deref(iter));
-          }
-          else if(cur.size() > 1) {
-            ((ModifiableDBIDs) cur).add(iter);
-          }
-          else {
-            ModifiableDBIDs newbuck = DBIDUtil.newArray(expect);
-            newbuck.addDBIDs(cur);
-            newbuck.add(iter);
-            table.put(bucket, newbuck);
-          }
+          ++offsets[i][b[i] + 1];
         }
-        LOG.incrementProcessed(progress);
       }
-      LOG.ensureCompleted(progress);
+      int[] next = new int[numberOfBuckets];
+      for(int i = 0; i < numhash; i++) {
+        final int[] off = offsets[i], con = contents[i];
+        for(int j = 1; j <= numberOfBuckets; j++) {
+          off[j] += off[j - 1];
+        }
+        System.arraycopy(off, 0, next, 0, numberOfBuckets);
+        for(DBIDArrayIter iter = ids.iter(); iter.valid(); iter.advance()) {
+          con[next[buckets.get(iter)[i]]++] = iter.getOffset();
+        }
+      }
+      buckets.destroy();
       if(LOG.isStatistics()) {
         int min = Integer.MAX_VALUE, max = 0;
         for(int i = 0; i < numhash; i++) {
-          final Int2ObjectOpenHashMap<DBIDs> table = hashtables.get(i);
-          for(DBIDs set : table.values()) {
-            final int size = set.size();
-            min = size < min ? size : min;
-            max = size > max ? size : max;
+          final int[] off = offsets[i];
+          for(int j = 0; j < numberOfBuckets; j++) {
+            final int size = off[j + 1] - off[j];
+            if(size > 0) {
+              min = size < min ? size : min;
+              max = size > max ? size : max;
+            }
           }
         }
         LOG.statistics(new LongStatistic(this.getClass().getName() + ".fill.min", min));
         LOG.statistics(new LongStatistic(this.getClass().getName() + ".fill.max", max));
-        LOG.statistics(new LongStatistic(this.getClass().getName() + ".hashtables", hashtables.size()));
+        LOG.statistics(new LongStatistic(this.getClass().getName() + ".hashtables", numhash));
       }
     }
 
+    /**
+     * Reduce a hash code to a bucket number.
+     *
+     * @param hash Hash code
+     * @return Bucket number
+     */
+    private int bucket(int hash) {
+      final int bucket = hash % numberOfBuckets;
+      return bucket < 0 ? bucket + numberOfBuckets : bucket;
+    }
+
     @Override
     public Logging getLogger() {
       return LOG;
@@ -207,7 +276,7 @@ public class InMemoryLSHIndex<V> implements IndexFactory<V> {
     @Override
     public RangeSearcher<V> rangeByObject(DistanceQuery<V> distanceQuery, double maxradius, int flags) {
       return (flags & QueryBuilder.FLAG_EXACT_ONLY) == 0 && // approximate
-          !family.isCompatible(distanceQuery.getDistance()) ? // compatible
+          family.isCompatible(distanceQuery.getDistance()) ? // compatible
               new LSHRangeQuery(distanceQuery) : null;
     }
 
@@ -219,26 +288,99 @@ public class InMemoryLSHIndex<V> implements IndexFactory<V> {
      */
     protected DBIDs getCandidates(V obj) {
       ModifiableDBIDs candidates = null;
-      final int numhash = hashtables.size();
+      final int numhash = hashfunctions.size();
       double[] buf = new double[hashfunctions.get(0).getNumberOfProjections()];
+      int[] hashes = new int[probes];
+      DBIDArrayIter iter = ids.iter();
       for(int i = 0; i < numhash; i++) {
-        final Int2ObjectOpenHashMap<DBIDs> table = hashtables.get(i);
-        final LocalitySensitiveHashFunction<? super V> hashfunc = hashfunctions.get(i);
-        // Get the initial (unbounded) hash code:
-        int hash = hashfunc.hashObject(obj, buf);
-        // Reduce to hash table size
-        int bucket = hash % numberOfBuckets;
-        DBIDs cur = table.get(bucket);
-        if(cur != null) {
+        final int[] off = offsets[i], con = contents[i];
+        final int n = hashfunctions.get(i).hashProbes(obj, buf, hashes);
+        for(int p = 0; p < n; p++) {
+          final int bucket = bucket(hashes[p]);
+          final int begin = off[bucket], end = off[bucket + 1];
+          if(begin == end) {
+            continue;
+          }
           if(candidates == null) {
-            candidates = DBIDUtil.newHashSet(cur.size() * numhash);
+            candidates = DBIDUtil.newHashSet((end - begin) * numhash);
+          }
+          for(int j = begin; j < end; j++) {
+            candidates.add(iter.seek(con[j]));
           }
-          candidates.addDBIDs(cur);
         }
       }
       return (candidates == null) ? DBIDUtil.EMPTYDBIDS : candidates;
     }
 
+    /**
+     * Processor to compute the buckets of each object in parallel.
+     *
+     * @author Erich Schubert
+     */
+    private class HashProcessor implements Processor {
+      /**
+       * Output storage, one bucket per hash table.
+       */
+      private WritableDataStore<int[]> buckets;
+
+      /**
+       * Constructor.
+       *
+       * @param buckets Output storage
+       */
+      HashProcessor(WritableDataStore<int[]> buckets) {
+        this.buckets = buckets;
+      }
+
+      @Override
+      public Hasher instantiate(Executor executor) {
+        return new Hasher(buckets);
+      }
+
+      @Override
+      public void cleanup(Processor.Instance inst) {
+        // Nothing to merge.
+      }
+    }
+
+    /**
+     * Per-thread instance computing the buckets of each object.
+     *
+     * @author Erich Schubert
+     */
+    private class Hasher implements Processor.Instance {
+      /**
+       * Output storage, one bucket per hash table.
+       */
+      private WritableDataStore<int[]> buckets;
+
+      /**
+       * Projection buffer.
+       */
+      private double[] buf;
+
+      /**
+       * Constructor.
+       *
+       * @param buckets Output storage
+       */
+      Hasher(WritableDataStore<int[]> buckets) {
+        this.buckets = buckets;
+        // TODO: We assume all hash functions have the same dimensionality.
+        this.buf = new double[hashfunctions.get(0).getNumberOfProjections()];
+      }
+
+      @Override
+      public void map(DBIDRef id) {
+        final V obj = relation.get(id);
+        final int[] b = buckets.get(id);
+        for(int i = 0; i < b.length; i++) {
+          // Get the initial (unbounded) hash code, reduce to table size:
+          b[i] = bucket(hashfunctions.get(i).hashObject(obj, buf));
+        }
+      }
+    }
+
     /**
      * Class for handling kNN queries against the LSH index.
      *
@@ -320,6 +462,11 @@ public class InMemoryLSHIndex<V> implements IndexFactory<V> {
      */
     public static final OptionID BUCKETS_ID = new OptionID("lsh.buckets", "Number of hash buckets to use.");
 
+    /**
+     * Number of buckets to probe in each hash table.
+     */
+    public static final OptionID PROBES_ID = new OptionID("lsh.probes", "Number of buckets to probe in each hash table (multi-probe LSH).");
+
     /**
      * LSH hash function family to use.
      */
@@ -335,6 +482,11 @@ public class InMemoryLSHIndex<V> implements IndexFactory<V> {
      */
     int numberOfBuckets;
 
+    /**
+     * Number of buckets to probe in each table.
+     */
+    int probes;
+
     @Override
     public void configure(Parameterization config) {
       new ObjectParameter<LocalitySensitiveHashFunctionFamily<? super V>>(FAMILY_ID, LocalitySensitiveHashFunctionFamily.class) //
@@ -346,11 +498,14 @@ public class InMemoryLSHIndex<V> implements IndexFactory<V> {
           .setDefaultValue(7919) // Primes work best, apparently.
           .addConstraint(CommonConstraints.GREATER_THAN_ONE_INT) //
           .grab(config, x -> numberOfBuckets = x);
+      new IntParameter(PROBES_ID, 1) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+          .grab(config, x -> probes = x);
     }
 
     @Override
     public InMemoryLSHIndex<V> make() {
-      return new InMemoryLSHIndex<>(family, l, numberOfBuckets);
+      return new InMemoryLSHIndex<>(family, l, numberOfBuckets, probes);
     }
   }
 }
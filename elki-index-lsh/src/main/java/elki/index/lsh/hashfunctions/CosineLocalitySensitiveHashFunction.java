@@ -81,6 +81,29 @@ public class CosineLocalitySensitiveHashFunction implements LocalitySensitiveHas
     return hashValue;
   }
 
+  @Override
+  public int hashProbes(NumberVector obj, double[] buf, int[] hashes) {
+    final int hashValue = hashObject(obj, buf);
+    hashes[0] = hashValue;
+    if(hashes.length == 1) {
+      return 1;
+    }
+    // Flipping bits of projections close to the hyperplane first:
+    PerturbationSequence seq = new PerturbationSequence(buf.length, 0);
+    for(int i = 0; i < buf.length; i++) {
+      seq.add(i, buf[i] * buf[i]);
+    }
+    int n = 1;
+    while(n < hashes.length && seq.next()) {
+      int h = hashValue;
+      for(int j = 0; j < seq.size(); j++) {
+        h ^= 1 << seq.get(j);
+      }
+      hashes[n++] = h;
+    }
+    return n;
+  }
+
   @Override
   public int getNumberOfProjections() {
     return projection.getOutputDimensionality();
@@ -46,6 +46,23 @@ public interface LocalitySensitiveHashFunction<V> {
    */
   int hashObject(V obj, double[] buf);
 
+  /**
+   * Compute the hash values for multi-probe LSH: the hash value of the object
+   * itself, followed by the hash values of the most promising neighboring
+   * buckets.
+   * <p>
+   * The default implementation only produces the hash value of the object.
+   *
+   * @param obj Object to hash
+   * @param buf Buffer, sized according to the number of projections.
+   * @param hashes Output array, its length is the maximum number of probes.
+   * @return Number of hash values produced
+   */
+  default int hashProbes(V obj, double[] buf, int[] hashes) {
+    hashes[0] = hashObject(obj, buf);
+    return 1;
+  }
+
   /**
    * Get the number of projections performed.
    *
@@ -118,6 +118,39 @@ public class MultipleProjectionsLocalitySensitiveHashFunction implements Localit
     return fastModPrime(t1sum);
   }
 
+  @Override
+  public int hashProbes(NumberVector vec, double[] buf, int[] hashes) {
+    if(hashes.length == 1) {
+      hashes[0] = hashObject(vec, buf);
+      return 1;
+    }
+    // Project the vector:
+    projection.project(vec, buf);
+    final int num = shift.length;
+    PerturbationSequence seq = new PerturbationSequence(num << 1, 1);
+    long t1sum = 0L;
+    for(int i = 0; i < num; i++) {
+      final double v = (buf[i] + shift[i]) * iwidth, fl = Math.floor(v);
+      t1sum += (randoms1[i] & MASK32) * (int) fl; // unsigned math!
+      // Relative distances to the lower and upper bin boundary:
+      final double lo = v - fl, hi = 1 - lo;
+      seq.add(i << 1, lo * lo);
+      seq.add((i << 1) | 1, hi * hi);
+    }
+    hashes[0] = fastModPrime(t1sum);
+    int n = 1;
+    while(n < hashes.length && seq.next()) {
+      long sum = t1sum;
+      for(int j = 0; j < seq.size(); j++) {
+        final int p = seq.get(j);
+        final long r = randoms1[p >>> 1] & MASK32;
+        sum += (p & 1) == 0 ? -r : r;
+      }
+      hashes[n++] = fastModPrime(sum);
+    }
+    return n;
+  }
+
   /**
    * Fast modulo operation for the largest unsigned integer prime.
    *
@@ -0,0 +1,190 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.index.lsh.hashfunctions;
+
+import elki.utilities.datastructures.arrays.DoubleIntegerArrayQuickSort;
+import elki.utilities.datastructures.heap.DoubleObjectMinHeap;
+import elki.utilities.documentation.Reference;
+
+/**
+ * Query-directed perturbation sequences for multi-probe LSH.
+ * <p>
+ * Given the scores of elementary perturbations of a hash code (e.g., the
+ * squared distance of the query to the bucket boundary in one projection),
+ * this enumerates sets of perturbations in ascending order of their total
+ * score, using the shift and expand operations of Lv et al.
+ * <p>
+ * Elementary perturbations are identified by integers, and perturbations
+ * {@code a} and {@code b} belong to the same projection if
+ * {@code a >>> shift == b >>> shift}. Sets containing more than one
+ * perturbation of the same projection are skipped.
+ * <p>
+ * Reference:
+ * <p>
+ * Q. Lv, W. Josephson, Z. Wang, M. Charikar, K. Li<br>
+ * Multi-Probe LSH: Efficient Indexing for High-Dimensional Similarity
+ * Search<br>
+ * Proc. 33rd Int. Conf. on Very Large Data Bases (VLDB 2007)
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+@Reference(authors = "Q. Lv, W. Josephson, Z. Wang, M. Charikar, K. Li", //
+    title = "Multi-Probe LSH: Efficient Indexing for High-Dimensional Similarity Search", //
+    booktitle = "Proc. 33rd Int. Conf. on Very Large Data Bases (VLDB 2007)", //
+    url = "http://www.vldb.org/conf/2007/papers/research/p950-lv.pdf", //
+    bibkey = "DBLP:conf/vldb/LvJWCL07")
+public class PerturbationSequence {
+  /**
+   * Scores of the elementary perturbations.
+   */
+  private double[] scores;
+
+  /**
+   * Identifiers of the elementary perturbations.
+   */
+  private int[] ids;
+
+  /**
+   * Number of elementary perturbations.
+   */
+  private int size;
+
+  /**
+   * Shift to obtain the projection number from a perturbation identifier.
+   */
+  private int shift;
+
+  /**
+   * Heap of candidate sets, as ascending positions in the sorted arrays.
+   */
+  private DoubleObjectMinHeap<int[]> heap = new DoubleObjectMinHeap<>();
+
+  /**
+   * Current perturbation set.
+   */
+  private int[] current;
+
+  /**
+   * Flag whether the iteration has started.
+   */
+  private boolean started;
+
+  /**
+   * Constructor.
+   *
+   * @param capacity Maximum number of elementary perturbations
+   * @param shift Shift to obtain the projection number from an identifier
+   */
+  public PerturbationSequence(int capacity, int shift) {
+    super();
+    this.scores = new double[capacity];
+    this.ids = new int[capacity];
+    this.shift = shift;
+  }
+
+  /**
+   * Add an elementary perturbation.
+   *
+   * @param id Perturbation identifier
+   * @param score Perturbation score (smaller is better)
+   */
+  public void add(int id, double score) {
+    assert !started : "Perturbations must be added before iterating.";
+    scores[size] = score;
+    ids[size++] = id;
+  }
+
+  /**
+   * Advance to the next perturbation set.
+   *
+   * @return {@code false} when no further perturbation sets exist.
+   */
+  public boolean next() {
+    if(!started) {
+      started = true;
+      if(size == 0) {
+        return false;
+      }
+      DoubleIntegerArrayQuickSort.sort(scores, ids, size);
+      heap.add(scores[0], new int[] { 0 });
+    }
+    while(!heap.isEmpty()) {
+      final double score = heap.peekKey();
+      final int[] set = heap.peekValue();
+      heap.poll();
+      final int last = set[set.length - 1];
+      if(last + 1 < size) {
+        // Shift: replace the last element with its successor.
+        int[] shifted = set.clone();
+        shifted[set.length - 1] = last + 1;
+        heap.add(score - scores[last] + scores[last + 1], shifted);
+        // Expand: add the successor of the last element.
+        int[] expanded = new int[set.length + 1];
+        System.arraycopy(set, 0, expanded, 0, set.length);
+        expanded[set.length] = last + 1;
+        heap.add(score + scores[last + 1], expanded);
+      }
+      if(isValid(set)) {
+        current = set;
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Check that a set perturbs every projection at most once.
+   *
+   * @param set Set of positions
+   * @return {@code true} if valid
+   */
+  private boolean isValid(int[] set) {
+    for(int i = 1; i < set.length; i++) {
+      final int pi = ids[set[i]] >>> shift;
+      for(int j = 0; j < i; j++) {
+        if(pi == ids[set[j]] >>> shift) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Size of the current perturbation set.
+   *
+   * @return Number of elementary perturbations in the current set
+   */
+  public int size() {
+    return current.length;
+  }
+
+  /**
+   * Get an elementary perturbation of the current set.
+   *
+   * @param i Index, less than {@link #size()}
+   * @return Perturbation identifier
+   */
+  public int get(int i) {
+    return ids[current[i]];
+  }
+}
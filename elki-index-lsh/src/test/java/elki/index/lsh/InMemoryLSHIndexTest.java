@@ -0,0 +1,63 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.index.lsh;
+
+import org.junit.Test;
+
+import elki.data.NumberVector;
+import elki.index.AbstractIndexStructureTest;
+import elki.index.lsh.hashfamilies.AbstractProjectedHashFunctionFamily;
+import elki.index.lsh.hashfamilies.CosineHashFunctionFamily;
+import elki.index.lsh.hashfamilies.EuclideanHashFunctionFamily;
+import elki.utilities.ELKIBuilder;
+
+/**
+ * Unit test for the in-memory LSH index.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class InMemoryLSHIndexTest extends AbstractIndexStructureTest {
+  @Test
+  public void testEuclideanMultiProbe() {
+    InMemoryLSHIndex<NumberVector> factory = new ELKIBuilder<InMemoryLSHIndex<NumberVector>>(InMemoryLSHIndex.class) //
+        .with(InMemoryLSHIndex.Par.FAMILY_ID, EuclideanHashFunctionFamily.class) //
+        .with(AbstractProjectedHashFunctionFamily.Par.RANDOM_ID, 0L) //
+        .with(AbstractProjectedHashFunctionFamily.Par.WIDTH_ID, 0.2) //
+        .with(AbstractProjectedHashFunctionFamily.Par.NUMPROJ_ID, 3) //
+        .with(InMemoryLSHIndex.Par.L_ID, 4) //
+        .with(InMemoryLSHIndex.Par.PROBES_ID, 20) //
+        .build();
+    assertExactEuclidean(factory, InMemoryLSHIndex.Instance.LSHKNNQuery.class, InMemoryLSHIndex.Instance.LSHRangeQuery.class);
+  }
+
+  @Test
+  public void testCosineMultiProbe() {
+    InMemoryLSHIndex<NumberVector> factory = new ELKIBuilder<InMemoryLSHIndex<NumberVector>>(InMemoryLSHIndex.class) //
+        .with(InMemoryLSHIndex.Par.FAMILY_ID, CosineHashFunctionFamily.class) //
+        .with(CosineHashFunctionFamily.Par.RANDOM_ID, 0L) //
+        .with(CosineHashFunctionFamily.Par.NUMPROJ_ID, 6) //
+        .with(InMemoryLSHIndex.Par.L_ID, 4) //
+        .with(InMemoryLSHIndex.Par.PROBES_ID, 8) //
+        .build();
+    assertExactCosine(factory, InMemoryLSHIndex.Instance.LSHKNNQuery.class, InMemoryLSHIndex.Instance.LSHRangeQuery.class);
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.index.lsh.hashfunctions;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Unit test for the multi-probe perturbation sequences.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class PerturbationSequenceTest {
+  @Test
+  public void testOrder() {
+    final double[] scores = { 0.3, 0.1, 0.7, 0.05, 0.2, 0.6 };
+    PerturbationSequence seq = new PerturbationSequence(scores.length, 1);
+    for(int i = 0; i < scores.length; i++) {
+      seq.add(i, scores[i]);
+    }
+    double prev = 0;
+    int count = 0;
+    while(seq.next()) {
+      double score = 0;
+      for(int i = 0; i < seq.size(); i++) {
+        final int p = seq.get(i);
+        score += scores[p];
+        for(int j = 0; j < i; j++) {
+          assertNotEquals("Projection perturbed twice.", p >>> 1, seq.get(j) >>> 1);
+        }
+      }
+      assertTrue("Not in ascending order.", score >= prev);
+      prev = score;
+      ++count;
+    }
+    // Each of the three projections: unchanged, or one of two directions.
+    assertEquals("Not all perturbation sets found.", 3 * 3 * 3 - 1, count);
+    assertFalse(seq.next());
+  }
+}
@@ -442,6 +442,31 @@ public abstract class AbstractMTree<O, N extends AbstractMTreeNode<O, N, E>, E e
     return levels;
   }
 
+  /**
+   * Test whether queries should scan the packed copies of the nodes.
+   *
+   * @return {@code true} when packed nodes are enabled
+   */
+  public boolean usePackedNodes() {
+    return settings.packed;
+  }
+
+  /**
+   * Get the packed entries of a node, for fast scanning.
+   *
+   * @param nodeID Node id
+   * @return Packed entries
+   */
+  public PackedMTreeNode getPackedNode(int nodeID) {
+    return getNode(nodeID).getPacked();
+  }
+
+  @Override
+  protected void writeNode(N node) {
+    node.invalidatePacked();
+    super.writeNode(node);
+  }
+
   @Override
   public void logStatistics() {
     super.logStatistics();
@@ -31,6 +31,7 @@ import elki.index.tree.metrical.mtreevariants.strategies.split.MTreeSplit;
 import elki.persistent.PageFileFactory;
 import elki.utilities.optionhandling.OptionID;
 import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.Flag;
 import elki.utilities.optionhandling.parameters.ObjectParameter;
 
 /**
@@ -91,6 +92,11 @@ public abstract class AbstractMTreeFactory<O, N extends AbstractMTreeNode<O, N,
      */
     public static final OptionID INSERT_STRATEGY_ID = new OptionID("mtree.insert", "Insertion strategy to use for constructing the M-tree.");
 
+    /**
+     * Flag to scan packed copies of the nodes.
+     */
+    public static final OptionID PACKED_ID = new OptionID("mtree.packed", "Scan packed copies of the nodes in queries. Faster for read-mostly trees, but needs additional memory.");
+
     /**
      * Tree settings.
      */
@@ -106,6 +112,7 @@ public abstract class AbstractMTreeFactory<O, N extends AbstractMTreeNode<O, N,
           .grab(config, x -> settings.splitStrategy = x);
       new ObjectParameter<MTreeInsert<E, N>>(INSERT_STRATEGY_ID, MTreeInsert.class, MinimumEnlargementInsert.class) //
           .grab(config, x -> settings.insertStrategy = x);
+      new Flag(PACKED_ID).grab(config, x -> settings.packed = x);
     }
 
     protected abstract S makeSettings();
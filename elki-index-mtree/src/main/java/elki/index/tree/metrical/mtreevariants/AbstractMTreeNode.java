@@ -37,6 +37,12 @@ import elki.utilities.exceptions.InconsistentDataException;
  * @param <E> the type of MetricalEntry used in the M-Tree
  */
 public abstract class AbstractMTreeNode<O, N extends AbstractMTreeNode<O, N, E>, E extends MTreeEntry> extends AbstractNode<E> {
+  /**
+   * Packed copy of the entries, built on demand; {@code null} if not built
+   * yet, or outdated because the node was modified.
+   */
+  private transient PackedMTreeNode packed;
+
   /**
    * Empty constructor for Externalizable interface.
    */
@@ -55,6 +61,23 @@ public abstract class AbstractMTreeNode<O, N extends AbstractMTreeNode<O, N, E>,
     super(capacity, isLeaf);
   }
 
+  /**
+   * Get a packed copy of the entries, for fast scanning.
+   *
+   * @return Packed entries
+   */
+  public PackedMTreeNode getPacked() {
+    PackedMTreeNode p = packed;
+    return p != null ? p : (packed = new PackedMTreeNode(this));
+  }
+
+  /**
+   * Discard the packed copy of the entries, after the node was modified.
+   */
+  public void invalidatePacked() {
+    packed = null;
+  }
+
   /**
    * Adjusts the parameters of the entry representing this node (e.g. after
    * insertion of new objects). Subclasses may need to overwrite this method.
@@ -49,4 +49,9 @@ public class MTreeSettings<O, N extends AbstractMTreeNode<O, N, E>, E extends MT
    * Insertion strategy.
    */
   protected MTreeInsert<E, N> insertStrategy;
+
+  /**
+   * Scan packed copies of the nodes in queries.
+   */
+  protected boolean packed = false;
 }
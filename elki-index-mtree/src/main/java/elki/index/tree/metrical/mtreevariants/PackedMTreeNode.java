@@ -0,0 +1,95 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.index.tree.metrical.mtreevariants;
+
+import elki.database.ids.ArrayModifiableDBIDs;
+import elki.database.ids.DBIDUtil;
+import elki.index.tree.DirectoryEntry;
+
+/**
+ * Packed, read-only copy of the entries of a M-tree node, stored as primitive
+ * arrays (struct-of-arrays), such that queries can apply the triangle
+ * inequality pruning to all entries with tight loops, rather than following a
+ * pointer to each entry.
+ * <p>
+ * Only used if enabled in the {@link MTreeSettings}, as the packed copies are
+ * kept in addition to the regular nodes. Obtain instances via
+ * {@link AbstractMTree#getPackedNode}; a node discards its copy when it is
+ * written, so only modified nodes are rebuilt.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public final class PackedMTreeNode {
+  /**
+   * Number of entries.
+   */
+  public final int size;
+
+  /**
+   * Routing object ids (for leaves: the object ids).
+   */
+  public final ArrayModifiableDBIDs ids;
+
+  /**
+   * Distances to the parent routing object.
+   */
+  public final double[] parentDists;
+
+  /**
+   * Covering radii, for directory nodes; {@code null} for leaves.
+   */
+  public final double[] radii;
+
+  /**
+   * Child page ids, for directory nodes; {@code null} for leaves.
+   */
+  public final int[] pageIds;
+
+  /**
+   * Constructor.
+   *
+   * @param node Node to pack
+   */
+  PackedMTreeNode(AbstractMTreeNode<?, ?, ?> node) {
+    final int size = this.size = node.getNumEntries();
+    this.ids = DBIDUtil.newArray(size);
+    this.parentDists = new double[size];
+    for(int i = 0; i < size; i++) {
+      final MTreeEntry e = node.getEntry(i);
+      ids.add(e.getRoutingObjectID());
+      parentDists[i] = e.getParentDistance();
+    }
+    if(node.isLeaf()) {
+      this.radii = null;
+      this.pageIds = null;
+    }
+    else {
+      this.radii = new double[size];
+      this.pageIds = new int[size];
+      for(int i = 0; i < size; i++) {
+        final MTreeEntry e = node.getEntry(i);
+        radii[i] = e.getCoveringRadius();
+        pageIds[i] = ((DirectoryEntry) e).getPageID();
+      }
+    }
+  }
+}
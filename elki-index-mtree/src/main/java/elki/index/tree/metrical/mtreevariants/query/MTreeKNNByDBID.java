@@ -27,6 +27,7 @@ import elki.index.tree.DirectoryEntry;
 import elki.index.tree.metrical.mtreevariants.AbstractMTree;
 import elki.index.tree.metrical.mtreevariants.AbstractMTreeNode;
 import elki.index.tree.metrical.mtreevariants.MTreeEntry;
+import elki.index.tree.metrical.mtreevariants.PackedMTreeNode;
 import elki.utilities.datastructures.heap.ComparableMinHeap;
 
 /**
@@ -84,6 +85,10 @@ public class MTreeKNNByDBID<O> implements KNNSearcher<DBIDRef> {
       if(knnList.size() >= k && pqNode.mindist > d_k) {
         break;
       }
+      if(index.usePackedNodes()) {
+        d_k = expandPacked(pqNode, q, knnList, d_k, pq);
+        continue;
+      }
 
       AbstractMTreeNode<?, ?, ?> node = index.getNode(pqNode.nodeID);
       DBID id_p = pqNode.routingObjectID;
@@ -125,4 +130,54 @@ public class MTreeKNNByDBID<O> implements KNNSearcher<DBIDRef> {
     }
     return knnList.toKNNList();
   }
+
+  /**
+   * Expand a node, using the packed representation of its entries.
+   *
+   * @param pqNode Search candidate of the node
+   * @param q Query object
+   * @param knnList kNN heap
+   * @param d_k Current kNN distance
+   * @param pq Priority queue
+   * @return New kNN distance
+   */
+  private double expandPacked(MTreeSearchCandidate pqNode, DBIDRef q, KNNHeap knnList, double d_k, ComparableMinHeap<MTreeSearchCandidate> pq) {
+    PackedMTreeNode node = index.getPackedNode(pqNode.nodeID);
+    DBIDArrayIter iter = node.ids.iter();
+    final double[] parentDists = node.parentDists;
+    final boolean hasParent = pqNode.routingObjectID != null;
+    double d1 = pqNode.routingDistance;
+
+    // directory node
+    if(node.radii != null) {
+      final double[] radii = node.radii;
+      for(int i = 0; i < node.size; i++) {
+        double r_or = radii[i];
+        double d2 = hasParent ? parentDists[i] : 0.;
+        if(Math.abs(d1 - d2) <= d_k + r_or) {
+          double d3 = distanceQuery.distance(iter.seek(i), q);
+          index.statistics.countDistanceCalculation();
+          double d_min = Math.max(d3 - r_or, 0.);
+          if(d_min <= d_k) {
+            pq.add(new MTreeSearchCandidate(d_min, node.pageIds[i], DBIDUtil.deref(iter), d3));
+          }
+        }
+      }
+    }
+    // data node
+    else {
+      for(int i = 0; i < node.size; i++) {
+        double d2 = hasParent ? parentDists[i] : 0.;
+        if(Math.abs(d1 - d2) <= d_k) {
+          double d3 = distanceQuery.distance(iter.seek(i), q);
+          index.statistics.countDistanceCalculation();
+          if(d3 <= d_k) {
+            knnList.insert(d3, iter);
+            d_k = knnList.getKNNDistance();
+          }
+        }
+      }
+    }
+    return d_k;
+  }
 }
@@ -27,6 +27,7 @@ import elki.index.tree.DirectoryEntry;
 import elki.index.tree.metrical.mtreevariants.AbstractMTree;
 import elki.index.tree.metrical.mtreevariants.AbstractMTreeNode;
 import elki.index.tree.metrical.mtreevariants.MTreeEntry;
+import elki.index.tree.metrical.mtreevariants.PackedMTreeNode;
 
 /**
  * Instance of a range query for a particular spatial index.
@@ -108,10 +109,61 @@ public class MTreeRangeByObject<O> implements RangeSearcher<O> {
     }
   }
 
+  /**
+   * Performs a range query on the specified subtree, using the packed
+   * representation of the node entries.
+   *
+   * @param o_p the routing object of the specified node
+   * @param nodeID the root of the subtree to be traversed
+   * @param q the query object
+   * @param r_q the query range
+   * @param result the list holding the query results
+   */
+  private void doPackedRangeQuery(DBIDRef o_p, int nodeID, O q, double r_q, ModifiableDoubleDBIDList result) {
+    double d1 = 0.;
+    if(o_p != null) {
+      d1 = distanceQuery.distance(o_p, q);
+      index.statistics.countDistanceCalculation();
+    }
+    PackedMTreeNode node = index.getPackedNode(nodeID);
+    DBIDArrayIter iter = node.ids.iter();
+    final double[] parentDists = node.parentDists;
+    if(node.radii != null) {
+      final double[] radii = node.radii;
+      for(int i = 0; i < node.size; i++) {
+        double d2 = o_p != null ? parentDists[i] : 0.;
+        double sum = r_q + radii[i];
+        if(Math.abs(d1 - d2) <= sum) {
+          index.statistics.countDistanceCalculation();
+          if(distanceQuery.distance(iter.seek(i), q) <= sum) {
+            doPackedRangeQuery(iter, node.pageIds[i], q, r_q, result);
+          }
+        }
+      }
+    }
+    else {
+      for(int i = 0; i < node.size; i++) {
+        double d2 = o_p != null ? parentDists[i] : 0.;
+        if(Math.abs(d1 - d2) <= r_q) {
+          double d3 = distanceQuery.distance(iter.seek(i), q);
+          index.statistics.countDistanceCalculation();
+          if(d3 <= r_q) {
+            result.add(d3, iter);
+          }
+        }
+      }
+    }
+  }
+
   @Override
   public ModifiableDoubleDBIDList getRange(O obj, double range, ModifiableDoubleDBIDList result) {
     index.statistics.countRangeQuery();
-    doRangeQuery(null, index.getNode(index.getRootID()), obj, range, result);
+    if(index.usePackedNodes()) {
+      doPackedRangeQuery(null, index.getRootID(), obj, range, result);
+    }
+    else {
+      doRangeQuery(null, index.getNode(index.getRootID()), obj, range, result);
+    }
     return result;
   }
 }
@@ -20,10 +20,23 @@
  */
 package elki.index.tree.metrical.mtreevariants.mtree;
 
+import static org.junit.Assert.assertEquals;
+
 import org.junit.Test;
 
+import elki.algorithm.AbstractSimpleAlgorithmTest;
 import elki.data.DoubleVector;
+import elki.data.type.TypeUtil;
+import elki.database.Database;
+import elki.database.ids.*;
+import elki.database.query.distance.DistanceQuery;
+import elki.database.query.knn.KNNSearcher;
+import elki.database.query.range.RangeSearcher;
+import elki.database.relation.ProxyView;
+import elki.database.relation.Relation;
+import elki.distance.minkowski.EuclideanDistance;
 import elki.index.AbstractIndexStructureTest;
+import elki.index.tree.metrical.mtreevariants.AbstractMTreeFactory;
 import elki.index.tree.metrical.mtreevariants.query.MTreeKNNByDBID;
 import elki.index.tree.metrical.mtreevariants.query.MTreeKNNByObject;
 import elki.index.tree.metrical.mtreevariants.query.MTreeRangeByDBID;
@@ -48,4 +61,63 @@ public class MTreeTest extends AbstractIndexStructureTest {
     assertExactEuclidean(factory, MTreeKNNByObject.class, MTreeRangeByObject.class);
     assertSinglePoint(factory, MTreeKNNByDBID.class, MTreeRangeByDBID.class);
   }
+
+  /**
+   * Test the packed node scans against the regular queries, also after
+   * inserting objects. The M-tree does not support deletions.
+   */
+  @Test
+  public void testPackedNodes() {
+    Database db = AbstractSimpleAlgorithmTest.makeSimpleDatabase("elki/testdata/unittests/hierarchical-3d2d1d.csv", 600);
+    Relation<DoubleVector> rel = db.getRelation(TypeUtil.DOUBLE_VECTOR_FIELD);
+    // Index two thirds of the data first, insert the remainder later.
+    ArrayModifiableDBIDs first = DBIDUtil.newArray(), later = DBIDUtil.newArray();
+    int i = 0;
+    for(DBIDIter it = rel.iterDBIDs(); it.valid(); it.advance(), i++) {
+      (i % 3 == 0 ? later : first).add(it);
+    }
+    ProxyView<DoubleVector> view = new ProxyView<>(first, rel);
+    MTreeIndex<DoubleVector> tree = new ELKIBuilder<>(MTreeFactory.class) //
+        .with(AbstractPageFileFactory.Par.PAGE_SIZE_ID, 300) //
+        .build().instantiate(view);
+    MTreeIndex<DoubleVector> packed = new ELKIBuilder<>(MTreeFactory.class) //
+        .with(AbstractPageFileFactory.Par.PAGE_SIZE_ID, 300) //
+        .with(AbstractMTreeFactory.Par.PACKED_ID) //
+        .build().instantiate(view);
+    tree.initialize();
+    packed.initialize();
+    DistanceQuery<DoubleVector> dq = EuclideanDistance.STATIC.instantiate(view);
+    assertSameResults(rel, dq, tree, packed);
+    view.setDBIDs(rel.getDBIDs());
+    tree.insertAll(later);
+    packed.insertAll(later);
+    assertSameResults(rel, dq, tree, packed);
+  }
+
+  /**
+   * Compare the kNN and range queries of a regular and a packed tree.
+   *
+   * @param rel Relation of query points
+   * @param dq Distance query
+   * @param tree Regular tree
+   * @param packed Tree with packed nodes
+   */
+  private static void assertSameResults(Relation<DoubleVector> rel, DistanceQuery<DoubleVector> dq, MTreeIndex<DoubleVector> tree, MTreeIndex<DoubleVector> packed) {
+    KNNSearcher<DoubleVector> knnq = tree.kNNByObject(dq, 10, 0);
+    KNNSearcher<DoubleVector> pknnq = packed.kNNByObject(dq, 10, 0);
+    RangeSearcher<DoubleVector> rq = tree.rangeByObject(dq, .1, 0);
+    RangeSearcher<DoubleVector> prq = packed.rangeByObject(dq, .1, 0);
+    for(DBIDIter it = rel.iterDBIDs(); it.valid(); it.advance()) {
+      DoubleVector q = rel.get(it);
+      KNNList knn = knnq.getKNN(q, 10), pknn = pknnq.getKNN(q, 10);
+      assertEquals("kNN sizes differ.", knn.size(), pknn.size());
+      for(DoubleDBIDListIter a = knn.iter(), b = pknn.iter(); a.valid(); a.advance(), b.advance()) {
+        assertEquals("kNN distances differ.", a.doubleValue(), b.doubleValue(), 0.);
+      }
+      ModifiableDoubleDBIDList range = rq.getRange(q, .1, DBIDUtil.newDistanceDBIDList());
+      ModifiableDoubleDBIDList prange = prq.getRange(q, .1, DBIDUtil.newDistanceDBIDList());
+      assertEquals("Range sizes differ.", range.size(), prange.size());
+      assertEquals("Range results differ.", range.size(), DBIDUtil.intersectionSize(DBIDUtil.newHashSet(range), prange));
+    }
+  }
 }
@@ -21,6 +21,7 @@
 package elki.index.distancematrix;
 
 import java.lang.ref.WeakReference;
+import java.util.concurrent.RecursiveAction;
 
 import elki.data.type.TypeInformation;
 import elki.database.ids.*;
@@ -36,23 +37,30 @@ import elki.logging.Logging;
 import elki.logging.progress.FiniteProgress;
 import elki.logging.statistics.Duration;
 import elki.logging.statistics.LongStatistic;
+import elki.parallel.ParallelCore;
 import elki.utilities.datastructures.QuickSelect;
 import elki.utilities.datastructures.arrays.DoubleIntegerArrayQuickSort;
 import elki.utilities.exceptions.AbortException;
 import elki.utilities.optionhandling.OptionID;
 import elki.utilities.optionhandling.Parameterizer;
 import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.Flag;
 import elki.utilities.optionhandling.parameters.ObjectParameter;
 
 /**
  * Distance matrix, for precomputing similarity for a small data set.
  * <p>
- * This class uses a linear memory layout (not a ragged array), and assumes
- * symmetry as well as strictness. This way, it only stores the upper triangle
- * matrix with double precision. It has to store (n-1) * (n-2) distance values
- * in memory, requiring 8 * (n-1) * (n-2) bytes. Since Java has a size limit of
- * arrays of 31 bits (signed integer), we can store at most \(2^16\) objects
- * (precisely, 65536 objects) in a single array, which needs about 16 GB of RAM.
+ * This class assumes symmetry as well as strictness. This way, it only stores
+ * the lower triangle matrix with double precision. It has to store
+ * n * (n-1) / 2 distance values in memory, requiring 4 * n * (n-1) bytes.
+ * The triangle is stored segmented, as one array per row, so the number of
+ * objects is not limited by the maximum Java array size (which would allow at
+ * most 65536 objects), but only by the available memory. Optionally, the
+ * distances can be stored with single (float) precision, to halve the memory.
+ * <p>
+ * The matrix is computed in parallel, in square tiles of {@link #BLOCKSIZE}
+ * rows and columns, such that the objects of both blocks can remain in the
+ * CPU cache while the tile is computed.
  *
  * @author Erich Schubert
  * @since 0.7.0
@@ -69,6 +77,11 @@ public class PrecomputedDistanceMatrix<O> implements DistanceIndex<O>, RangeInde
    */
   private static final Logging LOG = Logging.getLogger(PrecomputedDistanceMatrix.class);
 
+  /**
+   * Number of rows and columns of a tile in parallel precomputation.
+   */
+  protected static final int BLOCKSIZE = 64;
+
   /**
    * Data relation.
    */
@@ -82,7 +95,17 @@ public class PrecomputedDistanceMatrix<O> implements DistanceIndex<O>, RangeInde
   /**
    * Distance matrix.
    */
-  private double[] matrix = null;
+  private double[][] matrix = null;
+
+  /**
+   * Single precision distance matrix, alternatively to {@link #matrix}.
+   */
+  private float[][] fmatrix = null;
+
+  /**
+   * Store the distances with single precision.
+   */
+  private final boolean singlePrecision;
 
   /**
    * DBID range.
@@ -97,10 +120,23 @@ public class PrecomputedDistanceMatrix<O> implements DistanceIndex<O>, RangeInde
    * @param distance Distance function
    */
   public PrecomputedDistanceMatrix(Relation<O> relation, DBIDRange range, Distance<? super O> distance) {
+    this(relation, range, distance, false);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param relation Data relation
+   * @param range DBID range
+   * @param distance Distance function
+   * @param singlePrecision Store the distances with single precision
+   */
+  public PrecomputedDistanceMatrix(Relation<O> relation, DBIDRange range, Distance<? super O> distance, boolean singlePrecision) {
     super();
     this.refrelation = new WeakReference<>(relation);
     this.ids = range;
     this.distance = distance;
+    this.singlePrecision = singlePrecision;
 
     if(!distance.isSymmetric()) {
       throw new AbortException("Distance matrixes currently only support symmetric distance functions (Patches welcome).");
@@ -109,57 +145,155 @@ public class PrecomputedDistanceMatrix<O> implements DistanceIndex<O>, RangeInde
 
   @Override
   public void initialize() {
-    if(ids.size() > 65536) {
-      throw new AbortException("Distance matrixes currently have a limit of 65536 objects (~16 GB). After this, the array size exceeds the Java integer range, and a different data structure needs to be used.");
+    final Relation<O> relation = refrelation.get();
+    final int size = ids.size();
+    if(singlePrecision) {
+      fmatrix = new float[size][];
+      for(int x = 0; x < size; x++) {
+        fmatrix[x] = new float[x];
+      }
+    }
+    else {
+      matrix = new double[size][];
+      for(int x = 0; x < size; x++) {
+        matrix[x] = new double[x];
+      }
     }
-    DistanceQuery<O> distanceQuery = distance.instantiate(refrelation.get());
-
-    final int msize = triangleSize(ids.size());
-    matrix = new double[msize];
-    DBIDArrayIter ix = ids.iter(), iy = ids.iter();
 
     Duration timer = LOG.newDuration(getClass().getName() + ".precomputation-time").begin();
-    FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Precomputing distance matrix", msize, LOG) : null;
-    int pos = 0;
-    for(ix.seek(0); ix.valid(); ix.advance()) {
-      // y < x -- must match {@link #getOffset}!
-      for(iy.seek(0); iy.getOffset() < ix.getOffset(); iy.advance()) {
-        matrix[pos] = distanceQuery.distance(ix, iy);
-        pos++;
-      }
-      if(prog != null) {
-        prog.setProcessed(prog.getProcessed() + ix.getOffset(), LOG);
-      }
+    // Tiles of the lower triangle, including the diagonal tiles:
+    final int blocks = (size + BLOCKSIZE - 1) / BLOCKSIZE;
+    final int ntiles = (blocks * (blocks + 1)) >>> 1;
+    FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Precomputing distance matrix", ntiles, LOG) : null;
+    ThreadLocal<DistanceQuery<O>> dqs = ThreadLocal.withInitial(() -> distance.instantiate(relation));
+    ParallelCore core = ParallelCore.getCore();
+    core.connect();
+    try {
+      core.invoke(new TileTask(dqs, 0, ntiles, prog));
+    }
+    finally {
+      core.disconnect();
     }
     LOG.ensureCompleted(prog);
     LOG.statistics(timer.end());
   }
 
+  /**
+   * Compute a single tile of the distance matrix.
+   *
+   * @param distanceQuery Distance query
+   * @param tile Tile number
+   */
+  private void computeTile(DistanceQuery<O> distanceQuery, int tile) {
+    // Decode the tile number into row block bx and column block by <= bx:
+    int bx = (int) ((Math.sqrt(8. * tile + 1) - 1) * .5);
+    while((bx * (bx + 1)) >>> 1 > tile) {
+      --bx;
+    }
+    while(((bx + 1) * (bx + 2)) >>> 1 <= tile) {
+      ++bx;
+    }
+    final int by = tile - ((bx * (bx + 1)) >>> 1);
+    final int size = ids.size();
+    final int xend = Math.min((bx + 1) * BLOCKSIZE, size);
+    final int ystart = by * BLOCKSIZE, yend = Math.min(ystart + BLOCKSIZE, size);
+    DBIDArrayIter ix = ids.iter(), iy = ids.iter();
+    for(ix.seek(bx * BLOCKSIZE); ix.getOffset() < xend; ix.advance()) {
+      final int x = ix.getOffset(), ylim = Math.min(x, yend);
+      // Lower triangle only, y < x
+      if(matrix != null) {
+        final double[] row = matrix[x];
+        for(iy.seek(ystart); iy.getOffset() < ylim; iy.advance()) {
+          row[iy.getOffset()] = distanceQuery.distance(ix, iy);
+        }
+      }
+      else {
+        final float[] row = fmatrix[x];
+        for(iy.seek(ystart); iy.getOffset() < ylim; iy.advance()) {
+          row[iy.getOffset()] = (float) distanceQuery.distance(ix, iy);
+        }
+      }
+    }
+  }
+
+  /**
+   * Fork-join task to compute a range of tiles.
+   *
+   * @author Erich Schubert
+   */
+  private class TileTask extends RecursiveAction {
+    /**
+     * Serialization version.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Per-thread distance queries.
+     */
+    private ThreadLocal<DistanceQuery<O>> dqs;
+
+    /**
+     * Tile range.
+     */
+    private int start, end;
+
+    /**
+     * Progress, may be null.
+     */
+    private FiniteProgress prog;
+
+    /**
+     * Constructor.
+     *
+     * @param dqs Per-thread distance queries
+     * @param start First tile
+     * @param end End tile (exclusive)
+     * @param prog Progress
+     */
+    TileTask(ThreadLocal<DistanceQuery<O>> dqs, int start, int end, FiniteProgress prog) {
+      this.dqs = dqs;
+      this.start = start;
+      this.end = end;
+      this.prog = prog;
+    }
+
+    @Override
+    protected void compute() {
+      if(end - start > 1) {
+        final int mid = (start + end) >>> 1;
+        invokeAll(new TileTask(dqs, start, mid, prog), new TileTask(dqs, mid, end, prog));
+        return;
+      }
+      computeTile(dqs.get(), start);
+      LOG.incrementProcessed(prog);
+    }
+  }
+
   /**
    * Compute the size of a complete x by x triangle (minus diagonal)
    *
    * @param x Offset
    * @return Size of complete triangle
    */
-  protected static int triangleSize(int x) {
-    return (x * (x - 1)) >>> 1;
+  protected static long triangleSize(int x) {
+    return (((long) x) * (x - 1)) >>> 1;
   }
 
   /**
-   * Array offset computation.
+   * Get a value from the lower triangle matrix.
    *
-   * @param x X parameter
-   * @param y Y parameter
-   * @return Array offset
+   * @param x Row, must be larger than y
+   * @param y Column
+   * @return Stored distance
    */
-  private int getOffset(int x, int y) {
-    return (y < x) ? (triangleSize(x) + y) : (triangleSize(y) + x);
+  private double get(int x, int y) {
+    return matrix != null ? matrix[x][y] : fmatrix[x][y];
   }
 
   @Override
   public void logStatistics() {
-    if(matrix != null) {
-      LOG.statistics(new LongStatistic(this.getClass().getName() + ".matrix-size", matrix.length));
+    if(matrix != null || fmatrix != null) {
+      LOG.statistics(new LongStatistic(this.getClass().getName() + ".matrix-size", triangleSize(ids.size())));
     }
   }
 
@@ -207,7 +341,7 @@ public class PrecomputedDistanceMatrix<O> implements DistanceIndex<O>, RangeInde
     @Override
     public double distance(DBIDRef id1, DBIDRef id2) {
       final int x = ids.getOffset(id1), y = ids.getOffset(id2);
-      return (x != y) ? matrix[getOffset(x, y)] : 0.;
+      return x == y ? 0. : x < y ? get(y, x) : get(x, y);
     }
 
     @Override
@@ -236,19 +370,16 @@ public class PrecomputedDistanceMatrix<O> implements DistanceIndex<O>, RangeInde
     public ModifiableDoubleDBIDList getRange(DBIDRef id, double range, ModifiableDoubleDBIDList result) {
       result.add(0., id);
       final int x = ids.getOffset(id);
-      // Case y < x: triangleSize(x) + y
-      int pos = triangleSize(x);
-      for(int y = 0; y < x; y++, pos++) {
-        final double dist = matrix[pos];
+      // Case y < x: row x
+      for(int y = 0; y < x; y++) {
+        final double dist = get(x, y);
         if(dist <= range) {
           result.add(dist, it.seek(y));
         }
       }
-      assert (pos == triangleSize(x + 1));
-      // Case y > x: triangleSize(y) + x
-      pos = triangleSize(x + 1) + x;
-      for(int y = x + 1, size = ids.size(); y < size; pos += y++) {
-        final double dist = matrix[pos];
+      // Case y > x: column x of row y
+      for(int y = x + 1, size = ids.size(); y < size; y++) {
+        final double dist = get(y, x);
         if(dist <= range) {
           result.add(dist, it.seek(y));
         }
@@ -274,17 +405,14 @@ public class PrecomputedDistanceMatrix<O> implements DistanceIndex<O>, RangeInde
       heap.insert(0., id);
       double max = Double.POSITIVE_INFINITY;
       final int x = ids.getOffset(id);
-      // Case y < x: triangleSize(x) + y
-      int pos = triangleSize(x);
-      for(int y = 0; y < x; y++, pos++) {
-        final double dist = matrix[pos];
+      // Case y < x: row x
+      for(int y = 0; y < x; y++) {
+        final double dist = get(x, y);
         max = dist <= max ? heap.insert(dist, it.seek(y)) : max;
       }
-      assert (pos == triangleSize(x + 1));
-      // Case y > x: triangleSize(y) + x
-      pos = triangleSize(x + 1) + x;
-      for(int y = x + 1, size = ids.size(); y < size; pos += y++) {
-        final double dist = matrix[pos];
+      // Case y > x: column x of row y
+      for(int y = x + 1, size = ids.size(); y < size; y++) {
+        final double dist = get(y, x);
         max = dist <= max ? heap.insert(dist, it.seek(y)) : max;
       }
       return heap.toKNNList();
@@ -337,7 +465,6 @@ public class PrecomputedDistanceMatrix<O> implements DistanceIndex<O>, RangeInde
       off = 0;
       threshold = Double.POSITIVE_INFINITY;
       int x = ids.getOffset(query);
-      int pos = triangleSize(x);
       // Initialize ids:
       idx[0] = x;
       for(int y = 0; y < x; y++) {
@@ -348,10 +475,16 @@ public class PrecomputedDistanceMatrix<O> implements DistanceIndex<O>, RangeInde
       }
       // Initialize distances:
       dists[0] = 0;
-      System.arraycopy(matrix, pos, dists, 1, x);
-      pos = triangleSize(x + 1) + x;
-      for(int y = x + 1, size = dists.length; y < size; pos += y++) {
-        dists[y] = matrix[pos];
+      if(matrix != null) {
+        System.arraycopy(matrix[x], 0, dists, 1, x);
+      }
+      else {
+        for(int y = 0; y < x; y++) {
+          dists[y + 1] = fmatrix[x][y];
+        }
+      }
+      for(int y = x + 1, size = dists.length; y < size; y++) {
+        dists[y] = get(y, x);
       }
       sorted = 1;
       return this;
@@ -471,14 +604,30 @@ public class PrecomputedDistanceMatrix<O> implements DistanceIndex<O>, RangeInde
      */
     protected final Distance<? super O> distance;
 
+    /**
+     * Store the distances with single precision.
+     */
+    protected final boolean singlePrecision;
+
     /**
      * Constructor.
      *
      * @param distance Distance function
      */
     public Factory(Distance<? super O> distance) {
+      this(distance, false);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param distance Distance function
+     * @param singlePrecision Store the distances with single precision
+     */
+    public Factory(Distance<? super O> distance, boolean singlePrecision) {
       super();
       this.distance = distance;
+      this.singlePrecision = singlePrecision;
     }
 
     @Override
@@ -487,7 +636,7 @@ public class PrecomputedDistanceMatrix<O> implements DistanceIndex<O>, RangeInde
       if(!(rids instanceof DBIDRange)) {
         throw new AbortException("Distance matrixes are currently only supported for DBID ranges (as used by static databases; not on modifiable databases) for performance reasons (Patches welcome).");
       }
-      return new PrecomputedDistanceMatrix<>(relation, (DBIDRange) rids, distance);
+      return new PrecomputedDistanceMatrix<>(relation, (DBIDRange) rids, distance, singlePrecision);
     }
 
     @Override
@@ -510,20 +659,31 @@ public class PrecomputedDistanceMatrix<O> implements DistanceIndex<O>, RangeInde
        */
       public static final OptionID DISTANCE_ID = new OptionID("matrix.distance", "Distance function for the precomputed distance matrix.");
 
+      /**
+       * Option to store the distances with single precision.
+       */
+      public static final OptionID SINGLE_PRECISION_ID = new OptionID("matrix.float", "Store the distances with single (float) precision, which needs only half the memory.");
+
       /**
        * Nested distance function.
        */
       protected Distance<? super O> distanceFunction;
 
+      /**
+       * Store the distances with single precision.
+       */
+      protected boolean singlePrecision = false;
+
       @Override
       public void configure(Parameterization config) {
         new ObjectParameter<Distance<? super O>>(DISTANCE_ID, Distance.class) //
             .grab(config, x -> distanceFunction = x);
+        new Flag(SINGLE_PRECISION_ID).grab(config, x -> singlePrecision = x);
       }
 
       @Override
       public Factory<O> make() {
-        return new Factory<>(distanceFunction);
+        return new Factory<>(distanceFunction, singlePrecision);
       }
     }
   }
@@ -80,16 +80,34 @@ public class MaterializeKNNAndRKNNPreprocessor<O> extends MaterializeKNNPreproce
   protected void preprocess() {
     createStorage();
     storageRkNN = DataStoreUtil.makeStorage(relation.getDBIDs(), DataStoreFactory.HINT_HOT, ModifiableDoubleDBIDList.class);
+    ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    // add an empty list to each rknn
+    for(DBIDIter iter = ids.iter(); iter.valid(); iter.advance()) {
+      storageRkNN.put(iter, DBIDUtil.newDistanceDBIDList());
+    }
     FiniteProgress progress = LOG.isVerbose() ? new FiniteProgress("Materializing k nearest neighbors and reverse k nearest neighbors (k=" + k + ")", relation.size(), getLogger()) : null;
-    materializeKNNAndRKNNs(DBIDUtil.ensureArray(relation.getDBIDs()), progress);
+    materializeKNNs(ids, false, progress);
+    LOG.ensureCompleted(progress);
+  }
+
+  @Override
+  protected void storeKNN(DBIDRef id, KNNList knn) {
+    super.storeKNN(id, knn);
+    // inverse rkNN index, concurrently from multiple threads:
+    for(DoubleDBIDListIter iter = knn.iter(); iter.valid(); iter.advance()) {
+      final ModifiableDoubleDBIDList rknn = storageRkNN.get(iter);
+      synchronized(rknn) {
+        rknn.add(iter.doubleValue(), id);
+      }
+    }
   }
 
   /**
-   * Materializes the kNNs and RkNNs of the specified object IDs.
+   * Materializes the kNNs and RkNNs of newly inserted objects.
    *
    * @param ids the IDs of the objects
    */
-  private void materializeKNNAndRKNNs(ArrayDBIDs ids, FiniteProgress progress) {
+  private void materializeKNNAndRKNNs(ArrayDBIDs ids) {
     // add an empty list to each rknn
     for(DBIDIter iter = ids.iter(); iter.valid(); iter.advance()) {
       if(storageRkNN.get(iter) == null) {
@@ -105,10 +123,7 @@ public class MaterializeKNNAndRKNNPreprocessor<O> extends MaterializeKNNPreproce
       for(DoubleDBIDListIter iter = kNNs.iter(); iter.valid(); iter.advance()) {
         storageRkNN.get(iter).add(iter.doubleValue(), id);
       }
-      LOG.incrementProcessed(progress);
     }
-
-    LOG.ensureCompleted(progress);
   }
 
   @Override
@@ -117,7 +132,7 @@ public class MaterializeKNNAndRKNNPreprocessor<O> extends MaterializeKNNPreproce
     ArrayDBIDs aids = DBIDUtil.ensureArray(ids);
     // materialize the new kNNs and RkNNs
     LOG.beginStep(stepprog, 1, "New insertions ocurred, materialize their new kNNs and RkNNs.");
-    materializeKNNAndRKNNs(aids, null);
+    materializeKNNAndRKNNs(aids);
 
     // update the old kNNs and RkNNs
     LOG.beginStep(stepprog, 2, "New insertions ocurred, update the affected kNNs and RkNNs.");
@@ -20,6 +20,8 @@
  */
 package elki.index.preprocessed.knn;
 
+import java.util.ArrayList;
+
 import javax.swing.event.EventListenerList;
 
 import elki.database.ids.*;
@@ -35,6 +37,10 @@ import elki.logging.progress.FiniteProgress;
 import elki.logging.progress.StepProgress;
 import elki.logging.statistics.Duration;
 import elki.logging.statistics.LongStatistic;
+import elki.parallel.Executor;
+import elki.parallel.ParallelCore;
+import elki.parallel.ParallelExecutor;
+import elki.parallel.processor.Processor;
 import elki.utilities.documentation.Description;
 import elki.utilities.documentation.Title;
 
@@ -43,6 +49,10 @@ import elki.utilities.documentation.Title;
  * distances) to each database object.
  * <p>
  * Automatically added by the query optimizer if memory permits.
+ * <p>
+ * The initial materialization is performed in parallel, with a separate kNN
+ * searcher for each thread. These searchers are created with the index, before
+ * it is added to the relation, so they will never use this index itself.
  *
  * @author Erich Schubert
  * @since 0.2
@@ -66,6 +76,17 @@ public class MaterializeKNNPreprocessor<O> extends AbstractMaterializeKNNPreproc
    */
   protected final KNNSearcher<DBIDRef> knnQuery;
 
+  /**
+   * Flag to disable optimization.
+   */
+  private final boolean noopt;
+
+  /**
+   * kNN searchers for the worker threads, created before this index is
+   * registered with the relation.
+   */
+  private final ArrayList<KNNSearcher<DBIDRef>> searchers;
+
   /**
    * Holds the listener.
    */
@@ -80,8 +101,10 @@ public class MaterializeKNNPreprocessor<O> extends AbstractMaterializeKNNPreproc
    */
   public MaterializeKNNPreprocessor(Relation<O> relation, Distance<? super O> distance, int k) {
     super(relation, distance, k);
-    this.knnQuery = new QueryBuilder<>(distanceQuery).noCache().kNNByDBID(k);
+    this.noopt = false;
+    this.knnQuery = newKNNSearcher();
     assert !(knnQuery instanceof PreprocessorKNNQuery) : knnQuery.toString();
+    this.searchers = newKNNSearchers();
   }
 
   /**
@@ -94,9 +117,37 @@ public class MaterializeKNNPreprocessor<O> extends AbstractMaterializeKNNPreproc
    */
   public MaterializeKNNPreprocessor(Relation<O> relation, DistanceQuery<O> distanceQuery, int k, boolean noopt) {
     super(relation, distanceQuery, k);
-    QueryBuilder<O> qb = new QueryBuilder<>(distanceQuery).noCache();
-    this.knnQuery = (noopt ? qb.cheapOnly() : qb).kNNByDBID(k);
+    this.noopt = noopt;
+    this.knnQuery = newKNNSearcher();
     assert !(knnQuery instanceof PreprocessorKNNQuery) : knnQuery.toString();
+    this.searchers = newKNNSearchers();
+  }
+
+  /**
+   * Get a new kNN searcher. Searchers may keep state (e.g., of a tree search),
+   * so each thread needs its own.
+   *
+   * @return kNN searcher
+   */
+  private KNNSearcher<DBIDRef> newKNNSearcher() {
+    QueryBuilder<O> qb = new QueryBuilder<>(distanceQuery).noCache();
+    return (noopt ? qb.cheapOnly() : qb).kNNByDBID(k);
+  }
+
+  /**
+   * Create the kNN searchers for the worker threads (except the first, which
+   * uses {@link #knnQuery}).
+   *
+   * @return kNN searchers
+   */
+  private ArrayList<KNNSearcher<DBIDRef>> newKNNSearchers() {
+    final int threads = ParallelCore.getCore().getParallelism();
+    ArrayList<KNNSearcher<DBIDRef>> searchers = new ArrayList<>(threads);
+    searchers.add(knnQuery);
+    for(int i = 1; i < threads; i++) {
+      searchers.add(newKNNSearcher());
+    }
+    return searchers;
   }
 
   /**
@@ -114,28 +165,42 @@ public class MaterializeKNNPreprocessor<O> extends AbstractMaterializeKNNPreproc
     }
     Duration duration = log.isStatistics() ? log.newDuration(this.getClass().getName() + ".precomputation-time").begin() : null;
     FiniteProgress progress = getLogger().isVerbose() ? new FiniteProgress("Materializing k nearest neighbors (k=" + k + ")", ids.size(), getLogger()) : null;
-    // Try bulk
-    final boolean ismetric = getDistanceQuery().getDistance().isMetric();
-    for(DBIDIter iter = ids.iter(); iter.valid(); iter.advance()) {
-      if(ismetric && storage.get(iter) != null) {
-        log.incrementProcessed(progress);
-        continue; // Previously computed (duplicate point?)
-      }
-      KNNList knn = knnQuery.getKNN(iter, k);
-      storage.put(iter, knn);
-      if(ismetric) {
-        for(DoubleDBIDListIter it = knn.iter(); it.valid() && it.doubleValue() == 0.; it.advance()) {
-          storage.put(it, knn); // Reuse
-        }
-      }
-      log.incrementProcessed(progress);
-    }
+    // Reuse the kNN of duplicate points, for metrics only:
+    materializeKNNs(ids, getDistanceQuery().getDistance().isMetric(), progress);
     log.ensureCompleted(progress);
     if(duration != null) {
       log.statistics(duration.end());
     }
   }
 
+  /**
+   * Materialize the kNN of the given objects in parallel.
+   *
+   * @param ids Objects to process
+   * @param reuse Reuse the kNN list for duplicates (requires a metric)
+   * @param progress Progress logger, may be {@code null}
+   */
+  protected void materializeKNNs(ArrayDBIDs ids, boolean reuse, FiniteProgress progress) {
+    // Add placeholders sequentially, so the (possibly hash-based) storage is
+    // only modified, but not resized, concurrently:
+    final KNNList placeholder = DBIDUtil.newHeap(k).toKNNList();
+    for(DBIDIter iter = ids.iter(); iter.valid(); iter.advance()) {
+      storage.put(iter, placeholder);
+    }
+    ParallelExecutor.run(ids, progress, getLogger(), new KNNMaterializer(placeholder, reuse));
+  }
+
+  /**
+   * Store a newly computed kNN list. This is invoked concurrently from
+   * multiple threads, but for different objects.
+   *
+   * @param id Object
+   * @param knn kNN list
+   */
+  protected void storeKNN(DBIDRef id, KNNList knn) {
+    storage.put(id, knn);
+  }
+
   @Override
   public final void insert(DBIDRef id) {
     objectsInserted(DBIDUtil.deref(id));
@@ -339,6 +404,98 @@ public class MaterializeKNNPreprocessor<O> extends AbstractMaterializeKNNPreproc
     return LOG;
   }
 
+  /**
+   * Processor to materialize the kNN lists in parallel.
+   *
+   * @author Erich Schubert
+   */
+  private class KNNMaterializer implements Processor {
+    /**
+     * Placeholder of objects not yet processed.
+     */
+    private KNNList placeholder;
+
+    /**
+     * Reuse the kNN list for duplicates.
+     */
+    private boolean reuse;
+
+    /**
+     * Constructor.
+     *
+     * @param placeholder Placeholder of objects not yet processed
+     * @param reuse Reuse the kNN list for duplicates
+     */
+    KNNMaterializer(KNNList placeholder, boolean reuse) {
+      this.placeholder = placeholder;
+      this.reuse = reuse;
+    }
+
+    @Override
+    public Instance instantiate(Executor executor) {
+      synchronized(searchers) {
+        if(!searchers.isEmpty()) {
+          return new Instance(searchers.remove(searchers.size() - 1), true);
+        }
+      }
+      // More threads than expected: the index may be registered already, so
+      // only a linear scan is safe here.
+      return new Instance(new QueryBuilder<>(distanceQuery).noCache().linearOnly().kNNByDBID(k), false);
+    }
+
+    @Override
+    public void cleanup(Processor.Instance inst) {
+      Instance instance = (Instance) inst;
+      if(instance.pooled) {
+        synchronized(searchers) {
+          searchers.add(instance.knnq);
+        }
+      }
+    }
+
+    /**
+     * Per-thread instance.
+     *
+     * @author Erich Schubert
+     */
+    private class Instance implements Processor.Instance {
+      /**
+       * kNN searcher of this thread.
+       */
+      private KNNSearcher<DBIDRef> knnq;
+
+      /**
+       * Flag whether the searcher is to be returned to the pool.
+       */
+      private boolean pooled;
+
+      /**
+       * Constructor.
+       *
+       * @param knnq kNN searcher of this thread
+       * @param pooled Flag whether the searcher is to be returned to the pool
+       */
+      Instance(KNNSearcher<DBIDRef> knnq, boolean pooled) {
+        this.knnq = knnq;
+        this.pooled = pooled;
+      }
+
+      @Override
+      public void map(DBIDRef id) {
+        if(reuse && storage.get(id) != placeholder) {
+          return; // Previously computed (duplicate point?)
+        }
+        KNNList knn = knnq.getKNN(id, k);
+        storeKNN(id, knn);
+        if(reuse) {
+          for(DoubleDBIDListIter it = knn.iter(); it.valid() && it.doubleValue() == 0.; it.advance()) {
+            storeKNN(it, knn); // Reuse
+          }
+        }
+      }
+    }
+  }
+
   /**
    * The parameterizable factory.
    *
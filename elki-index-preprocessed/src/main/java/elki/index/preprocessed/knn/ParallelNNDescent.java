@@ -0,0 +1,864 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.index.preprocessed.knn;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import elki.database.datastore.DataStoreFactory;
+import elki.database.datastore.DataStoreUtil;
+import elki.database.datastore.WritableIntegerDataStore;
+import elki.database.ids.*;
+import elki.database.query.QueryBuilder;
+import elki.database.query.distance.DistanceQuery;
+import elki.database.query.knn.KNNSearcher;
+import elki.database.relation.Relation;
+import elki.distance.Distance;
+import elki.logging.Logging;
+import elki.logging.progress.IndefiniteProgress;
+import elki.logging.statistics.DoubleStatistic;
+import elki.logging.statistics.LongStatistic;
+import elki.parallel.Executor;
+import elki.parallel.ParallelCore;
+import elki.parallel.ParallelExecutor;
+import elki.parallel.processor.Processor;
+import elki.utilities.documentation.Reference;
+import elki.utilities.exceptions.AbortException;
+import elki.utilities.optionhandling.constraints.CommonConstraints;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.DoubleParameter;
+import elki.utilities.optionhandling.parameters.Flag;
+import elki.utilities.optionhandling.parameters.IntParameter;
+import elki.utilities.optionhandling.parameters.RandomParameter;
+import elki.utilities.random.RandomFactory;
+
+/**
+ * Multi-threaded variant of NN-descent, for large data sets.
+ * <p>
+ * In contrast to {@link NNDescent}, the neighbor graph is kept in flat
+ * primitive arrays indexed by the object offset, with {@code k-1} slots per
+ * object. The candidate lists of each iteration are sampled sequentially
+ * (which is linear in the graph size), while the local joins, which perform
+ * all the distance computations, run in parallel. Concurrent updates of a
+ * neighbor list are guarded by striped locks, but candidates that cannot
+ * improve the current k-distance are rejected without locking.
+ * <p>
+ * Because of the concurrent updates, the result is not exactly reproducible
+ * even with a fixed random seed.
+ * <p>
+ * Reference:
+ * <p>
+ * W. Dong and C. Moses and K. Li<br>
+ * Efficient k-nearest neighbor graph construction for generic similarity
+ * measures<br>
+ * Proc. 20th Int. Conf. on World Wide Web (WWW'11)
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @param <O> Object type
+ */
+@Reference(authors = "W. Dong, C. Moses, K. Li", //
+    title = "Efficient k-nearest neighbor graph construction for generic similarity measures", //
+    booktitle = "Proc. 20th Int. Conf. on World Wide Web (WWW'11)", //
+    url = "https://doi.org/10.1145/1963405.1963487", //
+    bibkey = "DBLP:conf/www/DongCL11")
+public class ParallelNNDescent<O> extends AbstractMaterializeKNNPreprocessor<O> {
+  /**
+   * Logger
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelNNDescent.class);
+
+  /**
+   * Log prefix.
+   */
+  private String prefix = getClass().getCanonicalName();
+
+  /**
+   * Random generator
+   */
+  private final RandomFactory rnd;
+
+  /**
+   * early termination parameter
+   */
+  private double delta;
+
+  /**
+   * sample rate
+   */
+  private double rho;
+
+  /**
+   * maximum number of iterations
+   */
+  private int iterations;
+
+  /**
+   * Do not use initial neighbors
+   */
+  private boolean noInitialNeighbors;
+
+  /**
+   * Number of neighbors stored per object (k-1, the query point is added at
+   * the end).
+   */
+  private int kk;
+
+  /**
+   * Neighbor offsets, kk slots per object.
+   */
+  private int[] nbr;
+
+  /**
+   * Neighbor distances, kk slots per object.
+   */
+  private double[] dist;
+
+  /**
+   * Flag for neighbors not yet used in a local join.
+   */
+  private boolean[] isnew;
+
+  /**
+   * Number of neighbors of each object.
+   */
+  private int[] cnt;
+
+  /**
+   * Current k-distance of each object, infinite while the list is not full.
+   */
+  private double[] kdist;
+
+  /**
+   * Striped locks for updating the neighbor lists.
+   */
+  private Object[] locks;
+
+  /**
+   * Bit mask to choose the lock.
+   */
+  private int lockmask;
+
+  /**
+   * Constructor.
+   *
+   * @param relation Relation to index
+   * @param distance distance function
+   * @param k k
+   * @param rnd Random generator
+   * @param delta Delta threshold
+   * @param rho Rho threshold
+   * @param noInitialNeighbors Do not use initial neighbors
+   * @param iterations Maximum number of iterations
+   */
+  public ParallelNNDescent(Relation<O> relation, Distance<? super O> distance, int k, RandomFactory rnd, double delta, double rho, boolean noInitialNeighbors, int iterations) {
+    super(relation, distance, k);
+    this.rnd = rnd;
+    this.delta = delta;
+    this.rho = rho;
+    this.noInitialNeighbors = noInitialNeighbors;
+    this.iterations = iterations;
+  }
+
+  @Override
+  protected void preprocess() {
+    final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    final long starttime = System.currentTimeMillis();
+    IndefiniteProgress progress = LOG.isVerbose() ? new IndefiniteProgress("KNNGraph iteration", LOG) : null;
+    final int size = ids.size();
+    // to add query point itself in the end, internally (k-1) is used
+    kk = Math.max(0, Math.min(k - 1, size - 1));
+    // this variable is the sampling size
+    final int items = Math.min((int) Math.ceil(rho * kk), size - 1);
+    if(size * (long) Math.max(kk, items) > 0x7FFF_FFFAL) {
+      throw new AbortException("Memory exceeds Java array size limit.");
+    }
+
+    WritableIntegerDataStore offsets = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, -1);
+    for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+      offsets.putInt(it, it.getOffset());
+    }
+    nbr = new int[size * kk];
+    dist = new double[size * kk];
+    isnew = new boolean[size * kk];
+    cnt = new int[size];
+    kdist = new double[size];
+    Arrays.fill(kdist, Double.POSITIVE_INFINITY);
+    int nlocks = Integer.highestOneBit(Math.max(1, ParallelCore.getCore().getParallelism()) << 6);
+    nlocks = Math.min(nlocks, Integer.highestOneBit(Math.max(1, size)));
+    locks = new Object[nlocks];
+    for(int i = 0; i < nlocks; i++) {
+      locks[i] = new Object();
+    }
+    lockmask = nlocks - 1;
+
+    // Candidate lists of the local joins, items resp. kk slots per object:
+    final int[] newFwd = new int[size * items], newFwdCnt = new int[size];
+    final int[] oldFwd = new int[size * kk], oldFwdCnt = new int[size];
+    final int[] newRev = new int[size * items], newRevCnt = new int[size];
+    final int[] oldRev = new int[size * items], oldRevCnt = new int[size];
+    final Random rand = rnd.getSingleThreadedRandom();
+
+    long counter_all = 0;
+    // Random initial candidates
+    if(items > 0) {
+      for(int i = 0; i < size; i++) {
+        newFwdCnt[i] = sampleOthers(i, size, items, newFwd, i * items, rand);
+      }
+      if(!noInitialNeighbors) {
+        JoinProcessor init = new JoinProcessor(ids, offsets, newFwd, newFwdCnt, items);
+        ParallelExecutor.run(ids, init);
+        counter_all += init.distances;
+      }
+    }
+
+    int iter = 0;
+    for(; iter < iterations && items > 0; iter++) {
+      // With no initial neighbors, the random candidates are joined first.
+      if(iter > 0 || !noInitialNeighbors) {
+        long t = sampleCandidates(size, items, newFwd, newFwdCnt, oldFwd, oldFwdCnt, rand);
+        if(LOG.isStatistics()) {
+          LOG.statistics(new DoubleStatistic(prefix + ".new-rate", t / (double) (kk * (long) size)));
+        }
+      }
+      reverse(size, items, newFwd, newFwdCnt, newRev, newRevCnt, rand);
+      reverse(size, kk, items, oldFwd, oldFwdCnt, oldRev, oldRevCnt, rand);
+
+      LocalJoinProcessor join = new LocalJoinProcessor(ids, offsets, items, newFwd, newFwdCnt, oldFwd, oldFwdCnt, newRev, newRevCnt, oldRev, oldRevCnt);
+      ParallelExecutor.run(ids, join);
+      counter_all += join.distances;
+      final double rate = join.updates / (double) (kk * (long) size);
+      if(LOG.isStatistics()) {
+        LOG.statistics(new DoubleStatistic(prefix + ".scan-rate", counter_all * .5 / (size * (size - 1L))));
+        LOG.statistics(new DoubleStatistic(prefix + ".update-rate", rate));
+      }
+      LOG.incrementProcessed(progress);
+      if(join.distances < delta * kk * size) {
+        LOG.verbose("KNNGraph terminated because we performed delta*k*size distance computations.");
+        break;
+      }
+      if(rate < delta) {
+        LOG.verbose("KNNGraph terminated because update rate got smaller than delta.");
+        break;
+      }
+    }
+    if(LOG.isVerbose() && iter == iterations) {
+      LOG.verbose("KNNGraph terminated because the maximum number of iterations was reached.");
+    }
+    LOG.setCompleted(progress);
+    // convert graph to storage
+    storage = DataStoreFactory.FACTORY.makeStorage(ids, DataStoreFactory.HINT_DB, KNNList.class);
+    DBIDArrayIter iter2 = ids.iter();
+    for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+      final int i = it.getOffset(), base = i * kk;
+      KNNHeap heap = DBIDUtil.newHeap(k);
+      // Add query point and convert heap to list:
+      heap.insert(0, it);
+      for(int s = 0; s < cnt[i]; s++) {
+        heap.insert(dist[base + s], iter2.seek(nbr[base + s]));
+      }
+      storage.put(it, heap.toKNNList());
+    }
+    // Release the working memory.
+    nbr = null;
+    dist = null;
+    isnew = null;
+    cnt = null;
+    kdist = null;
+    locks = null;
+    final long end = System.currentTimeMillis();
+    if(LOG.isStatistics()) {
+      LOG.statistics(new LongStatistic(prefix + ".construction-time.ms", end - starttime));
+    }
+  }
+
+  /**
+   * Draw a random sample of other objects.
+   *
+   * @param self Object to exclude
+   * @param size Number of objects
+   * @param items Sample size, at most size-1
+   * @param out Output array
+   * @param base Output position
+   * @param rand Random generator
+   * @return Number of samples drawn
+   */
+  private static int sampleOthers(int self, int size, int items, int[] out, int base, Random rand) {
+    if(items >= size - 1) {
+      for(int j = 0, c = 0; j < size; j++) {
+        if(j != self) {
+          out[base + c++] = j;
+        }
+      }
+      return size - 1;
+    }
+    int c = 0;
+    sample: while(c < items) {
+      final int j = rand.nextInt(size);
+      if(j == self) {
+        continue;
+      }
+      for(int s = base, e = base + c; s < e; s++) {
+        if(out[s] == j) {
+          continue sample;
+        }
+      }
+      out[base + c++] = j;
+    }
+    return c;
+  }
+
+  /**
+   * Split the neighbor lists into old neighbors and a sample of the new
+   * neighbors. Sampled neighbors are no longer new afterwards.
+   *
+   * @param size Number of objects
+   * @param items Sample size
+   * @param newFwd Output sample of new neighbors
+   * @param newFwdCnt Output sample sizes
+   * @param oldFwd Output old neighbors
+   * @param oldFwdCnt Output number of old neighbors
+   * @param rand Random generator
+   * @return Number of new neighbors
+   */
+  private long sampleCandidates(int size, int items, int[] newFwd, int[] newFwdCnt, int[] oldFwd, int[] oldFwdCnt, Random rand) {
+    long t = 0;
+    // Sampled slot positions:
+    int[] pos = new int[items];
+    for(int i = 0; i < size; i++) {
+      final int base = i * kk, c = cnt[i];
+      int nold = 0, nnew = 0;
+      for(int s = base, e = base + c; s < e; s++) {
+        if(!isnew[s]) {
+          oldFwd[base + nold++] = nbr[s];
+          continue;
+        }
+        // Reservoir sampling of the new neighbors
+        if(nnew < items) {
+          pos[nnew] = s;
+        }
+        else {
+          final int r = rand.nextInt(nnew + 1);
+          if(r < items) {
+            pos[r] = s;
+          }
+        }
+        ++nnew;
+      }
+      final int take = Math.min(nnew, items), nbase = i * items;
+      for(int j = 0; j < take; j++) {
+        newFwd[nbase + j] = nbr[pos[j]];
+        isnew[pos[j]] = false;
+      }
+      newFwdCnt[i] = take;
+      oldFwdCnt[i] = nold;
+      t += nnew;
+    }
+    return t;
+  }
+
+  /**
+   * Build bounded reverse neighbor lists by reservoir sampling.
+   *
+   * @param size Number of objects
+   * @param items Maximum number of reverse neighbors
+   * @param fwd Forward lists, items slots per object
+   * @param fwdCnt Forward list sizes
+   * @param rev Output reverse lists
+   * @param revCnt Output reverse list sizes
+   * @param rand Random generator
+   */
+  private static void reverse(int size, int items, int[] fwd, int[] fwdCnt, int[] rev, int[] revCnt, Random rand) {
+    reverse(size, items, items, fwd, fwdCnt, rev, revCnt, rand);
+  }
+
+  /**
+   * Build bounded reverse neighbor lists by reservoir sampling.
+   *
+   * @param size Number of objects
+   * @param width Slots per object in the forward lists
+   * @param items Maximum number of reverse neighbors
+   * @param fwd Forward lists
+   * @param fwdCnt Forward list sizes
+   * @param rev Output reverse lists
+   * @param revCnt Output reverse list sizes
+   * @param rand Random generator
+   */
+  private static void reverse(int size, int width, int items, int[] fwd, int[] fwdCnt, int[] rev, int[] revCnt, Random rand) {
+    // revCnt counts all reverse neighbors seen, the list is bounded by items.
+    Arrays.fill(revCnt, 0);
+    for(int i = 0; i < size; i++) {
+      for(int s = i * width, e = s + fwdCnt[i]; s < e; s++) {
+        final int j = fwd[s], seen = revCnt[j]++;
+        if(seen < items) {
+          rev[j * items + seen] = i;
+        }
+        else {
+          final int r = rand.nextInt(seen + 1);
+          if(r < items) {
+            rev[j * items + r] = i;
+          }
+        }
+      }
+    }
+    for(int j = 0; j < size; j++) {
+      revCnt[j] = Math.min(revCnt[j], items);
+    }
+  }
+
+  /**
+   * Add a candidate to the neighbors of an object.
+   *
+   * @param i Object offset
+   * @param j Candidate offset
+   * @param d Distance
+   * @return {@code true} if the neighbors changed
+   */
+  private boolean add(int i, int j, double d) {
+    // Unsynchronized pre-check, repeated below while holding the lock.
+    if(d >= kdist[i]) {
+      return false;
+    }
+    synchronized(locks[i & lockmask]) {
+      final int base = i * kk, c = cnt[i];
+      for(int s = base, e = base + c; s < e; s++) {
+        if(nbr[s] == j) {
+          return false;
+        }
+      }
+      if(c < kk) {
+        nbr[base + c] = j;
+        dist[base + c] = d;
+        isnew[base + c] = true;
+        if((cnt[i] = c + 1) == kk) {
+          kdist[i] = maxDistance(base);
+        }
+        return true;
+      }
+      if(d >= kdist[i]) {
+        return false;
+      }
+      // Replace the farthest neighbor:
+      int worst = base;
+      for(int s = base + 1, e = base + kk; s < e; s++) {
+        if(dist[s] > dist[worst]) {
+          worst = s;
+        }
+      }
+      nbr[worst] = j;
+      dist[worst] = d;
+      isnew[worst] = true;
+      kdist[i] = maxDistance(base);
+      return true;
+    }
+  }
+
+  /**
+   * Largest distance in a full neighbor list.
+   *
+   * @param base Start offset of the list
+   * @return Maximum distance
+   */
+  private double maxDistance(int base) {
+    double max = dist[base];
+    for(int s = base + 1, e = base + kk; s < e; s++) {
+      max = dist[s] > max ? dist[s] : max;
+    }
+    return max;
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  @Deprecated
+  @Override
+  public KNNSearcher<O> kNNByObject(DistanceQuery<O> distanceQuery, int maxk, int flags) {
+    return (flags & QueryBuilder.FLAG_EXACT_ONLY) != 0 ? null : // approximate
+        super.kNNByObject(distanceQuery, maxk, flags);
+  }
+
+  /**
+   * Base class for the parallel processors, which compute distances of pairs
+   * and insert them into both neighbor lists.
+   *
+   * @author Erich Schubert
+   */
+  private abstract class AbstractPairProcessor implements Processor {
+    /**
+     * Object ids.
+     */
+    protected ArrayDBIDs ids;
+
+    /**
+     * Offsets of the objects.
+     */
+    protected WritableIntegerDataStore offsets;
+
+    /**
+     * Number of distance computations.
+     */
+    protected long distances;
+
+    /**
+     * Number of neighbor list updates.
+     */
+    protected long updates;
+
+    /**
+     * Constructor.
+     *
+     * @param ids Object ids
+     * @param offsets Object offsets
+     */
+    protected AbstractPairProcessor(ArrayDBIDs ids, WritableIntegerDataStore offsets) {
+      this.ids = ids;
+      this.offsets = offsets;
+    }
+
+    @Override
+    public synchronized void cleanup(Processor.Instance inst) {
+      @SuppressWarnings("unchecked")
+      PairInstance i = (PairInstance) inst;
+      distances += i.distances;
+      updates += i.updates;
+    }
+
+    /**
+     * Per-thread instance.
+     *
+     * @author Erich Schubert
+     */
+    protected abstract class PairInstance implements Processor.Instance {
+      /**
+       * Iterators to access the objects.
+       */
+      private DBIDArrayIter a = ids.iter(), b = ids.iter();
+
+      /**
+       * Number of distance computations.
+       */
+      protected long distances;
+
+      /**
+       * Number of neighbor list updates.
+       */
+      protected long updates;
+
+      /**
+       * Compute the distance of a pair, and update both neighbor lists.
+       *
+       * @param i First offset
+       * @param j Second offset
+       */
+      protected void pair(int i, int j) {
+        final double d = distanceQuery.distance(a.seek(i), b.seek(j));
+        ++distances;
+        updates += (add(i, j, d) ? 1 : 0) + (add(j, i, d) ? 1 : 0);
+      }
+    }
+  }
+
+  /**
+   * Join each object with its initial candidates.
+   *
+   * @author Erich Schubert
+   */
+  private class JoinProcessor extends AbstractPairProcessor {
+    /**
+     * Candidate lists.
+     */
+    private int[] cand;
+
+    /**
+     * Candidate list sizes.
+     */
+    private int[] candCnt;
+
+    /**
+     * Slots per object.
+     */
+    private int width;
+
+    /**
+     * Constructor.
+     *
+     * @param ids Object ids
+     * @param offsets Object offsets
+     * @param cand Candidate lists
+     * @param candCnt Candidate list sizes
+     * @param width Slots per object
+     */
+    protected JoinProcessor(ArrayDBIDs ids, WritableIntegerDataStore offsets, int[] cand, int[] candCnt, int width) {
+      super(ids, offsets);
+      this.cand = cand;
+      this.candCnt = candCnt;
+      this.width = width;
+    }
+
+    @Override
+    public Processor.Instance instantiate(Executor executor) {
+      return new PairInstance() {
+        @Override
+        public void map(DBIDRef id) {
+          final int i = offsets.intValue(id);
+          for(int s = i * width, e = s + candCnt[i]; s < e; s++) {
+            pair(i, cand[s]);
+          }
+        }
+      };
+    }
+  }
+
+  /**
+   * The local join of NN-descent: joins all new candidates of an object with
+   * each other, and with the old candidates.
+   *
+   * @author Erich Schubert
+   */
+  private class LocalJoinProcessor extends AbstractPairProcessor {
+    /**
+     * Sample size.
+     */
+    private int items;
+
+    /**
+     * Candidate lists.
+     */
+    private int[] newFwd, newFwdCnt, oldFwd, oldFwdCnt, newRev, newRevCnt, oldRev, oldRevCnt;
+
+    /**
+     * Constructor.
+     *
+     * @param ids Object ids
+     * @param offsets Object offsets
+     * @param items Sample size
+     * @param newFwd Sampled new neighbors
+     * @param newFwdCnt Number of sampled new neighbors
+     * @param oldFwd Old neighbors
+     * @param oldFwdCnt Number of old neighbors
+     * @param newRev New reverse neighbors
+     * @param newRevCnt Number of new reverse neighbors
+     * @param oldRev Old reverse neighbors
+     * @param oldRevCnt Number of old reverse neighbors
+     */
+    protected LocalJoinProcessor(ArrayDBIDs ids, WritableIntegerDataStore offsets, int items, int[] newFwd, int[] newFwdCnt, int[] oldFwd, int[] oldFwdCnt, int[] newRev, int[] newRevCnt, int[] oldRev, int[] oldRevCnt) {
+      super(ids, offsets);
+      this.items = items;
+      this.newFwd = newFwd;
+      this.newFwdCnt = newFwdCnt;
+      this.oldFwd = oldFwd;
+      this.oldFwdCnt = oldFwdCnt;
+      this.newRev = newRev;
+      this.newRevCnt = newRevCnt;
+      this.oldRev = oldRev;
+      this.oldRevCnt = oldRevCnt;
+    }
+
+    @Override
+    public Processor.Instance instantiate(Executor executor) {
+      return new PairInstance() {
+        /**
+         * Scratch buffers for the merged candidate lists.
+         */
+        private int[] nw = new int[items << 1], od = new int[kk + items];
+
+        @Override
+        public void map(DBIDRef id) {
+          final int i = offsets.intValue(id);
+          final int nn = merge(newFwd, i * items, newFwdCnt[i], newRev, i * items, newRevCnt[i], nw);
+          if(nn == 0) {
+            return; // Nothing new to join.
+          }
+          int no = merge(oldFwd, i * kk, oldFwdCnt[i], oldRev, i * items, oldRevCnt[i], od);
+          // Remove old candidates that are also new, both lists are sorted:
+          int w = 0;
+          for(int r = 0, p = 0; r < no; r++) {
+            final int v = od[r];
+            while(p < nn && nw[p] < v) {
+              ++p;
+            }
+            if(p == nn || nw[p] != v) {
+              od[w++] = v;
+            }
+          }
+          no = w;
+          for(int x = 0; x < nn; x++) {
+            final int u = nw[x];
+            for(int y = x + 1; y < nn; y++) {
+              pair(u, nw[y]);
+            }
+            for(int y = 0; y < no; y++) {
+              pair(u, od[y]);
+            }
+          }
+        }
+      };
+    }
+  }
+
+  /**
+   * Merge two candidate lists into a sorted list without duplicates.
+   *
+   * @param a First array
+   * @param aoff First offset
+   * @param alen First length
+   * @param b Second array
+   * @param boff Second offset
+   * @param blen Second length
+   * @param out Output buffer
+   * @return Number of candidates
+   */
+  private static int merge(int[] a, int aoff, int alen, int[] b, int boff, int blen, int[] out) {
+    System.arraycopy(a, aoff, out, 0, alen);
+    System.arraycopy(b, boff, out, alen, blen);
+    final int len = alen + blen;
+    if(len <= 1) {
+      return len;
+    }
+    Arrays.sort(out, 0, len);
+    int w = 1;
+    for(int r = 1; r < len; r++) {
+      if(out[r] != out[w - 1]) {
+        out[w++] = out[r];
+      }
+    }
+    return w;
+  }
+
+  /**
+   * Index factory.
+   *
+   * @author Erich Schubert
+   *
+   * @param <O> Object type
+   */
+  public static class Factory<O> extends AbstractMaterializeKNNPreprocessor.Factory<O> {
+    /**
+     * Random generator
+     */
+    private final RandomFactory rnd;
+
+    /**
+     * early termination parameter
+     */
+    private final double delta;
+
+    /**
+     * sample rate
+     */
+    private final double rho;
+
+    /**
+     * set initial neighbors?
+     */
+    private final boolean noInitialNeighbors;
+
+    /**
+     * maximum number of iterations
+     */
+    private final int iterations;
+
+    /**
+     * Constructor.
+     *
+     * @param k K
+     * @param distance distance function
+     * @param rnd Random generator
+     * @param delta Delta threshold
+     * @param rho Rho threshold
+     * @param noInitialNeighbors Do not use initial neighbors
+     * @param iterations Maximum number of iterations
+     */
+    public Factory(int k, Distance<? super O> distance, RandomFactory rnd, double delta, double rho, boolean noInitialNeighbors, int iterations) {
+      super(k, distance);
+      this.rnd = rnd;
+      this.delta = delta;
+      this.rho = rho;
+      this.noInitialNeighbors = noInitialNeighbors;
+      this.iterations = iterations;
+    }
+
+    @Override
+    public ParallelNNDescent<O> instantiate(Relation<O> relation) {
+      return new ParallelNNDescent<>(relation, distance, k, rnd, delta, rho, noInitialNeighbors, iterations);
+    }
+
+    /**
+     * Parameterization class, using the same options as {@link NNDescent}.
+     *
+     * @author Erich Schubert
+     *
+     * @hidden
+     *
+     * @param <O> Object type
+     */
+    public static class Par<O> extends AbstractMaterializeKNNPreprocessor.Factory.Par<O> {
+      /**
+       * Random generator
+       */
+      private RandomFactory rnd;
+
+      /**
+       * early termination parameter
+       */
+      private double delta;
+
+      /**
+       * sample rate
+       */
+      private double rho;
+
+      /**
+       * No initial neighbors
+       */
+      private boolean noInitialNeighbors;
+
+      /**
+       * maximum number of iterations
+       */
+      private int iterations;
+
+      @Override
+      public void configure(Parameterization config) {
+        super.configure(config);
+        new RandomParameter(NNDescent.Factory.Par.SEED_ID).grab(config, x -> rnd = x);
+        new DoubleParameter(NNDescent.Factory.Par.DELTA_ID, 0.001) //
+            .addConstraint(CommonConstraints.GREATER_THAN_ZERO_DOUBLE) //
+            .grab(config, x -> delta = x);
+        new DoubleParameter(NNDescent.Factory.Par.RHO_ID, 1) //
+            .addConstraint(CommonConstraints.GREATER_EQUAL_ZERO_DOUBLE) //
+            .grab(config, x -> rho = x);
+        new Flag(NNDescent.Factory.Par.INITIAL_ID).grab(config, x -> noInitialNeighbors = x);
+        new IntParameter(NNDescent.Factory.Par.ITER_ID, 100) //
+            .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+            .grab(config, x -> iterations = x);
+      }
+
+      @Override
+      public ParallelNNDescent.Factory<O> make() {
+        return new ParallelNNDescent.Factory<>(k, distance, rnd, delta, rho, noInitialNeighbors, iterations);
+      }
+    }
+  }
+}
@@ -20,6 +20,7 @@
  */
 package elki.index.distancematrix;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
@@ -29,9 +30,12 @@ import elki.data.DoubleVector;
 import elki.data.type.TypeUtil;
 import elki.database.Database;
 import elki.database.StaticArrayDatabase;
-import elki.database.ids.DBIDRef;
+import elki.database.ids.*;
 import elki.database.query.PrioritySearcher;
 import elki.database.query.QueryBuilder;
+import elki.database.query.distance.DistanceQuery;
+import elki.database.query.knn.KNNSearcher;
+import elki.database.query.range.RangeSearcher;
 import elki.database.relation.Relation;
 import elki.distance.CosineDistance;
 import elki.distance.minkowski.EuclideanDistance;
@@ -60,6 +64,61 @@ public class PrecomputedDistanceMatrixTest extends AbstractIndexStructureTest {
     assertSinglePoint(factory, PrecomputedDistanceMatrix.PrecomputedKNNQuery.class, PrecomputedDistanceMatrix.PrecomputedRangeQuery.class);
   }
 
+  @Test
+  public void testEuclideanFloat() {
+    Database db = AbstractSimpleAlgorithmTest.makeSimpleDatabase(dataset, shoulds);
+    Relation<DoubleVector> relation = db.getRelation(TypeUtil.DOUBLE_VECTOR_FIELD);
+    DBIDRange ids = DBIDUtil.assertRange(relation.getDBIDs());
+    PrecomputedDistanceMatrix<DoubleVector> dmat = new PrecomputedDistanceMatrix<>(relation, ids, EuclideanDistance.STATIC, false);
+    PrecomputedDistanceMatrix<DoubleVector> fmat = new PrecomputedDistanceMatrix<>(relation, ids, EuclideanDistance.STATIC, true);
+    dmat.initialize();
+    fmat.initialize();
+    DistanceQuery<DoubleVector> dq = dmat.getDistanceQuery(EuclideanDistance.STATIC);
+    DistanceQuery<DoubleVector> fq = fmat.getDistanceQuery(EuclideanDistance.STATIC);
+    // All distances must agree up to float precision:
+    for(DBIDIter a = ids.iter(); a.valid(); a.advance()) {
+      for(DBIDIter b = ids.iter(); b.valid(); b.advance()) {
+        final double d = dq.distance(a, b);
+        assertEquals("Distance differs.", d, fq.distance(a, b), Math.ulp((float) d));
+      }
+    }
+    // Compare kNN and range queries to a linear scan:
+    QueryBuilder<DoubleVector> qb = new QueryBuilder<>(relation, EuclideanDistance.STATIC).linearOnly();
+    KNNSearcher<DBIDRef> lknn = qb.kNNByDBID(10), fknn = fmat.kNNByDBID(fq, 10, 0);
+    RangeSearcher<DBIDRef> lrange = qb.rangeByDBID(.1), frange = fmat.rangeByDBID(fq, .1, 0);
+    for(DBIDIter it = ids.iter(); it.valid(); it.advance()) {
+      KNNList lres = lknn.getKNN(it, 10), fres = fknn.getKNN(it, 10);
+      assertEquals("kNN size differs.", lres.size(), fres.size());
+      for(DoubleDBIDListIter l = lres.iter(), r = fres.iter(); l.valid(); l.advance(), r.advance()) {
+        assertEquals("kNN distance differs.", l.doubleValue(), r.doubleValue(), Math.ulp((float) l.doubleValue()));
+      }
+      DoubleDBIDList lr = lrange.getRange(it, .1), fr = frange.getRange(it, .1);
+      // Only objects very close to the radius may differ due to rounding:
+      for(DoubleDBIDListIter l = lr.iter(); l.valid(); l.advance()) {
+        assertTrue("Missing range result.", l.doubleValue() > .1 - 1e-6 || contains(fr, l));
+      }
+      for(DoubleDBIDListIter r = fr.iter(); r.valid(); r.advance()) {
+        assertTrue("Extra range result.", r.doubleValue() > .1 - 1e-6 || contains(lr, r));
+      }
+    }
+  }
+
+  /**
+   * Test if a result list contains an object.
+   *
+   * @param list Result list
+   * @param id Object
+   * @return true if contained
+   */
+  private static boolean contains(DoubleDBIDList list, DBIDRef id) {
+    for(DoubleDBIDListIter it = list.iter(); it.valid(); it.advance()) {
+      if(DBIDUtil.equal(it, id)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   /**
    * This test is to validate the odd optimized sorting logic for partial search
    * based on the distance matrix, which tries to combine benefits of
@@ -351,6 +351,31 @@ public abstract class AbstractRStarTree<N extends AbstractRStarTreeNode<N, E>, E
    */
   protected abstract void bulkLoad(List<E> entries);
 
+  /**
+   * Test whether queries should scan the packed copies of the nodes.
+   *
+   * @return {@code true} when packed nodes are enabled
+   */
+  public boolean usePackedNodes() {
+    return settings.packed;
+  }
+
+  /**
+   * Get a packed copy of the entries of a node, for fast scanning.
+   *
+   * @param nodeID Node id
+   * @return Packed node entries
+   */
+  public PackedSpatialNode getPackedNode(int nodeID) {
+    return getNode(nodeID).getPacked();
+  }
+
+  @Override
+  protected void writeNode(N node) {
+    node.invalidatePacked();
+    super.writeNode(node);
+  }
+
   /**
    * Returns the height of this R*-Tree.
    *
@@ -36,6 +36,7 @@ import elki.utilities.optionhandling.OptionID;
 import elki.utilities.optionhandling.constraints.CommonConstraints;
 import elki.utilities.optionhandling.parameterization.Parameterization;
 import elki.utilities.optionhandling.parameters.DoubleParameter;
+import elki.utilities.optionhandling.parameters.Flag;
 import elki.utilities.optionhandling.parameters.ObjectParameter;
 
 /**
@@ -109,6 +110,11 @@ public abstract class AbstractRStarTreeFactory<O extends NumberVector, N extends
      */
     public static final OptionID OVERFLOW_STRATEGY_ID = new OptionID("rtree.overflowtreatment", "The strategy to use for handling overflows.");
 
+    /**
+     * Flag to scan packed copies of the nodes.
+     */
+    public static final OptionID PACKED_ID = new OptionID("rtree.packed", "Scan packed copies of the nodes in Euclidean queries. Faster for read-mostly trees, but needs additional memory.");
+
     /**
      * Tree settings
      */
@@ -135,6 +141,7 @@ public abstract class AbstractRStarTreeFactory<O extends NumberVector, N extends
           .grab(config, x -> settings.relativeMinFill = x);
       new ObjectParameter<OverflowTreatment>(OVERFLOW_STRATEGY_ID, OverflowTreatment.class, LimitedReinsertOverflowTreatment.class) //
           .grab(config, x -> settings.setOverflowTreatment(x));
+      new Flag(PACKED_ID).grab(config, x -> settings.packed = x);
       configBulkLoad(config);
     }
 
@@ -45,6 +45,12 @@ import elki.index.tree.spatial.SpatialPointLeafEntry;
  * @param <E> Entry type
  */
 public abstract class AbstractRStarTreeNode<N extends AbstractRStarTreeNode<N, E>, E extends SpatialEntry> extends AbstractNode<E> implements Node<E> {
+  /**
+   * Packed copy of the entries, built on demand; {@code null} if not built
+   * yet, or outdated because the node was modified.
+   */
+  private transient PackedSpatialNode packed;
+
   /**
    * Empty constructor for Externalizable interface.
    */
@@ -63,6 +69,23 @@ public abstract class AbstractRStarTreeNode<N extends AbstractRStarTreeNode<N, E
     super(capacity, isLeaf);
   }
 
+  /**
+   * Get a packed copy of the entries, for fast scanning.
+   *
+   * @return Packed entries
+   */
+  public PackedSpatialNode getPacked() {
+    PackedSpatialNode p = packed;
+    return p != null ? p : (packed = new PackedSpatialNode(this));
+  }
+
+  /**
+   * Discard the packed copy of the entries, after the node was modified.
+   */
+  public void invalidatePacked() {
+    packed = null;
+  }
+
   /**
    * Recomputing the MBR is rather expensive.
    *
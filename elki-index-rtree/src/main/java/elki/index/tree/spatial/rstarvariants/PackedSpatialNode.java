@@ -0,0 +1,146 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.index.tree.spatial.rstarvariants;
+
+import elki.database.ids.ArrayModifiableDBIDs;
+import elki.database.ids.DBIDUtil;
+import elki.index.tree.DirectoryEntry;
+import elki.index.tree.LeafEntry;
+import elki.index.tree.spatial.SpatialEntry;
+import elki.index.tree.spatial.SpatialPointLeafEntry;
+
+/**
+ * Packed, read-only copy of the entries of a R*-tree node, stored as primitive
+ * arrays (struct-of-arrays) for queries to scan with tight loops, rather than
+ * following a pointer to each entry and its bounding box.
+ * <p>
+ * The coordinates are stored dimension-major, i.e., the minimum of entry
+ * {@code i} in dimension {@code d} is at {@code mins[d * size + i]}. For leaves
+ * of point entries, {@code maxs} is the same array as {@code mins}.
+ * <p>
+ * Only used if enabled in the {@link RTreeSettings}, as the packed copies are
+ * cached in addition to the regular nodes. Obtain instances via
+ * {@link AbstractRStarTree#getPackedNode}; a node discards its copy when it is
+ * written, so only modified nodes are rebuilt.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public final class PackedSpatialNode {
+  /**
+   * Number of entries.
+   */
+  public final int size;
+
+  /**
+   * Dimensionality.
+   */
+  public final int dim;
+
+  /**
+   * Minimum and maximum coordinates, dimension-major.
+   */
+  public final double[] mins, maxs;
+
+  /**
+   * Child page ids, for directory nodes; {@code null} for leaves.
+   */
+  public final int[] pageIds;
+
+  /**
+   * Object ids, for leaf nodes; {@code null} for directory nodes.
+   */
+  public final ArrayModifiableDBIDs ids;
+
+  /**
+   * Constructor.
+   *
+   * @param node Node to pack
+   */
+  PackedSpatialNode(AbstractRStarTreeNode<?, ?> node) {
+    final int size = this.size = node.getNumEntries();
+    final int dim = this.dim = size > 0 ? node.getEntry(0).getDimensionality() : 0;
+    boolean points = node.isLeaf();
+    for(int i = 0; points && i < size; i++) {
+      points = node.getEntry(i) instanceof SpatialPointLeafEntry;
+    }
+    this.mins = new double[size * dim];
+    this.maxs = points ? mins : new double[size * dim];
+    for(int i = 0; i < size; i++) {
+      final SpatialEntry e = node.getEntry(i);
+      for(int d = 0, j = i; d < dim; d++, j += size) {
+        mins[j] = e.getMin(d);
+        if(!points) {
+          maxs[j] = e.getMax(d);
+        }
+      }
+    }
+    if(node.isLeaf()) {
+      this.pageIds = null;
+      this.ids = DBIDUtil.newArray(size);
+      for(int i = 0; i < size; i++) {
+        ids.add(((LeafEntry) node.getEntry(i)).getDBID());
+      }
+    }
+    else {
+      this.ids = null;
+      this.pageIds = new int[size];
+      for(int i = 0; i < size; i++) {
+        pageIds[i] = ((DirectoryEntry) node.getEntry(i)).getPageID();
+      }
+    }
+  }
+
+  /**
+   * Compute the squared Euclidean minimum distances of a query point to all
+   * entries.
+   *
+   * @param q Query point
+   * @param out Output buffer, must have at least {@link #size} entries
+   */
+  public void squaredMinDists(double[] q, double[] out) {
+    final int size = this.size;
+    if(size > 0 && dim != q.length) {
+      throw new IllegalArgumentException("Objects do not have the same dimensionality.");
+    }
+    for(int i = 0; i < size; i++) {
+      out[i] = 0.;
+    }
+    if(maxs == mins) {
+      for(int d = 0, off = 0; d < dim; d++, off += size) {
+        final double qd = q[d];
+        for(int i = 0; i < size; i++) {
+          final double delta = mins[off + i] - qd;
+          out[i] += delta * delta;
+        }
+      }
+      return;
+    }
+    for(int d = 0, off = 0; d < dim; d++, off += size) {
+      final double qd = q[d];
+      for(int i = 0; i < size; i++) {
+        final double lo = mins[off + i] - qd, hi = qd - maxs[off + i];
+        final double delta = lo > 0 ? lo : hi > 0 ? hi : 0.;
+        out[i] += delta * delta;
+      }
+    }
+  }
+}
@@ -65,6 +65,11 @@ public class RTreeSettings {
    */
   protected double relativeMinFill = 0.4;
 
+  /**
+   * Scan packed copies of the nodes in Euclidean queries.
+   */
+  protected boolean packed = false;
+
   /**
    * Constructor with default values.
    */
@@ -125,6 +130,16 @@ public class RTreeSettings {
     this.relativeMinFill = relative;
   }
 
+  /**
+   * Enable scanning packed copies of the nodes in Euclidean queries. This
+   * speeds up queries on read-mostly trees, but needs additional memory.
+   * 
+   * @param packed Use packed nodes
+   */
+  public void setPackedNodes(boolean packed) {
+    this.packed = packed;
+  }
+
   /**
    * @return the overflowTreatment
    */
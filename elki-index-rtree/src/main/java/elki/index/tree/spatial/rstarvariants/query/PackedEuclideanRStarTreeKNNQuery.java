@@ -0,0 +1,117 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.index.tree.spatial.rstarvariants.query;
+
+import java.util.Arrays;
+
+import elki.data.NumberVector;
+import elki.database.ids.DBIDArrayIter;
+import elki.database.ids.DBIDUtil;
+import elki.database.ids.KNNHeap;
+import elki.database.ids.KNNList;
+import elki.database.relation.Relation;
+import elki.distance.minkowski.EuclideanDistance;
+import elki.index.tree.spatial.rstarvariants.AbstractRStarTree;
+import elki.index.tree.spatial.rstarvariants.PackedSpatialNode;
+import elki.utilities.datastructures.heap.DoubleIntegerMinHeap;
+
+/**
+ * Variant of {@link EuclideanRStarTreeKNNQuery} that scans the packed copies of
+ * the nodes, computing the squared distances to all entries of a node in one
+ * tight loop.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @assoc - - - PackedSpatialNode
+ */
+public class PackedEuclideanRStarTreeKNNQuery<O extends NumberVector> extends RStarTreeKNNSearcher<O> {
+  /**
+   * Constructor.
+   *
+   * @param tree Index to use
+   * @param relation Data relation to query
+   */
+  public PackedEuclideanRStarTreeKNNQuery(AbstractRStarTree<?, ?, ?> tree, Relation<? extends O> relation) {
+    super(tree, relation, EuclideanDistance.STATIC);
+  }
+
+  @Override
+  public KNNList getKNN(O obj, int k) {
+    if(k < 1) {
+      throw new IllegalArgumentException("At least one neighbor has to be requested!");
+    }
+    tree.statistics.countKNNQuery();
+
+    final double[] q = obj.toArray();
+    final KNNHeap knnList = DBIDUtil.newHeap(k);
+    final DoubleIntegerMinHeap pq = new DoubleIntegerMinHeap(Math.min(knnList.getK() << 1, 21));
+    // Nodes to expand immediately, bypassing the queue
+    int[] stack = new int[10];
+    int sp = 0;
+    double[] buf = new double[0];
+    double maxDist = Double.MAX_VALUE;
+    stack[sp++] = tree.getRootID();
+    // search in tree
+    while(true) {
+      while(sp > 0) {
+        PackedSpatialNode node = tree.getPackedNode(stack[--sp]);
+        final int size = node.size;
+        if(buf.length < size) {
+          buf = new double[size];
+        }
+        node.squaredMinDists(q, buf);
+        // data node
+        if(node.ids != null) {
+          DBIDArrayIter it = node.ids.iter();
+          for(int i = 0; i < size; i++, it.advance()) {
+            tree.statistics.countDistanceCalculation();
+            final double distance = buf[i];
+            maxDist = distance <= maxDist ? knnList.insert(distance, it) : maxDist;
+          }
+        }
+        // directory node
+        else {
+          for(int i = 0; i < size; i++) {
+            tree.statistics.countDistanceCalculation();
+            final double distance = buf[i];
+            // Greedy expand, bypassing the queue
+            if(distance <= 0) {
+              if(sp == stack.length) { // Resize:
+                stack = Arrays.copyOf(stack, sp << 1);
+              }
+              stack[sp++] = node.pageIds[i];
+            }
+            else if(distance <= maxDist) {
+              pq.add(distance, node.pageIds[i]);
+            }
+          }
+        }
+      }
+      if(pq.isEmpty() || pq.peekKey() > maxDist) {
+        break;
+      }
+      stack[sp++] = pq.peekValue();
+      pq.poll(); // Remove from heap.
+    }
+    return knnList.toKNNListSqrt();
+  }
+}
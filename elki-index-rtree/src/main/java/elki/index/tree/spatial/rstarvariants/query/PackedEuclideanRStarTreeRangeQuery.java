@@ -0,0 +1,101 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.index.tree.spatial.rstarvariants.query;
+
+import java.util.Arrays;
+
+import elki.data.NumberVector;
+import elki.database.ids.DBIDArrayIter;
+import elki.database.ids.ModifiableDoubleDBIDList;
+import elki.database.relation.Relation;
+import elki.distance.minkowski.EuclideanDistance;
+import elki.index.tree.spatial.rstarvariants.AbstractRStarTree;
+import elki.index.tree.spatial.rstarvariants.PackedSpatialNode;
+
+import net.jafama.FastMath;
+
+/**
+ * Variant of {@link EuclideanRStarTreeRangeQuery} that scans the packed copies
+ * of the nodes, computing the squared distances to all entries of a node in
+ * one tight loop.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @assoc - - - PackedSpatialNode
+ */
+public class PackedEuclideanRStarTreeRangeQuery<O extends NumberVector> extends RStarTreeRangeSearcher<O> {
+  /**
+   * Constructor.
+   * 
+   * @param tree Index to use
+   * @param relation Relation to use.
+   */
+  public PackedEuclideanRStarTreeRangeQuery(AbstractRStarTree<?, ?, ?> tree, Relation<? extends O> relation) {
+    super(tree, relation, EuclideanDistance.STATIC);
+  }
+
+  @Override
+  public ModifiableDoubleDBIDList getRange(O object, double range, ModifiableDoubleDBIDList result) {
+    final double sqepsilon = range * range;
+    final double[] q = object.toArray();
+    tree.statistics.countRangeQuery();
+
+    // Processing queue.
+    int[] pq = new int[101];
+    int ps = 0;
+    pq[ps++] = tree.getRootID();
+    double[] buf = new double[0];
+
+    // search in tree
+    while(ps > 0) {
+      int pqNode = pq[--ps]; // Pop last.
+      PackedSpatialNode node = tree.getPackedNode(pqNode);
+      final int numEntries = node.size;
+      if(buf.length < numEntries) {
+        buf = new double[numEntries];
+      }
+      node.squaredMinDists(q, buf);
+
+      if(node.ids != null) {
+        DBIDArrayIter it = node.ids.iter();
+        for(int i = 0; i < numEntries; i++, it.advance()) {
+          tree.statistics.countDistanceCalculation();
+          final double distance = buf[i];
+          if(distance <= sqepsilon) {
+            result.add(FastMath.sqrt(distance), it);
+          }
+        }
+      }
+      else {
+        for(int i = 0; i < numEntries; i++) {
+          if(buf[i] <= sqepsilon) {
+            if(ps == pq.length) { // Resize:
+              pq = Arrays.copyOf(pq, pq.length + (pq.length >>> 1));
+            }
+            pq[ps++] = node.pageIds[i];
+          }
+        }
+      }
+    }
+    return result;
+  }
+}
@@ -42,6 +42,8 @@ import elki.index.tree.spatial.rstarvariants.AbstractRStarTree;
  * @assoc - - - AbstractRStarTree
  * @assoc - - - EuclideanRStarTreeKNNQuery
  * @assoc - - - EuclideanRStarTreeRangeQuery
+ * @assoc - - - PackedEuclideanRStarTreeKNNQuery
+ * @assoc - - - PackedEuclideanRStarTreeRangeQuery
  * @assoc - - - RStarTreeKNNSearcher
  * @assoc - - - RStarTreeRangeSearcher
  * @has - - - RangeSearcher
@@ -70,7 +72,9 @@ public final class RStarTreeUtil {
     // Can we support this distance function - spatial distances only!
     SpatialPrimitiveDistance<? super O> df = distanceQuery.getDistance();
     if(EuclideanDistance.STATIC.equals(df)) {
-      return (RangeSearcher<O>) new EuclideanRStarTreeRangeQuery<>(tree, (Relation<NumberVector>) distanceQuery.getRelation());
+      return (RangeSearcher<O>) (tree.usePackedNodes() ? //
+          new PackedEuclideanRStarTreeRangeQuery<>(tree, (Relation<NumberVector>) distanceQuery.getRelation()) : //
+          new EuclideanRStarTreeRangeQuery<>(tree, (Relation<NumberVector>) distanceQuery.getRelation()));
     }
     return new RStarTreeRangeSearcher<>(tree, distanceQuery.getRelation(), df);
   }
@@ -89,7 +93,9 @@ public final class RStarTreeUtil {
     // Can we support this distance function - spatial distances only!
     SpatialPrimitiveDistance<? super O> df = distanceQuery.getDistance();
     if(EuclideanDistance.STATIC.equals(df)) {
-      return (KNNSearcher<O>) new EuclideanRStarTreeKNNQuery<>(tree, (Relation<NumberVector>) distanceQuery.getRelation());
+      return (KNNSearcher<O>) (tree.usePackedNodes() ? //
+          new PackedEuclideanRStarTreeKNNQuery<>(tree, (Relation<NumberVector>) distanceQuery.getRelation()) : //
+          new EuclideanRStarTreeKNNQuery<>(tree, (Relation<NumberVector>) distanceQuery.getRelation()));
     }
     return new RStarTreeKNNSearcher<>(tree, distanceQuery.getRelation(), df);
   }
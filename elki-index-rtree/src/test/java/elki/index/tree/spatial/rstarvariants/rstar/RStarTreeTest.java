@@ -20,19 +20,30 @@
  */
 package elki.index.tree.spatial.rstarvariants.rstar;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
 
 import elki.algorithm.AbstractSimpleAlgorithmTest;
 import elki.data.NumberVector;
+import elki.data.type.TypeUtil;
 import elki.database.Database;
 import elki.database.StaticArrayDatabase;
+import elki.database.ids.*;
+import elki.database.query.distance.DistanceQuery;
+import elki.database.query.knn.KNNSearcher;
 import elki.database.query.knn.WrappedKNNDBIDByLookup;
+import elki.database.query.range.RangeSearcher;
 import elki.database.query.range.WrappedRangeDBIDByLookup;
+import elki.database.relation.ProxyView;
+import elki.database.relation.Relation;
+import elki.distance.minkowski.EuclideanDistance;
 import elki.index.AbstractIndexStructureTest;
 import elki.index.tree.spatial.rstarvariants.AbstractRStarTreeFactory;
 import elki.index.tree.spatial.rstarvariants.query.EuclideanRStarTreeDistancePrioritySearcher;
+import elki.index.tree.spatial.rstarvariants.query.PackedEuclideanRStarTreeKNNQuery;
+import elki.index.tree.spatial.rstarvariants.query.PackedEuclideanRStarTreeRangeQuery;
 import elki.index.tree.spatial.rstarvariants.query.RStarTreeKNNSearcher;
 import elki.index.tree.spatial.rstarvariants.query.RStarTreeRangeSearcher;
 import elki.index.tree.spatial.rstarvariants.strategies.insert.ApproximativeLeastOverlapInsertionStrategy;
@@ -96,4 +107,74 @@ public class RStarTreeTest extends AbstractIndexStructureTest {
     assertTrue("No R*-tree found?", it.valid());
     it.get().getNode(it.get().getRootID()).integrityCheck(it.get());
   }
+
+  /**
+   * Test the packed node scans against the regular queries, also after
+   * inserting and deleting objects.
+   */
+  @Test
+  public void testPackedNodes() {
+    Database db = AbstractSimpleAlgorithmTest.makeSimpleDatabase("elki/testdata/unittests/hierarchical-3d2d1d.csv", 600);
+    Relation<NumberVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    // Index two thirds of the data first, insert the remainder later.
+    ArrayModifiableDBIDs first = DBIDUtil.newArray(), later = DBIDUtil.newArray();
+    int i = 0;
+    for(DBIDIter it = rel.iterDBIDs(); it.valid(); it.advance(), i++) {
+      (i % 3 == 0 ? later : first).add(it);
+    }
+    ProxyView<NumberVector> view = new ProxyView<>(first, rel);
+    RStarTreeIndex<NumberVector> tree = new ELKIBuilder<>(RStarTreeFactory.class) //
+        .with(AbstractPageFileFactory.Par.PAGE_SIZE_ID, 300) //
+        .build().instantiate(view);
+    RStarTreeIndex<NumberVector> packed = new ELKIBuilder<>(RStarTreeFactory.class) //
+        .with(AbstractPageFileFactory.Par.PAGE_SIZE_ID, 300) //
+        .with(AbstractRStarTreeFactory.Par.PACKED_ID) //
+        .build().instantiate(view);
+    tree.initialize();
+    packed.initialize();
+    DistanceQuery<NumberVector> dq = EuclideanDistance.STATIC.instantiate(view);
+    assertSameResults(rel, dq, tree, packed);
+    view.setDBIDs(rel.getDBIDs());
+    tree.insertAll(later);
+    packed.insertAll(later);
+    assertSameResults(rel, dq, tree, packed);
+    ArrayModifiableDBIDs del = DBIDUtil.newArray();
+    for(DBIDIter it = rel.iterDBIDs(); it.valid(); it.advance(), i++) {
+      if(i % 2 == 0) {
+        del.add(it);
+      }
+    }
+    tree.deleteAll(del);
+    packed.deleteAll(del);
+    assertSameResults(rel, dq, tree, packed);
+  }
+
+  /**
+   * Compare the kNN and range queries of a regular and a packed tree.
+   *
+   * @param rel Relation of query points
+   * @param dq Distance query
+   * @param tree Regular tree
+   * @param packed Tree with packed nodes
+   */
+  private static void assertSameResults(Relation<NumberVector> rel, DistanceQuery<NumberVector> dq, RStarTreeIndex<NumberVector> tree, RStarTreeIndex<NumberVector> packed) {
+    KNNSearcher<NumberVector> knnq = tree.kNNByObject(dq, 10, 0);
+    KNNSearcher<NumberVector> pknnq = packed.kNNByObject(dq, 10, 0);
+    RangeSearcher<NumberVector> rq = tree.rangeByObject(dq, .1, 0);
+    RangeSearcher<NumberVector> prq = packed.rangeByObject(dq, .1, 0);
+    assertTrue("Packed kNN query not used.", pknnq instanceof PackedEuclideanRStarTreeKNNQuery);
+    assertTrue("Packed range query not used.", prq instanceof PackedEuclideanRStarTreeRangeQuery);
+    for(DBIDIter it = rel.iterDBIDs(); it.valid(); it.advance()) {
+      NumberVector q = rel.get(it);
+      KNNList knn = knnq.getKNN(q, 10), pknn = pknnq.getKNN(q, 10);
+      assertEquals("kNN sizes differ.", knn.size(), pknn.size());
+      for(DoubleDBIDListIter a = knn.iter(), b = pknn.iter(); a.valid(); a.advance(), b.advance()) {
+        assertEquals("kNN distances differ.", a.doubleValue(), b.doubleValue(), 1e-15);
+      }
+      ModifiableDoubleDBIDList range = rq.getRange(q, .1, DBIDUtil.newDistanceDBIDList());
+      ModifiableDoubleDBIDList prange = prq.getRange(q, .1, DBIDUtil.newDistanceDBIDList());
+      assertEquals("Range sizes differ.", range.size(), prange.size());
+      assertEquals("Range results differ.", range.size(), DBIDUtil.intersectionSize(DBIDUtil.newHashSet(range), prange));
+    }
+  }
 }
@@ -23,7 +23,9 @@ package elki.index.tree.metrical.covertree;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Function;
 
+import elki.database.datastore.WritableDataStore;
 import elki.database.ids.*;
 import elki.database.query.PrioritySearcher;
 import elki.database.query.QueryBuilder;
@@ -654,6 +656,63 @@ public class CoverTree<O> extends AbstractCoverTree<O> implements DistancePriori
       return advance(); // Find first
     }
 
+    /**
+     * Batch kNN search: queries contained in the tree are processed in tree
+     * order, so that consecutive queries are close. The neighbors of the
+     * previous query then yield a tight initial threshold for the next search.
+     */
+    @Override
+    public void getKNNs(DBIDs queries, Function<? super DBIDRef, ? extends Q> lookup, int k, WritableDataStore<KNNList> out) {
+      final HashSetModifiableDBIDs todo = DBIDUtil.newHashSet(queries);
+      final ArrayModifiableDBIDs order = DBIDUtil.newArray(todo.size());
+      treeOrder(root, todo, order);
+      order.addDBIDs(todo); // Queries not contained in the tree
+      KNNList prev = null;
+      for(DBIDIter qi = order.iter(); qi.valid(); qi.advance()) {
+        search(lookup.apply(qi));
+        double threshold = Double.POSITIVE_INFINITY;
+        // The k previous neighbors are candidates, so their maximum distance
+        // is an upper bound for the kNN distance of the new query:
+        if(prev != null && prev.size() >= k) {
+          threshold = 0.;
+          for(DoubleDBIDListIter it = prev.iter(); it.valid(); it.advance()) {
+            final double dist = queryDistance(it);
+            threshold = dist > threshold ? dist : threshold;
+          }
+          decreaseCutoff(threshold);
+        }
+        final KNNHeap heap = DBIDUtil.newHeap(k);
+        for(; valid(); advance()) {
+          if(getLowerBound() > threshold) {
+            continue;
+          }
+          final double dist = computeExactDistance();
+          if(dist <= threshold) {
+            decreaseCutoff(threshold = Math.min(threshold, heap.insert(dist, this)));
+          }
+        }
+        out.put(qi, prev = heap.toKNNList());
+      }
+    }
+
+    /**
+     * Collect the queries in depth-first tree order.
+     *
+     * @param cur Current node
+     * @param todo Remaining queries, will be modified
+     * @param order Output order
+     */
+    private void treeOrder(Node cur, HashSetModifiableDBIDs todo, ArrayModifiableDBIDs order) {
+      for(DBIDIter it = cur.singletons.iter(); it.valid(); it.advance()) {
+        if(todo.remove(it)) {
+          order.add(it);
+        }
+      }
+      for(Node c : cur.children) {
+        treeOrder(c, todo, order);
+      }
+    }
+
     @Override
     public PrioritySearcher<Q> decreaseCutoff(double threshold) {
       assert threshold <= this.threshold;
@@ -20,11 +20,14 @@
  */
 package elki.index.tree.spatial.kd;
 
+import java.util.function.Function;
+
 import elki.data.NumberVector;
 import elki.data.VectorUtil;
 import elki.data.VectorUtil.SortDBIDsBySingleDimension;
 import elki.data.type.TypeInformation;
 import elki.data.type.TypeUtil;
+import elki.database.datastore.WritableDataStore;
 import elki.database.ids.*;
 import elki.database.query.PrioritySearcher;
 import elki.database.query.distance.DistanceQuery;
@@ -306,6 +309,52 @@ public class MinimalisticMemoryKDTree<O extends NumberVector> implements Distanc
       return knns.toKNNList();
     }
 
+    /**
+     * Batch kNN search: queries contained in the tree are processed in tree
+     * order, so that consecutive queries are spatially close. The neighbors of
+     * the previous query then yield a tight initial bound for the next search.
+     */
+    @Override
+    public void getKNNs(DBIDs queries, Function<? super DBIDRef, ? extends O> lookup, int k, WritableDataStore<KNNList> out) {
+      final HashSetModifiableDBIDs todo = DBIDUtil.newHashSet(queries);
+      KNNList prev = null;
+      for(DBIDIter it = sorted.iter(); it.valid() && !todo.isEmpty(); it.advance()) {
+        if(todo.remove(it)) {
+          out.put(it, prev = getKNN(lookup.apply(it), k, prev));
+        }
+      }
+      // Remaining queries not contained in the tree:
+      for(DBIDIter it = todo.iter(); it.valid(); it.advance()) {
+        out.put(it, prev = getKNN(lookup.apply(it), k, prev));
+      }
+    }
+
+    /**
+     * kNN search, using the result of a nearby query for the initial bound.
+     *
+     * @param obj Query object
+     * @param k Number of neighbors
+     * @param prev Neighbors of a previous query, may be {@code null}
+     * @return kNN result
+     */
+    private KNNList getKNN(O obj, int k, KNNList prev) {
+      double maxdist = Double.POSITIVE_INFINITY;
+      // The k previous neighbors are candidates, so their maximum distance is
+      // an upper bound for the kNN distance of the new query:
+      if(prev != null && prev.size() >= k) {
+        maxdist = 0.;
+        for(DoubleDBIDListIter it = prev.iter(); it.valid(); it.advance()) {
+          final double dist = distance.distance(obj, relation.get(it));
+          countObjectAccess();
+          countDistanceComputation();
+          maxdist = dist > maxdist ? dist : maxdist;
+        }
+      }
+      final KNNHeap knns = DBIDUtil.newHeap(k);
+      kdKNNSearch(0, sorted.size(), 0, obj, knns, sorted.iter(), maxdist);
+      return knns.toKNNList();
+    }
+
     /**
      * Perform a kNN search on the k-d-tree.
      *
@@ -326,8 +375,8 @@ public class MinimalisticMemoryKDTree<O extends NumberVector> implements Distanc
           countDistanceComputation();
           if(dist <= maxdist) {
             knns.insert(dist, iter);
+            maxdist = Math.min(maxdist, knns.getKNNDistance());
           }
-          maxdist = knns.getKNNDistance();
         }
         return maxdist;
       }
@@ -351,7 +400,7 @@ public class MinimalisticMemoryKDTree<O extends NumberVector> implements Distanc
         if(dist <= maxdist) {
           assert (iter.getOffset() == middle);
           knns.insert(dist, iter /* .seek(middle) */);
-          maxdist = knns.getKNNDistance();
+          maxdist = Math.min(maxdist, knns.getKNNDistance());
         }
         if(left < middle) {
           maxdist = kdKNNSearch(left, middle, next, query, knns, iter, maxdist);
@@ -372,7 +421,7 @@ public class MinimalisticMemoryKDTree<O extends NumberVector> implements Distanc
             countDistanceComputation();
             if(dist <= maxdist) {
               knns.insert(dist, iter.seek(middle));
-              maxdist = knns.getKNNDistance();
+              maxdist = Math.min(maxdist, knns.getKNNDistance());
             }
           }
           if(middle + 1 < right && mindist <= maxdist) {
@@ -389,7 +438,7 @@ public class MinimalisticMemoryKDTree<O extends NumberVector> implements Distanc
             countDistanceComputation();
             if(dist <= maxdist) {
               knns.insert(dist, iter.seek(middle));
-              maxdist = knns.getKNNDistance();
+              maxdist = Math.min(maxdist, knns.getKNNDistance());
             }
           }
           if(left < middle && mindist <= maxdist) {
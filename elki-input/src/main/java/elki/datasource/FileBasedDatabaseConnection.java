@@ -25,20 +25,44 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.UncheckedIOException;
 import java.net.URI;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.List;
 
+import elki.datasource.bundle.BundleReader;
+import elki.datasource.bundle.BundleWriter;
+import elki.datasource.bundle.MultipleObjectsBundle;
 import elki.datasource.filter.ObjectFilter;
 import elki.datasource.parser.ArffParser;
 import elki.datasource.parser.NumberVectorLabelParser;
 import elki.datasource.parser.Parser;
+import elki.logging.Logging;
+import elki.logging.statistics.Duration;
 import elki.utilities.Priority;
+import elki.utilities.exceptions.AbortException;
 import elki.utilities.io.FileUtil;
 import elki.utilities.optionhandling.OptionID;
 import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameterization.TrackParameters;
+import elki.utilities.optionhandling.parameterization.TrackedParameter;
 import elki.utilities.optionhandling.parameters.FileParameter;
 
 /**
  * File based database connection based on the parser to be set.
+ * <p>
+ * Optionally, the parsed data can be cached in a binary bundle in a cache
+ * directory. The cache file is keyed by the input file path, size, and
+ * modification time, and the parser parameters. On later runs, the bundle is
+ * memory-mapped and read with a {@link BundleReader} instead of parsing the
+ * text input again. Filters are applied after loading, so they are not part of
+ * the key.
  * 
  * @author Arthur Zimek
  * @since 0.1
@@ -47,6 +71,31 @@ import elki.utilities.optionhandling.parameters.FileParameter;
  */
 @Priority(Priority.IMPORTANT)
 public class FileBasedDatabaseConnection extends InputStreamDatabaseConnection {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(FileBasedDatabaseConnection.class);
+
+  /**
+   * Version of the cache key, to invalidate old caches.
+   */
+  private static final String CACHE_VERSION = "1";
+
+  /**
+   * Input file, may be {@code null}.
+   */
+  private URI infile;
+
+  /**
+   * Cache directory, may be {@code null}.
+   */
+  private Path cachedir;
+
+  /**
+   * Parser configuration, for the cache key.
+   */
+  private String parserkey;
+
   /**
    * Constructor.
    * 
@@ -55,6 +104,20 @@ public class FileBasedDatabaseConnection extends InputStreamDatabaseConnection {
    * @param infile File to load the data from
    */
   public FileBasedDatabaseConnection(List<? extends ObjectFilter> filters, Parser parser, URI infile) {
+    this(filters, parser, infile, null, null);
+  }
+
+  /**
+   * Constructor.
+   * 
+   * @param filters Filters, can be null
+   * @param parser the parser to provide a database
+   * @param infile File to load the data from
+   * @param cachedir Directory to cache parsed data in, may be null
+   * @param parserkey Parser configuration for the cache key; if null, only
+   *        the parser class is used.
+   */
+  public FileBasedDatabaseConnection(List<? extends ObjectFilter> filters, Parser parser, URI infile, Path cachedir, String parserkey) {
     super(() -> {
       try {
         return new BufferedInputStream(FileUtil.open(infile));
@@ -63,6 +126,9 @@ public class FileBasedDatabaseConnection extends InputStreamDatabaseConnection {
         throw new UncheckedIOException("Could not load input file: " + infile, e);
       }
     }, filters, parser);
+    this.infile = infile;
+    this.cachedir = cachedir;
+    this.parserkey = parserkey != null ? parserkey : parser.getClass().getName();
   }
 
   /**
@@ -87,6 +153,135 @@ public class FileBasedDatabaseConnection extends InputStreamDatabaseConnection {
     super(in, filters, parser);
   }
 
+  @Override
+  public MultipleObjectsBundle loadData() {
+    Path file = cachedir != null && infile != null ? localFile(infile) : null;
+    if(file == null || !Files.isRegularFile(file)) {
+      return super.loadData();
+    }
+    Path cache;
+    try {
+      cache = cachedir.resolve(cacheKey(file) + ".bundle");
+    }
+    catch(IOException e) {
+      LOG.warning("Cannot access input file for caching: " + e.getMessage());
+      return super.loadData();
+    }
+    if(Files.isRegularFile(cache)) {
+      Duration duration = LOG.isStatistics() ? LOG.newDuration(this.getClass().getName() + ".load-cache").begin() : null;
+      try (FileChannel channel = FileChannel.open(cache)) {
+        LOG.verbose("Loading cached bundle " + cache);
+        MultipleObjectsBundle objects = invokeStreamFilters(new BundleReader(channel)).asMultipleObjectsBundle();
+        if(duration != null) {
+          LOG.statistics(duration.end());
+        }
+        return objects;
+      }
+      catch(IOException | AbortException e) {
+        LOG.warning("Cached bundle " + cache + " is not readable, parsing again: " + e.getMessage());
+      }
+    }
+    // Parse without filters, cache, then filter.
+    Duration duration = LOG.isStatistics() ? LOG.newDuration(this.getClass().getName() + ".parse").begin() : null;
+    MultipleObjectsBundle parsingResult;
+    try {
+      ins = ins != null ? ins : in.get();
+      parsingResult = parser.parse(ins);
+      parser.cleanup();
+      close();
+    }
+    catch(IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    if(duration != null) {
+      LOG.statistics(duration.end());
+    }
+    writeCache(parsingResult, cache);
+    Duration fduration = LOG.isStatistics() ? LOG.newDuration(this.getClass().getName() + ".filter").begin() : null;
+    MultipleObjectsBundle objects = invokeBundleFilters(parsingResult);
+    if(fduration != null) {
+      LOG.statistics(fduration.end());
+    }
+    return objects;
+  }
+
+  /**
+   * Write the cache file. Failures are logged, but not fatal.
+   *
+   * @param bundle Bundle to write
+   * @param cache Cache file
+   */
+  private void writeCache(MultipleObjectsBundle bundle, Path cache) {
+    Path tmp = null;
+    try {
+      Files.createDirectories(cachedir);
+      // Write to a temporary file first, to never expose incomplete files.
+      tmp = Files.createTempFile(cachedir, cache.getFileName().toString(), ".tmp");
+      try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+        new BundleWriter().writeBundleStream(bundle.asStream(), channel);
+      }
+      Files.move(tmp, cache, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      tmp = null;
+      LOG.verbose("Wrote cached bundle " + cache);
+    }
+    catch(IOException | AbortException e) {
+      LOG.warning("Could not write cached bundle " + cache + ": " + e.getMessage());
+    }
+    finally {
+      if(tmp != null) {
+        try {
+          Files.deleteIfExists(tmp);
+        }
+        catch(IOException e) {
+          // Ignore.
+        }
+      }
+    }
+  }
+
+  /**
+   * Compute the cache key of a file.
+   *
+   * @param file Input file
+   * @return Hexadecimal key
+   * @throws IOException when the file is not accessible
+   */
+  private String cacheKey(Path file) throws IOException {
+    final String key = CACHE_VERSION + '\n' + file.toAbsolutePath().normalize() + '\n' + Files.size(file) + '\n' //
+        + Files.getLastModifiedTime(file).toMillis() + '\n' + parserkey;
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+      StringBuilder buf = new StringBuilder(digest.length << 1);
+      for(byte b : digest) {
+        buf.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+      }
+      return buf.toString();
+    }
+    catch(NoSuchAlgorithmException e) {
+      throw new AbortException("SHA-256 is not supported.", e);
+    }
+  }
+
+  /**
+   * Get the local file of an URI.
+   *
+   * @param uri URI
+   * @return Path, or {@code null} if not a local file
+   */
+  private static Path localFile(URI uri) {
+    try {
+      return uri.getScheme() == null ? Paths.get(uri.getPath()) : "file".equals(uri.getScheme()) ? Paths.get(uri) : null;
+    }
+    catch(IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
   /**
    * Parameterization class.
    * 
@@ -98,11 +293,26 @@ public class FileBasedDatabaseConnection extends InputStreamDatabaseConnection {
      */
     public static final OptionID INPUT_ID = new OptionID("dbc.in", "The name of the input file to be parsed.");
 
+    /**
+     * Directory to cache the parsed data in.
+     */
+    public static final OptionID CACHE_ID = new OptionID("dbc.cache", "Directory to cache the parsed input in a binary format, for faster loading.");
+
     /**
      * Input stream to process.
      */
     protected URI infile;
 
+    /**
+     * Cache directory.
+     */
+    protected Path cachedir;
+
+    /**
+     * Parser configuration.
+     */
+    protected String parserkey;
+
     @Override
     public void configure(Parameterization config) {
       // Add the input file first, for usability reasons.
@@ -112,13 +322,25 @@ public class FileBasedDatabaseConnection extends InputStreamDatabaseConnection {
       if(infile != null && (infile.toString().endsWith(".arff") || infile.toString().endsWith(".arff.gz"))) {
         defaultParser = ArffParser.class;
       }
-      configParser(config, Parser.class, defaultParser);
+      TrackParameters track = new TrackParameters(config);
+      configParser(track, Parser.class, defaultParser);
+      StringBuilder buf = new StringBuilder(200);
+      for(TrackedParameter p : track.getAllParameters()) {
+        if(p.getParameter().isDefined()) {
+          buf.append(p.getParameter().getOptionID().getName()).append('=') //
+              .append(p.getParameter().getValueAsString()).append('\n');
+        }
+      }
+      parserkey = buf.toString();
       configFilters(config);
+      new FileParameter(CACHE_ID, FileParameter.FileType.DIRECTORY) //
+          .setOptional(true) //
+          .grab(config, x -> cachedir = Paths.get(x));
     }
 
     @Override
     public FileBasedDatabaseConnection make() {
-      return new FileBasedDatabaseConnection(filters, parser, infile);
+      return new FileBasedDatabaseConnection(filters, parser, infile, cachedir, parserkey);
     }
   }
 }
@@ -0,0 +1,453 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.datasource.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import elki.data.LabelList;
+import elki.data.NumberVector;
+import elki.logging.Logging;
+import elki.parallel.ParallelCore;
+import elki.utilities.datastructures.arraylike.DoubleArray;
+import elki.utilities.exceptions.AbortException;
+import elki.utilities.io.ParseUtil;
+import elki.utilities.io.TokenizedReader;
+import elki.utilities.io.Tokenizer;
+
+/**
+ * Multi-threaded variant of {@link NumberVectorLabelParser}.
+ * <p>
+ * The input is read in chunks of several megabytes, cut at line boundaries.
+ * The chunks are tokenized and parsed on all cores, while the stream events
+ * are produced in the original order. Only a bounded number of chunks is
+ * processed ahead of the consumer, so memory usage is similar to the
+ * sequential parser. The input format and label columns are handled as in
+ * the sequential parser, but lines may not span multiple chunks, i.e., quoted
+ * values must not contain line breaks.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @param <V> the type of NumberVector used
+ */
+public class ParallelNumberVectorLabelParser<V extends NumberVector> extends NumberVectorLabelParser<V> {
+  /**
+   * Logging class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelNumberVectorLabelParser.class);
+
+  /**
+   * Default chunk size in bytes.
+   */
+  private static final int CHUNK_SIZE = 1 << 22;
+
+  /**
+   * Input format, to create a reader for each chunk.
+   */
+  private CSVReaderFormat format;
+
+  /**
+   * Chunk size in bytes.
+   */
+  private int chunksize = CHUNK_SIZE;
+
+  /**
+   * Input stream.
+   */
+  private InputStream in;
+
+  /**
+   * Incomplete line at the end of the previous chunk.
+   */
+  private byte[] carry;
+
+  /**
+   * Chunks being parsed, in input order.
+   */
+  private ArrayDeque<Future<Chunk<V>>> pending = new ArrayDeque<>();
+
+  /**
+   * Current chunk.
+   */
+  private Chunk<V> chunk;
+
+  /**
+   * Position in the current chunk.
+   */
+  private int pos;
+
+  /**
+   * Number of lines before the current chunk.
+   */
+  private int lineoffset;
+
+  /**
+   * For String unification, shared by all chunks.
+   */
+  private ConcurrentHashMap<String, String> sharedLabels = new ConcurrentHashMap<>();
+
+  /**
+   * Connected to the parallel core.
+   */
+  private boolean connected;
+
+  /**
+   * Constructor.
+   *
+   * @param format Input format
+   * @param labelIndices Column indexes that are not numeric.
+   * @param factory Vector factory
+   */
+  public ParallelNumberVectorLabelParser(CSVReaderFormat format, long[] labelIndices, NumberVector.Factory<V> factory) {
+    super(format, labelIndices, factory);
+    this.format = format;
+  }
+
+  /**
+   * Constructor with defaults.
+   *
+   * @param factory Vector factory
+   */
+  public ParallelNumberVectorLabelParser(NumberVector.Factory<V> factory) {
+    this(CSVReaderFormat.DEFAULT_FORMAT, null, factory);
+  }
+
+  /**
+   * Set the chunk size, mostly for testing.
+   *
+   * @param chunksize Chunk size in bytes
+   */
+  void setChunkSize(int chunksize) {
+    this.chunksize = chunksize;
+  }
+
+  @Override
+  public void initStream(InputStream in) {
+    super.initStream(in);
+    this.in = in;
+    carry = new byte[0];
+    pending.clear();
+    chunk = null;
+    pos = 0;
+    lineoffset = 0;
+    if(!connected) {
+      ParallelCore.getCore().connect();
+      connected = true;
+    }
+  }
+
+  @Override
+  public Event nextEvent() {
+    if(nextevent != null) {
+      Event ret = nextevent;
+      nextevent = null;
+      return ret;
+    }
+    while(true) {
+      if(chunk == null || pos >= chunk.size) {
+        if(chunk != null) {
+          lineoffset += chunk.lines;
+        }
+        chunk = nextChunk();
+        pos = 0;
+        if(chunk == null) {
+          if(maxdim == 0) {
+            throw new AbortException("No numeric data was read in line " + lineoffset + ". Verify the column separator; for textual data use other parsers.");
+          }
+          return Event.END_OF_STREAM;
+        }
+        if(chunk.precision != null && !warnedPrecision) {
+          getLogger().warning("Too many digits in what looked like a double number - treating as string: " + chunk.precision);
+          warnedPrecision = true;
+        }
+        continue;
+      }
+      final int i = pos++;
+      V vec = chunk.vecs[i];
+      LabelList lbl = chunk.labels[i];
+      if(vec == null) {
+        // Label row before the first vector:
+        if(curvec == null) {
+          columnnames = new ArrayList<>(lbl.size());
+          for(int j = 0; j < lbl.size(); j++) {
+            columnnames.add(lbl.get(j));
+          }
+          haslabels = false;
+          curlbl = null;
+          continue;
+        }
+        vec = factory.newNumberVector(new double[0]);
+      }
+      haslabels |= lbl.size() > 0;
+      curvec = vec;
+      curlbl = lbl;
+      final int curdim = curvec.getDimensionality();
+      if(curdim > maxdim || mindim > curdim) {
+        mindim = (curdim < mindim) ? curdim : mindim;
+        maxdim = (curdim > maxdim) ? curdim : maxdim;
+        if(mindim != maxdim && LOG.isVerbose()) {
+          LOG.verbose("Non-uniform column width detected in input line " + (lineoffset + chunk.linenums[i]) + ", widening data type to " + mindim + "-" + maxdim + " dimensions.");
+        }
+        buildMeta();
+        nextevent = Event.NEXT_OBJECT;
+        return Event.META_CHANGED;
+      }
+      else if(meta != null && haslabels && meta.size() == 1) {
+        buildMeta();
+        nextevent = Event.NEXT_OBJECT;
+        return Event.META_CHANGED;
+      }
+      return Event.NEXT_OBJECT;
+    }
+  }
+
+  /**
+   * Get the next parsed chunk, and submit further chunks.
+   *
+   * @return Next chunk, or {@code null} at the end of the stream
+   */
+  private Chunk<V> nextChunk() {
+    fill();
+    Future<Chunk<V>> next = pending.poll();
+    if(next == null) {
+      return null;
+    }
+    try {
+      Chunk<V> c = next.get();
+      fill();
+      return c;
+    }
+    catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AbortException("Interrupted while parsing.", e);
+    }
+    catch(ExecutionException e) {
+      throw new AbortException("Error while parsing line " + lineoffset + " or later.", e.getCause());
+    }
+  }
+
+  /**
+   * Read chunks and submit them for parsing, until enough chunks are pending.
+   */
+  private void fill() {
+    final ParallelCore core = ParallelCore.getCore();
+    final int ahead = core.getParallelism() << 1;
+    try {
+      while(in != null && pending.size() < ahead) {
+        byte[] buf = readChunk();
+        if(buf == null) {
+          in = null;
+          break;
+        }
+        pending.add(core.submit(new ChunkParser(buf)));
+      }
+    }
+    catch(IOException e) {
+      throw new AbortException("Error while reading line " + lineoffset + " or later.", e);
+    }
+  }
+
+  /**
+   * Read the next chunk of complete lines.
+   *
+   * @return Chunk, or {@code null} at the end of the stream
+   * @throws IOException on read errors
+   */
+  private byte[] readChunk() throws IOException {
+    byte[] buf = Arrays.copyOf(carry, Math.max(chunksize, carry.length << 1));
+    int len = carry.length;
+    while(true) {
+      final int read = in.read(buf, len, buf.length - len);
+      if(read < 0) {
+        carry = new byte[0];
+        return len > 0 ? Arrays.copyOf(buf, len) : null;
+      }
+      len += read;
+      if(len < buf.length) {
+        continue;
+      }
+      // Buffer full: cut after the last line break.
+      int end = len - 1;
+      while(end >= 0 && buf[end] != '\n') {
+        --end;
+      }
+      if(end < 0) { // Line longer than the buffer.
+        buf = Arrays.copyOf(buf, buf.length << 1);
+        continue;
+      }
+      carry = Arrays.copyOfRange(buf, end + 1, len);
+      return end + 1 < len ? Arrays.copyOf(buf, end + 1) : buf;
+    }
+  }
+
+  @Override
+  public void cleanup() {
+    super.cleanup();
+    for(Future<Chunk<V>> f : pending) {
+      f.cancel(false);
+    }
+    pending.clear();
+    chunk = null;
+    in = null;
+    sharedLabels.clear();
+    if(connected) {
+      ParallelCore.getCore().disconnect();
+      connected = false;
+    }
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parsed chunk of lines.
+   *
+   * @author Erich Schubert
+   *
+   * @param <V> Vector type
+   */
+  private static class Chunk<V> {
+    /**
+     * Number of rows.
+     */
+    int size;
+
+    /**
+     * Number of lines, including comments.
+     */
+    int lines;
+
+    /**
+     * Vectors, {@code null} for rows without numeric values.
+     */
+    V[] vecs;
+
+    /**
+     * Labels of each row.
+     */
+    LabelList[] labels;
+
+    /**
+     * Line number of each row, within the chunk.
+     */
+    int[] linenums;
+
+    /**
+     * Token that exceeded double precision, or {@code null}.
+     */
+    String precision;
+  }
+
+  /**
+   * Task to parse a single chunk.
+   *
+   * @author Erich Schubert
+   */
+  private class ChunkParser implements Callable<Chunk<V>> {
+    /**
+     * Input data.
+     */
+    private byte[] data;
+
+    /**
+     * Constructor.
+     *
+     * @param data Input data
+     */
+    ChunkParser(byte[] data) {
+      this.data = data;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Chunk<V> call() throws IOException {
+      TokenizedReader reader = format.makeReader();
+      Tokenizer tokenizer = reader.getTokenizer();
+      reader.reset(new ByteArrayInputStream(data));
+      // Pre-size the buffers by the number of lines:
+      int cap = 1;
+      for(byte b : data) {
+        cap += b == '\n' ? 1 : 0;
+      }
+      Chunk<V> c = new Chunk<>();
+      c.vecs = (V[]) new NumberVector[cap];
+      c.labels = new LabelList[cap];
+      c.linenums = new int[cap];
+      DoubleArray attributes = new DoubleArray(11);
+      ArrayList<String> lbls = new ArrayList<>();
+      while(reader.nextLineExceptComments()) {
+        int i = 0;
+        for(; tokenizer.valid(); tokenizer.advance(), i++) {
+          if(!isLabelColumn(i) && !tokenizer.isQuoted()) {
+            try {
+              attributes.add(tokenizer.getDouble());
+              continue;
+            }
+            catch(NumberFormatException e) {
+              if(c.precision == null && (e == ParseUtil.PRECISION_OVERFLOW || e == ParseUtil.EXPONENT_OVERFLOW)) {
+                c.precision = tokenizer.getSubstring();
+              }
+              // Ignore attempt, add to labels below.
+            }
+          }
+          String lbl = tokenizer.getStrippedSubstring();
+          if(lbl.length() > 0) {
+            String prev = sharedLabels.putIfAbsent(lbl, lbl);
+            lbls.add(prev != null ? prev : lbl);
+          }
+        }
+        c.vecs[c.size] = attributes.size > 0 ? factory.newNumberVector(attributes, attributes) : null;
+        c.labels[c.size] = LabelList.make(lbls);
+        c.linenums[c.size] = reader.getLineNumber();
+        c.size++;
+        attributes.clear();
+        lbls.clear();
+      }
+      c.lines = reader.getLineNumber();
+      reader.close();
+      data = null;
+      return c;
+    }
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   */
+  public static class Par<V extends NumberVector> extends NumberVectorLabelParser.Par<V> {
+    @Override
+    public ParallelNumberVectorLabelParser<V> make() {
+      return new ParallelNumberVectorLabelParser<>(format, labelIndices, factory);
+    }
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.datasource;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import elki.data.NumberVector;
+import elki.datasource.bundle.MultipleObjectsBundle;
+import elki.utilities.ELKIBuilder;
+import elki.utilities.exceptions.AbortException;
+
+/**
+ * Test the binary cache of the file based database connection.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class FileBasedDatabaseConnectionTest {
+  @Test
+  public void testCache() throws IOException {
+    Path dir = Files.createTempDirectory("elki-cache-test");
+    Path input = dir.resolve("input.csv"), cache = dir.resolve("cache");
+    try {
+      Files.write(input, "1 2 a\n3 4 b\n5 6 c\n".getBytes(StandardCharsets.UTF_8));
+      MultipleObjectsBundle first = load(input, cache);
+      assertEquals("Cache file not written.", 1, count(cache));
+      // Same size and time stamp, so the cache must be used:
+      FileTime time = Files.getLastModifiedTime(input);
+      Files.write(input, "9 9 x\n9 9 x\n9 9 x\n".getBytes(StandardCharsets.UTF_8));
+      Files.setLastModifiedTime(input, time);
+      MultipleObjectsBundle second = load(input, cache);
+      assertEquals("Cache file not reused.", 1, count(cache));
+      assertEquals(first.metaLength(), second.metaLength());
+      assertEquals(first.dataLength(), second.dataLength());
+      for(int i = 0; i < first.dataLength(); i++) {
+        assertArrayEquals(((NumberVector) first.data(i, 0)).toArray(), ((NumberVector) second.data(i, 0)).toArray(), 0.);
+        assertEquals(first.data(i, 1).toString(), second.data(i, 1).toString());
+      }
+      // Changing the file must invalidate the cache:
+      Files.write(input, "1 2 a\n3 4 b\n".getBytes(StandardCharsets.UTF_8));
+      assertEquals(2, load(input, cache).dataLength());
+      assertEquals("Cache file not written.", 2, count(cache));
+    }
+    finally {
+      try (Stream<Path> files = Files.walk(dir)) {
+        files.sorted((a, b) -> b.compareTo(a)).forEach(p -> p.toFile().delete());
+      }
+    }
+  }
+
+  @Test(expected = AbortException.class)
+  public void testCacheNotDirectory() throws IOException {
+    Path dir = Files.createTempDirectory("elki-cache-test");
+    Path input = dir.resolve("input.csv"), cache = dir.resolve("cache");
+    try {
+      Files.write(input, "1 2 a\n".getBytes(StandardCharsets.UTF_8));
+      Files.write(cache, new byte[0]);
+      load(input, cache);
+    }
+    finally {
+      Files.delete(cache);
+      Files.delete(input);
+      Files.delete(dir);
+    }
+  }
+
+  private static MultipleObjectsBundle load(Path input, Path cache) {
+    return new ELKIBuilder<>(FileBasedDatabaseConnection.class) //
+        .with(FileBasedDatabaseConnection.Par.INPUT_ID, input.toString()) //
+        .with(FileBasedDatabaseConnection.Par.CACHE_ID, cache.toString()) //
+        .build().loadData();
+  }
+
+  private static long count(Path cache) throws IOException {
+    try (Stream<Path> files = Files.list(cache)) {
+      return files.count();
+    }
+  }
+}
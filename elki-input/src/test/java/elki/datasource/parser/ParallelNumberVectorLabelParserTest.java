@@ -0,0 +1,95 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.datasource.parser;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Random;
+
+import org.junit.Test;
+
+import elki.data.DoubleVector;
+import elki.data.LabelList;
+import elki.data.NumberVector;
+import elki.data.type.VectorFieldTypeInformation;
+import elki.datasource.bundle.MultipleObjectsBundle;
+
+/**
+ * Test the parallel parser against the sequential parser.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class ParallelNumberVectorLabelParserTest {
+  @Test
+  public void testAgainstSequential() {
+    Random r = new Random(0L);
+    StringBuilder buf = new StringBuilder(100000);
+    buf.append("# comment\nx y z class\n");
+    for(int i = 0; i < 2000; i++) {
+      buf.append(r.nextDouble()).append(',').append(r.nextInt(100)).append(',').append(-r.nextGaussian());
+      if(i % 3 != 2) {
+        buf.append(",\"c").append(i % 3).append('"');
+      }
+      buf.append(i % 100 == 0 ? "\n# comment\n" : "\n");
+    }
+    byte[] data = buf.toString().getBytes(StandardCharsets.UTF_8);
+
+    MultipleObjectsBundle expect = new NumberVectorLabelParser<>(DoubleVector.FACTORY).parse(new ByteArrayInputStream(data));
+    for(int chunksize : new int[] { 50, 1000, 1 << 22 }) {
+      ParallelNumberVectorLabelParser<DoubleVector> parser = new ParallelNumberVectorLabelParser<>(DoubleVector.FACTORY);
+      parser.setChunkSize(chunksize);
+      MultipleObjectsBundle got = parser.parse(new ByteArrayInputStream(data));
+      parser.cleanup();
+      assertEquals("Number of columns", expect.metaLength(), got.metaLength());
+      assertEquals("Vector type", expect.meta(0).toString(), got.meta(0).toString());
+      assertEquals("Column name", "z", ((VectorFieldTypeInformation<?>) got.meta(0)).getLabel(2));
+      assertEquals("Number of rows", expect.dataLength(), got.dataLength());
+      HashMap<String, String> unique = new HashMap<>();
+      for(int i = 0; i < expect.dataLength(); i++) {
+        assertArrayEquals(((NumberVector) expect.data(i, 0)).toArray(), ((NumberVector) got.data(i, 0)).toArray(), 0.);
+        assertEquals("Labels", expect.data(i, 1).toString(), got.data(i, 1).toString());
+        LabelList lbls = (LabelList) got.data(i, 1);
+        for(int j = 0; j < lbls.size(); j++) {
+          final String lbl = lbls.get(j);
+          assertSame("Labels not unified across chunks", unique.computeIfAbsent(lbl, x -> lbl), lbl);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testVariableLength() {
+    byte[] data = "1 2 3\n4 5\n6 7 8 9\n".getBytes(StandardCharsets.UTF_8);
+    ParallelNumberVectorLabelParser<DoubleVector> parser = new ParallelNumberVectorLabelParser<>(DoubleVector.FACTORY);
+    parser.setChunkSize(4);
+    MultipleObjectsBundle got = parser.parse(new ByteArrayInputStream(data));
+    parser.cleanup();
+    assertEquals("Number of rows", 3, got.dataLength());
+    assertEquals("Vector type", "DoubleVector,variable,mindim=2,maxdim=4", got.meta(0).toString());
+    assertArrayEquals(new double[] { 6, 7, 8, 9 }, ((NumberVector) got.data(2, 0)).toArray(), 0.);
+  }
+}
@@ -24,6 +24,10 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
 
 import elki.data.BitVector;
 import elki.data.SparseFeatureVector;
@@ -39,6 +43,7 @@ import elki.logging.progress.IndefiniteProgress;
 import elki.logging.statistics.DoubleStatistic;
 import elki.logging.statistics.Duration;
 import elki.logging.statistics.LongStatistic;
+import elki.parallel.ParallelCore;
 import elki.result.FrequentItemsetsResult;
 import elki.result.Metadata;
 import elki.utilities.Priority;
@@ -56,8 +61,9 @@ import elki.utilities.documentation.Reference;
  * using a not too high support threshold, as it only prunes single items, not
  * item combinations.
  * <p>
- * This implementation is in-memory only, and has not yet been carefully
- * optimized.
+ * This implementation is in-memory only. The tree is stored in integer arrays
+ * rather than node objects, and the itemsets ending in different items are
+ * extracted in parallel.
  * <p>
  * The worst case memory use probably is \(O(\min(n\cdot l,i^l))\) where i is
  * the
@@ -75,6 +81,7 @@ import elki.utilities.documentation.Reference;
  * @since 0.7.0
  *
  * @composed - - - FPTree
+ * @has - - - ItemsetCollector
  * @has - - - Itemset
  * @has - produces - FrequentItemsetsResult
  */
@@ -144,7 +151,7 @@ public class FPGrowth extends AbstractFrequentItemsetAlgorithm {
     }
     if(LOG.isDebuggingFinest()) {
       StringBuilder buf = new StringBuilder(10000).append("FP-tree:\n");
-      tree.appendTo(buf, new FPNode.Translator() {
+      tree.appendTo(buf, new FPTree.Translator() {
         @Override
         public StringBuilder appendTo(StringBuilder buf, int i) {
           String l = meta.getLabel(idx[i]);
@@ -160,27 +167,17 @@ public class FPGrowth extends AbstractFrequentItemsetAlgorithm {
     LOG.verbose("Extracting frequent patterns.");
     Duration etime = LOG.newDuration(STAT + "fp-growth.extraction.time").begin();
     final IndefiniteProgress itemp = LOG.isVerbose() ? new IndefiniteProgress("Frequent itemsets", LOG) : null;
-    final List<Itemset> solution = new ArrayList<>();
-    // Start extraction with the least frequent items
-    tree.extract(minsupp, minlength, maxlength, true, new FPTree.Collector() {
-      @Override
-      public void collect(int support, int[] data, int start, int plen) {
-        // Always translate the indexes back to the original values via 'idx'!
-        if(plen - start == 1) {
-          solution.add(new OneItemset(idx[data[start]], support));
-          LOG.incrementProcessed(itemp);
-          return;
-        }
-        // Copy from buffer to a permanent storage
-        int[] indices = new int[plen - start];
-        for(int i = start, j = 0; i < plen; i++) {
-          indices[j++] = idx[data[i]]; // Translate to original items
-        }
-        Arrays.sort(indices);
-        solution.add(new SparseItemset(indices, support));
-        LOG.incrementProcessed(itemp);
-      }
+    final ConcurrentLinkedQueue<ItemsetCollector> collectors = new ConcurrentLinkedQueue<>();
+    // Extract the items of the header table in parallel
+    tree.extract(minsupp, minlength, maxlength, () -> {
+      ItemsetCollector col = new ItemsetCollector(idx, itemp);
+      collectors.add(col);
+      return col;
     });
+    final List<Itemset> solution = new ArrayList<>();
+    for(ItemsetCollector col : collectors) {
+      solution.addAll(col.solution);
+    }
     LOG.setCompleted(itemp);
     Collections.sort(solution);
     LOG.statistics(etime.end());
@@ -279,23 +276,113 @@ public class FPGrowth extends AbstractFrequentItemsetAlgorithm {
   }
 
   /**
-   * FP-Tree data structure
+   * Collector for the itemsets found by one thread.
+   *
+   * @author Erich Schubert
+   */
+  private static class ItemsetCollector implements FPTree.Collector {
+    /**
+     * Forward index, to translate to the original items.
+     */
+    private int[] idx;
+
+    /**
+     * Progress, may be null.
+     */
+    private IndefiniteProgress itemp;
+
+    /**
+     * Itemsets found.
+     */
+    List<Itemset> solution = new ArrayList<>();
+
+    /**
+     * Constructor.
+     *
+     * @param idx Forward index
+     * @param itemp Progress, may be null
+     */
+    ItemsetCollector(int[] idx, IndefiniteProgress itemp) {
+      this.idx = idx;
+      this.itemp = itemp;
+    }
+
+    @Override
+    public void collect(int support, int[] data, int start, int plen) {
+      // Always translate the indexes back to the original values via 'idx'!
+      if(plen - start == 1) {
+        solution.add(new OneItemset(idx[data[start]], support));
+        LOG.incrementProcessed(itemp);
+        return;
+      }
+      // Copy from buffer to a permanent storage
+      int[] indices = new int[plen - start];
+      for(int i = start, j = 0; i < plen; i++) {
+        indices[j++] = idx[data[i]]; // Translate to original items
+      }
+      Arrays.sort(indices);
+      solution.add(new SparseItemset(indices, support));
+      LOG.incrementProcessed(itemp);
+    }
+  }
+
+  /**
+   * FP-Tree data structure, stored in parallel integer arrays.
+   * <p>
+   * Node 0 is the root. For each node we store the key (item), count, parent
+   * and the next node with the same key (the header table chain). The child
+   * links are only needed during construction, and are released by
+   * {@link #reduceMemory()}.
+   * <p>
+   * Once built, the tree is not modified anymore, so that itemsets can be
+   * extracted for different items in parallel.
    *
    * @author Erich Schubert
    *
-   * @composed - - - FPNode
    * @assoc - - - Collector
    */
-  public static class FPTree extends FPNode {
+  // FIXME: keep children sorted, and use binary search for faster construction?
+  // Or even use a hashset?
+  public static class FPTree {
+    /**
+     * Header table: first node with each key, or -1.
+     */
+    int[] header;
+
     /**
-     * Header table
+     * Node keys.
      */
-    FPNode[] header;
+    int[] key;
 
     /**
-     * Number of nodes in the tree (statistics only).
+     * Node counts.
      */
-    int nodes = 1;
+    int[] count;
+
+    /**
+     * Parent nodes (-1 for the root).
+     */
+    int[] parent;
+
+    /**
+     * Next node with the same key (-1 for the last).
+     */
+    int[] sibling;
+
+    /**
+     * First child, next child of the same parent; construction only.
+     */
+    int[] firstchild, nextchild;
+
+    /**
+     * Number of nodes in the tree.
+     */
+    int nodes = 0;
+
+    /**
+     * Initial capacity.
+     */
+    private static final int INITIAL_CAPACITY = 16;
 
     /**
      * Constructor.
@@ -303,8 +390,17 @@ public class FPGrowth extends AbstractFrequentItemsetAlgorithm {
      * @param items Number of items in header table
      */
     public FPTree(int items) {
-      super(null, -1);
-      header = new FPNode[items];
+      header = new int[items];
+      Arrays.fill(header, -1);
+      key = new int[INITIAL_CAPACITY];
+      count = new int[INITIAL_CAPACITY];
+      parent = new int[INITIAL_CAPACITY];
+      sibling = new int[INITIAL_CAPACITY];
+      firstchild = new int[INITIAL_CAPACITY];
+      nextchild = new int[INITIAL_CAPACITY];
+      // Root node:
+      key[0] = parent[0] = sibling[0] = firstchild[0] = nextchild[0] = -1;
+      nodes = 1;
     }
 
     /**
@@ -316,43 +412,91 @@ public class FPGrowth extends AbstractFrequentItemsetAlgorithm {
      * @param weight Weight
      */
     public void insert(int[] buf, int i, int l, int weight) {
-      insert(this, buf, i, l, weight);
+      int node = 0;
+      count[0] += weight;
+      for(; i < l; i++) {
+        final int label = buf[i];
+        int child = firstchild[node];
+        while(child >= 0 && key[child] != label) {
+          child = nextchild[child];
+        }
+        if(child < 0) {
+          child = newNode(node, label);
+        }
+        count[child] += weight;
+        node = child;
+      }
     }
 
     /**
      * Create a new node of the FP-tree, linking it into the header table.
      *
-     * @param parent Parent node
+     * @param par Parent node
      * @param label Node label
      * @return New node
      */
-    public FPNode newNode(FPNode parent, int label) {
-      FPNode node = new FPNode(parent, label);
+    private int newNode(int par, int label) {
+      if(nodes == key.length) {
+        final int newsize = nodes + (nodes >>> 1);
+        key = Arrays.copyOf(key, newsize);
+        count = Arrays.copyOf(count, newsize);
+        parent = Arrays.copyOf(parent, newsize);
+        sibling = Arrays.copyOf(sibling, newsize);
+        firstchild = Arrays.copyOf(firstchild, newsize);
+        nextchild = Arrays.copyOf(nextchild, newsize);
+      }
+      final int node = nodes++;
+      key[node] = label;
+      count[node] = 0;
+      parent[node] = par;
       // Prepend to linked list - there is no benefit in keeping a particular
       // order, as far as I can tell.
-      node.sibling = header[label];
+      sibling[node] = header[label];
       header[label] = node;
-      ++nodes; // Statistics tracking only
+      firstchild[node] = -1;
+      nextchild[node] = firstchild[par];
+      firstchild[par] = node;
       return node;
     }
 
     /**
-     * Extract itemsets ending in the given item.
+     * Release the memory occupied for the parent-to-child navigation, which is
+     * no longer needed after building the tree (only child-to-parent is needed
+     * in extracting itemsets), and trim the arrays.
+     */
+    public void reduceMemory() {
+      firstchild = nextchild = null;
+      if(nodes < key.length) {
+        key = Arrays.copyOf(key, nodes);
+        count = Arrays.copyOf(count, nodes);
+        parent = Arrays.copyOf(parent, nodes);
+        sibling = Arrays.copyOf(sibling, nodes);
+      }
+    }
+
+    /**
+     * Extract all frequent itemsets, processing the items of the header table
+     * in parallel.
      *
      * @param minsupp Minimum support
      * @param minlength Minimum length
      * @param maxlength Maximum length
-     * @param destruct Remove nodes
-     * @param col Itemset collector
+     * @param collectors Factory for itemset collectors, one per thread
      */
-    public void extract(int minsupp, int minlength, int maxlength, boolean destruct, Collector col) {
-      int[] buf = new int[header.length], buf2 = new int[header.length],
-          buf3 = new int[header.length];
-      int stop = (minlength > 1) ? minlength - 1 : 0;
+    public void extract(int minsupp, int minlength, int maxlength, Supplier<? extends Collector> collectors) {
+      final int stop = (minlength > 1) ? minlength - 1 : 0;
+      if(stop >= header.length) {
+        return;
+      }
       FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Extracting itemsets", header.length - stop, LOG) : null;
-      for(int j = header.length - 1; j >= stop; --j) {
-        extract(minsupp, minlength, maxlength, j, buf, 0, buf2, buf3, destruct, col);
-        LOG.incrementProcessed(prog);
+      ParallelCore core = ParallelCore.getCore();
+      core.connect();
+      try {
+        ConcurrentHashMap<Thread, Miner> miners = new ConcurrentHashMap<>();
+        core.invoke(new MineTask(this, minsupp, minlength, maxlength, stop, header.length, collectors, miners, prog));
+      }
+      finally {
+        core.disconnect();
       }
       LOG.ensureCompleted(prog);
     }
@@ -368,38 +512,35 @@ public class FPGrowth extends AbstractFrequentItemsetAlgorithm {
      * @param plen Postfix length
      * @param buf2 Scratch buffer
      * @param buf3 Scratch buffer
-     * @param destruct Remove nodes
      * @param col Itemset collector
      */
-    private void extract(int minsupp, int minlength, int maxlength, int item, int[] postfix, int plen, int[] buf2, int[] buf3, boolean destruct, Collector col) {
-      // Skip items that have disappeared from the tree
-      if(header[item] == null) {
+    private void extract(int minsupp, int minlength, int maxlength, int item, int[] postfix, int plen, int[] buf2, int[] buf3, Collector col) {
+      final int first = header[item];
+      // Skip items that do not occur in the tree
+      if(first < 0) {
         return;
       }
-      // No siblings, no children: single path only.
-      if(header[item].sibling == null && header[item].numchildren == 0) {
-        if(header[item].count >= minsupp) {
-          extractLinear(header[item].count, minlength, maxlength, item, postfix, plen, buf2, col);
-        }
-        if(destruct) {
-          header[item].parent.numchildren--;
-          header[item] = null;
+      // Single node only: all transactions share the same prefix path.
+      if(sibling[first] < 0) {
+        if(count[first] >= minsupp) {
+          extractLinear(count[first], minlength, maxlength, first, postfix, plen, col);
         }
         return;
       }
       // Count total support.
       int support = 0;
-      for(FPNode cur = header[item]; cur != null; cur = cur.sibling) {
-        support += cur.count;
+      for(int cur = first; cur >= 0; cur = sibling[cur]) {
+        support += count[cur];
       }
       if(support < minsupp) {
         return;
       }
       // Check which parent items to keep in the projection.
-      Arrays.fill(buf3, 0);
-      for(FPNode cur = header[item]; cur != null; cur = cur.sibling) {
-        for(FPNode parent = cur.parent; parent.key >= 0; parent = parent.parent) {
-          buf3[parent.key] += cur.count;
+      Arrays.fill(buf3, 0, item, 0);
+      for(int cur = first; cur >= 0; cur = sibling[cur]) {
+        final int c = count[cur];
+        for(int p = parent[cur]; key[p] >= 0; p = parent[p]) {
+          buf3[key[p]] += c;
         }
       }
       // For testing minimum length:
@@ -418,15 +559,15 @@ public class FPGrowth extends AbstractFrequentItemsetAlgorithm {
       // Build projected tree:
       final int last = item - 1;
       FPTree proj = new FPTree(item);
-      for(FPNode cur = header[item]; cur != null; cur = cur.sibling) {
+      for(int cur = first; cur >= 0; cur = sibling[cur]) {
         int j = buf2.length;
-        for(FPNode parent = cur.parent; parent.key >= 0; parent = parent.parent) {
-          if(buf3[parent.key] >= minsupp) {
-            buf2[--j] = parent.key;
+        for(int p = parent[cur]; key[p] >= 0; p = parent[p]) {
+          if(buf3[key[p]] >= minsupp) {
+            buf2[--j] = key[p];
           }
         }
         if(buf2.length - j >= mminlength) {
-          proj.insert(proj, buf2, j, buf2.length, cur.count);
+          proj.insert(buf2, j, buf2.length, count[cur]);
         }
       }
       // Release memory:
@@ -437,10 +578,7 @@ public class FPGrowth extends AbstractFrequentItemsetAlgorithm {
         col.collect(support, postfix, 0, plen);
       }
       for(int j = last; j >= 0; j--) {
-        proj.extract(minsupp, minlength, maxlength, j, postfix, plen, buf2, buf3, destruct, col);
-      }
-      if(destruct) {
-        header[item] = null;
+        proj.extract(minsupp, minlength, maxlength, j, postfix, plen, buf2, buf3, col);
       }
     }
 
@@ -450,13 +588,13 @@ public class FPGrowth extends AbstractFrequentItemsetAlgorithm {
      * @param supp Current support
      * @param minlength Minimum length
      * @param maxlength Maximum length
-     * @param item Current item
+     * @param node Current node
      * @param postfix Postfix for extracted itemsets
      * @param plen Postfix length
-     * @param buf2 Scratch buffer
      * @param col Output collector
      */
-    private void extractLinear(int supp, int minlength, int maxlength, int item, int[] postfix, int plen, int[] buf2, Collector col) {
+    private void extractLinear(int supp, int minlength, int maxlength, int node, int[] postfix, int plen, Collector col) {
+      final int item = key[node];
       // For testing minimum length:
       final int mminlength = minlength - plen;
       // Unsatisfiable even with current item:
@@ -472,140 +610,164 @@ public class FPGrowth extends AbstractFrequentItemsetAlgorithm {
       if(plen == maxlength) {
         return;
       }
-      assert (header[item] != null);
       // Look at parent nodes:
-      for(FPNode p = header[item].parent; p.key >= 0; p = p.parent) {
-        if(p.key < mminlength) {
+      for(int p = parent[node]; key[p] >= 0; p = parent[p]) {
+        // At most key[p] further items remain below p:
+        if(plen + 1 + key[p] < minlength) {
           break; // Too short.
         }
-        extractLinear(supp, minlength, maxlength, p.key, postfix, plen, buf2, col);
+        extractLinear(supp, minlength, maxlength, p, postfix, plen, col);
       }
     }
 
     /**
-     * Interface for collecting frequent itemsets found.
+     * Per-thread scratch buffers and collector for extraction.
      *
      * @author Erich Schubert
      */
-    interface Collector {
+    private static class Miner {
       /**
-       * Collect a single frequent itemset
+       * Postfix and scratch buffers.
+       */
+      final int[] postfix, buf2, buf3;
+
+      /**
+       * Itemset collector.
+       */
+      final Collector col;
+
+      /**
+       * Constructor.
        *
-       * @param support Support of the itemset
-       * @param buf Buffer
-       * @param start First valid buffer position
-       * @param end End of valid buffer
+       * @param items Number of items
+       * @param col Itemset collector
        */
-      void collect(int support, int[] buf, int start, int end);
+      Miner(int items, Collector col) {
+        this.postfix = new int[items];
+        this.buf2 = new int[items];
+        this.buf3 = new int[items];
+        this.col = col;
+      }
     }
 
     /**
-     * Output some statistics to logging.
+     * Fork-join task to extract the itemsets of a range of header items.
+     *
+     * @author Erich Schubert
      */
-    public void logStatistics() {
-      LOG.statistics(new LongStatistic(STAT + "items", header.length));
-      LOG.statistics(new LongStatistic(STAT + "nodes", nodes));
-      LOG.statistics(new LongStatistic(STAT + "transactions", count));
-    }
-  }
+    private static class MineTask extends RecursiveAction {
+      /**
+       * Serialization version.
+       */
+      private static final long serialVersionUID = 1L;
 
-  /**
-   * A single node of the FP tree.
-   *
-   * @author Erich Schubert
-   * 
-   * @assoc - - - Translator
-   */
-  // FIXME: keep children sorted, and use binary search for faster construction?
-  // Or even use a hashset?
-  public static class FPNode {
-    /**
-     * Parent node and next in sequence.
-     */
-    FPNode parent, sibling;
+      /**
+       * Tree to mine.
+       */
+      private FPTree tree;
 
-    /**
-     * Key, weight, and number of children.
-     */
-    int key, count = 0, numchildren = 0;
+      /**
+       * Minimum support, minimum and maximum length.
+       */
+      private int minsupp, minlength, maxlength;
 
-    /**
-     * Children.
-     */
-    FPNode[] children = EMPTY_CHILDREN;
+      /**
+       * Range of header items.
+       */
+      private int start, end;
 
-    /**
-     * Constant for leaf nodes.
-     */
-    final static FPNode[] EMPTY_CHILDREN = new FPNode[0];
+      /**
+       * Factory for itemset collectors.
+       */
+      private Supplier<? extends Collector> collectors;
 
-    /**
-     * Initial size, after sizes 0 and 1.
-     */
-    final int INITIAL_SIZE = 7;
+      /**
+       * Per-thread miners.
+       */
+      private ConcurrentHashMap<Thread, Miner> miners;
 
-    /**
-     * Constructor.
-     *
-     * @param parent Parent node
-     * @param key Key
-     */
-    public FPNode(FPNode parent, int key) {
-      super();
-      this.parent = parent;
-      this.key = key;
-    }
+      /**
+       * Progress, may be null.
+       */
+      private FiniteProgress prog;
 
-    /**
-     * Insert an itemset into the tree.
-     *
-     * @param buf Itemset buffer
-     * @param i Current index
-     * @param l Length
-     * @param weight Weight
-     */
-    public void insert(FPTree tree, int[] buf, int i, int l, int weight) {
-      count += weight;
-      if(i == l) {
-        return;
+      /**
+       * Constructor.
+       *
+       * @param tree Tree to mine
+       * @param minsupp Minimum support
+       * @param minlength Minimum length
+       * @param maxlength Maximum length
+       * @param start First item
+       * @param end End item (exclusive)
+       * @param collectors Factory for itemset collectors
+       * @param miners Per-thread miners
+       * @param prog Progress, may be null
+       */
+      MineTask(FPTree tree, int minsupp, int minlength, int maxlength, int start, int end, Supplier<? extends Collector> collectors, ConcurrentHashMap<Thread, Miner> miners, FiniteProgress prog) {
+        this.tree = tree;
+        this.minsupp = minsupp;
+        this.minlength = minlength;
+        this.maxlength = maxlength;
+        this.start = start;
+        this.end = end;
+        this.collectors = collectors;
+        this.miners = miners;
+        this.prog = prog;
       }
-      final int label = buf[i];
-      for(int j = 0; j < numchildren; j++) {
-        FPNode child = children[j];
-        if(child.key == label) {
-          child.insert(tree, buf, i + 1, l, weight);
+
+      @Override
+      protected void compute() {
+        if(end - start > 1) {
+          final int mid = (start + end) >>> 1;
+          invokeAll(new MineTask(tree, minsupp, minlength, maxlength, start, mid, collectors, miners, prog), //
+              new MineTask(tree, minsupp, minlength, maxlength, mid, end, collectors, miners, prog));
           return;
         }
+        Miner m = miners.computeIfAbsent(Thread.currentThread(), t -> new Miner(tree.header.length, collectors.get()));
+        tree.extract(minsupp, minlength, maxlength, start, m.postfix, 0, m.buf2, m.buf3, m.col);
+        LOG.incrementProcessed(prog);
       }
-      // Make sure we have enough room to insert.
-      if(numchildren == children.length) {
-        ensureSize();
-      }
-      FPNode sub = children[numchildren++] = tree.newNode(this, label);
-      sub.insert(tree, buf, i + 1, l, weight);
     }
 
     /**
-     * Ensure we have enough storage.
+     * Interface for collecting frequent itemsets found.
+     *
+     * @author Erich Schubert
      */
-    private void ensureSize() {
-      if(children == EMPTY_CHILDREN) {
-        children = new FPNode[1];
-        return;
-      }
-      int newsize = children.length == 1 ? INITIAL_SIZE : (children.length << 1);
-      children = Arrays.copyOf(children, newsize);
+    interface Collector {
+      /**
+       * Collect a single frequent itemset
+       *
+       * @param support Support of the itemset
+       * @param buf Buffer
+       * @param start First valid buffer position
+       * @param end End of valid buffer
+       */
+      void collect(int support, int[] buf, int start, int end);
+    }
+
+    /**
+     * Output some statistics to logging.
+     */
+    public void logStatistics() {
+      LOG.statistics(new LongStatistic(STAT + "items", header.length));
+      LOG.statistics(new LongStatistic(STAT + "nodes", nodes));
+      LOG.statistics(new LongStatistic(STAT + "transactions", count[0]));
     }
 
     /**
      * Debugging function: build a text representation of the tree.
+     * <p>
+     * Note: this needs the child links, i.e., must be called before
+     * {@link #reduceMemory()}.
      *
      * @param buf Output buffer
      * @param t Translator to user-understandable items
      * @return Buffer
      */
     public StringBuilder appendTo(StringBuilder buf, Translator t) {
-      return appendTo(buf, t, 0);
+      return appendTo(buf, t, 0, 0);
     }
 
     /**
@@ -618,38 +780,24 @@ public class FPGrowth extends AbstractFrequentItemsetAlgorithm {
      *
      * @param buf Output buffer
      * @param t Translator to user-understandable items
+     * @param node Current node
      * @param depth Current depth
      * @return Buffer
      */
-    private StringBuilder appendTo(StringBuilder buf, Translator t, int depth) {
-      if(key >= 0) {
-        t.appendTo(buf, key).append(": ");
+    private StringBuilder appendTo(StringBuilder buf, Translator t, int node, int depth) {
+      if(key[node] >= 0) {
+        t.appendTo(buf, key[node]).append(": ");
       }
-      buf.append(count).append('\n');
-      for(int i = 0; i < numchildren; i++) {
+      buf.append(count[node]).append('\n');
+      for(int child = firstchild[node]; child >= 0; child = nextchild[child]) {
         for(int j = depth; j > 0; j -= SPACES.length) {
           buf.append(SPACES, 0, Math.min(j, SPACES.length));
         }
-        children[i].appendTo(buf, t, depth + 1);
+        appendTo(buf, t, child, depth + 1);
       }
       return buf;
     }
 
-    /**
-     * Release the memory occupied for the parent-to-child navigation, which is
-     * no longer needed after building the tree (only child-to-parent is needed
-     * in extracting itemsets).
-     */
-    public void reduceMemory() {
-      if(children == null) {
-        return;
-      }
-      for(int i = 0; i < numchildren; ++i) {
-        children[i].reduceMemory();
-      }
-      children = null;
-    }
-
     /**
      * Translator class for tree printing.
      *
@@ -119,4 +119,25 @@ public class FPGrowthTest extends AbstractSimpleAlgorithmTest {
         .with(FPGrowth.Par.MINSUPP_ID, 200).build().autorun(db);
     assertEquals("Size not as expected.", 184, res.getItemsets().size());
   }
+
+  @Test
+  public void testLargeMinLength() {
+    Database db = makeSimpleDatabase(UNITTEST + "itemsets/zutaten.txt.gz", 16401, new ListParameterization() //
+        .addParameter(InputStreamDatabaseConnection.Par.PARSER_ID, SimpleTransactionParser.class));
+    {
+      FrequentItemsetsResult res = new ELKIBuilder<>(FPGrowth.class) //
+          .with(FPGrowth.Par.MINSUPP_ID, 100) //
+          .with(FPGrowth.Par.MINLENGTH_ID, 3) //
+          .build().autorun(db);
+      assertEquals("Size not as expected.", 143, res.getItemsets().size());
+    }
+    {
+      FrequentItemsetsResult res = new ELKIBuilder<>(FPGrowth.class) //
+          .with(FPGrowth.Par.MINSUPP_ID, 50) //
+          .with(FPGrowth.Par.MINLENGTH_ID, 4) //
+          .with(FPGrowth.Par.MAXLENGTH_ID, 4) //
+          .build().autorun(db);
+      assertEquals("Size not as expected.", 94, res.getItemsets().size());
+    }
+  }
 }
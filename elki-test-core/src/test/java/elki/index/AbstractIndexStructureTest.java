@@ -29,6 +29,7 @@ import elki.data.DoubleVector;
 import elki.data.type.TypeUtil;
 import elki.database.Database;
 import elki.database.StaticArrayDatabase;
+import elki.database.datastore.WritableDataStore;
 import elki.database.ids.*;
 import elki.database.query.ExactPrioritySearcher;
 import elki.database.query.PrioritySearcher;
@@ -173,6 +174,24 @@ public abstract class AbstractIndexStructureTest {
     }
   }
 
+  /**
+   * Verify that batch kNN queries agree with individual queries.
+   *
+   * @param relation Data relation
+   * @param qb Query builder
+   * @param knnq Individual kNN query
+   */
+  private static void assertBatchKNN(Relation<DoubleVector> relation, QueryBuilder<DoubleVector> qb, KNNSearcher<DBIDRef> knnq) {
+    WritableDataStore<KNNList> batch = qb.kNNByDBIDs(relation.getDBIDs(), k);
+    for(DBIDIter it = relation.iterDBIDs(); it.valid(); it.advance()) {
+      KNNList single = knnq.getKNN(it, k), other = batch.get(it);
+      assertEquals("Batch result size does not match.", single.size(), other.size());
+      for(DoubleDBIDListIter a = single.iter(), b = other.iter(); a.valid(); a.advance(), b.advance()) {
+        assertEquals("Batch distance at offset " + a.getOffset() + " doesn't match.", a.doubleValue(), b.doubleValue(), 1e-15);
+      }
+    }
+  }
+
   /**
    * Check the class of a query.
    *
@@ -228,6 +247,7 @@ public abstract class AbstractIndexStructureTest {
         assertNeighbors(relation, dist, knnq.getKNN(DoubleVector.wrap(querypoint), k), shouldd, shouldc);
       }
       assertNeighbors(knnq2.getKNN(second, k), shouldd2, shouldc2);
+      assertBatchKNN(relation, qb, knnq2);
     }
     if(expectRangeQuery != null) {
       RangeSearcher<DoubleVector> rangeq = qb.rangeByObject(eps);
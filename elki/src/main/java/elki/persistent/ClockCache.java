@@ -0,0 +1,448 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.persistent;
+
+import java.util.Arrays;
+
+import elki.logging.Logging;
+import elki.logging.statistics.AtomicLongCounter;
+import elki.logging.statistics.Counter;
+import elki.utilities.exceptions.AbortException;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+
+/**
+ * A concurrent page cache using the CLOCK (second chance) replacement
+ * strategy.
+ * <p>
+ * The cache is split into independently locked stripes by page id, such that
+ * parallel queries do not serialize on a single lock. Each stripe keeps its
+ * pages in a fixed array of slots indexed by a primitive int hash map, and a
+ * clock hand sweeping over the reference bits of the slots. On a cache hit,
+ * only the reference bit is set; no list needs to be reordered, which
+ * approximates LRU at a much lower cost.
+ * <p>
+ * Pages are written back to the underlying file when they are evicted, on
+ * {@link #flush()} and on {@link #close()}. Cache misses are read from the
+ * underlying file outside of the stripe locks, so the underlying page file
+ * must support concurrent reads. Each stripe counts the pages written back or
+ * removed, and a miss is read again if this happened during the read, so a
+ * stale copy of a page is never put into the cache.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @assoc - - - PageFile
+ *
+ * @param <P> Page type
+ */
+public class ClockCache<P extends Page> extends AbstractPageFile<P> {
+  /**
+   * Our class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(ClockCache.class);
+
+  /**
+   * Minimum number of pages per stripe.
+   */
+  private static final int MIN_STRIPE_PAGES = 16;
+
+  /**
+   * Cache size in bytes.
+   */
+  protected long cacheSizeBytes;
+
+  /**
+   * The maximum number of pages in this cache.
+   */
+  protected int cacheSize;
+
+  /**
+   * The underlying file of this cache. If a page is dropped it is written to
+   * the file.
+   */
+  protected PageFile<P> file;
+
+  /**
+   * Cache stripes.
+   */
+  private Stripe[] stripes;
+
+  /**
+   * Bit shift to compute the stripe number.
+   */
+  private int stripeShift;
+
+  /**
+   * Counters for cache hits, misses, and evictions.
+   */
+  private Counter hits, misses, evictions;
+
+  /**
+   * Initializes this cache with the specified parameters.
+   *
+   * @param cacheSizeBytes the maximum number of bytes for this cache
+   * @param file the underlying file of this cache, if a page is dropped it is
+   *        written to the file
+   */
+  public ClockCache(long cacheSizeBytes, PageFile<P> file) {
+    super();
+    this.file = file;
+    this.cacheSizeBytes = cacheSizeBytes;
+    if(LOG.isStatistics()) {
+      final String prefix = this.getClass().getName();
+      hits = new AtomicLongCounter(prefix + ".hits");
+      misses = new AtomicLongCounter(prefix + ".misses");
+      evictions = new AtomicLongCounter(prefix + ".evictions");
+    }
+  }
+
+  /**
+   * Get the stripe responsible for a page.
+   *
+   * @param pageID Page id
+   * @return Stripe
+   */
+  private Stripe stripe(int pageID) {
+    // Fibonacci hashing, so that consecutive ids go to different stripes.
+    return stripeShift >= 32 ? stripes[0] : stripes[(pageID * 0x9E3779B9) >>> stripeShift];
+  }
+
+  @Override
+  public P readPage(int pageID) {
+    countRead();
+    final Stripe stripe = stripe(pageID);
+    int version;
+    synchronized(stripe) {
+      P page = stripe.get(pageID);
+      if(page != null) {
+        if(hits != null) {
+          hits.increment();
+        }
+        return page;
+      }
+      version = stripe.version;
+    }
+    if(misses != null) {
+      misses.increment();
+    }
+    while(true) {
+      P page = file.readPage(pageID);
+      synchronized(stripe) {
+        // Another thread may have loaded or written the page concurrently.
+        P existing = stripe.get(pageID);
+        if(existing != null) {
+          return existing;
+        }
+        // Pages were written back or removed meanwhile, our copy may be stale.
+        if(stripe.version != version) {
+          version = stripe.version;
+          continue;
+        }
+        if(page != null) {
+          stripe.put(pageID, page);
+        }
+        return page;
+      }
+    }
+  }
+
+  @Override
+  protected void writePage(int pageID, P page) {
+    countWrite();
+    page.setDirty(true);
+    final Stripe stripe = stripe(pageID);
+    synchronized(stripe) {
+      stripe.put(pageID, page);
+    }
+  }
+
+  @Override
+  public void deletePage(int pageID) {
+    countWrite();
+    final Stripe stripe = stripe(pageID);
+    synchronized(stripe) {
+      stripe.remove(pageID);
+      file.deletePage(pageID);
+    }
+  }
+
+  /**
+   * Write page through to disk.
+   *
+   * @param page page
+   */
+  protected void expirePage(P page) {
+    if(page.isDirty()) {
+      file.writePage(page);
+    }
+  }
+
+  @Override
+  public int setPageID(P page) {
+    return file.setPageID(page);
+  }
+
+  @Override
+  public int getNextPageID() {
+    return file.getNextPageID();
+  }
+
+  @Override
+  public void setNextPageID(int nextPageID) {
+    file.setNextPageID(nextPageID);
+  }
+
+  @Override
+  public int getPageSize() {
+    return file.getPageSize();
+  }
+
+  @Override
+  public boolean initialize(PageHeader header) {
+    boolean created = file.initialize(header);
+    // Compute the actual cache size.
+    final long size = cacheSizeBytes / header.getPageSize();
+    if(size <= 0) {
+      throw new AbortException("Invalid cache size: " + cacheSizeBytes + " / " + header.getPageSize() + " = " + size);
+    }
+    this.cacheSize = (int) Math.min(size, Integer.MAX_VALUE);
+    // Number of stripes: a power of two, about four per core.
+    int nstripes = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() << 2);
+    while(nstripes > 1 && cacheSize / nstripes < MIN_STRIPE_PAGES) {
+      nstripes >>>= 1;
+    }
+    this.stripeShift = 32 - Integer.numberOfTrailingZeros(nstripes);
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    final Stripe[] stripes = new ClockCache.Stripe[nstripes];
+    for(int i = 0, rem = cacheSize; i < nstripes; i++) {
+      final int cap = rem / (nstripes - i);
+      stripes[i] = new Stripe(cap);
+      rem -= cap;
+    }
+    this.stripes = stripes;
+    if(LOG.isDebugging()) {
+      LOG.debug("CLOCK cache size is " + cacheSize + " pages in " + nstripes + " stripes.");
+    }
+    return created;
+  }
+
+  @Override
+  public void close() {
+    flush();
+    file.close();
+  }
+
+  /**
+   * Flushes this caches by writing any entry to the underlying file.
+   */
+  public void flush() {
+    for(Stripe stripe : stripes) {
+      synchronized(stripe) {
+        stripe.flush();
+      }
+    }
+  }
+
+  /**
+   * Clears this cache.
+   */
+  @Override
+  public void clear() {
+    for(Stripe stripe : stripes) {
+      synchronized(stripe) {
+        stripe.clear();
+      }
+    }
+  }
+
+  @Override
+  public void logStatistics() {
+    super.logStatistics();
+    if(hits != null) {
+      LOG.statistics(hits);
+      LOG.statistics(misses);
+      LOG.statistics(evictions);
+    }
+    file.logStatistics();
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * A single stripe of the cache. All methods must be called while holding
+   * the lock of the stripe.
+   *
+   * @author Erich Schubert
+   */
+  private class Stripe {
+    /**
+     * Map from page ids to slots.
+     */
+    private final Int2IntOpenHashMap index;
+
+    /**
+     * Page ids of the slots.
+     */
+    private final int[] ids;
+
+    /**
+     * Pages of the slots.
+     */
+    private final Object[] pages;
+
+    /**
+     * Reference bits of the slots.
+     */
+    private final boolean[] referenced;
+
+    /**
+     * Number of slots in use.
+     */
+    private int size;
+
+    /**
+     * Position of the clock hand.
+     */
+    private int hand;
+
+    /**
+     * Modification counter, incremented when pages are written back to the
+     * underlying file or removed.
+     */
+    int version;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity Number of pages
+     */
+    Stripe(int capacity) {
+      this.index = new Int2IntOpenHashMap(capacity);
+      this.index.defaultReturnValue(-1);
+      this.ids = new int[capacity];
+      this.pages = new Object[capacity];
+      this.referenced = new boolean[capacity];
+    }
+
+    /**
+     * Get a cached page, and mark it as referenced.
+     *
+     * @param pageID Page id
+     * @return Page, or {@code null}
+     */
+    @SuppressWarnings("unchecked")
+    P get(int pageID) {
+      final int slot = index.get(pageID);
+      if(slot < 0) {
+        return null;
+      }
+      referenced[slot] = true;
+      return (P) pages[slot];
+    }
+
+    /**
+     * Put a page into the cache, evicting another page if necessary.
+     *
+     * @param pageID Page id
+     * @param page Page
+     */
+    void put(int pageID, P page) {
+      int slot = index.get(pageID);
+      if(slot < 0) {
+        slot = size < ids.length ? size++ : evict();
+        ids[slot] = pageID;
+        index.put(pageID, slot);
+      }
+      pages[slot] = page;
+      referenced[slot] = true;
+    }
+
+    /**
+     * Remove a page from the cache, without writing it.
+     *
+     * @param pageID Page id
+     */
+    void remove(int pageID) {
+      ++version;
+      final int slot = index.remove(pageID);
+      if(slot < 0) {
+        return;
+      }
+      // Move the last slot into the gap.
+      final int last = --size;
+      if(slot != last) {
+        ids[slot] = ids[last];
+        pages[slot] = pages[last];
+        referenced[slot] = referenced[last];
+        index.put(ids[slot], slot);
+      }
+      pages[last] = null;
+      hand = hand < size ? hand : 0;
+    }
+
+    /**
+     * Advance the clock hand to a page without a second chance, and write it
+     * to the underlying file.
+     *
+     * @return Slot of the evicted page
+     */
+    @SuppressWarnings("unchecked")
+    private int evict() {
+      while(referenced[hand]) {
+        referenced[hand] = false;
+        hand = hand + 1 < size ? hand + 1 : 0;
+      }
+      final int victim = hand;
+      hand = hand + 1 < size ? hand + 1 : 0;
+      ++version;
+      expirePage((P) pages[victim]);
+      index.remove(ids[victim]);
+      if(evictions != null) {
+        evictions.increment();
+      }
+      return victim;
+    }
+
+    /**
+     * Write all pages to the underlying file, and empty the stripe.
+     */
+    @SuppressWarnings("unchecked")
+    void flush() {
+      for(int i = 0; i < size; i++) {
+        expirePage((P) pages[i]);
+      }
+      clear();
+    }
+
+    /**
+     * Empty the stripe, without writing pages.
+     */
+    void clear() {
+      ++version;
+      index.clear();
+      Arrays.fill(pages, 0, size, null);
+      size = hand = 0;
+    }
+  }
+}
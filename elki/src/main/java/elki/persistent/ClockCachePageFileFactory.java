@@ -0,0 +1,116 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.persistent;
+
+import elki.utilities.optionhandling.OptionID;
+import elki.utilities.optionhandling.Parameterizer;
+import elki.utilities.optionhandling.constraints.GreaterEqualConstraint;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.LongParameter;
+import elki.utilities.optionhandling.parameters.ObjectParameter;
+
+/**
+ * Page file factory for a concurrent CLOCK page cache.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @has - - - ClockCache
+ * @composed - - - PageFileFactory
+ *
+ * @param <P> Page type
+ */
+public class ClockCachePageFileFactory<P extends Page> implements PageFileFactory<P> {
+  /**
+   * Inner page file factory.
+   */
+  private PageFileFactory<P> pageFileFactory;
+
+  /**
+   * Cache size, in bytes.
+   */
+  private long cacheSize;
+
+  /**
+   * Constructor.
+   *
+   * @param pageFileFactory Inner page file
+   * @param cacheSize Size of cache, in bytes.
+   */
+  public ClockCachePageFileFactory(PageFileFactory<P> pageFileFactory, long cacheSize) {
+    super();
+    this.cacheSize = cacheSize;
+    this.pageFileFactory = pageFileFactory;
+  }
+
+  @Override
+  public PageFile<P> newPageFile(Class<P> cls) {
+    PageFile<P> inner = pageFileFactory.newPageFile(cls);
+    return new ClockCache<>(cacheSize, inner);
+  }
+
+  @Override
+  public int getPageSize() {
+    return pageFileFactory.getPageSize();
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   */
+  public static class Par implements Parameterizer {
+    /**
+     * Parameter to specify the size of the cache in bytes, must be at least
+     * the size of one page.
+     */
+    public static final OptionID CACHE_SIZE_ID = LRUCachePageFileFactory.Par.CACHE_SIZE_ID;
+
+    /**
+     * Parameter to specify the inner pagefile.
+     */
+    public static final OptionID PAGEFILE_ID = LRUCachePageFileFactory.Par.PAGEFILE_ID;
+
+    /**
+     * Inner page file factory.
+     */
+    PageFileFactory<Page> pageFileFactory;
+
+    /**
+     * Cache size, in bytes.
+     */
+    protected long cacheSize;
+
+    @Override
+    public void configure(Parameterization config) {
+      new ObjectParameter<PageFileFactory<Page>>(PAGEFILE_ID, PageFileFactory.class, MappedPageFileFactory.class) //
+          .grab(config, x -> pageFileFactory = x);
+      new LongParameter(CACHE_SIZE_ID) //
+          .addConstraint(new GreaterEqualConstraint(pageFileFactory != null ? pageFileFactory.getPageSize() : 1)) //
+          .grab(config, x -> cacheSize = x);
+    }
+
+    @Override
+    public ClockCachePageFileFactory<Page> make() {
+      return new ClockCachePageFileFactory<>(pageFileFactory, cacheSize);
+    }
+  }
+}
@@ -0,0 +1,472 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.persistent;
+
+import java.io.*;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+import elki.utilities.exceptions.AbortException;
+import elki.utilities.io.ByteBufferInputStream;
+import elki.utilities.io.ByteBufferSerializer;
+
+/**
+ * Serializer for externalizable pages, that reads and writes the page contents
+ * directly from and to a byte buffer.
+ * <p>
+ * Contrary to serialization with {@link ObjectOutputStream}, no intermediate
+ * byte arrays and stream objects are needed, and the binary layout is exactly
+ * the sequence of primitive values written by
+ * {@link Externalizable#writeExternal}. Nested objects written with
+ * {@link ObjectOutput#writeObject} (rarely used by pages) fall back to Java
+ * serialization, prefixed with their length.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @param <P> Page type
+ */
+public class ExternalizablePageSerializer<P extends Page & Externalizable> implements ByteBufferSerializer<P> {
+  /**
+   * The type of pages we use.
+   */
+  private final Class<P> pageclass;
+
+  /**
+   * Constructor.
+   *
+   * @param pageclass Page class
+   */
+  public ExternalizablePageSerializer(Class<P> pageclass) {
+    super();
+    this.pageclass = pageclass;
+  }
+
+  @Override
+  public P fromByteBuffer(ByteBuffer buffer) throws IOException {
+    try {
+      P page = pageclass.newInstance();
+      page.readExternal(new Input(buffer));
+      return page;
+    }
+    catch(InstantiationException | IllegalAccessException | ClassNotFoundException e) {
+      throw new AbortException("Error instantiating an index page", e);
+    }
+  }
+
+  @Override
+  public void toByteBuffer(ByteBuffer buffer, P page) throws IOException {
+    try {
+      page.writeExternal(new Output(buffer));
+    }
+    catch(BufferOverflowException e) {
+      throw new IOException("Page " + page + " does not fit into " + buffer.capacity() + " bytes.", e);
+    }
+  }
+
+  @Override
+  public int getByteSize(P page) throws IOException {
+    Counter counter = new Counter();
+    page.writeExternal(counter);
+    return counter.size;
+  }
+
+  /**
+   * Object input reading from a byte buffer.
+   *
+   * @author Erich Schubert
+   */
+  private static class Input implements ObjectInput {
+    /**
+     * Buffer to read from.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * Constructor.
+     *
+     * @param buffer Buffer to read from
+     */
+    Input(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public void readFully(byte[] b) {
+      buffer.get(b);
+    }
+
+    @Override
+    public void readFully(byte[] b, int off, int len) {
+      buffer.get(b, off, len);
+    }
+
+    @Override
+    public int skipBytes(int n) {
+      n = Math.min(n, buffer.remaining());
+      buffer.position(buffer.position() + n);
+      return n;
+    }
+
+    @Override
+    public boolean readBoolean() {
+      return buffer.get() != 0;
+    }
+
+    @Override
+    public byte readByte() {
+      return buffer.get();
+    }
+
+    @Override
+    public int readUnsignedByte() {
+      return buffer.get() & 0xFF;
+    }
+
+    @Override
+    public short readShort() {
+      return buffer.getShort();
+    }
+
+    @Override
+    public int readUnsignedShort() {
+      return buffer.getShort() & 0xFFFF;
+    }
+
+    @Override
+    public char readChar() {
+      return buffer.getChar();
+    }
+
+    @Override
+    public int readInt() {
+      return buffer.getInt();
+    }
+
+    @Override
+    public long readLong() {
+      return buffer.getLong();
+    }
+
+    @Override
+    public float readFloat() {
+      return buffer.getFloat();
+    }
+
+    @Override
+    public double readDouble() {
+      return buffer.getDouble();
+    }
+
+    @Override
+    public String readLine() {
+      if(!buffer.hasRemaining()) {
+        return null;
+      }
+      StringBuilder buf = new StringBuilder();
+      while(buffer.hasRemaining()) {
+        final char c = (char) (buffer.get() & 0xFF);
+        if(c == '\n') {
+          break;
+        }
+        if(c == '\r') {
+          if(buffer.hasRemaining() && buffer.get(buffer.position()) == '\n') {
+            buffer.get();
+          }
+          break;
+        }
+        buf.append(c);
+      }
+      return buf.toString();
+    }
+
+    @Override
+    public String readUTF() throws IOException {
+      return DataInputStream.readUTF(this);
+    }
+
+    @Override
+    public Object readObject() throws ClassNotFoundException, IOException {
+      final int len = buffer.getInt();
+      ByteBuffer slice = buffer.slice();
+      slice.limit(len);
+      buffer.position(buffer.position() + len);
+      try (ObjectInputStream ois = new ObjectInputStream(new ByteBufferInputStream(slice))) {
+        return ois.readObject();
+      }
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b) {
+      return read(b, 0, b.length);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if(!buffer.hasRemaining()) {
+        return -1;
+      }
+      len = Math.min(len, buffer.remaining());
+      buffer.get(b, off, len);
+      return len;
+    }
+
+    @Override
+    public long skip(long n) {
+      return skipBytes((int) Math.min(n, Integer.MAX_VALUE));
+    }
+
+    @Override
+    public int available() {
+      return buffer.remaining();
+    }
+
+    @Override
+    public void close() {
+      // Nothing to do.
+    }
+  }
+
+  /**
+   * Object output writing to a byte buffer.
+   *
+   * @author Erich Schubert
+   */
+  private static class Output implements ObjectOutput {
+    /**
+     * Buffer to write to.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * Constructor.
+     *
+     * @param buffer Buffer to write to
+     */
+    Output(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public void write(int b) {
+      buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b) {
+      buffer.put(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      buffer.put(b, off, len);
+    }
+
+    @Override
+    public void writeBoolean(boolean v) {
+      buffer.put((byte) (v ? 1 : 0));
+    }
+
+    @Override
+    public void writeByte(int v) {
+      buffer.put((byte) v);
+    }
+
+    @Override
+    public void writeShort(int v) {
+      buffer.putShort((short) v);
+    }
+
+    @Override
+    public void writeChar(int v) {
+      buffer.putChar((char) v);
+    }
+
+    @Override
+    public void writeInt(int v) {
+      buffer.putInt(v);
+    }
+
+    @Override
+    public void writeLong(long v) {
+      buffer.putLong(v);
+    }
+
+    @Override
+    public void writeFloat(float v) {
+      buffer.putFloat(v);
+    }
+
+    @Override
+    public void writeDouble(double v) {
+      buffer.putDouble(v);
+    }
+
+    @Override
+    public void writeBytes(String s) {
+      for(int i = 0; i < s.length(); i++) {
+        buffer.put((byte) s.charAt(i));
+      }
+    }
+
+    @Override
+    public void writeChars(String s) {
+      for(int i = 0; i < s.length(); i++) {
+        buffer.putChar(s.charAt(i));
+      }
+    }
+
+    @Override
+    public void writeUTF(String s) throws IOException {
+      ByteArrayOutputStream bos = new ByteArrayOutputStream(s.length() + 2);
+      new DataOutputStream(bos).writeUTF(s);
+      buffer.put(bos.toByteArray());
+    }
+
+    @Override
+    public void writeObject(Object obj) throws IOException {
+      ByteArrayOutputStream bos = new ByteArrayOutputStream();
+      try (ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+        oos.writeObject(obj);
+      }
+      buffer.putInt(bos.size());
+      buffer.put(bos.toByteArray());
+    }
+
+    @Override
+    public void flush() {
+      // Nothing to do.
+    }
+
+    @Override
+    public void close() {
+      // Nothing to do.
+    }
+  }
+
+  /**
+   * Object output that only counts the number of bytes written.
+   *
+   * @author Erich Schubert
+   */
+  private static class Counter implements ObjectOutput {
+    /**
+     * Number of bytes written.
+     */
+    int size = 0;
+
+    @Override
+    public void write(int b) {
+      size += Byte.BYTES;
+    }
+
+    @Override
+    public void write(byte[] b) {
+      size += b.length;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      size += len;
+    }
+
+    @Override
+    public void writeBoolean(boolean v) {
+      size += Byte.BYTES;
+    }
+
+    @Override
+    public void writeByte(int v) {
+      size += Byte.BYTES;
+    }
+
+    @Override
+    public void writeShort(int v) {
+      size += Short.BYTES;
+    }
+
+    @Override
+    public void writeChar(int v) {
+      size += Character.BYTES;
+    }
+
+    @Override
+    public void writeInt(int v) {
+      size += Integer.BYTES;
+    }
+
+    @Override
+    public void writeLong(long v) {
+      size += Long.BYTES;
+    }
+
+    @Override
+    public void writeFloat(float v) {
+      size += Float.BYTES;
+    }
+
+    @Override
+    public void writeDouble(double v) {
+      size += Double.BYTES;
+    }
+
+    @Override
+    public void writeBytes(String s) {
+      size += s.length();
+    }
+
+    @Override
+    public void writeChars(String s) {
+      size += s.length() * Character.BYTES;
+    }
+
+    @Override
+    public void writeUTF(String s) throws IOException {
+      ByteArrayOutputStream bos = new ByteArrayOutputStream(s.length() + 2);
+      new DataOutputStream(bos).writeUTF(s);
+      size += bos.size();
+    }
+
+    @Override
+    public void writeObject(Object obj) throws IOException {
+      ByteArrayOutputStream bos = new ByteArrayOutputStream();
+      try (ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+        oos.writeObject(obj);
+      }
+      size += Integer.BYTES + bos.size();
+    }
+
+    @Override
+    public void flush() {
+      // Nothing to do.
+    }
+
+    @Override
+    public void close() {
+      // Nothing to do.
+    }
+  }
+}
@@ -0,0 +1,327 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.persistent;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import elki.index.tree.TreeIndexHeader;
+import elki.logging.Logging;
+import elki.utilities.exceptions.AbortException;
+import elki.utilities.io.ByteBufferSerializer;
+
+/**
+ * A page file stored on disk, and accessed via memory mapping.
+ * <p>
+ * Every page occupies a fixed-size slot in the file, beginning with a marker
+ * for empty and filled pages, followed by the page contents as written by the
+ * serializer. Pages are read directly from the mapped buffers, without copying
+ * the data into intermediate arrays or streams. The file is mapped in segments
+ * of up to 1 GB, which grow as needed.
+ * <p>
+ * Because Java cannot explicitly release a mapping, the file is never
+ * truncated while in use; unused space at the end of the last segment remains
+ * in the file, and is reused when the file is opened again.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @composed - - - PageHeader
+ * @composed - - - ByteBufferSerializer
+ *
+ * @param <P> Page type
+ */
+public class MappedPageFile<P extends Page> extends AbstractStoringPageFile<P> {
+  /**
+   * Our logger
+   */
+  private static final Logging LOG = Logging.getLogger(MappedPageFile.class);
+
+  /**
+   * Indicates an empty page.
+   */
+  private static final int EMPTY_PAGE = 0;
+
+  /**
+   * Indicates a filled page.
+   */
+  private static final int FILLED_PAGE = 1;
+
+  /**
+   * Maximum size of a mapped segment.
+   */
+  private static final int SEGMENT_BYTES = 1 << 30;
+
+  /**
+   * File name.
+   */
+  private final Path filename;
+
+  /**
+   * Serializer for pages.
+   */
+  private final ByteBufferSerializer<P> serializer;
+
+  /**
+   * The file storing the pages.
+   */
+  private FileChannel file;
+
+  /**
+   * The header of this page file.
+   */
+  protected PageHeader header;
+
+  /**
+   * Number of pages reserved for the header.
+   */
+  private int reserved;
+
+  /**
+   * Number of pages per mapped segment.
+   */
+  private int pagesPerSegment;
+
+  /**
+   * Mapped segments of the file.
+   */
+  private MappedByteBuffer[] segments = new MappedByteBuffer[0];
+
+  /**
+   * Constructor.
+   *
+   * @param pageSize Page size
+   * @param filename File name
+   * @param serializer Page serializer
+   */
+  public MappedPageFile(int pageSize, Path filename, ByteBufferSerializer<P> serializer) {
+    super(pageSize);
+    this.filename = filename;
+    this.serializer = serializer;
+  }
+
+  @Override
+  public P readPage(int pageID) {
+    countRead();
+    ByteBuffer buf = pageBuffer(pageID, false);
+    if(buf == null || buf.getInt() != FILLED_PAGE) {
+      return null;
+    }
+    try {
+      return serializer.fromByteBuffer(buf);
+    }
+    catch(IOException e) {
+      throw new AbortException("IO error reading page " + pageID, e);
+    }
+  }
+
+  @Override
+  protected void writePage(int pageID, P page) {
+    countWrite();
+    ByteBuffer buf = pageBuffer(pageID, true);
+    buf.putInt(FILLED_PAGE);
+    try {
+      serializer.toByteBuffer(buf, page);
+    }
+    catch(IOException e) {
+      throw new AbortException("IO error writing page " + pageID, e);
+    }
+    page.setDirty(false);
+  }
+
+  @Override
+  public synchronized void deletePage(int pageID) {
+    super.deletePage(pageID);
+    countWrite();
+    ByteBuffer buf = pageBuffer(pageID, false);
+    if(buf != null) {
+      buf.putInt(EMPTY_PAGE);
+    }
+  }
+
+  /**
+   * Get a buffer view of a single page.
+   *
+   * @param pageID Page id
+   * @param grow Grow the file if necessary
+   * @return Buffer positioned at the beginning of the page, or {@code null}
+   *         if the page is beyond the end of the file and grow is false.
+   */
+  private synchronized ByteBuffer pageBuffer(int pageID, boolean grow) {
+    final long slot = (long) reserved + pageID;
+    final int seg = (int) (slot / pagesPerSegment);
+    final int off = (int) (slot % pagesPerSegment) * pageSize;
+    MappedByteBuffer map = seg < segments.length ? segments[seg] : null;
+    if(map == null || map.capacity() < off + pageSize) {
+      try {
+        if(!grow && file.size() < ((long) seg * pagesPerSegment) * pageSize + off + pageSize) {
+          return null;
+        }
+        map = mapSegment(seg, off + pageSize);
+      }
+      catch(IOException e) {
+        throw new AbortException("IO error mapping page file.", e);
+      }
+    }
+    ByteBuffer buf = map.duplicate();
+    buf.limit(off + pageSize);
+    buf.position(off);
+    return buf.slice();
+  }
+
+  /**
+   * (Re-)map a segment of the file, growing it geometrically.
+   *
+   * @param seg Segment number
+   * @param minbytes Minimum size in bytes
+   * @return Mapped segment
+   * @throws IOException on IO errors
+   */
+  private MappedByteBuffer mapSegment(int seg, int minbytes) throws IOException {
+    final long start = ((long) seg * pagesPerSegment) * pageSize;
+    final long maxbytes = (long) pagesPerSegment * pageSize;
+    MappedByteBuffer old = seg < segments.length ? segments[seg] : null;
+    long size = Math.max(minbytes, old != null ? 2L * old.capacity() : 16L * pageSize);
+    size = Math.min(Math.max(size, file.size() - start), maxbytes);
+    if(seg >= segments.length) {
+      segments = Arrays.copyOf(segments, seg + 1);
+    }
+    return segments[seg] = file.map(MapMode.READ_WRITE, start, size);
+  }
+
+  @Override
+  public void close() {
+    try {
+      for(MappedByteBuffer map : segments) {
+        if(map != null) {
+          map.force();
+        }
+      }
+      segments = new MappedByteBuffer[0];
+      if(header instanceof TreeIndexHeader) {
+        // write the list of empty pages to the end of the file
+        ((TreeIndexHeader) header).writeEmptyPages(emptyPages, file);
+        ((TreeIndexHeader) header).setLargestPageID(nextPageID);
+      }
+      header.writeHeader(file);
+      file.close();
+    }
+    catch(IOException e) {
+      throw new AbortException("IO error closing page file.", e);
+    }
+  }
+
+  @Override
+  public synchronized void clear() {
+    // Mark all pages as empty, rather than truncating the mapped file.
+    ByteBuffer buf;
+    for(int i = 0; (buf = pageBuffer(i, false)) != null; i++) {
+      buf.putInt(EMPTY_PAGE);
+    }
+    nextPageID = 0;
+    emptyPages.clear();
+  }
+
+  /**
+   * Set the next page id to the given value. If this means that any page ids
+   * stored in <code>emptyPages</code> are smaller than
+   * <code>next_page_id</code>, they are removed from this file's observation
+   * stack.
+   *
+   * @param next_page_id the id of the next page to be inserted (if there are no
+   *        more empty pages to be filled)
+   */
+  @Override
+  public void setNextPageID(int next_page_id) {
+    this.nextPageID = next_page_id;
+    while(!emptyPages.isEmpty() && emptyPages.get(emptyPages.size - 1) >= this.nextPageID) {
+      --emptyPages.size;
+    }
+  }
+
+  /**
+   * Get the header of this page file.
+   *
+   * @return the header used by this page file
+   */
+  public PageHeader getHeader() {
+    return header;
+  }
+
+  @Override
+  public boolean initialize(PageHeader header) {
+    try {
+      final boolean existed = Files.exists(filename) && Files.size(filename) > 0;
+      file = FileChannel.open(filename, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      this.header = header;
+      if(existed) {
+        LOG.debug("Initializing from an existing page file.");
+        header.readHeader(file);
+      }
+      else {
+        LOG.debug("Initializing with a new page file.");
+        header.writeHeader(file);
+      }
+      this.pageSize = header.getPageSize();
+      this.reserved = header.getReservedPages();
+      this.pagesPerSegment = Math.max(1, SEGMENT_BYTES / pageSize);
+      if(existed) {
+        if(header instanceof TreeIndexHeader) {
+          TreeIndexHeader tiHeader = (TreeIndexHeader) header;
+          nextPageID = tiHeader.getLargestPageID();
+          emptyPages = tiHeader.readEmptyPages(file);
+        }
+        else { // must scan complete file
+          ByteBuffer buf;
+          for(int i = 0; (buf = pageBuffer(i, false)) != null; i++) {
+            int type = buf.getInt();
+            if(type == EMPTY_PAGE) {
+              emptyPages.add(i);
+            }
+            else if(type == FILLED_PAGE) {
+              nextPageID = i + 1;
+            }
+            else {
+              throw new AbortException("Unknown page type: " + type);
+            }
+          }
+          setNextPageID(nextPageID);
+        }
+      }
+      return existed;
+    }
+    catch(IOException | ClassNotFoundException e) {
+      throw new AbortException("IO error initializing page file.", e);
+    }
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+}
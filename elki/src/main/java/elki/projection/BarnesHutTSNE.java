@@ -20,8 +20,8 @@
  */
 package elki.projection;
 
-import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
 
 import elki.data.DoubleVector;
 import elki.data.type.TypeInformation;
@@ -39,10 +39,10 @@ import elki.logging.progress.FiniteProgress;
 import elki.logging.statistics.Duration;
 import elki.logging.statistics.LongStatistic;
 import elki.math.MathUtil;
+import elki.parallel.ParallelCore;
 import elki.utilities.Priority;
 import elki.utilities.documentation.Reference;
 import elki.utilities.exceptions.AbortException;
-import elki.utilities.io.FormatUtil;
 import elki.utilities.optionhandling.OptionID;
 import elki.utilities.optionhandling.constraints.CommonConstraints;
 import elki.utilities.optionhandling.parameterization.Parameterization;
@@ -55,6 +55,9 @@ import elki.utilities.random.RandomFactory;
  * For larger data sets, use an index to make finding the nearest neighbors
  * faster, e.g. cover tree or k-d-tree.
  * <p>
+ * The gradient is computed in parallel, using a flat quad tree that is rebuilt
+ * in every iteration.
+ * <p>
  * Reference:
  * <p>
  * L. J. P. van der Maaten<br>
@@ -99,6 +102,13 @@ public class BarnesHutTSNE<O> extends TSNE<O> {
    */
   private static final double QUADTREE_MIN_RESOLUION = 1e-10;
 
+  /**
+   * Block size for parallel gradient computation. This is fixed, such that
+   * the summation order (and hence the result) does not depend on the number
+   * of threads.
+   */
+  private static final int GRADIENT_BLOCKSIZE = 256;
+
   /**
    * (Squared) approximation quality threshold.
    */
@@ -161,15 +171,23 @@ public class BarnesHutTSNE<O> extends TSNE<O> {
     }
     FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Iterative Optimization", iterations, LOG) : null;
     Duration timer = LOG.isStatistics() ? LOG.newDuration(this.getClass().getName() + ".runtime.optimization").begin() : null;
-    // Optimize
-    for(int i = 0; i < iterations; i++) {
-      computeGradient(pij, sol, meta);
-      updateSolution(sol, meta, i);
-      // Undo early exaggeration
-      if(i == EARLY_EXAGGERATION_ITERATIONS) {
-        pij.scale(1. / EARLY_EXAGGERATION);
+    QuadTree tree = new QuadTree(dim, size);
+    ParallelCore pcore = ParallelCore.getCore();
+    pcore.connect();
+    try {
+      // Optimize
+      for(int i = 0; i < iterations; i++) {
+        computeGradient(pcore, pij, sol, meta, tree);
+        updateSolution(sol, meta, i);
+        // Undo early exaggeration
+        if(i == EARLY_EXAGGERATION_ITERATIONS) {
+          pij.scale(1. / EARLY_EXAGGERATION);
+        }
+        LOG.incrementProcessed(prog);
       }
-      LOG.incrementProcessed(prog);
+    }
+    finally {
+      pcore.disconnect();
     }
     LOG.ensureCompleted(prog);
     if(timer != null) {
@@ -177,88 +195,252 @@ public class BarnesHutTSNE<O> extends TSNE<O> {
     }
   }
 
-  private void computeGradient(AffinityMatrix pij, double[][] solution, double[] grad) {
-    final int dim3 = 3 * dim;
-    // Reset gradient / forces
-    for(int off = 0; off < grad.length; off += dim3) {
-      Arrays.fill(grad, off, off + dim, 0.);
-    }
+  /**
+   * Compute the gradient.
+   *
+   * @param pcore Parallel core
+   * @param pij Sparse affinity matrix
+   * @param solution Current solution
+   * @param grad Gradient output (in the metadata array)
+   * @param tree Quad tree to (re-)build
+   */
+  private void computeGradient(ParallelCore pcore, AffinityMatrix pij, double[][] solution, double[] grad, QuadTree tree) {
     // Compute repulsive forces first:
-    QuadTree tree = QuadTree.build(dim, solution);
-    double z = 0.;
-    for(int i = 0, off = 0; i < solution.length; i++, off += dim3) {
-      z -= computeRepulsiveForces(grad, off, solution[i], tree);
+    tree.build(solution);
+    RepulsiveTask rep = new RepulsiveTask(solution, grad, tree, 0, solution.length);
+    invoke(pcore, rep, solution.length);
+    // Normalize repulsive forces, and compute attractive forces second:
+    AttractiveTask attr = new AttractiveTask(pij, solution, grad, -1. / rep.z, 0, solution.length);
+    invoke(pcore, attr, solution.length);
+    projectedDistances += rep.distances + attr.distances;
+  }
+
+  /**
+   * Run a task, using the fork-join pool only if it will be split.
+   *
+   * @param pcore Parallel core
+   * @param task Task
+   * @param size Number of points
+   */
+  private static void invoke(ParallelCore pcore, RecursiveAction task, int size) {
+    if(size > GRADIENT_BLOCKSIZE) {
+      pcore.invoke(task);
     }
-    // Normalize repulsive forces:
-    double s = 1 / z; // Scaling factor
-    for(int off = 0; off < grad.length; off += dim3) {
-      for(int j = 0; j < dim; j++) {
-        grad[off + j] *= s;
-      }
+    else {
+      task.invoke();
     }
-    // Compute attractive forces second
-    computeAttractiveForces(grad, pij, solution);
   }
 
-  private void computeAttractiveForces(double[] attr, AffinityMatrix pij, double[][] sol) {
-    final int dim3 = 3 * dim;
-    for(int i = 0, off = 0; off < attr.length; i++, off += dim3) {
-      final double[] sol_i = sol[i];
-      for(int offj = pij.iter(i); pij.iterValid(i, offj); offj = pij.iterAdvance(i, offj)) {
-        final double[] sol_j = sol[pij.iterDim(i, offj)];
-        final double pij_ij = pij.iterValue(i, offj);
-        final double a = pij_ij / (1. + sqDist(sol_i, sol_j));
+  /**
+   * Fork-join task to compute the repulsive forces of a range of points.
+   *
+   * @author Erich Schubert
+   */
+  private class RepulsiveTask extends RecursiveAction {
+    /**
+     * Serialization version.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Current solution.
+     */
+    private double[][] sol;
+
+    /**
+     * Gradient output.
+     */
+    private double[] grad;
+
+    /**
+     * Quad tree of the current solution.
+     */
+    private QuadTree tree;
+
+    /**
+     * Range of points.
+     */
+    private int start, end;
+
+    /**
+     * Sum of the force strengths, output.
+     */
+    double z;
+
+    /**
+     * Number of distance computations, output.
+     */
+    long distances;
+
+    /**
+     * Constructor.
+     *
+     * @param sol Current solution
+     * @param grad Gradient output
+     * @param tree Quad tree
+     * @param start First point
+     * @param end End point (exclusive)
+     */
+    RepulsiveTask(double[][] sol, double[] grad, QuadTree tree, int start, int end) {
+      this.sol = sol;
+      this.grad = grad;
+      this.tree = tree;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    protected void compute() {
+      if(end - start > GRADIENT_BLOCKSIZE) {
+        final int mid = (start + end) >>> 1;
+        RepulsiveTask left = new RepulsiveTask(sol, grad, tree, start, mid);
+        RepulsiveTask right = new RepulsiveTask(sol, grad, tree, mid, end);
+        invokeAll(left, right);
+        z = left.z + right.z;
+        distances = left.distances + right.distances;
+        return;
+      }
+      final int dim3 = 3 * dim;
+      for(int i = start, off = start * dim3; i < end; i++, off += dim3) {
+        Arrays.fill(grad, off, off + dim, 0.);
+        z += computeRepulsiveForces(grad, off, sol[i]);
+      }
+    }
+
+    /**
+     * Compute the repulsive forces for a single point.
+     *
+     * @param rep_i Repulsive forces array
+     * @param off Point offset
+     * @param sol_i Solution vector
+     * @return force strength
+     */
+    private double computeRepulsiveForces(double[] rep_i, int off, double[] sol_i) {
+      final double[] centers = tree.centers, squareSizes = tree.squareSizes;
+      final int[] weights = tree.weights, skip = tree.skip;
+      double z = 0.;
+      for(int n = 0, e = tree.size; n < e;) {
+        final int coff = n * dim, next = skip[n];
+        double dist = 0.;
         for(int k = 0; k < dim; k++) {
-          attr[off + k] += a * (sol_i[k] - sol_j[k]);
+          final double diff = sol_i[k] - centers[coff + k];
+          dist += diff * diff;
+        }
+        ++distances;
+        // Leaf node, or Barnes-Hut approximation:
+        if(next == n + 1 || squareSizes[n] / dist < sqtheta) {
+          double u = 1. / (1. + dist);
+          double zn = weights[n] * u;
+          double a = zn * u;
+          for(int k = 0; k < dim; k++) {
+            // TODO: van der Maaten avoids computing this difference twice
+            // (also done above) - we should also use this optimization.
+            rep_i[off + k] += a * (sol_i[k] - centers[coff + k]);
+          }
+          z += zn;
+          n = next; // Skip the subtree
+        }
+        else {
+          ++n; // Descend into the subtree
         }
       }
+      return z;
     }
   }
 
   /**
-   * Compute the repulsive forces for a single point
-   * 
-   * @param rep_i Repulsive forces array
-   * @param off Point offset
-   * @param sol_i Solution vector
-   * @param node Quad tree
-   * @return force strength
+   * Fork-join task to normalize the repulsive forces and add the attractive
+   * forces of a range of points.
+   *
+   * @author Erich Schubert
    */
-  private double computeRepulsiveForces(double[] rep_i, int off, double[] sol_i, QuadTree node) {
-    final double[] center = node.center;
-    double dist = sqDist(sol_i, center);
-    // Barnes-Hut approximation:
-    if(node.weight == 1 || node.squareSize / dist < sqtheta) {
-      double u = 1. / (1. + dist);
-      double z = node.weight * u;
-      double a = z * u;
-      for(int k = 0; k < dim; k++) {
-        // TODO: van der Maaten avoids computing this difference twice (also
-        // done in sqDist) - we should also use this optimization.
-        rep_i[off + k] += a * (sol_i[k] - center[k]);
-      }
-      return z;
+  private class AttractiveTask extends RecursiveAction {
+    /**
+     * Serialization version.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Sparse affinity matrix.
+     */
+    private AffinityMatrix pij;
+
+    /**
+     * Current solution.
+     */
+    private double[][] sol;
+
+    /**
+     * Gradient output.
+     */
+    private double[] grad;
+
+    /**
+     * Scaling factor of the repulsive forces.
+     */
+    private double scale;
+
+    /**
+     * Range of points.
+     */
+    private int start, end;
+
+    /**
+     * Number of distance computations, output.
+     */
+    long distances;
+
+    /**
+     * Constructor.
+     *
+     * @param pij Sparse affinity matrix
+     * @param sol Current solution
+     * @param grad Gradient output
+     * @param scale Scaling factor of the repulsive forces
+     * @param start First point
+     * @param end End point (exclusive)
+     */
+    AttractiveTask(AffinityMatrix pij, double[][] sol, double[] grad, double scale, int start, int end) {
+      this.pij = pij;
+      this.sol = sol;
+      this.grad = grad;
+      this.scale = scale;
+      this.start = start;
+      this.end = end;
     }
-    double z = 0.;
-    // Aggregate points in this node:
-    if(node.points != null) {
-      for(double[] point : node.points) {
-        double pdist = sqDist(sol_i, point);
-        double pz = 1. / (1. + pdist);
-        double a = pz * pz;
+
+    @Override
+    protected void compute() {
+      if(end - start > GRADIENT_BLOCKSIZE) {
+        final int mid = (start + end) >>> 1;
+        AttractiveTask left = new AttractiveTask(pij, sol, grad, scale, start, mid);
+        AttractiveTask right = new AttractiveTask(pij, sol, grad, scale, mid, end);
+        invokeAll(left, right);
+        distances = left.distances + right.distances;
+        return;
+      }
+      final int dim3 = 3 * dim;
+      for(int i = start, off = start * dim3; i < end; i++, off += dim3) {
         for(int k = 0; k < dim; k++) {
-          rep_i[off + k] += a * (sol_i[k] - point[k]);
+          grad[off + k] *= scale;
+        }
+        final double[] sol_i = sol[i];
+        for(int offj = pij.iter(i); pij.iterValid(i, offj); offj = pij.iterAdvance(i, offj)) {
+          final double[] sol_j = sol[pij.iterDim(i, offj)];
+          final double pij_ij = pij.iterValue(i, offj);
+          double dist = 0.;
+          for(int k = 0; k < dim; k++) {
+            final double diff = sol_i[k] - sol_j[k];
+            dist += diff * diff;
+          }
+          ++distances;
+          final double a = pij_ij / (1. + dist);
+          for(int k = 0; k < dim; k++) {
+            grad[off + k] += a * (sol_i[k] - sol_j[k]);
+          }
         }
-        z += pz;
-      }
-    }
-    // Recurse into subtrees:
-    if(node.children != null) {
-      for(QuadTree child : node.children) {
-        z += computeRepulsiveForces(rep_i, off, sol_i, child);
       }
     }
-    return z;
   }
 
   @Override
@@ -270,110 +452,141 @@ public class BarnesHutTSNE<O> extends TSNE<O> {
    * Quad Tree for use in a Barnes-Hut approximation.
    * <p>
    * This tree stores in every node the number of points contained, the center
-   * of mass, and the diagonal of the cell.
-   * 
+   * of mass, and the diagonal of the cell. The nodes are stored in flat arrays
+   * in preorder, and every node stores the index following its subtree, such
+   * that the tree can be traversed without recursion. Single points are stored
+   * as leaf nodes of weight 1. The arrays are reused when rebuilding the tree.
+   *
    * @author Erich Schubert
    */
   protected static class QuadTree {
     /**
-     * Center of mass (NOT center of bounding box)
+     * Dimensionality.
+     */
+    protected final int dim;
+
+    /**
+     * Centers of mass (NOT center of bounding box), {@code dim} values each.
+     */
+    protected double[] centers;
+
+    /**
+     * Square sizes of the nodes, for Barnes-Hut approximation.
      */
-    public double[] center;
+    protected double[] squareSizes;
 
     /**
-     * Points stored in this node.
+     * Total weights of the nodes.
      */
-    public double[][] points;
+    protected int[] weights;
 
     /**
-     * Square size of this node, for Barnes-Hut approximation.
+     * Index of the next node after the subtree of each node.
      */
-    public double squareSize;
+    protected int[] skip;
 
     /**
-     * Total weight of this node.
+     * Number of nodes.
      */
-    public int weight;
+    protected int size;
 
     /**
-     * Child nodes.
+     * Data points, reordered during construction.
      */
-    public QuadTree[] children;
+    private double[][] data;
 
     /**
      * Constructor.
      *
-     * @param data Data points
-     * @param children Child nodes
-     * @param mid Center of mass
-     * @param weight Node weight
-     * @param squareSize Square size of the node
+     * @param dim Dimensionality
+     * @param capacity Number of data points
      */
-    private QuadTree(double[][] data, QuadTree[] children, double[] mid, int weight, double squareSize) {
-      this.center = mid;
-      this.points = data;
-      this.weight = weight;
-      this.squareSize = squareSize;
-      this.children = children;
+    protected QuadTree(int dim, int capacity) {
+      this.dim = dim;
+      resize((capacity << 1) + 1);
     }
 
     /**
-     * Construct the quad tree approximation.
-     * 
-     * @param dim Dimensionality
-     * @param data Data set (will be modified!)
-     * @return Quad tree
+     * Resize the node arrays.
+     *
+     * @param capacity New capacity
+     */
+    private void resize(int capacity) {
+      centers = centers == null ? new double[capacity * dim] : Arrays.copyOf(centers, capacity * dim);
+      squareSizes = squareSizes == null ? new double[capacity] : Arrays.copyOf(squareSizes, capacity);
+      weights = weights == null ? new int[capacity] : Arrays.copyOf(weights, capacity);
+      skip = skip == null ? new int[capacity] : Arrays.copyOf(skip, capacity);
+    }
+
+    /**
+     * (Re-)build the quad tree approximation.
+     *
+     * @param points Data set (will not be modified)
+     */
+    public void build(double[][] points) {
+      if(data == null || data.length != points.length) {
+        data = points.clone();
+      }
+      else {
+        System.arraycopy(points, 0, data, 0, points.length);
+      }
+      size = 0;
+      if(points.length > 0) {
+        build(0, points.length);
+      }
+    }
+
+    /**
+     * Allocate a new leaf node.
+     *
+     * @param weight Node weight
+     * @param squareSize Square size of the node
+     * @return Node index
      */
-    public static QuadTree build(int dim, double[][] data) {
-      return build(dim, data.clone(), 0, data.length);
+    private int newNode(int weight, double squareSize) {
+      if(size == weights.length) {
+        resize(size + (size >>> 1) + 1);
+      }
+      final int n = size++;
+      weights[n] = weight;
+      squareSizes[n] = squareSize;
+      skip[n] = n + 1;
+      return n;
     }
 
     /**
      * Recursive build function.
-     * 
-     * @param dim Dimensionality
-     * @param data Input data (WILL BE MODIFIED)
+     *
      * @param begin Subset begin
      * @param end Subset end
-     * @return Subtree
      */
-    private static QuadTree build(int dim, double[][] data, int begin, int end) {
-      double[] minmax = computeExtend(dim, data, begin, end);
+    private void build(int begin, int end) {
+      double[] minmax = computeExtend(begin, end);
       double squareSize = computeSquareSize(minmax);
-      double[] mid = computeCenterofMass(dim, data, begin, end);
+      final int n = newNode(end - begin, squareSize);
+      computeCenterofMass(begin, end, n * dim);
       // Leaf:
-      final int size = end - begin;
       if(squareSize <= QUADTREE_MIN_RESOLUION) {
-        data = Arrays.copyOfRange(data, begin, end);
-        return new QuadTree(data, null, mid, size, squareSize);
+        return;
       }
-
-      ArrayList<double[]> singletons = new ArrayList<>();
-      ArrayList<QuadTree> children = new ArrayList<>();
-      splitRecursively(data, begin, end, 0, dim, minmax, singletons, children);
-
-      double[][] sing = singletons.size() > 0 ? singletons.toArray(new double[singletons.size()][]) : null;
-      QuadTree[] chil = children.size() > 0 ? children.toArray(new QuadTree[children.size()]) : null;
-      return new QuadTree(sing, chil, mid, size, squareSize);
+      splitRecursively(begin, end, 0, minmax);
+      skip[n] = size;
     }
 
     /**
      * Build the quadtree by recursive splitting.
-     * 
-     * @param data Input data
+     *
      * @param begin Subset begin
      * @param end Subset end
      * @param initdim Current dimension
-     * @param dims Data dimensionality
      * @param minmax Bounding box
-     * @param singletons Output for singletons
-     * @param children Output for child nodes
      */
-    private static void splitRecursively(double[][] data, int begin, int end, int initdim, int dims, double[] minmax, ArrayList<double[]> singletons, ArrayList<QuadTree> children) {
+    private void splitRecursively(int begin, int end, int initdim, double[] minmax) {
       final int len = end - begin;
       if(len <= 1) {
         if(len == 1) {
-          singletons.add(data[begin]);
+          final int n = newNode(1, 0.);
+          System.arraycopy(data[begin], 0, centers, n * dim, dim);
         }
         return;
       }
@@ -389,13 +602,12 @@ public class BarnesHutTSNE<O> extends TSNE<O> {
         }
         ++cur; // Try next dimension
         // All remaining dimensions were constant?
-        if(cur == dims) {
+        if(cur == dim) {
           LOG.warning("Should not be reached", new Throwable());
           assert (initdim != 0) : "All dimensions constant?";
           LOG.warning("Unexpected all-constant split.");
-          double[] center = computeCenterofMass(dims, data, begin, end);
-          data = Arrays.copyOfRange(data, begin, end);
-          children.add(new QuadTree(data, null, center, len, 0.));
+          final int n = newNode(len, 0.);
+          computeCenterofMass(begin, end, n * dim);
           return;
         }
       }
@@ -422,62 +634,58 @@ public class BarnesHutTSNE<O> extends TSNE<O> {
       assert (l == begin || data[l - 1][cur] <= mid);
       ++cur;
       // Recursion into next dimension:
-      if(cur < dims) {
+      if(cur < dim) {
         if(begin < l) {
-          splitRecursively(data, begin, l, cur, dims, minmax, singletons, children);
+          splitRecursively(begin, l, cur, minmax);
         }
         if(l < end) {
-          splitRecursively(data, l, end, cur, dims, minmax, singletons, children);
+          splitRecursively(l, end, cur, minmax);
         }
         return;
       }
       // Recurse into next depth:
       if(begin < l) {
-        children.add(build(dims, data, begin, l));
+        build(begin, l);
       }
       if(l < end) {
-        children.add(build(dims, data, l, end));
+        build(l, end);
       }
     }
 
     /**
      * Computer the center of mass.
-     * 
-     * @param dim Dimensionality
-     * @param data Data set
+     *
      * @param begin Begin of subset
      * @param end End of subset
-     * @return Center of mass
+     * @param off Output offset in the centers array
      */
-    private static double[] computeCenterofMass(int dim, double[][] data, int begin, int end) {
+    private void computeCenterofMass(int begin, int end, int off) {
       final int size = end - begin;
       if(size == 1) {
-        return data[begin];
+        System.arraycopy(data[begin], 0, centers, off, dim);
+        return;
       }
-      double[] center = new double[dim];
+      Arrays.fill(centers, off, off + dim, 0.);
       for(int i = begin; i < end; i++) {
         double[] row = data[i];
         for(int d = 0; d < dim; d++) {
-          center[d] += row[d];
+          centers[off + d] += row[d];
         }
       }
       double norm = 1. / size;
       for(int d = 0; d < dim; d++) {
-        center[d] *= norm;
+        centers[off + d] *= norm;
       }
-      return center;
     }
 
     /**
-     * Compute the bounding box of a data set.
-     * 
-     * @param dim Dimensionality
-     * @param data Data set
+     * Compute the bounding box of a data subset.
+     *
      * @param begin Begin of subset
      * @param end End of subset
      * @return Bounding box
      */
-    private static double[] computeExtend(int dim, double[][] data, int begin, int end) {
+    private double[] computeExtend(int begin, int end) {
       double[] minmax = new double[dim << 1];
       for(int d = 0; d < minmax.length;) {
         minmax[d++] = Double.POSITIVE_INFINITY;
@@ -502,7 +710,7 @@ public class BarnesHutTSNE<O> extends TSNE<O> {
      * Note that van der Maaten writes "diagonal", while his source code uses
      * the maximum edge length. Barnes and Hut used the cell edge size of a
      * square quad tree.
-     * 
+     *
      * @param minmax Bounding box
      * @return squared cell size
      */
@@ -519,7 +727,7 @@ public class BarnesHutTSNE<O> extends TSNE<O> {
 
     @Override
     public String toString() {
-      return "QuadTree[center=" + FormatUtil.format(center) + ", weight=" + weight + ", points=" + points.length + ", children=" + children.length + ", sqSize=" + squareSize + "]";
+      return "QuadTree[nodes=" + size + ", weight=" + (size > 0 ? weights[0] : 0) + "]";
     }
   }
 
@@ -20,6 +20,8 @@
  */
 package elki.projection;
 
+import java.util.function.Supplier;
+
 import elki.database.ids.*;
 import elki.database.query.LinearScanQuery;
 import elki.database.query.QueryBuilder;
@@ -32,6 +34,9 @@ import elki.logging.statistics.DoubleStatistic;
 import elki.logging.statistics.Duration;
 import elki.math.MathUtil;
 import elki.math.MeanVariance;
+import elki.parallel.Executor;
+import elki.parallel.ParallelExecutor;
+import elki.parallel.processor.Processor;
 import elki.utilities.datastructures.arraylike.DoubleArray;
 import elki.utilities.datastructures.arraylike.IntegerArray;
 import elki.utilities.documentation.Reference;
@@ -97,7 +102,8 @@ public class NearestNeighborAffinityMatrixBuilder<O> extends PerplexityAffinityM
 
   @Override
   public <T extends O> AffinityMatrix computeAffinityMatrix(Relation<T> relation, double initialScale) {
-    KNNSearcher<DBIDRef> knnq = new QueryBuilder<>(relation, distance).kNNByDBID(numberOfNeighbours + 1);
+    QueryBuilder<T> qb = new QueryBuilder<>(relation, distance);
+    KNNSearcher<DBIDRef> knnq = qb.kNNByDBID(numberOfNeighbours + 1);
     if(knnq instanceof LinearScanQuery && numberOfNeighbours * numberOfNeighbours < relation.size()) {
       LOG.warning("To accelerate Barnes-Hut tSNE, please use an index.");
     }
@@ -110,45 +116,33 @@ public class NearestNeighborAffinityMatrixBuilder<O> extends PerplexityAffinityM
     double[][] pij = new double[size][];
     int[][] indices = new int[size][];
     final boolean square = !distance.isSquared();
-    computePij(rids, knnq, square, numberOfNeighbours, pij, indices, initialScale);
+    computePij(rids, new PijProcessor(rids, knnq, () -> qb.kNNByDBID(numberOfNeighbours + 1), square, pij, indices), pij, indices, initialScale);
     SparseAffinityMatrix mat = new SparseAffinityMatrix(pij, indices, rids);
     return mat;
   }
 
   /**
-   * Compute the sparse pij using the nearest neighbors only.
+   * Compute the sparse pij using the nearest neighbors only. The neighbors and
+   * the bandwidths are computed in parallel.
    * 
    * @param ids ID range
-   * @param knnq kNN query
-   * @param square Use squared distances
-   * @param numberOfNeighbours Number of neighbors to get
+   * @param proc Processor to find the neighbors and compute the rows
    * @param pij Output of distances
    * @param indices Output of indexes
    * @param initialScale Initial scaling factor
    */
-  protected void computePij(DBIDRange ids, KNNSearcher<DBIDRef> knnq, boolean square, int numberOfNeighbours, double[][] pij, int[][] indices, double initialScale) {
+  protected void computePij(DBIDRange ids, PijProcessor proc, double[][] pij, int[][] indices, double initialScale) {
     Duration timer = LOG.newDuration(this.getClass().getName() + ".runtime.neighborspijmatrix").begin();
-    final double logPerp = FastMath.log(perplexity);
-    // Scratch arrays, resizable
-    DoubleArray dists = new DoubleArray(numberOfNeighbours + 10);
-    IntegerArray inds = new IntegerArray(numberOfNeighbours + 10);
     // Compute nearest-neighbor sparse affinity matrix
     FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Finding neighbors and optimizing perplexity", ids.size(), LOG) : null;
+    ParallelExecutor.run(ids, prog, LOG, proc);
+    LOG.ensureCompleted(prog);
     MeanVariance mv = LOG.isStatistics() ? new MeanVariance() : null;
-    for(DBIDArrayIter ix = ids.iter(); ix.valid(); ix.advance()) {
-      dists.clear();
-      inds.clear();
-      KNNList neighbours = knnq.getKNN(ix, numberOfNeighbours + 1);
-      convertNeighbors(ids, ix, square, neighbours, dists, inds);
-      double beta = computeSigma(ix.getOffset(), dists, perplexity, logPerp, //
-          pij[ix.getOffset()] = new double[dists.size()]);
-      if(mv != null) {
+    if(mv != null) {
+      for(double beta : proc.betas) {
         mv.put(beta > 0 ? FastMath.sqrt(.5 / beta) : 0.); // Sigma
       }
-      indices[ix.getOffset()] = inds.toArray();
-      LOG.incrementProcessed(prog);
     }
-    LOG.ensureCompleted(prog);
     // Sum of the sparse affinity matrix:
     double sum = 0.;
     for(int i = 0; i < pij.length; i++) {
@@ -288,6 +282,132 @@ public class NearestNeighborAffinityMatrixBuilder<O> extends PerplexityAffinityM
     return -1;
   }
 
+  /**
+   * Processor to find the neighbors of each object, and to compute its row of
+   * the affinity matrix.
+   *
+   * @author Erich Schubert
+   */
+  protected class PijProcessor implements Processor {
+    /**
+     * ID range.
+     */
+    private DBIDRange ids;
+
+    /**
+     * Searcher for the first thread, then {@code null}.
+     */
+    private KNNSearcher<DBIDRef> first;
+
+    /**
+     * Factory for additional searchers.
+     */
+    private Supplier<KNNSearcher<DBIDRef>> searchers;
+
+    /**
+     * Use squared distances.
+     */
+    private boolean square;
+
+    /**
+     * Output of distances.
+     */
+    private double[][] pij;
+
+    /**
+     * Output of indexes.
+     */
+    private int[][] indices;
+
+    /**
+     * Output of the bandwidths beta.
+     */
+    double[] betas;
+
+    /**
+     * Constructor.
+     *
+     * @param ids ID range
+     * @param first kNN searcher (for the first thread)
+     * @param searchers Factory for additional kNN searchers
+     * @param square Use squared distances
+     * @param pij Output of distances
+     * @param indices Output of indexes
+     */
+    protected PijProcessor(DBIDRange ids, KNNSearcher<DBIDRef> first, Supplier<KNNSearcher<DBIDRef>> searchers, boolean square, double[][] pij, int[][] indices) {
+      this.ids = ids;
+      this.first = first;
+      this.searchers = searchers;
+      this.square = square;
+      this.pij = pij;
+      this.indices = indices;
+      this.betas = new double[ids.size()];
+    }
+
+    @Override
+    public Instance instantiate(Executor executor) {
+      KNNSearcher<DBIDRef> knnq;
+      synchronized(this) {
+        knnq = first;
+        first = null;
+      }
+      return new Instance(knnq != null ? knnq : searchers.get());
+    }
+
+    @Override
+    public void cleanup(Processor.Instance inst) {
+      // Nothing to do.
+    }
+
+    /**
+     * Per-thread instance.
+     *
+     * @author Erich Schubert
+     */
+    private class Instance implements Processor.Instance {
+      /**
+       * kNN searcher of this thread.
+       */
+      private KNNSearcher<DBIDRef> knnq;
+
+      /**
+       * Scratch array of distances, resizable
+       */
+      private DoubleArray dists = new DoubleArray(numberOfNeighbours + 10);
+
+      /**
+       * Scratch array of indexes, resizable
+       */
+      private IntegerArray inds = new IntegerArray(numberOfNeighbours + 10);
+
+      /**
+       * Log of the desired perplexity.
+       */
+      private final double logPerp = FastMath.log(perplexity);
+
+      /**
+       * Constructor.
+       *
+       * @param knnq kNN searcher of this thread
+       */
+      Instance(KNNSearcher<DBIDRef> knnq) {
+        this.knnq = knnq;
+      }
+
+      @Override
+      public void map(DBIDRef id) {
+        dists.clear();
+        inds.clear();
+        KNNList neighbours = knnq.getKNN(id, numberOfNeighbours + 1);
+        convertNeighbors(ids, id, square, neighbours, dists, inds);
+        final int off = ids.getOffset(id);
+        betas[off] = computeSigma(off, dists, perplexity, logPerp, //
+            pij[off] = new double[dists.size()]);
+        indices[off] = inds.toArray();
+      }
+    }
+  }
+
   /**
    * Parameterization class.
    *
@@ -28,12 +28,15 @@ import elki.index.Index;
 import elki.logging.Logging;
 import elki.logging.LoggingConfiguration;
 import elki.logging.statistics.Duration;
+import elki.parallel.ParallelCore;
 import elki.result.Metadata;
 import elki.utilities.datastructures.iterator.It;
 import elki.utilities.optionhandling.Parameterizer;
 import elki.utilities.optionhandling.OptionID;
+import elki.utilities.optionhandling.constraints.CommonConstraints;
 import elki.utilities.optionhandling.parameterization.Parameterization;
 import elki.utilities.optionhandling.parameters.Flag;
+import elki.utilities.optionhandling.parameters.IntParameter;
 import elki.utilities.optionhandling.parameters.ObjectListParameter;
 
 /**
@@ -137,6 +140,11 @@ public class AlgorithmStep implements WorkflowStep {
      */
     protected boolean time = false;
 
+    /**
+     * Number of threads to use in parallel algorithms.
+     */
+    protected int threads = 0;
+
     /**
      * Holds the algorithm to run.
      */
@@ -147,6 +155,11 @@ public class AlgorithmStep implements WorkflowStep {
      */
     public static final OptionID TIME_ID = new OptionID("time", "Enable logging of runtime data. Do not combine with more verbose logging, since verbose logging can significantly impact performance.");
 
+    /**
+     * Number of threads to use in parallel algorithms.
+     */
+    public static final OptionID THREADS_ID = new OptionID("parallel.threads", "Number of threads to use in parallel algorithms, default: all available processors.");
+
     /**
      * Parameter to specify the algorithm to run.
      */
@@ -155,6 +168,10 @@ public class AlgorithmStep implements WorkflowStep {
     @Override
     public void configure(Parameterization config) {
       new Flag(TIME_ID).grab(config, x -> time = x);
+      new IntParameter(THREADS_ID) //
+          .setOptional(true) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+          .grab(config, x -> threads = x);
       // parameter algorithm
       new ObjectListParameter<Algorithm>(ALGORITHM_ID, Algorithm.class) //
           .grab(config, x -> algorithms = x);
@@ -165,6 +182,9 @@ public class AlgorithmStep implements WorkflowStep {
       if(time) {
         LoggingConfiguration.setStatistics();
       }
+      if(threads > 0) {
+        ParallelCore.getCore().setParallelism(threads);
+      }
       return new AlgorithmStep(algorithms);
     }
   }
@@ -0,0 +1,117 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.hierarchical;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import elki.Algorithm;
+import elki.clustering.AbstractClusterAlgorithmTest;
+import elki.clustering.hierarchical.extraction.CutDendrogramByNumberOfClusters;
+import elki.data.Clustering;
+import elki.data.NumberVector;
+import elki.data.type.TypeUtil;
+import elki.database.Database;
+import elki.database.StaticArrayDatabase;
+import elki.database.datastore.DoubleDataStore;
+import elki.database.ids.DBIDIter;
+import elki.database.relation.Relation;
+import elki.distance.minkowski.EuclideanDistance;
+import elki.index.tree.metrical.covertree.CoverTree;
+import elki.index.tree.spatial.kd.SmallMemoryKDTree;
+import elki.utilities.ELKIBuilder;
+import elki.utilities.optionhandling.parameterization.ListParameterization;
+
+/**
+ * Test HDBSCAN with Borůvka's minimum spanning tree, accelerated by an index,
+ * against {@link HDBSCANLinearMemory}.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class HDBSCANBoruvkaIndexTest extends AbstractClusterAlgorithmTest {
+  @Test
+  public void testKDTree() {
+    ListParameterization params = new ListParameterization() //
+        .addParameter(StaticArrayDatabase.Par.INDEX_ID, SmallMemoryKDTree.Factory.class);
+    Database db = makeSimpleDatabase(UNITTEST + "single-link-effect.ascii", 638, params);
+    assertSameAsLinearMemory(db, 20);
+    assertSameAsLinearMemory(db, 1);
+  }
+
+  @Test
+  public void testCoverTree() {
+    ListParameterization params = new ListParameterization() //
+        .addParameter(StaticArrayDatabase.Par.INDEX_ID, CoverTree.Factory.class) //
+        .addParameter(CoverTree.Factory.Par.DISTANCE_FUNCTION_ID, EuclideanDistance.class);
+    Database db = makeSimpleDatabase(UNITTEST + "single-link-effect.ascii", 638, params);
+    assertSameAsLinearMemory(db, 20);
+    assertSameAsLinearMemory(db, 1);
+  }
+
+  /**
+   * Compare the hierarchy to the one computed by {@link HDBSCANLinearMemory}.
+   *
+   * @param db Database
+   * @param minPts Minimum number of points
+   */
+  private void assertSameAsLinearMemory(Database db, int minPts) {
+    Relation<NumberVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    PointerHierarchyRepresentationResult expected = new HDBSCANLinearMemory<>(EuclideanDistance.STATIC, minPts).run(rel);
+    PointerHierarchyRepresentationResult result = new HDBSCANBoruvka<>(EuclideanDistance.STATIC, minPts).run(rel);
+    // All minimum spanning trees have the same edge lengths:
+    assertArrayEquals("Merge heights differ.", mergeHeights(expected), mergeHeights(result), 1e-10);
+    // Also extract the clusters, as in the other HDBSCAN tests:
+    Clustering<?> clustering = new ELKIBuilder<>(CutDendrogramByNumberOfClusters.class) //
+        .with(CutDendrogramByNumberOfClusters.Par.MINCLUSTERS_ID, 3) //
+        .with(Algorithm.Utils.ALGORITHM_ID, HDBSCANBoruvka.class) //
+        .with(HDBSCANBoruvka.Par.MIN_PTS_ID, minPts) //
+        .build().autorun(db);
+    if(minPts == 1) {
+      assertFMeasure(db, clustering, 0.6829722);
+      assertClusterSizes(clustering, new int[] { 9, 200, 429 });
+    }
+    else {
+      assertFMeasure(db, clustering, 0.686953412);
+      assertClusterSizes(clustering, new int[] { 1, 200, 437 });
+    }
+  }
+
+  /**
+   * Get the sorted merge heights of a hierarchy.
+   *
+   * @param pointer Pointer hierarchy
+   * @return Sorted merge heights, excluding the root
+   */
+  private static double[] mergeHeights(PointerHierarchyRepresentationResult pointer) {
+    DoubleDataStore lambda = pointer.getParentDistanceStore();
+    double[] heights = new double[pointer.getDBIDs().size()];
+    int i = 0;
+    for(DBIDIter it = pointer.getDBIDs().iter(); it.valid(); it.advance()) {
+      heights[i++] = lambda.doubleValue(it);
+    }
+    Arrays.sort(heights);
+    return heights;
+  }
+}
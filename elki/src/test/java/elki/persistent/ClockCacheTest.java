@@ -0,0 +1,151 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.persistent;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+import elki.data.NumberVector;
+import elki.index.AbstractIndexStructureTest;
+import elki.index.PagedIndexFactory;
+import elki.index.tree.spatial.rstarvariants.query.RStarTreeKNNSearcher;
+import elki.index.tree.spatial.rstarvariants.query.RStarTreeRangeSearcher;
+import elki.index.tree.spatial.rstarvariants.rstar.RStarTreeFactory;
+import elki.persistent.MappedPageFileTest.TestPage;
+import elki.utilities.ELKIBuilder;
+
+/**
+ * Unit test for the concurrent CLOCK page cache.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class ClockCacheTest extends AbstractIndexStructureTest {
+  @Test
+  public void testRStarTree() throws IOException {
+    Path file = Files.createTempFile("elki-rstar", ".pages");
+    try {
+      RStarTreeFactory<NumberVector> factory = new ELKIBuilder<>(RStarTreeFactory.class) //
+          .with(PagedIndexFactory.Par.PAGEFILE_ID, new ClockCachePageFileFactory<>(new MappedPageFileFactory<>(300, file), 3000)) //
+          .build();
+      assertExactEuclidean(factory, RStarTreeKNNSearcher.class, RStarTreeRangeSearcher.class);
+    }
+    finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @Test
+  public void testEviction() {
+    MemoryPageFile<TestPage> inner = new MemoryPageFile<>(256);
+    ClockCache<TestPage> cache = new ClockCache<>(4 * 256, inner);
+    cache.initialize(new DefaultPageHeader(256));
+    for(int i = 0; i < 100; i++) {
+      assertEquals("Page id", i, cache.writePage(new TestPage(i)));
+    }
+    // Evicted pages must have been written back.
+    assertEquals("Written pages", 96, IntStream.range(0, 100).filter(i -> inner.readPage(i) != null).count());
+    for(int i = 0; i < 100; i++) {
+      assertEquals("Label", "page" + i, cache.readPage(i).label);
+    }
+    cache.deletePage(42);
+    assertNull("Deleted page", cache.readPage(42));
+    cache.flush();
+    for(int i = 0; i < 100; i++) {
+      TestPage p = inner.readPage(i);
+      if(i == 42) {
+        assertNull("Deleted page", p);
+        continue;
+      }
+      assertEquals("Label", "page" + i, p.label);
+      assertFalse("Dirty page", p.isDirty());
+    }
+  }
+
+  @Test
+  public void testStaleMiss() {
+    HookPageFile inner = new HookPageFile();
+    ClockCache<TestPage> cache = new ClockCache<>(4 * 256, inner);
+    cache.initialize(new DefaultPageHeader(256));
+    cache.writePage(new TestPage(0));
+    cache.flush();
+    // Write and write back the page while a cache miss is reading it:
+    inner.hook = () -> {
+      TestPage updated = new TestPage(0);
+      updated.label = "updated";
+      updated.setPageID(0);
+      cache.writePage(updated);
+      cache.flush();
+    };
+    assertEquals("Label", "updated", cache.readPage(0).label);
+    assertEquals("Label", "updated", cache.readPage(0).label);
+  }
+
+  @Test
+  public void testConcurrentReads() {
+    MemoryPageFile<TestPage> inner = new MemoryPageFile<>(256);
+    ClockCache<TestPage> cache = new ClockCache<>(64 * 256, inner);
+    cache.initialize(new DefaultPageHeader(256));
+    for(int i = 0; i < 1000; i++) {
+      cache.writePage(new TestPage(i));
+    }
+    IntStream.range(0, 100000).parallel().forEach(j -> {
+      final int i = (j * 31) % 1000;
+      assertEquals("Label", "page" + i, cache.readPage(i).label);
+    });
+  }
+
+  /**
+   * Page file running a hook once, after the next page was read.
+   *
+   * @author Erich Schubert
+   */
+  private static class HookPageFile extends MemoryPageFile<TestPage> {
+    /**
+     * Hook to run.
+     */
+    Runnable hook;
+
+    /**
+     * Constructor.
+     */
+    HookPageFile() {
+      super(256);
+    }
+
+    @Override
+    public synchronized TestPage readPage(int pageID) {
+      TestPage page = super.readPage(pageID);
+      if(hook != null) {
+        Runnable r = hook;
+        hook = null;
+        r.run();
+      }
+      return page;
+    }
+  }
+}
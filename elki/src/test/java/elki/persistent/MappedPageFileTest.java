@@ -0,0 +1,167 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.persistent;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import elki.data.NumberVector;
+import elki.index.AbstractIndexStructureTest;
+import elki.index.PagedIndexFactory;
+import elki.index.tree.spatial.rstarvariants.query.RStarTreeKNNSearcher;
+import elki.index.tree.spatial.rstarvariants.query.RStarTreeRangeSearcher;
+import elki.index.tree.spatial.rstarvariants.rstar.RStarTreeFactory;
+import elki.utilities.ELKIBuilder;
+
+/**
+ * Unit test for the memory-mapped page file.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class MappedPageFileTest extends AbstractIndexStructureTest {
+  @Test
+  public void testRStarTree() throws IOException {
+    Path file = Files.createTempFile("elki-rstar", ".pages");
+    try {
+      RStarTreeFactory<NumberVector> factory = new ELKIBuilder<>(RStarTreeFactory.class) //
+          .with(PagedIndexFactory.Par.PAGEFILE_ID, new MappedPageFileFactory<>(300, file)) //
+          .build();
+      assertExactEuclidean(factory, RStarTreeKNNSearcher.class, RStarTreeRangeSearcher.class);
+    }
+    finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @Test
+  public void testReopen() throws IOException {
+    Path file = Files.createTempFile("elki-pages", ".pages");
+    try {
+      MappedPageFile<TestPage> pf = new MappedPageFile<>(256, file, new ExternalizablePageSerializer<>(TestPage.class));
+      assertFalse("File should be new.", pf.initialize(new DefaultPageHeader(256)));
+      for(int i = 0; i < 100; i++) {
+        assertEquals("Page id", i, pf.writePage(new TestPage(i)));
+      }
+      pf.deletePage(17);
+      pf.close();
+
+      pf = new MappedPageFile<>(256, file, new ExternalizablePageSerializer<>(TestPage.class));
+      assertTrue("File should exist.", pf.initialize(new DefaultPageHeader(256)));
+      assertEquals("Next page id", 100, pf.getNextPageID());
+      assertNull("Deleted page", pf.readPage(17));
+      for(int i = 0; i < 100; i++) {
+        if(i != 17) {
+          TestPage p = pf.readPage(i);
+          assertEquals("Page id", i, p.getPageID());
+          assertEquals("Payload", i * .5, p.value, 0.);
+          assertEquals("Label", "page" + i, p.label);
+          assertEquals("Boxed", Integer.valueOf(i), p.boxed);
+        }
+      }
+      // The deleted page is reused first:
+      assertEquals("Reused page id", 17, pf.writePage(new TestPage(-1)));
+      pf.close();
+    }
+    finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @Test
+  public void testByteSize() throws IOException {
+    ExternalizablePageSerializer<TestPage> ser = new ExternalizablePageSerializer<>(TestPage.class);
+    TestPage page = new TestPage(42);
+    ByteBuffer buf = ByteBuffer.allocate(256);
+    ser.toByteBuffer(buf, page);
+    assertEquals("Byte size", buf.position(), ser.getByteSize(page));
+  }
+
+  /**
+   * Simple page for testing.
+   *
+   * @author Erich Schubert
+   */
+  public static class TestPage extends AbstractExternalizablePage implements ExternalizablePage {
+    /**
+     * Serial version
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Payload values.
+     */
+    double value;
+
+    /**
+     * Label, written as UTF.
+     */
+    String label;
+
+    /**
+     * Boxed value, written as object.
+     */
+    Integer boxed;
+
+    /**
+     * Constructor for deserialization.
+     */
+    public TestPage() {
+      super();
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param i Page number
+     */
+    public TestPage(int i) {
+      super();
+      this.value = i * .5;
+      this.label = "page" + i;
+      this.boxed = i;
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+      super.writeExternal(out);
+      out.writeDouble(value);
+      out.writeUTF(label);
+      out.writeObject(boxed);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+      super.readExternal(in);
+      value = in.readDouble();
+      label = in.readUTF();
+      boxed = (Integer) in.readObject();
+    }
+  }
+}